@@ -0,0 +1,105 @@
+package com.sprinklr.sip4j.buffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handoff of packets between two threads through the ring buffer, as between the RTP receiver and the Agent's media loop.
+ * handoff measures the throughput of one producer and one consumer polling without waiting. pingPong measures the
+ * latency of a packet sent to an echo thread and back, through two buffers, with the consumers waiting by the
+ * configured strategy: two handoffs and two wake ups per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RingBufferBenchmark {
+
+    private static final Object PACKET = new Object();
+
+    @State(Scope.Group)
+    public static class Handoff {
+        RingBuffer<Object> queue;
+
+        @Setup
+        public void setup() {
+            queue = new RingBuffer<>(1024, WaitStrategies.fromName(WaitStrategies.BUSY_SPIN));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PingPong {
+
+        @Param({WaitStrategies.BUSY_SPIN, WaitStrategies.YIELD, WaitStrategies.PARK, WaitStrategies.BLOCKING})
+        String waitStrategy;
+
+        RingBuffer<Object> ping;
+        RingBuffer<Object> pong;
+        private volatile boolean running;
+        private Thread echo;
+
+        @Setup
+        public void setup() {
+            ping = new RingBuffer<>(64, WaitStrategies.fromName(waitStrategy));
+            pong = new RingBuffer<>(64, WaitStrategies.fromName(waitStrategy));
+            running = true;
+            echo = new Thread(() -> {
+                try {
+                    while (running) {
+                        Object packet = ping.poll(10, TimeUnit.MILLISECONDS);
+                        if (packet != null) {
+                            pong.offer(packet);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "ring-buffer-echo");
+            echo.setDaemon(true);
+            echo.start();
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            running = false;
+            echo.join();
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean offer(Handoff handoff) {
+        return handoff.queue.offer(PACKET);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Object poll(Handoff handoff) {
+        return handoff.queue.poll();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object pingPong(PingPong pingPong) throws InterruptedException {
+        pingPong.ping.offer(PACKET);
+        return pingPong.pong.poll(1, TimeUnit.SECONDS);
+    }
+}
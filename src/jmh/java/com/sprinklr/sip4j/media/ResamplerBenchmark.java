@@ -0,0 +1,64 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the resampler on one core, in 20ms packets per second: upsampling a packet of 160 samples at 8 kHz
+ * and downsampling it back. The number of concurrent calls a core can resample is the score divided by 50.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResamplerBenchmark {
+
+    @Param({"false", "true"})
+    private boolean direct;
+
+    private Resampler upsampler;
+    private Resampler downsampler;
+    private MediaBuffer packet;
+
+    @Setup
+    public void setup() {
+        upsampler = Resampler.upsampler(160);
+        downsampler = Resampler.downsampler(320);
+        packet = MediaBuffer.wrap(direct ? ByteBuffer.allocateDirect(12 + 640) : ByteBuffer.allocate(12 + 640));
+        packet.setLength(12 + 320);
+        new RtpPacketView().wrap(packet).writeHeader(false, 0, 0, 0, 1);
+        for (int i = 0; i < 160; i++) {
+            packet.getBuffer().putShort(12 + 2 * i, (short) (8000 * Math.sin(2 * Math.PI * 500 * i / 8000)));
+        }
+    }
+
+    @Benchmark
+    public MediaBuffer upsample() {
+        upsampler.process(packet);
+        packet.setLength(12 + 320); //back to 8 kHz, the samples are left as they are
+        return packet;
+    }
+
+    @Benchmark
+    public MediaBuffer downsample() {
+        packet.setLength(12 + 640);
+        downsampler.process(packet);
+        return packet;
+    }
+}
@@ -0,0 +1,82 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding and decoding the RTP header of a 20ms PCMU packet, with the copying RtpPacket used by the mock
+ * servers and with the RtpPacketView used on the media path, which reads and writes the header in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RtpPacketBenchmark {
+
+    private static final int PAYLOAD_SIZE = 160;
+
+    private final byte[] payload = new byte[PAYLOAD_SIZE];
+    private final byte[] packetBytes = new byte[12 + PAYLOAD_SIZE];
+    private final RtpPacketView packetView = new RtpPacketView();
+    private MediaBuffer packet;
+    private int sequenceNumber;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < PAYLOAD_SIZE; i++) {
+            payload[i] = (byte) i;
+        }
+        new RtpPacket(0, 1, 160, 0x12345678, 0, payload, PAYLOAD_SIZE).getPacket(packetBytes);
+        packet = MediaBuffer.wrap(ByteBuffer.allocate(packetBytes.length));
+        packet.getWritableBuffer().put(packetBytes);
+        packet.setLength(packetBytes.length);
+    }
+
+    @Benchmark
+    public byte[] encodeRtpPacket() {
+        sequenceNumber++;
+        RtpPacket rtpPacket = new RtpPacket(0, sequenceNumber, sequenceNumber * 160, 0x12345678, 0, payload, PAYLOAD_SIZE);
+        rtpPacket.getPacket(packetBytes);
+        return packetBytes;
+    }
+
+    @Benchmark
+    public void decodeRtpPacket(Blackhole blackhole) {
+        RtpPacket rtpPacket = new RtpPacket(packetBytes, packetBytes.length);
+        rtpPacket.getPayload(payload);
+        blackhole.consume(rtpPacket.getSequenceNumber());
+        blackhole.consume(rtpPacket.getTimeStamp());
+        blackhole.consume(payload);
+    }
+
+    @Benchmark
+    public MediaBuffer rewriteHeaderInPlace() {
+        sequenceNumber++;
+        packetView.wrap(packet).rewriteHeader(sequenceNumber & 0xFFFF, sequenceNumber * 160, 0x12345678);
+        return packet;
+    }
+
+    @Benchmark
+    public void readHeaderInPlace(Blackhole blackhole) {
+        packetView.wrap(packet);
+        blackhole.consume(packetView.isValid());
+        blackhole.consume(packetView.getSequenceNumber());
+        blackhole.consume(packetView.getTimeStamp());
+        blackhole.consume(packetView.getPayloadLength());
+    }
+}
@@ -0,0 +1,97 @@
+package com.sprinklr.sip4j.sip;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sip.ListeningPoint;
+import javax.sip.SipProvider;
+import javax.sip.SipStack;
+import javax.sip.header.WWWAuthenticateHeader;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.net.DatagramSocket;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.sprinklr.sip4j.sip.SipAllFactories.HEADER_FACTORY;
+import static com.sprinklr.sip4j.sip.SipAllFactories.MESSAGE_FACTORY;
+import static com.sprinklr.sip4j.sip.SipAllFactories.SIP_FACTORY;
+
+/**
+ * Cost of creating the REGISTER requests of an Agent, without and with the digest credentials answering a 401.
+ * The SIP stack listens on an ephemeral loopback port but sends nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SipRequestCreatorBenchmark {
+
+    private SipStack sipStack;
+    private SipRequestCreator requestCreator;
+    private Response challenge;
+
+    @Setup
+    public void setup() throws Exception {
+        AgentConfig agentConfig = new AgentConfig();
+        agentConfig.setAgentName("benchmark");
+        agentConfig.setTransportMode(ListeningPoint.UDP);
+        agentConfig.setPassword("password12345");
+        agentConfig.setSipLocalIp("127.0.0.1");
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            agentConfig.setSipLocalPort(socket.getLocalPort()); //the stack does not take port 0, pick a free one
+        }
+        agentConfig.setSipLocalUsername("agent");
+        agentConfig.setSipLocalRealm("sprinklr.com");
+        agentConfig.setSipLocalDisplayName("Agent");
+        agentConfig.setSipRegistrarIp("127.0.0.1");
+        agentConfig.setSipRegistrarPort(5060);
+        agentConfig.setSipRegisterExpiryTimeSec(3600);
+
+        Properties properties = new Properties();
+        properties.setProperty("javax.sip.STACK_NAME", agentConfig.getAgentName());
+        sipStack = SIP_FACTORY.createSipStack(properties);
+        ListeningPoint listeningPoint = sipStack.createListeningPoint(agentConfig.getSipLocalIp(), agentConfig.getSipLocalPort(), agentConfig.getTransportMode());
+        SipProvider sipProvider = sipStack.createSipProvider(listeningPoint);
+        requestCreator = new SipRequestCreator(sipProvider, agentConfig);
+
+        challenge = MESSAGE_FACTORY.createResponse(Response.UNAUTHORIZED, requestCreator.createRegisterRequest());
+        WWWAuthenticateHeader wwwAuthenticateHeader = HEADER_FACTORY.createWWWAuthenticateHeader("Digest");
+        wwwAuthenticateHeader.setRealm("sprinklr.com");
+        wwwAuthenticateHeader.setNonce("ea9c8e88df84f1cec4341ae6cbe5a359");
+        wwwAuthenticateHeader.setAlgorithm("MD5");
+        challenge.addHeader(wwwAuthenticateHeader);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sipStack.stop();
+    }
+
+    @Benchmark
+    public Request createRegisterRequest() throws Exception {
+        return requestCreator.createRegisterRequest();
+    }
+
+    @Benchmark
+    public Request createRegisterRequestWithCredentials() throws Exception {
+        return requestCreator.createRegisterRequestWithCredentials(challenge);
+    }
+
+    @Benchmark
+    public String encodeRegisterRequest() throws Exception {
+        return requestCreator.createRegisterRequestWithCredentials(challenge).toString(); //as written to the socket
+    }
+}
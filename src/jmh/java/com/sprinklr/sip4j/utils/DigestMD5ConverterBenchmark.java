@@ -0,0 +1,34 @@
+package com.sprinklr.sip4j.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the digest response to a REGISTER challenge: three MD5 hashes and their hex encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DigestMD5ConverterBenchmark {
+
+    private final String nonce = "ea9c8e88df84f1cec4341ae6cbe5a359";
+
+    @Benchmark
+    public String digestResponseFromNonce() throws NoSuchAlgorithmException {
+        return DigestMD5Converter.digestResponseFromNonce("agent", "sprinklr.com", "password12345", "REGISTER",
+                "sip:127.0.0.1:5060", nonce);
+    }
+}
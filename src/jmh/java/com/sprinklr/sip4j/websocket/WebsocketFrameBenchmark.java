@@ -0,0 +1,77 @@
+package com.sprinklr.sip4j.websocket;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.media.FrameAggregator;
+import com.sprinklr.sip4j.media.PayloadFrameCodec;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.Framedata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the websocket frame sent to the bot for a 20ms PCMU packet, per packet, in each bot wire format:
+ * the RTP packet as is, a PAYLOAD frame, and an aggregation container of 5 packets. Each includes the masked binary
+ * frame built by the websocket client, as done by Websocket.send().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebsocketFrameBenchmark {
+
+    private static final int PAYLOAD_SIZE = 160;
+
+    private final Draft_6455 draft = new Draft_6455();
+    private final PayloadFrameCodec payloadCodec = new PayloadFrameCodec(0);
+    private MediaBuffer packet;
+    private MediaBuffer payloadFrame;
+    private FrameAggregator aggregator;
+    private Blackhole sinkBlackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        sinkBlackhole = blackhole;
+        packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + PAYLOAD_SIZE));
+        packet.setLength(12 + PAYLOAD_SIZE);
+        new RtpPacketView().wrap(packet).writeHeader(false, 0, 1, 160, 0x12345678);
+        payloadFrame = MediaBuffer.wrap(ByteBuffer.allocate(PayloadFrameCodec.MAX_HEADER_SIZE + 12 + PAYLOAD_SIZE));
+        aggregator = new FrameAggregator(data -> sendFrame(data.getBuffer(), sinkBlackhole), 5, 100, 12 + PAYLOAD_SIZE);
+    }
+
+    private void sendFrame(ByteBuffer data, Blackhole blackhole) {
+        for (Framedata frame : draft.createFrames(data, true)) {
+            blackhole.consume(draft.createBinaryFrame(frame));
+        }
+    }
+
+    @Benchmark
+    public void rtpFrame(Blackhole blackhole) {
+        sendFrame(packet.getBuffer(), blackhole);
+    }
+
+    @Benchmark
+    public void payloadFrame(Blackhole blackhole) {
+        payloadCodec.encode(packet, payloadFrame);
+        sendFrame(payloadFrame.getBuffer(), blackhole);
+    }
+
+    @Benchmark
+    public void aggregatedFrame() {
+        aggregator.add(packet, 0); //the frame is sent on every 5th packet
+    }
+}
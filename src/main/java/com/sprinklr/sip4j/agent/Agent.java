@@ -1,12 +1,17 @@
 package com.sprinklr.sip4j.agent;
 
-import com.sprinklr.sip4j.rtp.RtpAddress;
-import com.sprinklr.sip4j.rtp.RtpReceiverImpl;
-import com.sprinklr.sip4j.rtp.RtpSenderImpl;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.buffer.WaitStrategies;
+import com.sprinklr.sip4j.media.MediaEvents;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+import com.sprinklr.sip4j.metrics.MediaMetrics;
+import com.sprinklr.sip4j.rtp.RtpReceiverMode;
+import com.sprinklr.sip4j.sip.SipCall;
 import com.sprinklr.sip4j.sip.SipExtension;
-import com.sprinklr.sip4j.sip.SipState;
+import com.sprinklr.sip4j.utils.ThreadModes;
 import com.sprinklr.sip4j.websocket.Websocket;
-import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.enums.ReadyState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,15 +23,11 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.text.ParseException;
-import java.util.Queue;
 import java.util.TooManyListenersException;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-
-import static com.sprinklr.sip4j.utils.Constants.SLEEP_CPU_TIME_MS;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Agent class which handles signalling and media transfer. Sits between Ozonetel and Bot.
@@ -34,10 +35,12 @@ import static com.sprinklr.sip4j.utils.Constants.SLEEP_CPU_TIME_MS;
 public class Agent implements Runnable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Agent.class);
-    private static final int WS_RECONNECT_CODE = 1006;
     private static final int N_HELPER_THREADS = 3;
+    private static final int N_CALL_THREADS = 2; //media loop and blocking rtp sender of each additional concurrent call
     private AgentConfig agentConfig;
     private AgentState agentState;
+    private volatile SipExtension sipExtension;
+    private volatile boolean stopped = false;
 
     public Agent(AgentConfig agentConfig) {
         this.agentConfig = agentConfig;
@@ -45,7 +48,7 @@ public class Agent implements Runnable {
     }
 
     /**
-     * Starts the Agent
+     * Starts the Agent. Registers, then serves calls until the first one ends, or, if the Agent is persistent, until it is stopped
      * @throws PeerUnavailableException
      * @throws TransportNotSupportedException
      * @throws TooManyListenersException
@@ -58,61 +61,146 @@ public class Agent implements Runnable {
      */
     public void start() throws PeerUnavailableException, TransportNotSupportedException, TooManyListenersException, InvalidArgumentException, ObjectInUseException, ParseException, ExecutionException, InterruptedException, URISyntaxException {
 
-        Queue<byte[]> inboundRtpQueue = new ConcurrentLinkedQueue<>();
-        Queue<byte[]> outboundRtpQueue = new ConcurrentLinkedQueue<>();
-
-        ExecutorService executor = Executors.newFixedThreadPool(N_HELPER_THREADS);
-
-        SipExtension sip = new SipExtension(agentState, agentConfig);
-
-        /*
-         * Refer to jain-sip-ri/gov.nist/javax/sip/SipStackImpl and src/main/java/com.spr/sip/Sip to understand threading
-         * Currently, javax.sip.REENTRANT_LISTENER = false and defaults are used.Change properties if behaviour is to be changed
-         */
-        Future<RtpAddress> rtpRemoteAddressFuture = executor.submit(sip);
-
-        RtpAddress rtpRemoteAddress = rtpRemoteAddressFuture.get();
-        if (!(rtpRemoteAddress.getAddressType().equals(agentConfig.getRtpAddressType())) || !(rtpRemoteAddress.getNetworkType().equals(agentConfig.getRtpNetworkType()))) {
-            throw new IllegalStateException("Rtp address type or network type not matching" +
-                    "Address type received: " + rtpRemoteAddress.getAddressType() + " expected: " + agentConfig.getRtpAddressType() +
-                    "Network type received: " + rtpRemoteAddress.getNetworkType() + " expected: " + agentConfig.getRtpNetworkType());
+        int maxConcurrentCalls = agentConfig.getMaxConcurrentCalls();
+        if (maxConcurrentCalls > 1 && (!agentConfig.isPersistent() || !RtpReceiverMode.SHARED_PORT.equals(agentConfig.getRtpReceiverMode()))) {
+            //the calls all receive on rtpLocalPort, and are told apart by their remote address
+            throw new IllegalArgumentException("maxConcurrentCalls " + maxConcurrentCalls + " needs persistent true and rtpReceiverMode " + RtpReceiverMode.SHARED_PORT);
         }
 
-        //start listening on rtp port for rtp data from ozonetel (send data only after this is running)
-        DataReceiver rtpReceiver = new RtpReceiverImpl(inboundRtpQueue, agentConfig);
-        executor.execute(rtpReceiver); //1 new thread started
+        //single producer, single consumer in each direction: rtp receiver -> agent loop and websocket -> rtp sender
+        RingBuffer<MediaBuffer> inboundRtpQueue = newMediaQueue();
+        RingBuffer<MediaBuffer> outboundRtpQueue = newMediaQueue();
+        agentState.setMediaQueues(inboundRtpQueue, outboundRtpQueue);
+        AgentMetrics metrics = agentState.getMetrics();
 
-        //connect websocket to botserver (make sure botserver is running)
-        Websocket websocket = new Websocket(outboundRtpQueue, agentState, agentConfig);
-        websocket.connect(); //starts a read and write thread internally, 2 new threads started
+        ExecutorService executor = ThreadModes.newExecutor(agentConfig.getThreadMode(), N_HELPER_THREADS + N_CALL_THREADS * (maxConcurrentCalls - 1));
 
-        //send the returned data to ozontel rtp
-        DataSender rtpSender = new RtpSenderImpl(rtpRemoteAddress, outboundRtpQueue, agentConfig);
-        executor.execute(rtpSender); //1 new thread started
-
-        while (!agentState.getSipState().equals(SipState.DISCONNECTED)) {
-            try {
-                byte[] data = inboundRtpQueue.poll();
-                if (data == null) {
-                    Thread.sleep(SLEEP_CPU_TIME_MS); //sleep to save cpu cycles or can replace by a blocking queue, refer https://www.baeldung.com/java-concurrent-queues
-                    continue;
+        SipExtension sip = new SipExtension(agentState, agentConfig);
+        this.sipExtension = sip;
+        if (stopped) {
+            sip.stopAnswering(); //stopped while registering
+        }
+        Websocket websocket = new Websocket(outboundRtpQueue, agentState, agentConfig); //connected when the first call is answered
+        MediaMetrics.getDefault().register(metrics);
+        try {
+            if (agentConfig.isPersistent() && maxConcurrentCalls == 1) {
+                //warm connection to the bot, ready for the first call
+                connectWebsocket(websocket);
+            }
+            do {
+                /*
+                 * Refer to jain-sip-ri/gov.nist/javax/sip/SipStackImpl and src/main/java/com.spr/sip/Sip to understand threading
+                 * Currently, javax.sip.REENTRANT_LISTENER = false and defaults are used.Change properties if behaviour is to be changed
+                 */
+                Future<SipCall> sipCallFuture = executor.submit(sip);
+                SipCall sipCall = sipCallFuture.get();
+                if (sipCall == null) {
+                    break; //stopped while waiting for a call
                 }
-                websocket.send(data);
-            } catch (WebsocketNotConnectedException e) {
-                if (agentState.getWsCloseCode() == WS_RECONNECT_CODE) {
-                    websocket.reconnect(); //reconnecting immediately, thread.sleep to delay
-                    LOGGER.info("Reconnecting {} to bot websocket server", agentConfig.getAgentName());
+                if (maxConcurrentCalls == 1) {
+                    serveCall(sip, sipCall, websocket, inboundRtpQueue, outboundRtpQueue, executor);
+                } else {
+                    executor.execute(() -> serveConcurrentCall(sip, sipCall, executor));
                 }
-                else {
-                    throw new WebsocketNotConnectedException();
+            } while (agentConfig.isPersistent() && !stopped);
+        } finally {
+            if (websocket.getReadyState() != ReadyState.NOT_YET_CONNECTED) {
+                websocket.close();
+            }
+            executor.shutdown();
+            if (maxConcurrentCalls > 1) {
+                //calls still up keep the SIP stack for their BYE
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            sip.close(); //the only place the SIP stack of a persistent Agent is closed
+            MediaMetrics.getDefault().unregister(metrics);
+        }
+    }
+
+    private RingBuffer<MediaBuffer> newMediaQueue() {
+        return new RingBuffer<>(agentConfig.getMediaQueueCapacity(),
+                WaitStrategies.fromName(agentConfig.getMediaQueueWaitStrategy()), MediaBuffer::release);
+    }
+
+    /**
+     * Serves one call, from the INVITE's answer to the BYE
+     * @param websocket the websocket to the bot, connected if needed and kept open for the next call of a persistent Agent
+     */
+    private void serveCall(SipExtension sip, SipCall sipCall, Websocket websocket, RingBuffer<MediaBuffer> inboundRtpQueue,
+                           RingBuffer<MediaBuffer> outboundRtpQueue, ExecutorService executor) throws InterruptedException {
+        MediaSession mediaSession = new MediaSession(agentConfig, agentState, sipCall, inboundRtpQueue, outboundRtpQueue, executor);
+        try {
+            mediaSession.startReceiving();
+            websocket.startCall();
+            //connect websocket to botserver (make sure botserver is running), the carrier's packets arriving meanwhile
+            //are held in the inbound queue
+            connectWebsocket(websocket);
+            if (agentConfig.isPersistent()) {
+                websocket.send(MediaEvents.callToJson(MediaEvents.CALL_START, sipCall.getCallId()));
+            }
+            mediaSession.run(websocket);
+        } finally {
+            websocket.endCall(); //before close() drains the outbound queue, so that the read thread stops queueing
+            mediaSession.close();
+            if (agentConfig.isPersistent()) {
+                if (websocket.isOpen()) {
+                    websocket.send(MediaEvents.callToJson(MediaEvents.CALL_END, sipCall.getCallId()));
                 }
+                sip.endCall(sipCall);
+            }
+        }
+    }
+
+    /**
+     * Serves one of the concurrent calls of the Agent, with its own media queues and connection to the bot
+     */
+    private void serveConcurrentCall(SipExtension sip, SipCall sipCall, ExecutorService executor) {
+        RingBuffer<MediaBuffer> inboundRtpQueue = newMediaQueue();
+        RingBuffer<MediaBuffer> outboundRtpQueue = newMediaQueue();
+        agentState.setCallMediaQueues(sipCall.getCallId(), inboundRtpQueue, outboundRtpQueue);
+        Websocket websocket = null;
+        try {
+            websocket = new Websocket(outboundRtpQueue, agentState, agentConfig);
+            serveCall(sip, sipCall, websocket, inboundRtpQueue, outboundRtpQueue, executor);
+        } catch (InterruptedException e) {
+            LOGGER.error("{} interrupted in call {}", agentConfig.getAgentName(), sipCall.getCallId());
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Exception in call {} of {}: {}", sipCall.getCallId(), agentConfig.getAgentName(), e.toString());
+        } finally {
+            if (websocket == null) {
+                sip.endCall(sipCall); //never served
+            } else if (websocket.getReadyState() != ReadyState.NOT_YET_CONNECTED) {
+                websocket.close();
             }
+            agentState.removeCallMediaQueues(sipCall.getCallId());
+        }
+    }
+
+    /**
+     * Connects to the bot, unless the websocket is still open
+     * @param websocket the websocket of the Agent, or of the call
+     */
+    private void connectWebsocket(Websocket websocket) throws InterruptedException {
+        if (websocket.getReadyState() == ReadyState.NOT_YET_CONNECTED) {
+            //starts a read and write thread internally, 2 new threads started. Waits for the handshake
+            websocket.connectBlocking();
+            agentState.setRoundTripTracer(websocket.getTracer());
+        } else if (!websocket.isOpen()) {
+            LOGGER.info("Reconnecting {} to bot websocket server", agentConfig.getAgentName());
+            websocket.reconnectBlocking();
         }
+    }
 
-        rtpReceiver.stop();
-        rtpSender.stop();
-        websocket.close();
-        executor.shutdown();
+    /**
+     * Stops a persistent Agent. It stops answering calls at once, and start() closes its SIP stack once the current calls have ended.
+     */
+    public void stop() {
+        stopped = true;
+        SipExtension sip = sipExtension;
+        if (sip != null) {
+            sip.stopAnswering(); //wakes up start() if it is waiting for a call
+        }
     }
 
     /**
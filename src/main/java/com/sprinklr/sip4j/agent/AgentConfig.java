@@ -1,8 +1,18 @@
 package com.sprinklr.sip4j.agent;
 
+import com.sprinklr.sip4j.buffer.WaitStrategies;
+import com.sprinklr.sip4j.media.AudioCodec;
+import com.sprinklr.sip4j.media.BotWireFormat;
+import com.sprinklr.sip4j.media.SilenceFill;
+import com.sprinklr.sip4j.rtp.RtpReceiverMode;
+import com.sprinklr.sip4j.rtp.RtpSenderMode;
+import com.sprinklr.sip4j.sip.SipStackMode;
+import com.sprinklr.sip4j.utils.ThreadModes;
+
 import java.util.UUID;
 
 import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+import static com.sprinklr.sip4j.utils.Constants.RTP_MAX_HEADER_EXTRA_SIZE;
 
 /**
  * Defines the complete configuration of an Agent. Read from yaml file
@@ -27,6 +37,9 @@ public class AgentConfig {
 
     private int sipRegisterExpiryTimeSec;
     private final String sipLocalTag = UUID.randomUUID().toString();
+    private boolean persistent = false; //stays registered after a call and answers the next INVITE, reusing the SIP stack and bot connection
+    private int maxConcurrentCalls = 1; //dialogs answered at the same time under one registration, above 1 needs persistent and SHARED_PORT
+    private String sipStackMode = SipStackMode.AGENT; //SHARED signals through the node wide SIP stack, routed by sipLocalUsername
 
     /*
     ---------------------------------------------- RTP CONFIG ------------------------------------------------
@@ -40,13 +53,53 @@ public class AgentConfig {
 
     private int rtpPayloadSize;
     private int rtpPacketSize;
+    private boolean rtpDirectBuffers = false; //allocate pooled rtp buffers off-heap
+    private String rtpReceiverMode = RtpReceiverMode.THREAD;
+    private String rtpSenderMode = RtpSenderMode.THREAD;
+    private int rtpPayloadType = 0; //PCMU, used in the headers of packets generated by the Agent
+    private String rtpCodec = AudioCodec.PCMU;
+    private int rtpClockRate = 8000; //PCMU
+    private int rtpPtimeMs = 20; //audio carried by one packet
 
     /*
     ---------------------------------------------- WEBSOCKET CONFIG ------------------------------------------------
      */
 
     private String wsServerUri;
+    private String botWireFormat = BotWireFormat.RTP;
+    private String botCodec; //null if the bot uses rtpCodec, otherwise the Agent transcodes
+    private Integer botSampleRate; //null if the bot uses rtpClockRate, otherwise the Agent resamples
+    private boolean botRawAudio = false; //bot returns raw audio to be packetized instead of complete rtp packets
+    private int wsAggregationPackets = 1; //packets coalesced per websocket frame sent to the bot, 1 disables aggregation
+    private int wsAggregationWindowMs = 100; //maximum time the first packet of a coalesced frame is held
+
+    /*
+    ---------------------------------------------- MEDIA QUEUE CONFIG ------------------------------------------------
+     */
+
+    private int mediaQueueCapacity = 256; //packets held per direction before the oldest is dropped, ~5s of 20ms frames
+    private String mediaQueueWaitStrategy = WaitStrategies.PARK;
+    private String threadMode = ThreadModes.PLATFORM; //VIRTUAL runs the Agent's blocking loops on virtual threads, needs Java 21
 
+    /*
+    ---------------------------------------------- JITTER BUFFER CONFIG ------------------------------------------------
+     */
+
+    private boolean jitterBufferEnabled = false;
+    private int jitterBufferMinDelayMs = 20; //allows one packet to be reordered when no jitter is measured
+    private int jitterBufferMaxDelayMs = 200; //latency cap
+    private String rtpSilenceFill = SilenceFill.NONE; //sent while the bot has no audio, needs rtpSenderMode PACED
+    private int rtpComfortNoisePayloadType = 13; //CN, RFC 3551
+    private int rtpComfortNoiseLevelDb = -60; //dBov
+    private boolean dtmfEnabled = false;
+    private int rtpTelephoneEventPayloadType = 101; //dynamic, the value most carriers use
+    private boolean rtcpEnabled = false;
+    private int rtcpIntervalMs = 5000; //RFC 3550 minimum
+    private boolean vadEnabled = false;
+    private int vadThresholdDb = -45; //dBov, quiet speech on a telephone line is around -40
+    private int vadHangoverMs = 300; //bridges the pauses between words
+    private int vadPreRollMs = 200; //keeps the onset of the first syllable
+    private int traceIntervalMs = 0; //0 disables the trace tags, the ptime tags every frame
 
     /*
     ---------------------------------------------- MISC CONFIG ------------------------------------------------
@@ -137,6 +190,30 @@ public class AgentConfig {
         return sipLocalTag;
     }
 
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public String getSipStackMode() {
+        return sipStackMode;
+    }
+
+    public void setSipStackMode(String sipStackMode) {
+        this.sipStackMode = sipStackMode;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
     public int getRtpLocalPort() {
         return rtpLocalPort;
     }
@@ -182,6 +259,81 @@ public class AgentConfig {
         return rtpPacketSize;
     }
 
+    public boolean isRtpDirectBuffers() {
+        return rtpDirectBuffers;
+    }
+
+    public void setRtpDirectBuffers(boolean rtpDirectBuffers) {
+        this.rtpDirectBuffers = rtpDirectBuffers;
+    }
+
+    public String getRtpReceiverMode() {
+        return rtpReceiverMode;
+    }
+
+    public void setRtpReceiverMode(String rtpReceiverMode) {
+        this.rtpReceiverMode = rtpReceiverMode;
+    }
+
+    public String getRtpSenderMode() {
+        return rtpSenderMode;
+    }
+
+    public void setRtpSenderMode(String rtpSenderMode) {
+        this.rtpSenderMode = rtpSenderMode;
+    }
+
+    public int getRtpPayloadType() {
+        return rtpPayloadType;
+    }
+
+    public void setRtpPayloadType(int rtpPayloadType) {
+        this.rtpPayloadType = rtpPayloadType;
+    }
+
+    public String getRtpCodec() {
+        return rtpCodec;
+    }
+
+    public void setRtpCodec(String rtpCodec) {
+        this.rtpCodec = rtpCodec;
+    }
+
+    /**
+     * Returns the size of the pooled media buffers: a packet of rtpPayloadSize bytes, with room to decode the payload
+     * in place when the Agent transcodes to L16 for the bot, and for a CSRC list and a header extension. A datagram
+     * filling a whole buffer is larger than that and is dropped by the receivers
+     * @return the buffer size in bytes
+     */
+    public int getMediaBufferSize() {
+        return RTP_HEADER_SIZE + RTP_MAX_HEADER_EXTRA_SIZE + Math.max(rtpPayloadSize, getBotPayloadSize());
+    }
+
+    /**
+     * Returns the size of the audio of one packet in the bot's codec and sample rate
+     * @return the size in bytes
+     */
+    public int getBotPayloadSize() {
+        int bytesPerSample = AudioCodec.L16.equals(getBotCodec()) && !AudioCodec.L16.equals(rtpCodec) ? 2 : 1;
+        return (int) ((long) rtpPayloadSize * bytesPerSample * getBotSampleRate() / rtpClockRate);
+    }
+
+    public int getRtpClockRate() {
+        return rtpClockRate;
+    }
+
+    public void setRtpClockRate(int rtpClockRate) {
+        this.rtpClockRate = rtpClockRate;
+    }
+
+    public int getRtpPtimeMs() {
+        return rtpPtimeMs;
+    }
+
+    public void setRtpPtimeMs(int rtpPtimeMs) {
+        this.rtpPtimeMs = rtpPtimeMs;
+    }
+
     public String getWsServerUri() {
         return wsServerUri;
     }
@@ -190,6 +342,198 @@ public class AgentConfig {
         this.wsServerUri = wsServerUri;
     }
 
+    public String getBotWireFormat() {
+        return botWireFormat;
+    }
+
+    public void setBotWireFormat(String botWireFormat) {
+        this.botWireFormat = botWireFormat;
+    }
+
+    public String getBotCodec() {
+        return botCodec == null ? rtpCodec : botCodec;
+    }
+
+    public void setBotCodec(String botCodec) {
+        this.botCodec = botCodec;
+    }
+
+    public int getBotSampleRate() {
+        return botSampleRate == null ? rtpClockRate : botSampleRate;
+    }
+
+    public void setBotSampleRate(Integer botSampleRate) {
+        this.botSampleRate = botSampleRate;
+    }
+
+    public boolean isBotRawAudio() {
+        return botRawAudio;
+    }
+
+    public void setBotRawAudio(boolean botRawAudio) {
+        this.botRawAudio = botRawAudio;
+    }
+
+    public int getWsAggregationPackets() {
+        return wsAggregationPackets;
+    }
+
+    public void setWsAggregationPackets(int wsAggregationPackets) {
+        this.wsAggregationPackets = wsAggregationPackets;
+    }
+
+    public int getWsAggregationWindowMs() {
+        return wsAggregationWindowMs;
+    }
+
+    public void setWsAggregationWindowMs(int wsAggregationWindowMs) {
+        this.wsAggregationWindowMs = wsAggregationWindowMs;
+    }
+
+    public int getMediaQueueCapacity() {
+        return mediaQueueCapacity;
+    }
+
+    public void setMediaQueueCapacity(int mediaQueueCapacity) {
+        this.mediaQueueCapacity = mediaQueueCapacity;
+    }
+
+    public String getMediaQueueWaitStrategy() {
+        return mediaQueueWaitStrategy;
+    }
+
+    public void setMediaQueueWaitStrategy(String mediaQueueWaitStrategy) {
+        this.mediaQueueWaitStrategy = mediaQueueWaitStrategy;
+    }
+
+    public String getThreadMode() {
+        return threadMode;
+    }
+
+    public void setThreadMode(String threadMode) {
+        this.threadMode = threadMode;
+    }
+
+    public boolean isJitterBufferEnabled() {
+        return jitterBufferEnabled;
+    }
+
+    public void setJitterBufferEnabled(boolean jitterBufferEnabled) {
+        this.jitterBufferEnabled = jitterBufferEnabled;
+    }
+
+    public int getJitterBufferMinDelayMs() {
+        return jitterBufferMinDelayMs;
+    }
+
+    public void setJitterBufferMinDelayMs(int jitterBufferMinDelayMs) {
+        this.jitterBufferMinDelayMs = jitterBufferMinDelayMs;
+    }
+
+    public int getJitterBufferMaxDelayMs() {
+        return jitterBufferMaxDelayMs;
+    }
+
+    public void setJitterBufferMaxDelayMs(int jitterBufferMaxDelayMs) {
+        this.jitterBufferMaxDelayMs = jitterBufferMaxDelayMs;
+    }
+
+    public String getRtpSilenceFill() {
+        return rtpSilenceFill;
+    }
+
+    public void setRtpSilenceFill(String rtpSilenceFill) {
+        this.rtpSilenceFill = rtpSilenceFill;
+    }
+
+    public int getRtpComfortNoisePayloadType() {
+        return rtpComfortNoisePayloadType;
+    }
+
+    public void setRtpComfortNoisePayloadType(int rtpComfortNoisePayloadType) {
+        this.rtpComfortNoisePayloadType = rtpComfortNoisePayloadType;
+    }
+
+    public int getRtpComfortNoiseLevelDb() {
+        return rtpComfortNoiseLevelDb;
+    }
+
+    public void setRtpComfortNoiseLevelDb(int rtpComfortNoiseLevelDb) {
+        this.rtpComfortNoiseLevelDb = rtpComfortNoiseLevelDb;
+    }
+
+    public boolean isDtmfEnabled() {
+        return dtmfEnabled;
+    }
+
+    public void setDtmfEnabled(boolean dtmfEnabled) {
+        this.dtmfEnabled = dtmfEnabled;
+    }
+
+    public int getRtpTelephoneEventPayloadType() {
+        return rtpTelephoneEventPayloadType;
+    }
+
+    public void setRtpTelephoneEventPayloadType(int rtpTelephoneEventPayloadType) {
+        this.rtpTelephoneEventPayloadType = rtpTelephoneEventPayloadType;
+    }
+
+    public boolean isRtcpEnabled() {
+        return rtcpEnabled;
+    }
+
+    public void setRtcpEnabled(boolean rtcpEnabled) {
+        this.rtcpEnabled = rtcpEnabled;
+    }
+
+    public int getRtcpIntervalMs() {
+        return rtcpIntervalMs;
+    }
+
+    public void setRtcpIntervalMs(int rtcpIntervalMs) {
+        this.rtcpIntervalMs = rtcpIntervalMs;
+    }
+
+    public boolean isVadEnabled() {
+        return vadEnabled;
+    }
+
+    public void setVadEnabled(boolean vadEnabled) {
+        this.vadEnabled = vadEnabled;
+    }
+
+    public int getVadThresholdDb() {
+        return vadThresholdDb;
+    }
+
+    public void setVadThresholdDb(int vadThresholdDb) {
+        this.vadThresholdDb = vadThresholdDb;
+    }
+
+    public int getVadHangoverMs() {
+        return vadHangoverMs;
+    }
+
+    public void setVadHangoverMs(int vadHangoverMs) {
+        this.vadHangoverMs = vadHangoverMs;
+    }
+
+    public int getVadPreRollMs() {
+        return vadPreRollMs;
+    }
+
+    public void setVadPreRollMs(int vadPreRollMs) {
+        this.vadPreRollMs = vadPreRollMs;
+    }
+
+    public int getTraceIntervalMs() {
+        return traceIntervalMs;
+    }
+
+    public void setTraceIntervalMs(int traceIntervalMs) {
+        this.traceIntervalMs = traceIntervalMs;
+    }
+
     public String getPassword() {
         return password;
     }
@@ -212,13 +556,47 @@ public class AgentConfig {
                 ", sipRegistrarPort=" + sipRegistrarPort +
                 ", sipRegisterExpiryTimeSec=" + sipRegisterExpiryTimeSec +
                 ", sipLocalTag='" + sipLocalTag + '\'' +
+                ", persistent=" + persistent +
+                ", maxConcurrentCalls=" + maxConcurrentCalls +
+                ", sipStackMode='" + sipStackMode + '\'' +
                 ", rtpLocalPort=" + rtpLocalPort +
                 ", rtpLocalIp='" + rtpLocalIp + '\'' +
                 ", rtpAddressType='" + rtpAddressType + '\'' +
                 ", rtpNetworkType='" + rtpNetworkType + '\'' +
                 ", rtpPayloadSize=" + rtpPayloadSize +
                 ", rtpPacketSize=" + rtpPacketSize +
+                ", rtpDirectBuffers=" + rtpDirectBuffers +
+                ", rtpReceiverMode='" + rtpReceiverMode + '\'' +
+                ", rtpSenderMode='" + rtpSenderMode + '\'' +
+                ", rtpPayloadType=" + rtpPayloadType +
+                ", rtpCodec='" + rtpCodec + '\'' +
+                ", rtpClockRate=" + rtpClockRate +
+                ", rtpPtimeMs=" + rtpPtimeMs +
                 ", wsServerUri='" + wsServerUri + '\'' +
+                ", botWireFormat='" + botWireFormat + '\'' +
+                ", botCodec='" + getBotCodec() + '\'' +
+                ", botSampleRate=" + getBotSampleRate() +
+                ", botRawAudio=" + botRawAudio +
+                ", wsAggregationPackets=" + wsAggregationPackets +
+                ", wsAggregationWindowMs=" + wsAggregationWindowMs +
+                ", mediaQueueCapacity=" + mediaQueueCapacity +
+                ", mediaQueueWaitStrategy='" + mediaQueueWaitStrategy + '\'' +
+                ", threadMode='" + threadMode + '\'' +
+                ", jitterBufferEnabled=" + jitterBufferEnabled +
+                ", jitterBufferMinDelayMs=" + jitterBufferMinDelayMs +
+                ", jitterBufferMaxDelayMs=" + jitterBufferMaxDelayMs +
+                ", rtpSilenceFill='" + rtpSilenceFill + '\'' +
+                ", rtpComfortNoisePayloadType=" + rtpComfortNoisePayloadType +
+                ", rtpComfortNoiseLevelDb=" + rtpComfortNoiseLevelDb +
+                ", dtmfEnabled=" + dtmfEnabled +
+                ", rtpTelephoneEventPayloadType=" + rtpTelephoneEventPayloadType +
+                ", rtcpEnabled=" + rtcpEnabled +
+                ", rtcpIntervalMs=" + rtcpIntervalMs +
+                ", vadEnabled=" + vadEnabled +
+                ", vadThresholdDb=" + vadThresholdDb +
+                ", vadHangoverMs=" + vadHangoverMs +
+                ", vadPreRollMs=" + vadPreRollMs +
+                ", traceIntervalMs=" + traceIntervalMs +
                 ", password='" + password + '\'' +
                 '}';
     }
@@ -1,11 +1,21 @@
 package com.sprinklr.sip4j.agent;
 
 
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.media.JitterBuffer;
+import com.sprinklr.sip4j.media.RoundTripTracer;
+import com.sprinklr.sip4j.media.VoiceActivityDetector;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+import com.sprinklr.sip4j.rtp.RtcpSession;
 import com.sprinklr.sip4j.sip.SipState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Stores state of agent in sip entity and websocket entity.
@@ -14,11 +24,38 @@ public class AgentState {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AgentState.class);
     private final String name;
+    private final AgentMetrics metrics;
     private volatile String sipState = SipState.UNREGISTERED;
     private volatile int wsCloseCode = 0;
+    private volatile int activeCalls = 0;
+    private volatile RingBuffer<?> inboundRtpQueue;
+    private volatile RingBuffer<?> outboundRtpQueue;
+    //own queues of each call, by Call-ID, when the Agent serves several calls at once
+    private final Map<String, MediaQueues> callMediaQueues = new ConcurrentHashMap<>();
+    //overflows of the queues of ended calls, so that the Agent's counts never go down
+    private final AtomicLong endedCallsInboundOverflowCount = new AtomicLong();
+    private final AtomicLong endedCallsOutboundOverflowCount = new AtomicLong();
+    private volatile JitterBuffer jitterBuffer;
+    private volatile VoiceActivityDetector voiceActivityDetector;
+    private volatile RoundTripTracer roundTripTracer;
+    private volatile RtcpSession rtcpSession;
+
+    /**
+     * Inbound and outbound queue of one call
+     */
+    private static class MediaQueues {
+        private final RingBuffer<?> inboundRtpQueue;
+        private final RingBuffer<?> outboundRtpQueue;
+
+        private MediaQueues(RingBuffer<?> inboundRtpQueue, RingBuffer<?> outboundRtpQueue) {
+            this.inboundRtpQueue = inboundRtpQueue;
+            this.outboundRtpQueue = outboundRtpQueue;
+        }
+    }
 
     public AgentState(String name) {
         this.name = name;
+        this.metrics = new AgentMetrics(name);
     }
 
     public int getWsCloseCode() {
@@ -39,6 +76,180 @@ public class AgentState {
         this.sipState = sipState;
     }
 
+    /**
+     * Sets the number of calls the Agent has answered and not ended yet
+     * @param activeCalls The number of calls, at most maxConcurrentCalls
+     */
+    public void setActiveCalls(int activeCalls) {
+        this.activeCalls = activeCalls;
+    }
+
+    public int getActiveCalls() {
+        return activeCalls;
+    }
+
+    /**
+     * Sets the media queues of the Agent, so that their depth and overflow count can be monitored
+     * @param inboundRtpQueue The queue holding packets received from Ozonetel which are to be sent to the bot
+     * @param outboundRtpQueue The queue holding packets received from the bot which are to be sent to Ozonetel
+     */
+    public void setMediaQueues(RingBuffer<?> inboundRtpQueue, RingBuffer<?> outboundRtpQueue) {
+        this.inboundRtpQueue = inboundRtpQueue;
+        this.outboundRtpQueue = outboundRtpQueue;
+    }
+
+    /**
+     * Sets the media queues of one of the concurrent calls of the Agent, so that their depth and overflow count can be
+     * monitored per call and are added to the Agent's
+     * @param callId The Call-ID of the call
+     * @param inboundRtpQueue The call's queue holding packets received from Ozonetel which are to be sent to the bot
+     * @param outboundRtpQueue The call's queue holding packets received from the bot which are to be sent to Ozonetel
+     */
+    public void setCallMediaQueues(String callId, RingBuffer<?> inboundRtpQueue, RingBuffer<?> outboundRtpQueue) {
+        callMediaQueues.put(callId, new MediaQueues(inboundRtpQueue, outboundRtpQueue));
+    }
+
+    /**
+     * Stops monitoring the media queues of a call which has ended. Their overflow counts stay in the Agent's
+     * @param callId The Call-ID of the call
+     */
+    public void removeCallMediaQueues(String callId) {
+        MediaQueues queues = callMediaQueues.remove(callId);
+        if (queues != null) {
+            endedCallsInboundOverflowCount.addAndGet(queues.inboundRtpQueue.getOverflowCount());
+            endedCallsOutboundOverflowCount.addAndGet(queues.outboundRtpQueue.getOverflowCount());
+        }
+    }
+
+    public int getInboundQueueDepth() {
+        RingBuffer<?> queue = inboundRtpQueue;
+        int depth = queue == null ? 0 : queue.size();
+        for (MediaQueues queues : callMediaQueues.values()) {
+            depth += queues.inboundRtpQueue.size();
+        }
+        return depth;
+    }
+
+    public long getInboundQueueOverflowCount() {
+        RingBuffer<?> queue = inboundRtpQueue;
+        long count = (queue == null ? 0 : queue.getOverflowCount()) + endedCallsInboundOverflowCount.get();
+        for (MediaQueues queues : callMediaQueues.values()) {
+            count += queues.inboundRtpQueue.getOverflowCount();
+        }
+        return count;
+    }
+
+    public int getOutboundQueueDepth() {
+        RingBuffer<?> queue = outboundRtpQueue;
+        int depth = queue == null ? 0 : queue.size();
+        for (MediaQueues queues : callMediaQueues.values()) {
+            depth += queues.outboundRtpQueue.size();
+        }
+        return depth;
+    }
+
+    public long getOutboundQueueOverflowCount() {
+        RingBuffer<?> queue = outboundRtpQueue;
+        long count = (queue == null ? 0 : queue.getOverflowCount()) + endedCallsOutboundOverflowCount.get();
+        for (MediaQueues queues : callMediaQueues.values()) {
+            count += queues.outboundRtpQueue.getOverflowCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the inbound queue depth of one of the concurrent calls
+     * @param callId The Call-ID of the call
+     * @return the number of packets queued, or -1 if the call has no queues of its own
+     */
+    public int getInboundQueueDepth(String callId) {
+        MediaQueues queues = callMediaQueues.get(callId);
+        return queues == null ? -1 : queues.inboundRtpQueue.size();
+    }
+
+    /**
+     * Returns the outbound queue depth of one of the concurrent calls
+     * @param callId The Call-ID of the call
+     * @return the number of packets queued, or -1 if the call has no queues of its own
+     */
+    public int getOutboundQueueDepth(String callId) {
+        MediaQueues queues = callMediaQueues.get(callId);
+        return queues == null ? -1 : queues.outboundRtpQueue.size();
+    }
+
+    /**
+     * Formats the inbound and outbound queue depths of each concurrent call, as {callId=inbound/outbound, ...}
+     */
+    private String callQueueDepths() {
+        StringBuilder builder = new StringBuilder("{");
+        Iterator<Map.Entry<String, MediaQueues>> entries = callMediaQueues.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, MediaQueues> entry = entries.next();
+            builder.append(entry.getKey()).append('=').append(entry.getValue().inboundRtpQueue.size())
+                    .append('/').append(entry.getValue().outboundRtpQueue.size());
+            if (entries.hasNext()) {
+                builder.append(", ");
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Returns the latency histograms and throughput counters of the Agent's media
+     * @return the metrics of the Agent
+     */
+    public AgentMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the jitter buffer of the Agent's inbound media, so that its counters can be monitored
+     * @param jitterBuffer The jitter buffer, null if it is disabled
+     */
+    public void setJitterBuffer(JitterBuffer jitterBuffer) {
+        this.jitterBuffer = jitterBuffer;
+    }
+
+    public JitterBuffer getJitterBuffer() {
+        return jitterBuffer;
+    }
+
+    /**
+     * Sets the voice activity detector of the Agent's inbound media, so that its counters can be monitored
+     * @param voiceActivityDetector The detector, null if it is disabled
+     */
+    public void setVoiceActivityDetector(VoiceActivityDetector voiceActivityDetector) {
+        this.voiceActivityDetector = voiceActivityDetector;
+    }
+
+    public VoiceActivityDetector getVoiceActivityDetector() {
+        return voiceActivityDetector;
+    }
+
+    /**
+     * Sets the tracer of the bot's response time, so that its counters can be monitored
+     * @param roundTripTracer The tracer, null if trace tags are disabled
+     */
+    public void setRoundTripTracer(RoundTripTracer roundTripTracer) {
+        this.roundTripTracer = roundTripTracer;
+    }
+
+    public RoundTripTracer getRoundTripTracer() {
+        return roundTripTracer;
+    }
+
+    /**
+     * Sets the RTCP session of the Agent's call, so that the quality of the call can be monitored
+     * @param rtcpSession The RTCP session, null if RTCP is disabled
+     */
+    public void setRtcpSession(RtcpSession rtcpSession) {
+        this.rtcpSession = rtcpSession;
+    }
+
+    public RtcpSession getRtcpSession() {
+        return rtcpSession;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -58,6 +269,16 @@ public class AgentState {
                 "name='" + name + '\'' +
                 ", sipState='" + sipState + '\'' +
                 ", wsCloseCode=" + wsCloseCode +
+                ", activeCalls=" + activeCalls +
+                ", inboundQueueDepth=" + getInboundQueueDepth() +
+                ", inboundQueueOverflowCount=" + getInboundQueueOverflowCount() +
+                ", outboundQueueDepth=" + getOutboundQueueDepth() +
+                ", outboundQueueOverflowCount=" + getOutboundQueueOverflowCount() +
+                ", callQueueDepths=" + callQueueDepths() +
+                ", jitterBuffer=" + jitterBuffer +
+                ", voiceActivityDetector=" + voiceActivityDetector +
+                ", roundTripTracer=" + roundTripTracer +
+                ", rtcpSession=" + rtcpSession +
                 '}';
     }
 }
@@ -11,7 +11,8 @@ public interface DataReceiver extends Runnable{
     void start();
 
     /**
-     * Stop the receiver
+     * Stop the receiver. Receivers which do not run on their own thread return only once nothing is pushed into the
+     * inbound queue anymore
      */
     void stop();
 }
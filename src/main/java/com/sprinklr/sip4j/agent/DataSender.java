@@ -11,7 +11,8 @@ public interface DataSender extends Runnable {
     void start();
 
     /**
-     * Stops the sender
+     * Stops the sender. Senders which do not run on their own thread return only once the outbound queue is not polled
+     * anymore
      */
     void stop();
 }
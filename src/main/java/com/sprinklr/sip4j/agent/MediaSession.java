@@ -0,0 +1,249 @@
+package com.sprinklr.sip4j.agent;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.media.InboundMediaPipeline;
+import com.sprinklr.sip4j.media.MediaSink;
+import com.sprinklr.sip4j.media.RoundTripTracer;
+import com.sprinklr.sip4j.media.SilenceFill;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+import com.sprinklr.sip4j.rtp.PacedRtpSenderImpl;
+import com.sprinklr.sip4j.rtp.RtcpSession;
+import com.sprinklr.sip4j.rtp.RtpAddress;
+import com.sprinklr.sip4j.rtp.RtpReceiverImpl;
+import com.sprinklr.sip4j.rtp.RtpReceiverMode;
+import com.sprinklr.sip4j.rtp.RtpSenderImpl;
+import com.sprinklr.sip4j.rtp.RtpSenderMode;
+import com.sprinklr.sip4j.rtp.SelectorRtpReceiverImpl;
+import com.sprinklr.sip4j.rtp.SharedPortRtpReceiverImpl;
+import com.sprinklr.sip4j.sip.SipCall;
+import com.sprinklr.sip4j.websocket.Websocket;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.sprinklr.sip4j.utils.Constants.SLEEP_CPU_TIME_MS;
+
+/**
+ * The media of one call: RTCP, the RTP receiver and sender, and the pipeline forwarding the caller's audio to the bot.
+ * Created when the call is answered and closed when it ends. The queues, SIP stack and bot connection it uses belong to
+ * the Agent, and outlive it when the Agent is persistent, or to the call when the Agent has concurrent calls.
+ */
+public class MediaSession {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MediaSession.class);
+    private static final int WS_RECONNECT_CODE = 1006;
+    //longer than the receive timeout of the blocking receiver
+    private static final long STOP_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(3);
+
+    private final AgentConfig agentConfig;
+    private final AgentState agentState;
+    private final SipCall sipCall;
+    private final RtpAddress rtpRemoteAddress;
+    private final RingBuffer<MediaBuffer> inboundRtpQueue;
+    private final RingBuffer<MediaBuffer> outboundRtpQueue;
+    private final ExecutorService executor;
+    private final AgentMetrics metrics;
+
+    private RtcpSession rtcpSession;
+    private DataReceiver rtpReceiver;
+    private DataSender rtpSender;
+    private Future<?> rtpReceiverTask;
+    private Future<?> rtpSenderTask;
+    private InboundMediaPipeline inboundPipeline;
+
+    /**
+     * Creates the media session of a call, nothing is started
+     * @param agentConfig The configuration of the Agent
+     * @param agentState The state of the Agent
+     * @param sipCall The answered call, with the remote RTP address from the INVITE SDP. Its SipState ends the session once DISCONNECTED
+     * @param inboundRtpQueue The queue of packets received from Ozonetel
+     * @param outboundRtpQueue The queue of packets returned by the bot
+     * @param executor The Agent's executor, running the blocking RTP loops
+     */
+    public MediaSession(AgentConfig agentConfig, AgentState agentState, SipCall sipCall,
+                        RingBuffer<MediaBuffer> inboundRtpQueue, RingBuffer<MediaBuffer> outboundRtpQueue, ExecutorService executor) {
+        this.agentConfig = agentConfig;
+        this.agentState = agentState;
+        this.sipCall = sipCall;
+        this.rtpRemoteAddress = sipCall.getRtpRemoteAddress();
+        this.inboundRtpQueue = inboundRtpQueue;
+        this.outboundRtpQueue = outboundRtpQueue;
+        this.executor = executor;
+        this.metrics = agentState.getMetrics();
+    }
+
+    /**
+     * Starts RTCP and listening on the RTP port. Packets received until run() is called are held in the inbound queue.
+     */
+    public void startReceiving() {
+        if (!(rtpRemoteAddress.getAddressType().equals(agentConfig.getRtpAddressType())) || !(rtpRemoteAddress.getNetworkType().equals(agentConfig.getRtpNetworkType()))) {
+            throw new IllegalStateException("Rtp address type or network type not matching" +
+                    "Address type received: " + rtpRemoteAddress.getAddressType() + " expected: " + agentConfig.getRtpAddressType() +
+                    "Network type received: " + rtpRemoteAddress.getNetworkType() + " expected: " + agentConfig.getRtpNetworkType());
+        }
+        releaseQueued(); //audio the bot returned after the previous call of a persistent Agent
+
+        //on the port following the rtp port, driven by the media clock
+        rtcpSession = agentConfig.isRtcpEnabled() ? new RtcpSession(agentConfig, rtpRemoteAddress) : null;
+        if (rtcpSession != null) {
+            rtcpSession.start();
+        }
+        agentState.setRtcpSession(rtcpSession);
+
+        //start listening on rtp port for rtp data from ozonetel (send data only after this is running)
+        rtpReceiver = createRtpReceiver();
+        if (RtpReceiverMode.THREAD.equals(agentConfig.getRtpReceiverMode())) {
+            rtpReceiverTask = executor.submit(rtpReceiver); //1 new thread started
+        } else {
+            rtpReceiver.start(); //returns immediately, a port which cannot be bound fails the call here
+        }
+    }
+
+    /**
+     * Sends the audio returned by the bot to Ozonetel, and forwards the caller's audio to the bot until the call ends
+     * @param websocket The connected websocket to the bot
+     */
+    public void run(Websocket websocket) throws InterruptedException {
+        //send the returned data to ozontel rtp
+        rtpSender = createRtpSender();
+        rtpSenderTask = executor.submit(rtpSender); //1 new thread started, returns immediately in paced mode
+
+        RoundTripTracer tracer = websocket.getTracer();
+        inboundPipeline = new InboundMediaPipeline(agentConfig, new MediaSink() {
+            @Override
+            public void send(MediaBuffer data) {
+                websocket.send(data.getBuffer()); //frame is built from a copy of the data, the pipeline reuses the buffer on return
+                metrics.getToBot().add(data.getLength());
+                String traceTag = tracer == null ? null : tracer.tag(data, System.nanoTime());
+                if (traceTag != null) {
+                    websocket.send(traceTag);
+                }
+            }
+
+            @Override
+            public void sendEvent(String event) {
+                websocket.send(event);
+            }
+        }, metrics);
+        agentState.setJitterBuffer(inboundPipeline.getJitterBuffer());
+        agentState.setVoiceActivityDetector(inboundPipeline.getVoiceActivityDetector());
+
+        while (!sipCall.isDisconnected()) {
+            try {
+                //wait for data using the configured wait strategy, time out to re-check the sip state or release held packets
+                long now = System.nanoTime();
+                long timeoutNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(SLEEP_CPU_TIME_MS), Math.max(0, inboundPipeline.getNextDueNanos() - now));
+                MediaBuffer data = inboundRtpQueue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+                if (data == null) {
+                    inboundPipeline.onTick(System.nanoTime());
+                    continue;
+                }
+                long arrivalNanos = System.nanoTime();
+                metrics.getFromCarrier().add(data.getLength());
+                metrics.getInboundQueue().record(arrivalNanos - data.getTimestampNanos());
+                if (rtcpSession != null) {
+                    rtcpSession.onPacketReceived(data, arrivalNanos);
+                }
+                inboundPipeline.onPacket(data, arrivalNanos);
+            } catch (WebsocketNotConnectedException e) {
+                if (agentState.getWsCloseCode() == WS_RECONNECT_CODE) {
+                    websocket.reconnect(); //reconnecting immediately, thread.sleep to delay
+                    LOGGER.info("Reconnecting {} to bot websocket server", agentConfig.getAgentName());
+                }
+                else {
+                    throw new WebsocketNotConnectedException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the RTP receiver and sender and RTCP, and returns the packets which were never forwarded to the pool.
+     * Waits for the receiver and sender threads to end, or for the I/O and media clock threads to leave the call's queues
+     * in the other modes, so that the next call of a persistent Agent can bind the same port and the queues keep a single
+     * producer and consumer.
+     */
+    public void close() {
+        if (rtpReceiver != null) {
+            rtpReceiver.stop();
+        }
+        if (rtpSender != null) {
+            rtpSender.stop();
+        }
+        if (rtcpSession != null) {
+            rtcpSession.stop();
+        }
+        awaitStopped(rtpReceiverTask);
+        awaitStopped(rtpSenderTask);
+        if (inboundPipeline != null) {
+            inboundPipeline.close();
+        }
+        releaseQueued();
+    }
+
+    private void awaitStopped(Future<?> task) {
+        if (task == null) {
+            return;
+        }
+        try {
+            task.get(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.error("Exception while stopping rtp in {}: {}", agentConfig.getAgentName(), e.toString());
+        }
+    }
+
+    private void releaseQueued() {
+        MediaBuffer unsent;
+        while ((unsent = inboundRtpQueue.poll()) != null) {
+            unsent.release();
+        }
+        while ((unsent = outboundRtpQueue.poll()) != null) {
+            unsent.release();
+        }
+    }
+
+    /**
+     * Creates the RTP receiver as per the configured receiver mode
+     * @return the RTP receiver
+     */
+    private DataReceiver createRtpReceiver() {
+        switch (agentConfig.getRtpReceiverMode()) {
+            case RtpReceiverMode.THREAD:
+                return new RtpReceiverImpl(inboundRtpQueue, agentConfig);
+            case RtpReceiverMode.SELECTOR:
+                return new SelectorRtpReceiverImpl(inboundRtpQueue, agentConfig);
+            case RtpReceiverMode.SHARED_PORT:
+                return new SharedPortRtpReceiverImpl(inboundRtpQueue, agentConfig, rtpRemoteAddress);
+            default:
+                throw new IllegalArgumentException("Unknown rtp receiver mode " + agentConfig.getRtpReceiverMode());
+        }
+    }
+
+    /**
+     * Creates the RTP sender as per the configured sender mode
+     * @return the RTP sender
+     */
+    private DataSender createRtpSender() {
+        switch (agentConfig.getRtpSenderMode()) {
+            case RtpSenderMode.THREAD:
+                if (!SilenceFill.NONE.equals(agentConfig.getRtpSilenceFill())) {
+                    //packets are sent with the bot's numbering, there is no room to insert others
+                    throw new IllegalArgumentException("rtpSilenceFill " + agentConfig.getRtpSilenceFill() + " needs rtpSenderMode " + RtpSenderMode.PACED);
+                }
+                return new RtpSenderImpl(rtpRemoteAddress, outboundRtpQueue, agentConfig, rtcpSession, metrics);
+            case RtpSenderMode.PACED:
+                return new PacedRtpSenderImpl(rtpRemoteAddress, outboundRtpQueue, agentConfig, rtcpSession, metrics);
+            default:
+                throw new IllegalArgumentException("Unknown rtp sender mode " + agentConfig.getRtpSenderMode());
+        }
+    }
+}
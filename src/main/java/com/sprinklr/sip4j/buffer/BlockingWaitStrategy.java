@@ -0,0 +1,52 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Blocks the consumer on a lock and condition until the producer signals. Highest latency of all strategies
+ * but uses no cpu while waiting, suitable when many agents share few cores.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+    //lets the producer skip the lock when nobody is waiting
+    private volatile boolean waiting = false;
+
+    @Override
+    public boolean await(BooleanSupplier condition, long deadlineNanos) throws InterruptedException {
+        if (condition.getAsBoolean()) {
+            return true;
+        }
+        lock.lock();
+        try {
+            waiting = true;
+            while (!condition.getAsBoolean()) {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                dataAvailable.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            waiting = false;
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signal() {
+        if (!waiting) {
+            return;
+        }
+        lock.lock();
+        try {
+            dataAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins on the condition without giving up the cpu. Lowest latency, but burns a whole core per waiting consumer.
+ * Use only when the number of consumers is below the number of available cores.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public boolean await(BooleanSupplier condition, long deadlineNanos) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void signal() {
+        //consumer is always spinning, nothing to wake up
+    }
+}
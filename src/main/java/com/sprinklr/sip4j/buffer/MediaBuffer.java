@@ -0,0 +1,141 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Length-aware, reusable buffer holding a single media packet. Backed by a heap or a direct ByteBuffer.
+ * Buffers acquired from a MediaBufferPool must be released exactly once after their last use.
+ */
+public class MediaBuffer {
+
+    private final ByteBuffer buffer;
+    private final MediaBufferPool pool;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+    private int length;
+    private long timestampNanos; //when the packet entered the Agent, for the latency metrics
+    private long responseToNanos; //arrival of the caller's audio whose response the packet starts, 0 if none
+
+    /**
+     * Creates a buffer belonging to a pool
+     * @param buffer the backing ByteBuffer
+     * @param pool the pool to which the buffer is returned on release, null if the buffer is not pooled
+     */
+    MediaBuffer(ByteBuffer buffer, MediaBufferPool pool) {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    /**
+     * Wraps the remaining bytes of a ByteBuffer without copying them. Releasing the wrapped buffer is a no-op.
+     * @param byteBuffer the data to be wrapped
+     * @return a MediaBuffer which is not pooled
+     */
+    public static MediaBuffer wrap(ByteBuffer byteBuffer) {
+        MediaBuffer mediaBuffer = new MediaBuffer(byteBuffer.slice(), null);
+        mediaBuffer.setLength(byteBuffer.remaining());
+        return mediaBuffer;
+    }
+
+    /**
+     * Returns the backing ByteBuffer, with position 0 and limit set to the length of the data
+     * @return the backing ByteBuffer
+     */
+    public ByteBuffer getBuffer() {
+        buffer.limit(length).position(0);
+        return buffer;
+    }
+
+    /**
+     * Returns the backing ByteBuffer ready to be filled, with position 0 and limit set to the capacity.
+     * setLength() must be called once the data has been written.
+     * @return the backing ByteBuffer
+     */
+    public ByteBuffer getWritableBuffer() {
+        buffer.clear();
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Sets the number of valid bytes, starting from the beginning of the buffer
+     * @param length the number of valid bytes
+     */
+    public void setLength(int length) {
+        if (length < 0 || length > buffer.capacity()) {
+            throw new IllegalArgumentException("Length " + length + " out of bounds for buffer of capacity " + buffer.capacity());
+        }
+        this.length = length;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * Stamps the time at which the packet entered the Agent, from which its latency is measured
+     * @param timestampNanos the time, as per System.nanoTime()
+     */
+    public void setTimestampNanos(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    public long getResponseToNanos() {
+        return responseToNanos;
+    }
+
+    /**
+     * Marks the packet as the start of the bot's response to the caller's audio traced by a trace tag
+     * @param responseToNanos the arrival time of the caller's audio, as per System.nanoTime(), 0 if none
+     */
+    public void setResponseToNanos(long responseToNanos) {
+        this.responseToNanos = responseToNanos;
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    public boolean hasArray() {
+        return buffer.hasArray();
+    }
+
+    /**
+     * Returns the backing array of a heap buffer. Data starts at arrayOffset()
+     * @return the backing array
+     */
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    public int arrayOffset() {
+        return buffer.arrayOffset();
+    }
+
+    /**
+     * Returns the buffer to its pool. The buffer must not be used after this is called.
+     */
+    public void release() {
+        if (pool == null) {
+            return;
+        }
+        if (!released.compareAndSet(false, true)) {
+            throw new IllegalStateException("MediaBuffer released more than once");
+        }
+        pool.release(this);
+    }
+
+    /**
+     * Prepares a pooled buffer to be handed out again
+     */
+    void reset() {
+        released.set(false);
+        length = 0;
+        timestampNanos = 0;
+        responseToNanos = 0;
+        buffer.clear();
+    }
+}
@@ -0,0 +1,141 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.sprinklr.sip4j.utils.Constants.MEDIA_BUFFER_POOL_MAX_SIZE;
+
+/**
+ * Pool of fixed size MediaBuffers shared by all Agents of the node. Avoids allocating a new buffer for every media packet.
+ * A new buffer is only allocated when the pool is empty, and a released buffer is dropped when the pool is full.
+ */
+public class MediaBufferPool {
+
+    private static final Map<String, MediaBufferPool> SHARED_POOLS = new ConcurrentHashMap<>();
+
+    private final int bufferSize;
+    private final boolean direct;
+    private final BlockingQueue<MediaBuffer> freeBuffers;
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder allocationCount = new LongAdder();
+    private final LongAdder releaseCount = new LongAdder();
+    private final LongAdder discardCount = new LongAdder();
+
+    /**
+     * Creates a pool of buffers
+     * @param bufferSize capacity in bytes of each buffer
+     * @param maxPooledBuffers maximum number of free buffers retained by the pool
+     * @param direct true if the buffers are to be allocated off-heap
+     */
+    public MediaBufferPool(int bufferSize, int maxPooledBuffers, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.freeBuffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    /**
+     * Returns the node wide pool for the given buffer size and type, creating it if required
+     * @param bufferSize capacity in bytes of each buffer
+     * @param direct true if the buffers are to be allocated off-heap
+     * @return the shared pool
+     */
+    public static MediaBufferPool shared(int bufferSize, boolean direct) {
+        String key = bufferSize + (direct ? "-direct" : "-heap");
+        return SHARED_POOLS.computeIfAbsent(key, k -> new MediaBufferPool(bufferSize, MEDIA_BUFFER_POOL_MAX_SIZE, direct));
+    }
+
+    /**
+     * Returns all node wide pools created so far
+     * @return the shared pools
+     */
+    public static List<MediaBufferPool> getSharedPools() {
+        return new ArrayList<>(SHARED_POOLS.values());
+    }
+
+    /**
+     * Takes a free buffer from the pool, or allocates a new one if the pool is empty
+     * @return an empty buffer with length 0
+     */
+    public MediaBuffer acquire() {
+        acquireCount.increment();
+        MediaBuffer mediaBuffer = freeBuffers.poll();
+        if (mediaBuffer != null) {
+            hitCount.increment();
+            mediaBuffer.reset();
+            return mediaBuffer;
+        }
+        allocationCount.increment();
+        ByteBuffer byteBuffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        return new MediaBuffer(byteBuffer, this);
+    }
+
+    /**
+     * Returns a buffer to the pool. Called by MediaBuffer.release()
+     * @param mediaBuffer the buffer to be returned
+     */
+    void release(MediaBuffer mediaBuffer) {
+        releaseCount.increment();
+        if (!freeBuffers.offer(mediaBuffer)) {
+            discardCount.increment(); //pool full, leave it to the garbage collector
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public int getFreeBufferCount() {
+        return freeBuffers.size();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    public long getAllocationCount() {
+        return allocationCount.sum();
+    }
+
+    public long getReleaseCount() {
+        return releaseCount.sum();
+    }
+
+    public long getDiscardCount() {
+        return discardCount.sum();
+    }
+
+    /**
+     * Returns the fraction of acquisitions which were served from the pool without allocating
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long acquired = acquireCount.sum();
+        return acquired == 0 ? 0 : (double) hitCount.sum() / acquired;
+    }
+
+    @Override
+    public String toString() {
+        return "MediaBufferPool{" +
+                "bufferSize=" + bufferSize +
+                ", direct=" + direct +
+                ", freeBuffers=" + getFreeBufferCount() +
+                ", acquireCount=" + getAcquireCount() +
+                ", allocationCount=" + getAllocationCount() +
+                ", releaseCount=" + getReleaseCount() +
+                ", discardCount=" + getDiscardCount() +
+                ", hitRate=" + getHitRate() +
+                '}';
+    }
+}
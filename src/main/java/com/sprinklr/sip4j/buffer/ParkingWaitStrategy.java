@@ -0,0 +1,45 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Parks the single consumer thread until the producer unparks it or the deadline passes.
+ * No locks are taken, the producer only unparks when a consumer is actually parked.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+    private volatile Thread waiter;
+
+    @Override
+    public boolean await(BooleanSupplier condition, long deadlineNanos) throws InterruptedException {
+        if (condition.getAsBoolean()) {
+            return true;
+        }
+        waiter = Thread.currentThread();
+        try {
+            //re-check after publishing the waiter, so that a signal sent in between is never lost
+            while (!condition.getAsBoolean()) {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remainingNanos);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public void signal() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
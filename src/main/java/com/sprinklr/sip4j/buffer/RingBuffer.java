@@ -0,0 +1,191 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free bounded single-producer/single-consumer queue used to hand media packets between two threads of an Agent.
+ * When the buffer is full the oldest element is dropped to make room for the newest one (drop-oldest overflow policy),
+ * since for live audio a stale packet is worth less than a fresh one.
+ * The consumer waits for data using the configured WaitStrategy instead of sleeping.
+ * An element must not be offered again while it is still in the buffer, as pooled buffers never are.
+ *
+ * @param <T> type of the elements held in the buffer
+ */
+public class RingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int capacity;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final Consumer<? super T> dropHandler;
+    private final BooleanSupplier notEmpty = this::isNotEmpty; //cached to avoid allocating on every wait
+
+    /*
+    head is advanced by the consumer, and also by the producer when it drops the oldest element on overflow,
+    hence it is claimed with a CAS. tail is only ever written by the producer.
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    //written only by the producer, read by anyone for monitoring
+    private volatile long overflowCount = 0;
+
+    /**
+     * Creates a ring buffer
+     * @param requestedCapacity the minimum capacity of the buffer, rounded up to the next power of two
+     * @param waitStrategy the strategy used by the consumer to wait for data
+     */
+    public RingBuffer(int requestedCapacity, WaitStrategy waitStrategy) {
+        this(requestedCapacity, waitStrategy, element -> {
+            //dropped element is left to the garbage collector
+        });
+    }
+
+    /**
+     * Creates a ring buffer which hands the elements dropped on overflow to a handler, e.g. to return them to a pool
+     * @param requestedCapacity the minimum capacity of the buffer, rounded up to the next power of two
+     * @param waitStrategy the strategy used by the consumer to wait for data
+     * @param dropHandler called on the producer thread with every element dropped on overflow
+     */
+    public RingBuffer(int requestedCapacity, WaitStrategy waitStrategy, Consumer<? super T> dropHandler) {
+        if (requestedCapacity <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity must be positive, found " + requestedCapacity);
+        }
+        this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.waitStrategy = waitStrategy;
+        this.dropHandler = dropHandler;
+    }
+
+    /**
+     * Adds an element at the tail of the buffer, dropping the oldest element if the buffer is full.
+     * Must only be called from the single producer thread.
+     * @param element the element to be added, must not be null
+     * @return true if the element was added without dropping another element, false if the oldest element was dropped
+     */
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not supported by the ring buffer");
+        }
+        long currentTail = tail.get();
+        T dropped = null;
+        long currentHead = head.get();
+        while (currentTail - currentHead >= capacity) {
+            //full, claim the oldest element from the consumer. If the consumer takes it first, the CAS fails and there is room
+            T oldest = slots.get(index(currentHead));
+            if (head.compareAndSet(currentHead, currentHead + 1)) {
+                overflowCount++;
+                dropped = oldest;
+                break;
+            }
+            currentHead = head.get();
+        }
+        slots.set(index(currentTail), element);
+        /*
+        A full volatile store, not a lazySet: signal() reads whether the consumer is waiting, and without StoreLoad
+        ordering that read could pass the publication, missing a consumer which parks in between.
+         */
+        tail.set(currentTail + 1);
+        waitStrategy.signal();
+        if (dropped != null) {
+            dropHandler.accept(dropped);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes and returns the element at the head of the buffer, without waiting.
+     * Must only be called from the single consumer thread.
+     * @return the element at the head of the buffer, or null if the buffer is empty
+     */
+    public T poll() {
+        while (true) {
+            long currentHead = head.get();
+            if (currentHead >= tail.get()) {
+                return null;
+            }
+            int index = index(currentHead);
+            T element = slots.get(index);
+            /*
+            The CAS fails if the producer dropped this element in between, in which case the next one is read. Once head
+            is past the slot the producer may re-use it, so it is only cleared if it still holds the element read.
+             */
+            if (head.compareAndSet(currentHead, currentHead + 1)) {
+                slots.compareAndSet(index, element, null); //not keeping the element alive once consumed
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the element at the head of the buffer, waiting up to the specified time using the wait strategy.
+     * Must only be called from the single consumer thread.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return the element at the head of the buffer, or null if none became available before the timeout
+     * @throws InterruptedException
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        T element = poll();
+        if (element != null) {
+            return element;
+        }
+        long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        while (waitStrategy.await(notEmpty, deadlineNanos)) {
+            element = poll();
+            if (element != null) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements currently in the buffer. The value is a snapshot and may be stale.
+     * @return the number of elements in the buffer
+     */
+    public int size() {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(capacity, currentTail - currentHead));
+    }
+
+    public boolean isEmpty() {
+        return !isNotEmpty();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of elements dropped so far because the buffer was full
+     * @return number of dropped elements
+     */
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    private boolean isNotEmpty() {
+        return head.get() < tail.get();
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    @Override
+    public String toString() {
+        return "RingBuffer{" +
+                "size=" + size() +
+                ", capacity=" + capacity +
+                ", overflowCount=" + overflowCount +
+                '}';
+    }
+}
@@ -0,0 +1,46 @@
+package com.sprinklr.sip4j.buffer;
+
+/**
+ * Defines the names of the available wait strategies, as used in the Agent's configuration, and creates them
+ */
+public class WaitStrategies {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private WaitStrategies() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static final String BUSY_SPIN = "BUSY_SPIN";
+
+    public static final String YIELD = "YIELD";
+
+    public static final String PARK = "PARK";
+
+    public static final String BLOCKING = "BLOCKING";
+
+    /**
+     * Creates a new wait strategy from its name. A new instance must be created for every RingBuffer.
+     * @param name name of the wait strategy, null defaults to PARK
+     * @return the wait strategy
+     */
+    public static WaitStrategy fromName(String name) {
+        if (name == null) {
+            return new ParkingWaitStrategy();
+        }
+        switch (name) {
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            case YIELD:
+                return new YieldingWaitStrategy();
+            case PARK:
+                return new ParkingWaitStrategy();
+            case BLOCKING:
+                return new BlockingWaitStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown wait strategy " + name + ". Expected one of "
+                        + BUSY_SPIN + ", " + YIELD + ", " + PARK + ", " + BLOCKING);
+        }
+    }
+}
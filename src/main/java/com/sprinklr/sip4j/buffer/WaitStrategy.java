@@ -0,0 +1,23 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Strategy used by the consumer of a RingBuffer to wait for data to become available
+ */
+public interface WaitStrategy {
+
+    /**
+     * Waits until the condition holds or the deadline passes, whichever is earlier
+     * @param condition the condition to wait for, e.g. the ring buffer being non-empty
+     * @param deadlineNanos the deadline in terms of System.nanoTime()
+     * @return true if the condition holds, false if the deadline passed
+     * @throws InterruptedException
+     */
+    boolean await(BooleanSupplier condition, long deadlineNanos) throws InterruptedException;
+
+    /**
+     * Called by the producer after publishing data, wakes up the waiting consumer if required
+     */
+    void signal();
+}
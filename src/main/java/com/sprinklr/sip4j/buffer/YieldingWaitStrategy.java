@@ -0,0 +1,36 @@
+package com.sprinklr.sip4j.buffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins for a few iterations and then yields the cpu to other threads between checks of the condition.
+ * Low latency while being kinder to other threads than BusySpinWaitStrategy.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public boolean await(BooleanSupplier condition, long deadlineNanos) throws InterruptedException {
+        int counter = SPIN_TRIES;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter > 0) {
+                counter--;
+            } else {
+                Thread.yield();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void signal() {
+        //consumer is polling, nothing to wake up
+    }
+}
@@ -30,6 +30,15 @@ public class AgentController {
         agentService.startAgent(id);
     }
 
+    /**
+     * Calls the service for stopping a persistent agent by name
+     * @param name name of the agent to be stopped
+     */
+    @GetMapping(value = "/stop/{name}")
+    public void stopAgent(@PathVariable("name") String name) {
+        agentService.stopAgent(name);
+    }
+
     /**
      * Calls the service for shutting down the executor service. No more Agents can be started once this is called
      */
@@ -46,4 +55,22 @@ public class AgentController {
     public List<String> showAllStatus() {
         return agentService.showAllStatus();
     }
+
+    /**
+     * Calls the service to show the counters of the shared media buffer pools
+     * @return The statistics of every shared buffer pool
+     */
+    @GetMapping(value = "/bufferPools")
+    public List<String> showBufferPoolStats() {
+        return agentService.showBufferPoolStats();
+    }
+
+    /**
+     * Calls the service to show the media latency histograms and throughput counters
+     * @return The metrics of the node followed by those of every running agent
+     */
+    @GetMapping(value = "/metrics")
+    public List<String> showMetrics() {
+        return agentService.showMetrics();
+    }
 }
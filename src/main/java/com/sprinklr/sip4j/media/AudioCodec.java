@@ -0,0 +1,30 @@
+package com.sprinklr.sip4j.media;
+
+/**
+ * Defines constants for the audio encodings handled by the Agent
+ */
+public class AudioCodec {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private AudioCodec() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * G.711 μ-law, one byte per sample
+     */
+    public static final String PCMU = "PCMU";
+
+    /**
+     * G.711 A-law, one byte per sample
+     */
+    public static final String PCMA = "PCMA";
+
+    /**
+     * 16 bit linear PCM in network byte order, two bytes per sample
+     */
+    public static final String L16 = "L16";
+
+}
@@ -0,0 +1,117 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Transcodes the payload of RTP packets between the G.711 codec used with Ozonetel and the 16 bit linear PCM used with
+ * the bot, in place in the packet's buffer. Decoding doubles the payload, so buffers must have room for it, see
+ * AgentConfig.getMediaBufferSize(). The RTP header is left unchanged: the clock rate, and so the timestamps, are the same.
+ * Packets with padding are left untouched. Not thread safe, each direction of a call should use its own transcoder.
+ */
+public class AudioTranscoder {
+
+    private final short[] decodeTable;
+    private final byte[] encodeTable;
+    private final RtpPacketView packetView = new RtpPacketView();
+
+    private volatile long skippedCount = 0;
+
+    private AudioTranscoder(short[] decodeTable, byte[] encodeTable) {
+        this.decodeTable = decodeTable;
+        this.encodeTable = encodeTable;
+    }
+
+    /**
+     * Creates the transcoder between two codecs
+     * @param rtpCodec the codec used with Ozonetel, PCMU or PCMA
+     * @param botCodec the codec used with the bot
+     * @return the transcoder, or null if both codecs are the same
+     */
+    public static AudioTranscoder create(String rtpCodec, String botCodec) {
+        if (rtpCodec.equals(botCodec)) {
+            return null;
+        }
+        if (!AudioCodec.L16.equals(botCodec)) {
+            throw new IllegalArgumentException("Cannot transcode " + rtpCodec + " to " + botCodec + ", only L16 is supported for the bot");
+        }
+        switch (rtpCodec) {
+            case AudioCodec.PCMU:
+                return new AudioTranscoder(G711.ULAW_TO_LINEAR, G711.LINEAR_TO_ULAW);
+            case AudioCodec.PCMA:
+                return new AudioTranscoder(G711.ALAW_TO_LINEAR, G711.LINEAR_TO_ALAW);
+            default:
+                throw new IllegalArgumentException("Cannot transcode " + rtpCodec + " to " + botCodec);
+        }
+    }
+
+    /**
+     * Decodes a G.711 payload to L16 in place
+     * @param packet the rtp packet
+     * @return false if the packet was left untouched: it is not valid RTP, has padding or its buffer is too small
+     */
+    public boolean decode(MediaBuffer packet) {
+        if (!packetView.wrap(packet).isValid() || packetView.hasPadding()) {
+            skippedCount++;
+            return false;
+        }
+        int offset = packetView.getPayloadOffset();
+        int samples = packetView.getPayloadLength();
+        int length = offset + 2 * samples;
+        if (length > packet.getCapacity()) {
+            skippedCount++;
+            return false;
+        }
+        //backwards, so that each sample is read before its byte is overwritten
+        if (packet.hasArray()) {
+            byte[] array = packet.array();
+            int base = packet.arrayOffset() + offset;
+            for (int i = samples - 1; i >= 0; i--) {
+                short sample = decodeTable[array[base + i] & 0xFF];
+                array[base + 2 * i] = (byte) (sample >> 8);
+                array[base + 2 * i + 1] = (byte) sample;
+            }
+        } else {
+            ByteBuffer buffer = packet.getWritableBuffer();
+            for (int i = samples - 1; i >= 0; i--) {
+                buffer.putShort(offset + 2 * i, decodeTable[buffer.get(offset + i) & 0xFF]);
+            }
+        }
+        packet.setLength(length);
+        return true;
+    }
+
+    /**
+     * Encodes an L16 payload to G.711 in place
+     * @param packet the rtp packet
+     * @return false if the packet was left untouched: it is not valid RTP or has padding
+     */
+    public boolean encode(MediaBuffer packet) {
+        if (!packetView.wrap(packet).isValid() || packetView.hasPadding()) {
+            skippedCount++;
+            return false;
+        }
+        int offset = packetView.getPayloadOffset();
+        int samples = packetView.getPayloadLength() / 2;
+        if (packet.hasArray()) {
+            byte[] array = packet.array();
+            int base = packet.arrayOffset() + offset;
+            for (int i = 0; i < samples; i++) {
+                array[base + i] = encodeTable[((array[base + 2 * i] & 0xFF) << 8) | (array[base + 2 * i + 1] & 0xFF)];
+            }
+        } else {
+            ByteBuffer buffer = packet.getWritableBuffer();
+            for (int i = 0; i < samples; i++) {
+                buffer.put(offset + i, encodeTable[buffer.getShort(offset + 2 * i) & 0xFFFF]);
+            }
+        }
+        packet.setLength(offset + samples);
+        return true;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+}
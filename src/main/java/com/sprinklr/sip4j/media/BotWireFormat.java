@@ -0,0 +1,25 @@
+package com.sprinklr.sip4j.media;
+
+/**
+ * Defines constants for the format of the media frames exchanged with the bot over the websocket
+ */
+public class BotWireFormat {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private BotWireFormat() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Each frame is a complete RTP packet, as received from or sent to Ozonetel
+     */
+    public static final String RTP = "RTP";
+
+    /**
+     * Each frame is the audio payload behind a small varint header, see PayloadFrameCodec
+     */
+    public static final String PAYLOAD = "PAYLOAD";
+
+}
@@ -0,0 +1,132 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the payloads of several RTP packets into one binary websocket frame, to cut the number of frames sent to
+ * the bot. The frame is a length-prefixed container:
+ * <pre>
+ * u8 version (1), u8 entry count, then per entry: u16 sequence number, u32 timestamp, u16 payload length, payload
+ * </pre>
+ * all in network byte order. A frame is sent once it holds maxPackets entries, or when the first entry has waited
+ * for the aggregation window. Packets which are not valid RTP are sent on their own, unchanged.
+ * Not thread safe, owned by the Agent's media loop thread.
+ */
+public class FrameAggregator {
+
+    public static final int VERSION = 1;
+    private static final int CONTAINER_HEADER_SIZE = 2;
+    private static final int ENTRY_HEADER_SIZE = 8;
+
+    private final MediaSink sink;
+    private final int maxPackets;
+    private final long windowNanos;
+    private final RtpPacketView packetView = new RtpPacketView();
+    private final ByteBuffer frame;
+    private final MediaBuffer frameBuffer;
+
+    private int entryCount = 0;
+    private long firstEntryNanos;
+
+    private volatile long frameCount = 0;
+    private volatile long packetCount = 0;
+
+    /**
+     * Creates an aggregator
+     * @param sink the stage the frames are handed to
+     * @param maxPackets the maximum number of packets per frame
+     * @param windowMs the maximum time the first packet of a frame is held
+     * @param maxPacketSize the size of the largest packet expected
+     */
+    public FrameAggregator(MediaSink sink, int maxPackets, int windowMs, int maxPacketSize) {
+        this.sink = sink;
+        this.maxPackets = Math.min(maxPackets, 0xFF);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.frame = ByteBuffer.allocate(CONTAINER_HEADER_SIZE + this.maxPackets * (ENTRY_HEADER_SIZE + maxPacketSize));
+        this.frameBuffer = MediaBuffer.wrap(frame);
+    }
+
+    /**
+     * Adds the payload of a packet to the frame being built. The packet remains owned by the caller.
+     * @param packet the rtp packet
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    public void add(MediaBuffer packet, long nowNanos) {
+        if (!packetView.wrap(packet).isValid()) {
+            flush();
+            sink.send(packet);
+            return;
+        }
+        int payloadLength = packetView.getPayloadLength();
+        if (ENTRY_HEADER_SIZE + payloadLength > frame.capacity() - CONTAINER_HEADER_SIZE) {
+            flush();
+            sink.send(packet); //larger than any frame can hold
+            return;
+        }
+        if (entryCount > 0 && ENTRY_HEADER_SIZE + payloadLength > frame.remaining()) {
+            flush();
+        }
+        if (entryCount == 0) {
+            frame.clear();
+            frame.position(CONTAINER_HEADER_SIZE);
+            firstEntryNanos = nowNanos;
+        }
+        frame.putShort((short) packetView.getSequenceNumber());
+        frame.putInt(packetView.getTimeStamp());
+        frame.putShort((short) payloadLength);
+        ByteBuffer source = packet.getBuffer();
+        source.position(packetView.getPayloadOffset()).limit(packetView.getPayloadOffset() + payloadLength);
+        frame.put(source);
+        entryCount++;
+        packetCount++;
+        frameBuffer.setTimestampNanos(packet.getTimestampNanos()); //the newest audio of the frame, for the latency metrics
+        if (entryCount == maxPackets) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the frame being built if its window has passed
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    public void flushIfDue(long nowNanos) {
+        if (entryCount > 0 && nowNanos - firstEntryNanos >= windowNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns the time at which the frame being built is due
+     * @return the time as per System.nanoTime(), or Long.MAX_VALUE if the frame is empty
+     */
+    public long getNextDueNanos() {
+        return entryCount == 0 ? Long.MAX_VALUE : firstEntryNanos + windowNanos;
+    }
+
+    /**
+     * Sends the frame being built, if any
+     */
+    public void flush() {
+        if (entryCount == 0) {
+            return;
+        }
+        frame.put(0, (byte) VERSION);
+        frame.put(1, (byte) entryCount);
+        frameBuffer.setLength(frame.position());
+        entryCount = 0;
+        frameCount++;
+        sink.send(frameBuffer);
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getPacketCount() {
+        return packetCount;
+    }
+}
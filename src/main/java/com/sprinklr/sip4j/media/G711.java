@@ -0,0 +1,122 @@
+package com.sprinklr.sip4j.media;
+
+/**
+ * G.711 μ-law and A-law to and from 16 bit linear PCM through lookup tables computed once per JVM. Conversions are a
+ * single array load per sample. The tables follow the ITU-T G.711 reference code, as published by Sun Microsystems.
+ */
+public class G711 {
+
+    private static final int SIGN_BIT = 0x80;
+    private static final int QUANT_MASK = 0x0F;
+    private static final int SEG_SHIFT = 4;
+    private static final int SEG_MASK = 0x70;
+    private static final int ULAW_BIAS = 0x84;
+    private static final int ULAW_CLIP = 8159;
+    private static final int[] ULAW_SEGMENT_END = {0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF, 0x1FFF};
+    private static final int[] ALAW_SEGMENT_END = {0x1F, 0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF};
+
+    static final short[] ULAW_TO_LINEAR = new short[256];
+    static final short[] ALAW_TO_LINEAR = new short[256];
+    static final byte[] LINEAR_TO_ULAW = new byte[65536]; //indexed by the sample as an unsigned 16 bit value
+    static final byte[] LINEAR_TO_ALAW = new byte[65536];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            ULAW_TO_LINEAR[i] = (short) computeUlawToLinear(i);
+            ALAW_TO_LINEAR[i] = (short) computeAlawToLinear(i);
+        }
+        for (int i = 0; i < 65536; i++) {
+            LINEAR_TO_ULAW[i] = (byte) computeLinearToUlaw((short) i);
+            LINEAR_TO_ALAW[i] = (byte) computeLinearToAlaw((short) i);
+        }
+    }
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private G711() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static short ulawToLinear(byte ulaw) {
+        return ULAW_TO_LINEAR[ulaw & 0xFF];
+    }
+
+    public static short alawToLinear(byte alaw) {
+        return ALAW_TO_LINEAR[alaw & 0xFF];
+    }
+
+    public static byte linearToUlaw(short sample) {
+        return LINEAR_TO_ULAW[sample & 0xFFFF];
+    }
+
+    public static byte linearToAlaw(short sample) {
+        return LINEAR_TO_ALAW[sample & 0xFFFF];
+    }
+
+    private static int computeUlawToLinear(int ulaw) {
+        int value = ~ulaw;
+        int t = ((value & QUANT_MASK) << 3) + ULAW_BIAS;
+        t <<= (value & SEG_MASK) >> SEG_SHIFT;
+        return (value & SIGN_BIT) != 0 ? ULAW_BIAS - t : t - ULAW_BIAS;
+    }
+
+    private static int computeAlawToLinear(int alaw) {
+        int value = alaw ^ 0x55;
+        int t = (value & QUANT_MASK) << 4;
+        int segment = (value & SEG_MASK) >> SEG_SHIFT;
+        if (segment == 0) {
+            t += 8;
+        } else {
+            t = (t + 0x108) << (segment - 1);
+        }
+        return (value & SIGN_BIT) != 0 ? t : -t;
+    }
+
+    private static int computeLinearToUlaw(short sample) {
+        int value = sample >> 2; //14 bit magnitude
+        int mask;
+        if (value < 0) {
+            value = -value;
+            mask = 0x7F;
+        } else {
+            mask = 0xFF;
+        }
+        if (value > ULAW_CLIP) {
+            value = ULAW_CLIP;
+        }
+        value += ULAW_BIAS >> 2;
+        int segment = segment(value, ULAW_SEGMENT_END);
+        if (segment >= 8) {
+            return 0x7F ^ mask;
+        }
+        return ((segment << 4) | ((value >> (segment + 1)) & 0x0F)) ^ mask;
+    }
+
+    private static int computeLinearToAlaw(short sample) {
+        int value = sample >> 3; //13 bit magnitude
+        int mask;
+        if (value >= 0) {
+            mask = 0xD5;
+        } else {
+            mask = 0x55;
+            value = -value - 1;
+        }
+        int segment = segment(value, ALAW_SEGMENT_END);
+        if (segment >= 8) {
+            return 0x7F ^ mask;
+        }
+        int alaw = segment << 4;
+        alaw |= segment < 2 ? (value >> 1) & 0x0F : (value >> segment) & 0x0F;
+        return alaw ^ mask;
+    }
+
+    private static int segment(int value, int[] segmentEnds) {
+        for (int i = 0; i < segmentEnds.length; i++) {
+            if (value <= segmentEnds[i]) {
+                return i;
+            }
+        }
+        return segmentEnds.length;
+    }
+}
@@ -0,0 +1,273 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Processing stages applied by an Agent to the packets received from Ozonetel before they are sent to the bot.
+ * Driven by the Agent's media loop: packets are pushed with onPacket() and the loop waits no longer than
+ * getNextDueNanos() before calling onTick(), so that held packets are released on time.
+ * Not thread safe, owned by the Agent's media loop thread.
+ */
+public class InboundMediaPipeline {
+
+    private final MediaSink sink;
+    private final AgentMetrics metrics;
+    private final TelephoneEventDecoder telephoneEventDecoder;
+    private final JitterBuffer jitterBuffer;
+    private final VoiceActivityDetector voiceActivityDetector;
+    private final ArrayDeque<MediaBuffer> preRoll; //latest silent packets, sent ahead of the speech which follows them
+    private final int preRollPackets;
+    private final RtpPacketView packetView = new RtpPacketView();
+    private final AudioTranscoder transcoder;
+    private final Resampler resampler;
+    private final FrameAggregator aggregator;
+    private final PayloadFrameCodec payloadCodec;
+    private final MediaBuffer payloadFrame;
+
+    /**
+     * Creates the inbound pipeline of an Agent
+     * @param agentConfig The configuration of the Agent, selects the stages
+     * @param sink The stage the processed packets are handed to, usually the bot websocket
+     */
+    public InboundMediaPipeline(AgentConfig agentConfig, MediaSink sink) {
+        this(agentConfig, sink, null);
+    }
+
+    /**
+     * Creates the inbound pipeline of an Agent
+     * @param agentConfig The configuration of the Agent, selects the stages
+     * @param sink The stage the processed packets are handed to, usually the bot websocket
+     * @param metrics The metrics of the Agent, records the latency of each packet handed to the sink, null for none
+     */
+    public InboundMediaPipeline(AgentConfig agentConfig, MediaSink sink, AgentMetrics metrics) {
+        this.sink = sink;
+        this.metrics = metrics;
+        this.telephoneEventDecoder = agentConfig.isDtmfEnabled()
+                ? new TelephoneEventDecoder(agentConfig.getRtpTelephoneEventPayloadType())
+                : null;
+        this.jitterBuffer = agentConfig.isJitterBufferEnabled()
+                ? new JitterBuffer(agentConfig.getRtpClockRate(), agentConfig.getRtpPtimeMs(),
+                        agentConfig.getJitterBufferMinDelayMs(), agentConfig.getJitterBufferMaxDelayMs())
+                : null;
+        //before transcoding, so that the packets which are not sent are not transcoded either
+        this.voiceActivityDetector = agentConfig.isVadEnabled()
+                ? new VoiceActivityDetector(agentConfig.getRtpCodec(), agentConfig.getRtpPtimeMs(),
+                        agentConfig.getVadThresholdDb(), agentConfig.getVadHangoverMs())
+                : null;
+        this.preRollPackets = agentConfig.getVadPreRollMs() / Math.max(1, agentConfig.getRtpPtimeMs());
+        this.preRoll = new ArrayDeque<>(Math.max(1, preRollPackets));
+        this.transcoder = AudioTranscoder.create(agentConfig.getRtpCodec(), agentConfig.getBotCodec());
+        this.resampler = Resampler.create(agentConfig, true);
+        this.aggregator = agentConfig.getWsAggregationPackets() > 1
+                ? new FrameAggregator(sink, agentConfig.getWsAggregationPackets(), agentConfig.getWsAggregationWindowMs(), agentConfig.getMediaBufferSize())
+                : null;
+        if (BotWireFormat.PAYLOAD.equals(agentConfig.getBotWireFormat())) {
+            this.payloadCodec = new PayloadFrameCodec(0);
+            this.payloadFrame = MediaBuffer.wrap(ByteBuffer.allocate(PayloadFrameCodec.MAX_HEADER_SIZE + agentConfig.getMediaBufferSize()));
+        } else {
+            this.payloadCodec = null;
+            this.payloadFrame = null;
+        }
+    }
+
+    /**
+     * Processes a packet received from Ozonetel. The pipeline takes ownership of the packet.
+     * @param packet the received rtp packet
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    public void onPacket(MediaBuffer packet, long nowNanos) {
+        if (telephoneEventDecoder != null && telephoneEventDecoder.isTelephoneEvent(packet)) {
+            onTelephoneEvent(packet, nowNanos);
+            return;
+        }
+        if (jitterBuffer == null) {
+            emit(packet, nowNanos);
+            return;
+        }
+        jitterBuffer.insert(packet, nowNanos);
+        onTick(nowNanos);
+    }
+
+    /**
+     * Sends a DTMF event at once, ahead of the audio held by the later stages. The packet itself goes through the jitter
+     * buffer, if any, so that it still counts in the sequence of the stream, and is dropped before the audio stages.
+     */
+    private void onTelephoneEvent(MediaBuffer packet, long nowNanos) {
+        try {
+            String digit = telephoneEventDecoder.decode(packet);
+            if (digit != null) {
+                packetView.wrap(packet);
+                sink.sendEvent(MediaEvents.dtmfToJson(digit, packetView.getSequenceNumber(), packetView.getTimeStamp()));
+            }
+        } catch (RuntimeException e) {
+            packet.release();
+            throw e;
+        }
+        if (jitterBuffer == null) {
+            packet.release();
+            return;
+        }
+        jitterBuffer.insert(packet, nowNanos);
+        onTick(nowNanos);
+    }
+
+    /**
+     * Sends the held packets which are due
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    public void onTick(long nowNanos) {
+        if (jitterBuffer != null) {
+            MediaBuffer packet;
+            while ((packet = jitterBuffer.poll(nowNanos)) != null) {
+                emit(packet, nowNanos);
+            }
+        }
+        if (aggregator != null) {
+            aggregator.flushIfDue(nowNanos);
+        }
+    }
+
+    /**
+     * Returns the time at which onTick() next has work to do
+     * @return the time as per System.nanoTime(), or Long.MAX_VALUE if nothing is held
+     */
+    public long getNextDueNanos() {
+        long jitterBufferDue = jitterBuffer == null ? Long.MAX_VALUE : jitterBuffer.getNextDueNanos();
+        long aggregatorDue = aggregator == null ? Long.MAX_VALUE : aggregator.getNextDueNanos();
+        return Math.min(jitterBufferDue, aggregatorDue);
+    }
+
+    /**
+     * Returns the jitter buffer stage, to monitor its counters
+     * @return the jitter buffer, or null if it is disabled
+     */
+    public JitterBuffer getJitterBuffer() {
+        return jitterBuffer;
+    }
+
+    /**
+     * Returns the DTMF stage, to monitor its counters
+     * @return the decoder, or null if DTMF events are disabled
+     */
+    public TelephoneEventDecoder getTelephoneEventDecoder() {
+        return telephoneEventDecoder;
+    }
+
+    /**
+     * Returns the voice activity detection stage, to monitor its counters
+     * @return the detector, or null if voice activity detection is disabled
+     */
+    public VoiceActivityDetector getVoiceActivityDetector() {
+        return voiceActivityDetector;
+    }
+
+    /**
+     * Returns the aggregation stage, to monitor its counters
+     * @return the aggregator, or null if aggregation is disabled
+     */
+    public FrameAggregator getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Releases the held packets without sending them
+     */
+    public void close() {
+        if (jitterBuffer != null) {
+            jitterBuffer.clear();
+        }
+        MediaBuffer held;
+        while ((held = preRoll.poll()) != null) {
+            held.release();
+        }
+    }
+
+    private void emit(MediaBuffer packet, long nowNanos) {
+        if (telephoneEventDecoder != null && telephoneEventDecoder.isTelephoneEvent(packet)) {
+            packet.release(); //already reported when received
+            return;
+        }
+        if (voiceActivityDetector != null) {
+            boolean wasSpeaking = voiceActivityDetector.isSpeaking();
+            if (!voiceActivityDetector.process(packet)) {
+                packetView.wrap(packet);
+                String speechEnd = wasSpeaking
+                        ? MediaEvents.toJson(MediaEvents.SPEECH_END, packetView.getSequenceNumber(), packetView.getTimeStamp())
+                        : null;
+                holdSilence(packet);
+                if (speechEnd != null) {
+                    sendEvent(speechEnd);
+                }
+                return;
+            }
+            if (!wasSpeaking) {
+                try {
+                    packetView.wrap(preRoll.isEmpty() ? packet : preRoll.peek());
+                    sendEvent(MediaEvents.toJson(MediaEvents.SPEECH_START, packetView.getSequenceNumber(), packetView.getTimeStamp()));
+                    MediaBuffer held;
+                    while ((held = preRoll.poll()) != null) {
+                        forward(held, nowNanos);
+                    }
+                } catch (RuntimeException e) {
+                    packet.release();
+                    throw e;
+                }
+            }
+        }
+        forward(packet, nowNanos);
+    }
+
+    /**
+     * Keeps a silent packet as pre-roll, dropping the oldest one held
+     */
+    private void holdSilence(MediaBuffer packet) {
+        if (preRollPackets == 0) {
+            packet.release();
+            return;
+        }
+        if (preRoll.size() == preRollPackets) {
+            preRoll.poll().release();
+        }
+        preRoll.add(packet);
+    }
+
+    /**
+     * Sends an event after the audio which precedes it
+     */
+    private void sendEvent(String event) {
+        if (aggregator != null) {
+            aggregator.flush();
+        }
+        sink.sendEvent(event);
+    }
+
+    private void forward(MediaBuffer packet, long nowNanos) {
+        try {
+            if (transcoder != null) {
+                transcoder.decode(packet);
+            }
+            if (resampler != null) {
+                resampler.process(packet);
+            }
+            if (aggregator != null) {
+                aggregator.add(packet, nowNanos); //the aggregation container already carries payloads only
+            } else if (payloadCodec != null && payloadCodec.encode(packet, payloadFrame)) {
+                payloadFrame.setTimestampNanos(packet.getTimestampNanos());
+                sink.send(payloadFrame);
+            } else {
+                sink.send(packet);
+            }
+            if (metrics != null && packet.getTimestampNanos() != 0) {
+                metrics.getInboundTotal().record(System.nanoTime() - packet.getTimestampNanos());
+            }
+        } finally {
+            packet.release();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call adaptive jitter buffer for the packets received from Ozonetel. Reorders packets by sequence number,
+ * suppresses duplicates and holds each packet for a target delay derived from the measured interarrival jitter
+ * (RFC 3550 section 6.4.1), bounded by a latency cap. A missing packet is declared lost once a later packet has
+ * waited for the target delay. A new SSRC, a jump ahead beyond the reordering window, or two consecutive packets far
+ * behind the play out point (RFC 3550 appendix A.1) restart the buffer on the new sequence.
+ * Owned by a single thread, the counters may be read from any thread.
+ */
+public class JitterBuffer {
+
+    private static final int SLOTS = 128; //must be a power of two, bounds the reordering distance handled
+    private static final int MASK = SLOTS - 1;
+    private static final int JITTER_MULTIPLIER = 3; //target delay as a multiple of the jitter, covers most of the interarrival spread
+    private static final int MAX_MISORDER = 100; //packets further behind are taken as a sequence restart once confirmed, RFC 3550 A.1
+
+    private final MediaBuffer[] packets = new MediaBuffer[SLOTS];
+    private final long[] arrivalNanos = new long[SLOTS];
+    private final RtpPacketView packetView = new RtpPacketView();
+
+    private final int clockRate;
+    private final long frameNanos;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+
+    private boolean started = false;
+    private int ssrc;
+    private int nextSequenceNumber;
+    private int restartSequenceNumber = -1; //next packet expected if the sender restarted its sequence behind, -1 if none
+    private volatile int bufferedCount = 0;
+
+    //RFC 3550 jitter state, in timestamp units
+    private boolean hasPreviousPacket = false;
+    private long previousArrivalUnits;
+    private int previousTimeStamp;
+    private double jitterUnits = 0;
+    private volatile long targetDelayNanos;
+
+    private volatile long receivedCount = 0;
+    private volatile long playedCount = 0;
+    private volatile long duplicateCount = 0;
+    private volatile long lateCount = 0;
+    private volatile long lostCount = 0;
+    private volatile long reorderedCount = 0;
+    private volatile long invalidCount = 0;
+    private volatile long resyncCount = 0;
+    private int highestSequenceNumber;
+
+    /**
+     * Creates a jitter buffer
+     * @param clockRate the RTP clock rate of the stream, e.g. 8000 for PCMU
+     * @param ptimeMs the duration of the audio carried by one packet
+     * @param minDelayMs the minimum time a packet is held, allows reordering even when no jitter has been measured
+     * @param maxDelayMs the maximum time a packet is held, bounds the latency added by the buffer
+     */
+    public JitterBuffer(int clockRate, int ptimeMs, int minDelayMs, int maxDelayMs) {
+        this.clockRate = clockRate;
+        this.frameNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ptimeMs));
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(minDelayMs, maxDelayMs));
+        this.targetDelayNanos = minDelayNanos;
+    }
+
+    /**
+     * Adds a received packet. The buffer takes ownership of the packet and releases it if it is not played out.
+     * @param packet the rtp packet
+     * @param nowNanos the arrival time of the packet, as per System.nanoTime()
+     */
+    public void insert(MediaBuffer packet, long nowNanos) {
+        if (!packetView.wrap(packet).isValid()) {
+            invalidCount++;
+            packet.release();
+            return;
+        }
+        receivedCount++;
+        int sequenceNumber = packetView.getSequenceNumber();
+        int packetSsrc = packetView.getSsrc();
+        if (!started) {
+            started = true;
+            ssrc = packetSsrc;
+            nextSequenceNumber = sequenceNumber;
+            highestSequenceNumber = sequenceNumber;
+        }
+        int distance = sequenceDistance(nextSequenceNumber, sequenceNumber);
+        if (packetSsrc != ssrc || distance >= SLOTS || isRestartBehind(sequenceNumber, distance)) {
+            //new source, sender restarted its sequence or a long outage, drop what is held and start over
+            releaseAll();
+            resyncCount++;
+            hasPreviousPacket = false;
+            ssrc = packetSsrc;
+            nextSequenceNumber = sequenceNumber;
+            highestSequenceNumber = sequenceNumber;
+            restartSequenceNumber = -1;
+            distance = 0;
+        }
+        updateJitter(packetView.getTimeStamp(), nowNanos);
+        if (distance < 0) {
+            lateCount++; //already played out or declared lost
+            packet.release();
+            return;
+        }
+        int slot = sequenceNumber & MASK;
+        if (packets[slot] != null) {
+            duplicateCount++;
+            packet.release();
+            return;
+        }
+        if (sequenceDistance(highestSequenceNumber, sequenceNumber) < 0) {
+            reorderedCount++;
+        } else {
+            highestSequenceNumber = sequenceNumber;
+        }
+        packets[slot] = packet;
+        arrivalNanos[slot] = nowNanos;
+        bufferedCount++;
+    }
+
+    /**
+     * Tells a sender which restarted its sequence behind the play out point from a stray old packet, as per RFC 3550
+     * appendix A.1: the restart is only taken once the packet following the first one far behind arrives
+     * @return true if the packet confirms a restart
+     */
+    private boolean isRestartBehind(int sequenceNumber, int distance) {
+        if (distance >= -MAX_MISORDER) {
+            return false;
+        }
+        if (sequenceNumber == restartSequenceNumber) {
+            return true;
+        }
+        restartSequenceNumber = (sequenceNumber + 1) & 0xFFFF;
+        return false;
+    }
+
+    /**
+     * Returns the next packet in sequence order if it is due for play out, skipping lost packets
+     * @param nowNanos the current time, as per System.nanoTime()
+     * @return the packet, owned by the caller, or null if no packet is due yet
+     */
+    public MediaBuffer poll(long nowNanos) {
+        while (bufferedCount > 0) {
+            int slot = nextSequenceNumber & MASK;
+            MediaBuffer packet = packets[slot];
+            if (packet != null) {
+                //hold until the target delay has passed, unless the held audio already exceeds the latency cap
+                if (nowNanos - arrivalNanos[slot] < targetDelayNanos && bufferedCount * frameNanos < maxDelayNanos) {
+                    return null;
+                }
+                packets[slot] = null;
+                bufferedCount--;
+                nextSequenceNumber = (nextSequenceNumber + 1) & 0xFFFF;
+                playedCount++;
+                return packet;
+            }
+            //next packet missing, give up on it once the oldest packet behind it has waited long enough
+            if (nowNanos - oldestBufferedArrival() < targetDelayNanos && bufferedCount * frameNanos < maxDelayNanos) {
+                return null;
+            }
+            lostCount++;
+            nextSequenceNumber = (nextSequenceNumber + 1) & 0xFFFF;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the time at which poll() may next return a packet
+     * @return the time as per System.nanoTime(), or Long.MAX_VALUE if the buffer is empty
+     */
+    public long getNextDueNanos() {
+        if (bufferedCount == 0) {
+            return Long.MAX_VALUE;
+        }
+        int slot = nextSequenceNumber & MASK;
+        long arrival = packets[slot] != null ? arrivalNanos[slot] : oldestBufferedArrival();
+        return arrival + targetDelayNanos;
+    }
+
+    /**
+     * Releases all held packets without playing them out
+     */
+    public void clear() {
+        releaseAll();
+    }
+
+    private void releaseAll() {
+        for (int i = 0; i < SLOTS; i++) {
+            if (packets[i] != null) {
+                packets[i].release();
+                packets[i] = null;
+            }
+        }
+        bufferedCount = 0;
+    }
+
+    private long oldestBufferedArrival() {
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < SLOTS; i++) {
+            if (packets[i] != null && arrivalNanos[i] < oldest) {
+                oldest = arrivalNanos[i];
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Updates the interarrival jitter estimate as per RFC 3550 and derives the target delay from it
+     */
+    private void updateJitter(int timeStamp, long nowNanos) {
+        long arrivalUnits = TimeUnit.NANOSECONDS.toMicros(nowNanos) * clockRate / 1_000_000; //nanos times the rate overflow after days of uptime
+        if (hasPreviousPacket) {
+            long transitDifference = (arrivalUnits - previousArrivalUnits) - (timeStamp - previousTimeStamp);
+            jitterUnits += (Math.abs(transitDifference) - jitterUnits) / 16;
+        }
+        hasPreviousPacket = true;
+        previousArrivalUnits = arrivalUnits;
+        previousTimeStamp = timeStamp;
+
+        long jitterNanos = (long) (jitterUnits * TimeUnit.SECONDS.toNanos(1) / clockRate);
+        targetDelayNanos = Math.min(maxDelayNanos, Math.max(minDelayNanos, JITTER_MULTIPLIER * jitterNanos));
+    }
+
+    /**
+     * Signed distance between two 16 bit sequence numbers, handling wrap around
+     */
+    private static int sequenceDistance(int from, int to) {
+        return (short) (to - from);
+    }
+
+    public double getJitterMs() {
+        return jitterUnits * 1000 / clockRate;
+    }
+
+    public long getTargetDelayMs() {
+        return TimeUnit.NANOSECONDS.toMillis(targetDelayNanos);
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    public long getPlayedCount() {
+        return playedCount;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public long getLateCount() {
+        return lateCount;
+    }
+
+    public long getLostCount() {
+        return lostCount;
+    }
+
+    public long getReorderedCount() {
+        return reorderedCount;
+    }
+
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    public long getResyncCount() {
+        return resyncCount;
+    }
+
+    public int getBufferedCount() {
+        return bufferedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "JitterBuffer{" +
+                "jitterMs=" + getJitterMs() +
+                ", targetDelayMs=" + getTargetDelayMs() +
+                ", receivedCount=" + receivedCount +
+                ", playedCount=" + playedCount +
+                ", duplicateCount=" + duplicateCount +
+                ", lateCount=" + lateCount +
+                ", lostCount=" + lostCount +
+                ", reorderedCount=" + reorderedCount +
+                ", invalidCount=" + invalidCount +
+                ", resyncCount=" + resyncCount +
+                '}';
+    }
+}
@@ -0,0 +1,239 @@
+package com.sprinklr.sip4j.media;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.sprinklr.sip4j.utils.Constants.MEDIA_CLOCK_TICK_MS;
+import static com.sprinklr.sip4j.utils.Constants.MEDIA_CLOCK_WHEEL_SIZE;
+
+/**
+ * Single thread which runs the periodic media tasks of all Agents of the node, e.g. sending one RTP frame per ptime.
+ * Tasks are kept in a hashed timer wheel: each tick only visits the tasks due in that tick, whatever the number of
+ * scheduled tasks. Deadlines are absolute, so a task keeps its period on average even when a tick runs late.
+ */
+public class MediaClock {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MediaClock.class);
+    //a tick runs in microseconds, this only guards against a task stuck on the clock thread
+    private static final long CANCEL_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<Registration>[] wheel;
+    private List<Registration> spareBucket = new ArrayList<>();
+    private final Queue<Registration> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final long startNanos;
+    private final Thread thread;
+    private long currentTick = 0;
+
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private volatile long tickCount = 0;
+    private volatile long lateTickCount = 0;
+    private volatile long failedRunCount = 0;
+
+    /**
+     * Periodic task run on the clock thread. Implementations must not block, since all tasks of the node share the thread
+     */
+    public interface Task {
+
+        /**
+         * Called once per period
+         * @param nowNanos the current time, as per System.nanoTime()
+         */
+        void onTick(long nowNanos);
+    }
+
+    /**
+     * Handle to a scheduled task, used to cancel it
+     */
+    public static class Registration {
+
+        private final MediaClock clock;
+        private final Task task;
+        private final long periodTicks;
+        private long deadlineTick;
+        private volatile boolean cancelled = false;
+        //set by the clock thread before it checks cancelled, so that a canceller seeing it clear knows the task is done
+        private volatile boolean running = false;
+
+        private Registration(MediaClock clock, Task task, long periodTicks, long deadlineTick) {
+            this.clock = clock;
+            this.task = task;
+            this.periodTicks = periodTicks;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Stops running the task. The task may still run once if its tick is in progress
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Stops running the task and waits for a run in progress to finish, after which the task is never run again.
+         * Returns at once when called by the task itself, on the clock thread
+         */
+        public void cancelAndAwait() {
+            cancelled = true;
+            if (Thread.currentThread() == clock.thread) {
+                return;
+            }
+            long deadlineNanos = System.nanoTime() + CANCEL_TIMEOUT_NANOS;
+            while (running) {
+                if (System.nanoTime() - deadlineNanos > 0) {
+                    LOGGER.warn("Media clock task {} still running after it was cancelled", task);
+                    return;
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Lazily created clock shared by all Agents of the node
+     */
+    private static class DefaultClockHolder {
+        private static final MediaClock DEFAULT_CLOCK = new MediaClock(TimeUnit.MILLISECONDS.toNanos(MEDIA_CLOCK_TICK_MS), MEDIA_CLOCK_WHEEL_SIZE);
+    }
+
+    /**
+     * Creates a clock and starts its thread
+     * @param tickNanos resolution of the clock, periods are rounded up to a multiple of it
+     * @param wheelSize number of buckets of the wheel, rounded up to a power of two
+     */
+    public MediaClock(long tickNanos, int wheelSize) {
+        int buckets = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = tickNanos;
+        this.mask = buckets - 1;
+        @SuppressWarnings({"unchecked", "rawtypes"}) //no generic array creation, every bucket is a List<Registration>
+        List<Registration>[] newWheel = new List[buckets];
+        for (int i = 0; i < buckets; i++) {
+            newWheel[i] = new ArrayList<>();
+        }
+        this.wheel = newWheel;
+        this.startNanos = System.nanoTime();
+        thread = new Thread(this::runLoop, "media-clock");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        LOGGER.info("Started media clock with a tick of {}us and {} buckets", TimeUnit.NANOSECONDS.toMicros(tickNanos), buckets);
+    }
+
+    /**
+     * Returns the clock shared by all Agents of the node
+     * @return the shared clock
+     */
+    public static MediaClock getDefault() {
+        return DefaultClockHolder.DEFAULT_CLOCK;
+    }
+
+    /**
+     * Schedules a task to be run periodically, starting one period from now
+     * @param task the task
+     * @param periodNanos the period, rounded up to a multiple of the tick
+     * @return the handle used to cancel the task
+     */
+    public Registration schedule(Task task, long periodNanos) {
+        long periodTicks = Math.max(1, (periodNanos + tickNanos - 1) / tickNanos);
+        long firstTick = (System.nanoTime() - startNanos) / tickNanos + periodTicks;
+        Registration registration = new Registration(this, task, periodTicks, firstTick);
+        pendingRegistrations.offer(registration);
+        taskCount.incrementAndGet();
+        return registration;
+    }
+
+    private void runLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long deadlineNanos = startNanos + (currentTick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadlineNanos) {
+                LockSupport.parkNanos(deadlineNanos - now);
+            }
+            currentTick++;
+            if (now - deadlineNanos > tickNanos) {
+                lateTickCount++; //ticks are then processed back to back until the clock catches up
+            }
+            addPendingRegistrations();
+            runBucket(now);
+            tickCount++;
+        }
+    }
+
+    private void addPendingRegistrations() {
+        Registration registration;
+        while ((registration = pendingRegistrations.poll()) != null) {
+            //a registration made during the previous tick may already be due
+            registration.deadlineTick = Math.max(registration.deadlineTick, currentTick);
+            wheel[(int) (registration.deadlineTick & mask)].add(registration);
+        }
+    }
+
+    private void runBucket(long nowNanos) {
+        int index = (int) (currentTick & mask);
+        List<Registration> bucket = wheel[index];
+        wheel[index] = spareBucket;
+        for (int i = 0, n = bucket.size(); i < n; i++) {
+            Registration registration = bucket.get(i);
+            if (registration.cancelled) {
+                taskCount.decrementAndGet();
+                continue;
+            }
+            if (registration.deadlineTick > currentTick) {
+                wheel[index].add(registration); //due in a later round of the wheel
+                continue;
+            }
+            registration.running = true;
+            try {
+                if (!registration.cancelled) { //re-checked once running is visible, see cancelAndAwait()
+                    registration.task.onTick(nowNanos);
+                }
+            } catch (RuntimeException e) {
+                //one failing task must not stop the clock serving all other Agents
+                failedRunCount++;
+                LOGGER.error("Exception in media clock task {}: {}", registration.task, e.toString());
+            } finally {
+                registration.running = false;
+            }
+            registration.deadlineTick += registration.periodTicks;
+            wheel[(int) (registration.deadlineTick & mask)].add(registration);
+        }
+        bucket.clear();
+        spareBucket = bucket;
+    }
+
+    public int getTaskCount() {
+        return taskCount.get();
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getLateTickCount() {
+        return lateTickCount;
+    }
+
+    public long getFailedRunCount() {
+        return failedRunCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MediaClock{" +
+                "tickUs=" + TimeUnit.NANOSECONDS.toMicros(tickNanos) +
+                ", taskCount=" + getTaskCount() +
+                ", tickCount=" + tickCount +
+                ", lateTickCount=" + lateTickCount +
+                ", failedRunCount=" + failedRunCount +
+                '}';
+    }
+}
@@ -0,0 +1,124 @@
+package com.sprinklr.sip4j.media;
+
+/**
+ * Defines the events sent to the bot alongside the audio, as websocket text frames holding a JSON object:
+ * {"event":"speechStart","sequenceNumber":1234,"timeStamp":5678}
+ * {"event":"dtmf","digit":"5","sequenceNumber":1234,"timeStamp":5678}
+ * The sequence number and timestamp are those of the RTP packet the event relates to.
+ * Trace tags are echoed back by the bot, see RoundTripTracer:
+ * {"event":"trace","frameId":42,"arrivalNanos":123456789,"sentNanos":123459876}
+ * A persistent Agent keeps its connection to the bot between calls and delimits each call:
+ * {"event":"callStart","callId":"a84b4c76e66710@127.0.0.1"}
+ */
+public class MediaEvents {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private MediaEvents() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * The caller started speaking, the audio of the packet and the pre-roll before it follows
+     */
+    public static final String SPEECH_START = "speechStart";
+
+    /**
+     * The caller stopped speaking, no audio is sent until the next speechStart
+     */
+    public static final String SPEECH_END = "speechEnd";
+
+    /**
+     * The caller pressed a key, sent as soon as the first packet of the RFC 4733 event is received
+     */
+    public static final String DTMF = "dtmf";
+
+    /**
+     * Trace tag of the audio sent just before, echoed back by the bot ahead of its response to that audio
+     */
+    public static final String TRACE = "trace";
+
+    /**
+     * A call has been answered, the audio which follows is that of the call
+     */
+    public static final String CALL_START = "callStart";
+
+    /**
+     * The call has ended, no audio is sent until the next callStart
+     */
+    public static final String CALL_END = "callEnd";
+
+    /**
+     * Formats an event
+     * @param event the name of the event
+     * @param sequenceNumber the sequence number of the RTP packet the event relates to
+     * @param timeStamp the timestamp of the RTP packet the event relates to, unsigned
+     * @return the JSON object
+     */
+    public static String toJson(String event, int sequenceNumber, int timeStamp) {
+        return "{\"event\":\"" + event + "\",\"sequenceNumber\":" + sequenceNumber
+                + ",\"timeStamp\":" + (timeStamp & 0xFFFFFFFFL) + "}";
+    }
+
+    /**
+     * Formats a DTMF event
+     * @param digit the digit, *, #, A to D or flash
+     * @param sequenceNumber the sequence number of the first RTP packet of the event
+     * @param timeStamp the timestamp of the RTP packets of the event, unsigned
+     * @return the JSON object
+     */
+    public static String dtmfToJson(String digit, int sequenceNumber, int timeStamp) {
+        return "{\"event\":\"" + DTMF + "\",\"digit\":\"" + digit + "\",\"sequenceNumber\":" + sequenceNumber
+                + ",\"timeStamp\":" + (timeStamp & 0xFFFFFFFFL) + "}";
+    }
+
+    /**
+     * Formats a trace tag
+     * @param frameId the identifier of the tag, increasing for the duration of the call
+     * @param arrivalNanos the arrival time of the latest caller audio sent, as per System.nanoTime() on the Agent
+     * @param sentNanos the time the tag is sent, as per System.nanoTime() on the Agent
+     * @return the JSON object
+     */
+    public static String traceToJson(long frameId, long arrivalNanos, long sentNanos) {
+        return "{\"event\":\"" + TRACE + "\",\"frameId\":" + frameId + ",\"arrivalNanos\":" + arrivalNanos
+                + ",\"sentNanos\":" + sentNanos + "}";
+    }
+
+    /**
+     * Formats a call event
+     * @param event callStart or callEnd
+     * @param callId the Call-ID of the call's dialog
+     * @return the JSON object
+     */
+    public static String callToJson(String event, String callId) {
+        return "{\"event\":\"" + event + "\",\"callId\":\"" + escape(callId) + "\"}";
+    }
+
+    /**
+     * Escapes a value for a JSON string. A Call-ID may hold quotes and backslashes, RFC 3261 section 25.1
+     * @param value the value
+     * @return the value with quotes, backslashes and control characters escaped
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) {
+                if (escaped != null) {
+                    escaped.append(c);
+                }
+                continue;
+            }
+            if (escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i); //only allocated if needed
+            }
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else {
+                escaped.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+}
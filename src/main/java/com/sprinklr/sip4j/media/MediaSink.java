@@ -0,0 +1,23 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+
+/**
+ * Final stage of a media pipeline, hands the processed packets over to the transport
+ */
+public interface MediaSink {
+
+    /**
+     * Sends a packet. The packet remains owned by the caller and is released once this method returns,
+     * so implementations must not hold on to it.
+     * @param packet the packet to be sent
+     */
+    void send(MediaBuffer packet);
+
+    /**
+     * Sends an event, see MediaEvents. Sinks which cannot carry events ignore them.
+     * @param event the event as a JSON object
+     */
+    default void sendEvent(String event) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+
+/**
+ * Converts between RTP packets and the frames of the PAYLOAD bot wire format. A frame carries only the audio payload
+ * behind a header of 3 to 9 bytes:
+ * <pre>
+ * u8 marker bit and payload type (same layout as the second byte of the RTP header), varint sequence number, varint timestamp
+ * </pre>
+ * Varints are unsigned LEB128: 7 bits per byte, least significant group first, high bit set on all but the last byte.
+ * The header is absolute rather than relative to the previous frame, so a frame can be decoded on its own, e.g. after
+ * the websocket reconnects. CSRCs, header extensions and padding are not carried.
+ * Not thread safe, each direction of a call should use its own codec.
+ */
+public class PayloadFrameCodec {
+
+    public static final int MAX_HEADER_SIZE = 1 + 3 + 5;
+
+    private final RtpPacketView packetView = new RtpPacketView();
+    private final int ssrc;
+
+    /**
+     * Creates a codec
+     * @param ssrc the SSRC written in the headers of the decoded RTP packets
+     */
+    public PayloadFrameCodec(int ssrc) {
+        this.ssrc = ssrc;
+    }
+
+    /**
+     * Encodes an RTP packet into a frame
+     * @param packet the rtp packet
+     * @param frame the buffer the frame is written to, its length is set to the length of the frame
+     * @return false if the packet is not valid RTP or does not fit in the frame buffer, in which case nothing is written
+     */
+    public boolean encode(MediaBuffer packet, MediaBuffer frame) {
+        if (!packetView.wrap(packet).isValid() || MAX_HEADER_SIZE + packetView.getPayloadLength() > frame.getCapacity()) {
+            return false;
+        }
+        ByteBuffer out = frame.getWritableBuffer();
+        out.put((byte) ((packetView.getMarker() ? 0x80 : 0) | packetView.getPayloadType()));
+        putVarint(out, packetView.getSequenceNumber());
+        putVarint(out, packetView.getTimeStamp() & 0xFFFFFFFFL);
+        ByteBuffer source = packet.getBuffer();
+        source.position(packetView.getPayloadOffset()).limit(packetView.getPayloadOffset() + packetView.getPayloadLength());
+        out.put(source);
+        frame.setLength(out.position());
+        return true;
+    }
+
+    /**
+     * Decodes a frame into an RTP packet
+     * @param frame the remaining bytes of the buffer are the frame, the position is moved to the limit
+     * @param packet the buffer the packet is written to, its length is set to the length of the packet
+     * @return false if the frame is malformed or the packet does not fit in the packet buffer, in which case the
+     * packet buffer may have been partially written
+     */
+    public boolean decode(ByteBuffer frame, MediaBuffer packet) {
+        if (frame.remaining() < 3) {
+            return false;
+        }
+        int markerAndPayloadType = frame.get() & 0xFF;
+        long sequenceNumber = getVarint(frame);
+        long timeStamp = getVarint(frame);
+        if (sequenceNumber < 0 || sequenceNumber > 0xFFFF || timeStamp < 0 || timeStamp > 0xFFFFFFFFL
+                || RTP_HEADER_SIZE + frame.remaining() > packet.getCapacity()) {
+            return false;
+        }
+        int length = RTP_HEADER_SIZE + frame.remaining();
+        ByteBuffer out = packet.getWritableBuffer();
+        out.position(RTP_HEADER_SIZE);
+        out.put(frame);
+        packet.setLength(length);
+        packetView.wrap(packet).writeHeader((markerAndPayloadType & 0x80) != 0, markerAndPayloadType & 0x7F,
+                (int) sequenceNumber, (int) timeStamp, ssrc);
+        return true;
+    }
+
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads a varint of at most 5 bytes
+     * @return the value, or -1 if the varint is truncated or too long
+     */
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            int b = in.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,192 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming polyphase resampler by a factor of 2, e.g. between the 8 kHz telephony leg and the 16 kHz most speech
+ * recognisers expect. Works on the L16 payload of one packet at a time, in place, keeping the tail of the previous
+ * packet as filter history so the stream has no seams. Nothing is allocated per packet.
+ * The anti-imaging/anti-aliasing filter is a windowed sinc with its cutoff at the lower Nyquist frequency. Coefficients
+ * are Q15 and samples are kept in a short array, so the inner loop is a short by short multiply accumulated in an int
+ * over contiguous arrays, a form the JIT can unroll and vectorise.
+ * Not thread safe, each direction of a call should use its own resampler.
+ */
+public class Resampler {
+
+    private static final int TAPS = 64; //32 per phase, ~1.4 kHz transition band at 16 kHz
+    private static final int Q15_ONE = 1 << 15;
+
+    private final boolean upsampling;
+    private final short[][] phases; //coefficients per phase, reversed so that the dot product runs forwards over the history
+    private final int history;
+    private final short[] samples;
+    private final RtpPacketView packetView = new RtpPacketView();
+
+    /**
+     * Creates a resampler
+     * @param upsampling true to double the sample rate, false to halve it
+     * @param maxInputSamples the maximum number of samples in the payload of one packet
+     */
+    private Resampler(boolean upsampling, int maxInputSamples) {
+        this.upsampling = upsampling;
+        //interpolation needs a gain of 2 to make up for the inserted zeros
+        short[] taps = lowPassQ15(TAPS, 0.25, upsampling ? 2.0 : 1.0);
+        if (upsampling) {
+            phases = new short[2][TAPS / 2];
+            for (int k = 0; k < TAPS / 2; k++) {
+                phases[0][TAPS / 2 - 1 - k] = taps[2 * k];
+                phases[1][TAPS / 2 - 1 - k] = taps[2 * k + 1];
+            }
+            history = TAPS / 2 - 1;
+        } else {
+            phases = new short[1][TAPS];
+            for (int k = 0; k < TAPS; k++) {
+                phases[0][TAPS - 1 - k] = taps[k];
+            }
+            history = TAPS - 1;
+        }
+        samples = new short[history + maxInputSamples];
+    }
+
+    /**
+     * Creates a resampler doubling the sample rate, e.g. 8 kHz to 16 kHz
+     * @param maxInputSamples the maximum number of samples in the payload of one packet
+     * @return the resampler
+     */
+    public static Resampler upsampler(int maxInputSamples) {
+        return new Resampler(true, maxInputSamples);
+    }
+
+    /**
+     * Creates a resampler halving the sample rate, e.g. 16 kHz to 8 kHz
+     * @param maxInputSamples the maximum number of samples in the payload of one packet
+     * @return the resampler
+     */
+    public static Resampler downsampler(int maxInputSamples) {
+        return new Resampler(false, maxInputSamples);
+    }
+
+    /**
+     * Creates the resampler for one direction of a call
+     * @param agentConfig The configuration of the Agent, defines the sample rates of the call and of the bot
+     * @param towardsBot true for the audio sent to the bot, false for the audio returned by the bot
+     * @return the resampler, or null if the call and the bot use the same sample rate
+     */
+    public static Resampler create(AgentConfig agentConfig, boolean towardsBot) {
+        int rtpRate = agentConfig.getRtpClockRate();
+        int botRate = agentConfig.getBotSampleRate();
+        if (rtpRate == botRate) {
+            return null;
+        }
+        if (!AudioCodec.L16.equals(agentConfig.getBotCodec())) {
+            throw new IllegalArgumentException("Resampling from " + rtpRate + " to " + botRate + " needs botCodec " + AudioCodec.L16);
+        }
+        int maxInputSamples = agentConfig.getMediaBufferSize() / 2;
+        if (botRate == 2 * rtpRate) {
+            return towardsBot ? upsampler(maxInputSamples) : downsampler(maxInputSamples);
+        }
+        if (rtpRate == 2 * botRate) {
+            return towardsBot ? downsampler(maxInputSamples) : upsampler(maxInputSamples);
+        }
+        throw new IllegalArgumentException("Cannot resample from " + rtpRate + " to " + botRate + ", only a factor of 2 is supported");
+    }
+
+    /**
+     * Returns the capacity a packet's buffer needs for its payload to be resampled in place, e.g. twice its payload
+     * when upsampling, which a packet wrapped around a message received from the bot does not have
+     * @param packet the rtp packet
+     * @return the capacity needed, the packet's length if it is not valid RTP
+     */
+    public int getRequiredCapacity(MediaBuffer packet) {
+        if (!upsampling || !packetView.wrap(packet).isValid()) {
+            return packet.getLength();
+        }
+        return packetView.getPayloadOffset() + 2 * packetView.getPayloadLength();
+    }
+
+    /**
+     * Resamples the L16 payload of a packet in place. The RTP header is left unchanged.
+     * @param packet the rtp packet
+     * @return false if the packet was left untouched: it is not valid RTP, has padding, its payload is larger than
+     * expected or its buffer is too small for the resampled payload
+     */
+    public boolean process(MediaBuffer packet) {
+        if (!packetView.wrap(packet).isValid() || packetView.hasPadding()) {
+            return false;
+        }
+        int offset = packetView.getPayloadOffset();
+        int inputSamples = packetView.getPayloadLength() / 2;
+        int outputSamples = upsampling ? 2 * inputSamples : inputSamples / 2;
+        if (history + inputSamples > samples.length || offset + 2 * Math.max(inputSamples, outputSamples) > packet.getCapacity()) {
+            return false;
+        }
+        ByteBuffer buffer = packet.getWritableBuffer();
+        if (packet.hasArray()) {
+            byte[] array = packet.array();
+            int base = packet.arrayOffset() + offset;
+            for (int i = 0; i < inputSamples; i++) {
+                samples[history + i] = (short) ((array[base + 2 * i] << 8) | (array[base + 2 * i + 1] & 0xFF));
+            }
+        } else {
+            for (int i = 0; i < inputSamples; i++) {
+                samples[history + i] = buffer.getShort(offset + 2 * i);
+            }
+        }
+        if (upsampling) {
+            short[] even = phases[0];
+            short[] odd = phases[1];
+            for (int n = 0; n < inputSamples; n++) {
+                buffer.putShort(offset + 4 * n, dot(even, n));
+                buffer.putShort(offset + 4 * n + 2, dot(odd, n));
+            }
+        } else {
+            short[] taps = phases[0];
+            for (int n = 0; n < outputSamples; n++) {
+                buffer.putShort(offset + 2 * n, dot(taps, 2 * n + 1));
+            }
+        }
+        System.arraycopy(samples, inputSamples, samples, 0, history);
+        packet.setLength(offset + 2 * outputSamples);
+        return true;
+    }
+
+    /**
+     * Filter output for the window of samples starting at start
+     */
+    private short dot(short[] coefficients, int start) {
+        int sum = Q15_ONE >> 1; //rounding
+        for (int k = 0; k < coefficients.length; k++) {
+            sum += coefficients[k] * samples[start + k];
+        }
+        sum >>= 15;
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sum));
+    }
+
+    /**
+     * Designs a Blackman windowed sinc low pass filter in Q15
+     * @param taps number of taps
+     * @param cutoff cutoff frequency as a fraction of the sample rate
+     * @param gain sum of the coefficients
+     */
+    private static short[] lowPassQ15(int taps, double cutoff, double gain) {
+        double[] h = new double[taps];
+        double sum = 0;
+        double middle = (taps - 1) / 2.0;
+        for (int i = 0; i < taps; i++) {
+            double x = i - middle;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * i / (taps - 1)) + 0.08 * Math.cos(4 * Math.PI * i / (taps - 1));
+            h[i] = sinc * window;
+            sum += h[i];
+        }
+        short[] q15 = new short[taps];
+        for (int i = 0; i < taps; i++) {
+            q15[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(h[i] * gain / sum * Q15_ONE)));
+        }
+        return q15;
+    }
+}
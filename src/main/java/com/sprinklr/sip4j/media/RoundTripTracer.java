@@ -0,0 +1,146 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time the bot takes to respond to the caller. After the audio sent to the bot, at most once per interval,
+ * the Agent sends a trace tag: an increasing frame id with the arrival time of the newest caller audio in the frame and
+ * the time the tag was sent. When the bot starts responding it echoes the tag of the latest audio it has taken into
+ * account, unchanged, ahead of the response audio. The first packet queued after the echo is marked as the start of
+ * the response, and the RTP sender records the response latency when it sends it to Ozonetel.
+ * The bot processing time is measured from the tag being sent to its echo being received, so it includes the
+ * websocket transit in both directions.
+ * Tags are sent from the Agent's media loop thread, echoes are handled on the websocket read thread.
+ */
+public class RoundTripTracer {
+
+    private static final String FRAME_ID = "frameId";
+    private static final String ARRIVAL_NANOS = "arrivalNanos";
+    private static final String SENT_NANOS = "sentNanos";
+
+    private final long intervalNanos;
+    private final AgentMetrics metrics;
+
+    //media loop thread
+    private long lastTagNanos;
+    private volatile long lastFrameId = 0;
+
+    //websocket read thread
+    private long lastEchoedFrameId = 0;
+    private long pendingResponseToNanos = 0;
+    private long echoCount = 0;
+    private long invalidEchoCount = 0;
+
+    /**
+     * Creates the tracer of a call
+     * @param intervalMs the minimum time between two trace tags
+     * @param metrics the metrics of the Agent, where the bot processing time is recorded
+     */
+    public RoundTripTracer(int intervalMs, AgentMetrics metrics) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the trace tag to send after a frame of audio, if one is due
+     * @param frame the frame just sent to the bot, stamped with the arrival time of its newest caller audio
+     * @param nowNanos the current time, as per System.nanoTime()
+     * @return the tag, or null if none is due
+     */
+    public String tag(MediaBuffer frame, long nowNanos) {
+        long arrivalNanos = frame.getTimestampNanos();
+        if (arrivalNanos == 0 || (lastFrameId != 0 && nowNanos - lastTagNanos < intervalNanos)) {
+            return null;
+        }
+        lastTagNanos = nowNanos;
+        lastFrameId++;
+        return MediaEvents.traceToJson(lastFrameId, arrivalNanos, nowNanos);
+    }
+
+    /**
+     * Handles a text message received from the bot
+     * @param message the message
+     * @param nowNanos the current time, as per System.nanoTime()
+     * @return whether the message was the echo of a trace tag
+     */
+    public boolean onEcho(String message, long nowNanos) {
+        if (!message.contains("\"event\":\"" + MediaEvents.TRACE + "\"")) {
+            return false;
+        }
+        long frameId = longField(message, FRAME_ID);
+        long arrivalNanos = longField(message, ARRIVAL_NANOS);
+        long sentNanos = longField(message, SENT_NANOS);
+        //a tag echoed twice, out of order or not sent by this Agent would distort the latencies
+        if (frameId <= lastEchoedFrameId || frameId > lastFrameId || arrivalNanos == 0 || sentNanos == 0
+                || arrivalNanos - sentNanos > 0 || sentNanos - nowNanos > 0) {
+            invalidEchoCount++;
+            return true;
+        }
+        lastEchoedFrameId = frameId;
+        echoCount++;
+        metrics.getBotProcessing().record(nowNanos - sentNanos);
+        pendingResponseToNanos = arrivalNanos;
+        return true;
+    }
+
+    /**
+     * Marks a packet returned by the bot as the start of the response to the latest echoed tag, if not done yet
+     * @param packet the packet being queued to Ozonetel
+     */
+    public void onResponsePacket(MediaBuffer packet) {
+        if (pendingResponseToNanos != 0) {
+            packet.setResponseToNanos(pendingResponseToNanos);
+            pendingResponseToNanos = 0;
+        }
+    }
+
+    public long getTagCount() {
+        return lastFrameId;
+    }
+
+    public long getEchoCount() {
+        return echoCount;
+    }
+
+    public long getInvalidEchoCount() {
+        return invalidEchoCount;
+    }
+
+    /**
+     * Reads an integer field of a flat JSON object, System.nanoTime() values may be negative
+     * @return the value, or 0 if the field is missing or not a number
+     */
+    static long longField(String json, String name) {
+        String key = "\"" + name + "\":";
+        int start = json.indexOf(key);
+        if (start < 0) {
+            return 0;
+        }
+        int i = start + key.length();
+        boolean negative = i < json.length() && json.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long value = 0;
+        for (int digits = 0; i < json.length() && digits < 19; i++, digits++) {
+            char c = json.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    @Override
+    public String toString() {
+        return "RoundTripTracer{" +
+                "tagCount=" + getTagCount() +
+                ", echoCount=" + echoCount +
+                ", invalidEchoCount=" + invalidEchoCount +
+                '}';
+    }
+}
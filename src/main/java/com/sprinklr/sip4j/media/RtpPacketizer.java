@@ -0,0 +1,120 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.MediaBufferPool;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+
+/**
+ * Re-frames raw audio returned by the bot, in chunks of any size, into RTP packets of rtpPayloadSize bytes with
+ * headers generated for the call: one SSRC, a sequence number incremented per packet and a timestamp advanced by
+ * the samples of each packet. Each payload byte is copied once, straight into a pooled packet buffer behind the
+ * space reserved for the header. A chunk which does not fill the last packet is carried over to the next chunk.
+ * Audio in the bot's codec and sample rate is accumulated at the bot's payload size, then resampled and encoded in
+ * place once the packet is complete.
+ * Not thread safe, owned by the thread receiving the bot's messages.
+ */
+public class RtpPacketizer {
+
+    private final MediaBufferPool pool;
+    private final RtpPacketView packetView = new RtpPacketView();
+    private final int payloadSize; //bytes of bot audio per packet
+    private final AudioTranscoder transcoder;
+    private final Resampler resampler;
+    private final int payloadType;
+    private final int samplesPerPacket;
+
+    private final int ssrc;
+    private int sequenceNumber;
+    private int timeStamp;
+    private boolean firstPacket = true;
+
+    private MediaBuffer pending; //packet being filled, null if none
+    private int pendingPayloadLength;
+
+    private volatile long packetCount = 0;
+
+    /**
+     * Creates the packetizer of a call
+     * @param agentConfig The configuration of the Agent, defines the payload size, payload type and timing of the packets
+     */
+    public RtpPacketizer(AgentConfig agentConfig) {
+        this.pool = MediaBufferPool.shared(agentConfig.getMediaBufferSize(), agentConfig.isRtpDirectBuffers());
+        this.transcoder = AudioTranscoder.create(agentConfig.getRtpCodec(), agentConfig.getBotCodec());
+        this.resampler = Resampler.create(agentConfig, false);
+        this.payloadSize = agentConfig.getBotPayloadSize();
+        this.payloadType = agentConfig.getRtpPayloadType();
+        this.samplesPerPacket = agentConfig.getRtpClockRate() * agentConfig.getRtpPtimeMs() / 1000;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.ssrc = random.nextInt();
+        this.sequenceNumber = random.nextInt(0x10000); //random initial values, RFC 3550 section 5.1
+        this.timeStamp = random.nextInt();
+    }
+
+    /**
+     * Slices a chunk of audio into packets and hands the complete packets over
+     * @param audio the remaining bytes of the buffer are the audio, the position is moved to the limit
+     * @param packetConsumer receives the complete packets, and owns them afterwards
+     */
+    public void packetize(ByteBuffer audio, Consumer<MediaBuffer> packetConsumer) {
+        while (audio.hasRemaining()) {
+            if (pending == null) {
+                pending = pool.acquire();
+                pendingPayloadLength = 0;
+            }
+            int chunkLength = Math.min(audio.remaining(), payloadSize - pendingPayloadLength);
+            ByteBuffer target = pending.getWritableBuffer();
+            target.position(RTP_HEADER_SIZE + pendingPayloadLength);
+            int limit = audio.limit();
+            audio.limit(audio.position() + chunkLength);
+            target.put(audio);
+            audio.limit(limit);
+            pendingPayloadLength += chunkLength;
+            if (pendingPayloadLength == payloadSize) {
+                packetConsumer.accept(completePending());
+            }
+        }
+    }
+
+    /**
+     * Releases the partially filled packet, if any
+     */
+    public void close() {
+        if (pending != null) {
+            pending.release();
+            pending = null;
+        }
+    }
+
+    private MediaBuffer completePending() {
+        MediaBuffer packet = pending;
+        pending = null;
+        packet.setLength(RTP_HEADER_SIZE + payloadSize);
+        packetView.wrap(packet).writeHeader(firstPacket, payloadType, sequenceNumber, timeStamp, ssrc);
+        if (resampler != null) {
+            resampler.process(packet);
+        }
+        if (transcoder != null) {
+            transcoder.encode(packet);
+        }
+        firstPacket = false;
+        sequenceNumber = (sequenceNumber + 1) & 0xFFFF;
+        timeStamp += samplesPerPacket;
+        packetCount++;
+        return packet;
+    }
+
+    public int getSsrc() {
+        return ssrc;
+    }
+
+    public long getPacketCount() {
+        return packetCount;
+    }
+}
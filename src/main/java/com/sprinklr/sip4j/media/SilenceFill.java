@@ -0,0 +1,31 @@
+package com.sprinklr.sip4j.media;
+
+/**
+ * Defines constants for what the Agent sends to Ozonetel while the bot has no audio to return
+ */
+public class SilenceFill {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private SilenceFill() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Nothing is sent, the RTP stream pauses until the bot returns audio
+     */
+    public static final String NONE = "NONE";
+
+    /**
+     * A packet of digital silence in the call's codec is sent every ptime, the stream stays continuous
+     */
+    public static final String SILENCE = "SILENCE";
+
+    /**
+     * RFC 3389 comfort noise: a silence insertion descriptor packet when the bot's audio stops, refreshed periodically,
+     * from which the carrier generates background noise
+     */
+    public static final String COMFORT_NOISE = "COMFORT_NOISE";
+
+}
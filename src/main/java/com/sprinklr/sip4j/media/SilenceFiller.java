@@ -0,0 +1,112 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+
+/**
+ * Generates the packets sent to Ozonetel in place of the bot's audio while the bot has nothing to say, so that the
+ * bot does not have to stream silence. The packet is built once and only its header is rewritten per use.
+ * Either a packet of digital silence every ptime, or an RFC 3389 silence insertion descriptor (SID) at the start of
+ * each silence period, repeated every COMFORT_NOISE_REFRESH_MS so the carrier does not time the stream out.
+ * The SID carries the noise level only, the carrier generates white noise at that level.
+ * Not thread safe, owned by the RTP sender of a call.
+ */
+public class SilenceFiller {
+
+    private static final int COMFORT_NOISE_REFRESH_MS = 200;
+
+    private final boolean comfortNoise;
+    private final int payloadType;
+    private final int refreshPackets;
+    private final MediaBuffer packet;
+    private final RtpPacketView packetView = new RtpPacketView();
+
+    private int silentPackets = 0; //packets since the bot's audio stopped
+
+    /**
+     * Creates the filler of a call
+     * @param agentConfig The configuration of the Agent, defines the codec, payload size and comfort noise parameters
+     * @return the filler, or null if the configured silence fill is NONE
+     */
+    public static SilenceFiller create(AgentConfig agentConfig) {
+        switch (agentConfig.getRtpSilenceFill()) {
+            case SilenceFill.NONE:
+                return null;
+            case SilenceFill.SILENCE:
+                return new SilenceFiller(agentConfig, false);
+            case SilenceFill.COMFORT_NOISE:
+                return new SilenceFiller(agentConfig, true);
+            default:
+                throw new IllegalArgumentException("Unknown silence fill " + agentConfig.getRtpSilenceFill());
+        }
+    }
+
+    private SilenceFiller(AgentConfig agentConfig, boolean comfortNoise) {
+        this.comfortNoise = comfortNoise;
+        this.refreshPackets = Math.max(1, COMFORT_NOISE_REFRESH_MS / Math.max(1, agentConfig.getRtpPtimeMs()));
+        byte[] payload;
+        if (comfortNoise) {
+            this.payloadType = agentConfig.getRtpComfortNoisePayloadType();
+            //noise level in -dBov, 0 to 127, RFC 3389 section 3.1
+            payload = new byte[]{(byte) Math.min(127, Math.max(0, -agentConfig.getRtpComfortNoiseLevelDb()))};
+        } else {
+            this.payloadType = agentConfig.getRtpPayloadType();
+            payload = new byte[agentConfig.getRtpPayloadSize()];
+            Arrays.fill(payload, silence(agentConfig.getRtpCodec()));
+        }
+        this.packet = MediaBuffer.wrap(ByteBuffer.allocate(RTP_HEADER_SIZE + payload.length));
+        ByteBuffer buffer = packet.getWritableBuffer();
+        buffer.position(RTP_HEADER_SIZE);
+        buffer.put(payload);
+        packet.setLength(RTP_HEADER_SIZE + payload.length);
+    }
+
+    /**
+     * Returns the packet to send for a ptime in which the bot had no audio
+     * @param sequenceNumber the sequence number the packet would have
+     * @param timeStamp the timestamp of the ptime
+     * @param ssrc the synchronisation source of the stream
+     * @return the packet, owned by the filler and valid until the next call, or null if nothing is to be sent
+     */
+    public MediaBuffer next(int sequenceNumber, int timeStamp, int ssrc) {
+        boolean due = !comfortNoise || silentPackets % refreshPackets == 0;
+        silentPackets++;
+        if (!due) {
+            return null;
+        }
+        packetView.wrap(packet).writeHeader(false, payloadType, sequenceNumber, timeStamp, ssrc);
+        return packet;
+    }
+
+    /**
+     * Called when the bot's audio resumes, the next silence period starts with a new SID
+     */
+    public void reset() {
+        silentPackets = 0;
+    }
+
+    /**
+     * Returns whether the bot's audio after the fill starts a new talkspurt, whose first packet has the marker bit
+     * @return true for comfort noise, false for silence which keeps the stream continuous
+     */
+    public boolean isDiscontinuous() {
+        return comfortNoise;
+    }
+
+    private static byte silence(String codec) {
+        switch (codec) {
+            case AudioCodec.PCMU:
+                return G711.linearToUlaw((short) 0);
+            case AudioCodec.PCMA:
+                return G711.linearToAlaw((short) 0);
+            default:
+                return 0; //L16
+        }
+    }
+}
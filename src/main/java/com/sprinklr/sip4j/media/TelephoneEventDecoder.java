@@ -0,0 +1,91 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+/**
+ * Recognises RFC 4733 telephone-event packets, i.e. DTMF digits sent in RTP, and reports each event once.
+ * All packets of an event, including the three retransmissions of its end packet, carry the timestamp of its start,
+ * so an event is new when its timestamp is later than that of the last event. The event is reported on its first packet,
+ * without waiting for its end, so that a menu selection reaches the bot as early as possible.
+ * Owned by a single thread, the counters may be read from any thread.
+ */
+public class TelephoneEventDecoder {
+
+    private static final String[] EVENT_NAMES = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "*", "#", "A", "B", "C", "D", "flash"};
+
+    private final int payloadType;
+    private final RtpPacketView packetView = new RtpPacketView();
+
+    private boolean started = false;
+    private int lastEventTimeStamp;
+
+    private volatile long eventCount = 0;
+    private volatile long repeatedCount = 0;
+    private volatile long unknownCount = 0;
+
+    /**
+     * Creates a decoder
+     * @param payloadType the payload type of telephone-event packets in the call, usually 101
+     */
+    public TelephoneEventDecoder(int payloadType) {
+        this.payloadType = payloadType;
+    }
+
+    /**
+     * Returns whether a packet carries a telephone event rather than audio
+     * @param packet the rtp packet
+     * @return true if the packet has the telephone-event payload type
+     */
+    public boolean isTelephoneEvent(MediaBuffer packet) {
+        return packetView.wrap(packet).isValid() && packetView.getPayloadType() == payloadType;
+    }
+
+    /**
+     * Decodes a telephone-event packet
+     * @param packet the rtp packet, left unchanged
+     * @return the digit, *, #, A to D or flash if the packet starts a new event, null if it belongs to an event
+     * already reported or is not a DTMF event
+     */
+    public String decode(MediaBuffer packet) {
+        if (!isTelephoneEvent(packet) || packetView.getPayloadLength() < 4) {
+            unknownCount++;
+            return null;
+        }
+        int timeStamp = packetView.getTimeStamp();
+        if (started && timeStamp - lastEventTimeStamp <= 0) {
+            repeatedCount++; //continuation, end retransmission or a late packet of an earlier event
+            return null;
+        }
+        started = true;
+        lastEventTimeStamp = timeStamp;
+        int event = packet.getBuffer().get(packetView.getPayloadOffset()) & 0xFF;
+        if (event >= EVENT_NAMES.length) {
+            unknownCount++;
+            return null;
+        }
+        eventCount++;
+        return EVENT_NAMES[event];
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getRepeatedCount() {
+        return repeatedCount;
+    }
+
+    public long getUnknownCount() {
+        return unknownCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TelephoneEventDecoder{" +
+                "eventCount=" + eventCount +
+                ", repeatedCount=" + repeatedCount +
+                ", unknownCount=" + unknownCount +
+                '}';
+    }
+}
@@ -0,0 +1,152 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Energy and zero-crossing voice activity detector, classifying the packets of a call one at a time.
+ * A packet is speech when its energy is above both the configured threshold and a margin over the tracked noise floor,
+ * or, for unvoiced sounds such as fricatives, a little below that with a high zero-crossing rate.
+ * Speech starts after START_PACKETS consecutive speech packets and ends once no speech packet has been seen for the
+ * hangover, so short pauses between words do not end it. Runs on G.711 or L16 payloads, one multiply-add per sample.
+ * Owned by a single thread, the counters may be read from any thread.
+ */
+public class VoiceActivityDetector {
+
+    private static final int START_PACKETS = 2; //a single loud packet, e.g. a click, does not start speech
+    private static final double NOISE_MARGIN_RATIO = 10; //speech is at least 10 dB above the noise floor
+    private static final double UNVOICED_ENERGY_RATIO = 0.25; //unvoiced speech may be 6 dB below the threshold
+    private static final double UNVOICED_ZERO_CROSSING_RATE = 0.3; //crossings per sample, voiced speech is well below
+    private static final double NOISE_FLOOR_ADAPTATION = 0.05; //per non speech packet, the floor rises slowly
+    private static final double SPEECH_NOISE_FLOOR_ADAPTATION = 0.001; //per speech packet, so steady loud noise ends up as noise
+    private static final double FULL_SCALE_ENERGY = 32768.0 * 32768.0;
+
+    private final short[] decodeTable; //null for L16
+    private final double thresholdEnergy; //mean square sample value
+    private final int hangoverPackets;
+    private final RtpPacketView packetView = new RtpPacketView();
+
+    private double noiseFloorEnergy;
+    private int speechRun = 0;
+    private int silenceRun = 0;
+    private volatile boolean speaking = false;
+
+    private volatile long speechPacketCount = 0;
+    private volatile long silencePacketCount = 0;
+    private volatile long segmentCount = 0;
+
+    /**
+     * Creates a detector
+     * @param codec the codec of the payloads, PCMU, PCMA or L16
+     * @param ptimeMs the duration of the audio carried by one packet
+     * @param thresholdDb the minimum energy of speech, in dB relative to full scale, e.g. -45
+     * @param hangoverMs the time speech continues after the last speech packet
+     */
+    public VoiceActivityDetector(String codec, int ptimeMs, int thresholdDb, int hangoverMs) {
+        switch (codec) {
+            case AudioCodec.PCMU:
+                this.decodeTable = G711.ULAW_TO_LINEAR;
+                break;
+            case AudioCodec.PCMA:
+                this.decodeTable = G711.ALAW_TO_LINEAR;
+                break;
+            case AudioCodec.L16:
+                this.decodeTable = null;
+                break;
+            default:
+                throw new IllegalArgumentException("Cannot detect voice activity in " + codec);
+        }
+        this.thresholdEnergy = FULL_SCALE_ENERGY * Math.pow(10, thresholdDb / 10.0);
+        this.noiseFloorEnergy = thresholdEnergy / NOISE_MARGIN_RATIO;
+        this.hangoverPackets = Math.max(0, hangoverMs / Math.max(1, ptimeMs));
+    }
+
+    /**
+     * Classifies the next packet of the call and updates the speech state
+     * @param packet the rtp packet, left unchanged
+     * @return true if the call is in speech after this packet, hangover included
+     */
+    public boolean process(MediaBuffer packet) {
+        if (isSpeechPacket(packet)) {
+            speechPacketCount++;
+            speechRun++;
+            silenceRun = 0;
+            if (!speaking && speechRun >= START_PACKETS) {
+                speaking = true;
+                segmentCount++;
+            }
+        } else {
+            silencePacketCount++;
+            speechRun = 0;
+            silenceRun++;
+            if (speaking && silenceRun > hangoverPackets) {
+                speaking = false;
+            }
+        }
+        return speaking;
+    }
+
+    private boolean isSpeechPacket(MediaBuffer packet) {
+        if (!packetView.wrap(packet).isValid()) {
+            return false;
+        }
+        int offset = packetView.getPayloadOffset();
+        int length = packetView.getPayloadLength();
+        int samples = decodeTable == null ? length / 2 : length;
+        if (samples == 0) {
+            return false;
+        }
+        long sumOfSquares = 0;
+        int zeroCrossings = 0;
+        int previous = 0;
+        ByteBuffer buffer = packet.getBuffer();
+        for (int i = 0; i < samples; i++) {
+            int sample = decodeTable == null ? buffer.getShort(offset + 2 * i) : decodeTable[buffer.get(offset + i) & 0xFF];
+            sumOfSquares += (long) sample * sample;
+            if ((sample ^ previous) < 0) {
+                zeroCrossings++;
+            }
+            previous = sample;
+        }
+        double energy = (double) sumOfSquares / samples;
+        double zeroCrossingRate = (double) zeroCrossings / samples;
+
+        double threshold = Math.max(thresholdEnergy, noiseFloorEnergy * NOISE_MARGIN_RATIO);
+        boolean speech = energy >= threshold
+                || (energy >= threshold * UNVOICED_ENERGY_RATIO && zeroCrossingRate >= UNVOICED_ZERO_CROSSING_RATE);
+        if (energy < noiseFloorEnergy) {
+            noiseFloorEnergy = energy; //falls at once to a quieter line
+        } else {
+            noiseFloorEnergy += (energy - noiseFloorEnergy) * (speech ? SPEECH_NOISE_FLOOR_ADAPTATION : NOISE_FLOOR_ADAPTATION);
+        }
+        return speech;
+    }
+
+    public boolean isSpeaking() {
+        return speaking;
+    }
+
+    public long getSpeechPacketCount() {
+        return speechPacketCount;
+    }
+
+    public long getSilencePacketCount() {
+        return silencePacketCount;
+    }
+
+    public long getSegmentCount() {
+        return segmentCount;
+    }
+
+    @Override
+    public String toString() {
+        return "VoiceActivityDetector{" +
+                "speaking=" + speaking +
+                ", speechPacketCount=" + speechPacketCount +
+                ", silencePacketCount=" + silencePacketCount +
+                ", segmentCount=" + segmentCount +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+package com.sprinklr.sip4j.metrics;
+
+/**
+ * Latency histograms and throughput counters of the media path of an Agent.
+ * Latencies are measured from the time stamped on each MediaBuffer when the packet enters the Agent:
+ * <ul>
+ *     <li>inboundQueue: UDP receive to the Agent's media loop</li>
+ *     <li>inboundTotal: UDP receive to the websocket send, jitter buffer hold included</li>
+ *     <li>outboundProcessing: websocket message to the outbound queue, transcoding and packetizing included</li>
+ *     <li>outboundTotal: websocket message to the UDP send, pacing included</li>
+ * </ul>
+ * With trace tags enabled, see RoundTripTracer, the turns of the conversation are measured as well:
+ * <ul>
+ *     <li>botProcessing: trace tag sent to its echo received from the bot, websocket transit included</li>
+ *     <li>responseLatency: UDP receive of the caller's audio to the UDP send of the first packet of the bot's response</li>
+ * </ul>
+ */
+public class AgentMetrics {
+
+    private final String name;
+    private final LatencyHistogram inboundQueue = new LatencyHistogram();
+    private final LatencyHistogram inboundTotal = new LatencyHistogram();
+    private final LatencyHistogram outboundProcessing = new LatencyHistogram();
+    private final LatencyHistogram outboundTotal = new LatencyHistogram();
+    private final LatencyHistogram botProcessing = new LatencyHistogram();
+    private final LatencyHistogram responseLatency = new LatencyHistogram();
+    private final ThroughputCounter fromCarrier = new ThroughputCounter();
+    private final ThroughputCounter toBot = new ThroughputCounter();
+    private final ThroughputCounter fromBot = new ThroughputCounter();
+    private final ThroughputCounter toCarrier = new ThroughputCounter();
+
+    public AgentMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Computes the throughput rates since the previous update
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    void updateRates(long nowNanos) {
+        fromCarrier.updateRates(nowNanos);
+        toBot.updateRates(nowNanos);
+        fromBot.updateRates(nowNanos);
+        toCarrier.updateRates(nowNanos);
+    }
+
+    /**
+     * Adds the metrics of another Agent to these ones
+     * @param other the metrics to add
+     * @param withRates whether to add the throughput rates as well, false for an Agent which has finished
+     */
+    void add(AgentMetrics other, boolean withRates) {
+        inboundQueue.add(other.inboundQueue);
+        inboundTotal.add(other.inboundTotal);
+        outboundProcessing.add(other.outboundProcessing);
+        outboundTotal.add(other.outboundTotal);
+        botProcessing.add(other.botProcessing);
+        responseLatency.add(other.responseLatency);
+        fromCarrier.add(other.fromCarrier, withRates);
+        toBot.add(other.toBot, withRates);
+        fromBot.add(other.fromBot, withRates);
+        toCarrier.add(other.toCarrier, withRates);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getInboundQueue() {
+        return inboundQueue;
+    }
+
+    public LatencyHistogram getInboundTotal() {
+        return inboundTotal;
+    }
+
+    public LatencyHistogram getOutboundProcessing() {
+        return outboundProcessing;
+    }
+
+    public LatencyHistogram getOutboundTotal() {
+        return outboundTotal;
+    }
+
+    public LatencyHistogram getBotProcessing() {
+        return botProcessing;
+    }
+
+    public LatencyHistogram getResponseLatency() {
+        return responseLatency;
+    }
+
+    public ThroughputCounter getFromCarrier() {
+        return fromCarrier;
+    }
+
+    public ThroughputCounter getToBot() {
+        return toBot;
+    }
+
+    public ThroughputCounter getFromBot() {
+        return fromBot;
+    }
+
+    public ThroughputCounter getToCarrier() {
+        return toCarrier;
+    }
+
+    @Override
+    public String toString() {
+        return "AgentMetrics{" +
+                "name='" + name + '\'' +
+                ", inboundQueue=" + inboundQueue +
+                ", inboundTotal=" + inboundTotal +
+                ", outboundProcessing=" + outboundProcessing +
+                ", outboundTotal=" + outboundTotal +
+                ", botProcessing=" + botProcessing +
+                ", responseLatency=" + responseLatency +
+                ", fromCarrier=" + fromCarrier +
+                ", toBot=" + toBot +
+                ", fromBot=" + fromBot +
+                ", toCarrier=" + toCarrier +
+                '}';
+    }
+}
@@ -0,0 +1,127 @@
+package com.sprinklr.sip4j.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram: values are kept in microseconds,
+ * exactly below 16µs and with 16 linear sub-buckets per power of two above, so any recorded value is known within 6.25%.
+ * Covers up to about 19 hours in 544 buckets. Recording is one atomic increment per value and never allocates, so it
+ * can be called from any media thread. Percentiles are computed when read.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency
+     * @param nanos the latency, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            //retry until the maximum is ours or larger
+        }
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this one, e.g. to aggregate the histograms of all Agents
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = other.counts.get(i);
+            if (bucketCount != 0) {
+                counts.addAndGet(i, bucketCount);
+            }
+        }
+        count.addAndGet(other.count.get());
+        totalMicros.addAndGet(other.totalMicros.get());
+        long otherMax = other.maxMicros.get();
+        long max;
+        while (otherMax > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, otherMax)) {
+            //retry until the maximum is ours or larger
+        }
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(micros));
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value of a bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Returns the value below which a percentage of the recorded values fall
+     * @param percentile the percentage, e.g. 99.9
+     * @return the value in microseconds, at most 6.25% above the exact percentile, 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMicros() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) totalMicros.get() / total;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "count=" + getCount() +
+                ", meanUs=" + Math.round(getMeanMicros()) +
+                ", p50Us=" + getPercentileMicros(50) +
+                ", p90Us=" + getPercentileMicros(90) +
+                ", p99Us=" + getPercentileMicros(99) +
+                ", p999Us=" + getPercentileMicros(99.9) +
+                ", maxUs=" + getMaxMicros() +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+package com.sprinklr.sip4j.metrics;
+
+import com.sprinklr.sip4j.media.MediaClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node wide registry of the metrics of all Agents. Updates the throughput rates of every Agent once per second from the
+ * MediaClock and aggregates the metrics of the node on demand. The totals and histograms of Agents which have finished
+ * remain in the node's aggregate.
+ */
+public class MediaMetrics {
+
+    private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<AgentMetrics> agentMetrics = new CopyOnWriteArrayList<>();
+    private final AgentMetrics finishedAgents = new AgentMetrics("finished");
+
+    /**
+     * Lazily created registry shared by all Agents of the node
+     */
+    private static class DefaultMetricsHolder {
+        private static final MediaMetrics DEFAULT_METRICS = new MediaMetrics(MediaClock.getDefault());
+    }
+
+    /**
+     * Creates a registry
+     * @param mediaClock the clock which updates the throughput rates
+     */
+    public MediaMetrics(MediaClock mediaClock) {
+        mediaClock.schedule(this::updateRates, RATE_INTERVAL_NANOS);
+    }
+
+    /**
+     * Returns the registry shared by all Agents of the node
+     * @return the default registry
+     */
+    public static MediaMetrics getDefault() {
+        return DefaultMetricsHolder.DEFAULT_METRICS;
+    }
+
+    /**
+     * Adds the metrics of an Agent which is starting
+     * @param metrics the metrics of the Agent
+     */
+    public void register(AgentMetrics metrics) {
+        agentMetrics.add(metrics);
+    }
+
+    /**
+     * Removes the metrics of an Agent which has finished, its totals are kept in the node's aggregate
+     * @param metrics the metrics of the Agent
+     */
+    public void unregister(AgentMetrics metrics) {
+        if (agentMetrics.remove(metrics)) {
+            synchronized (finishedAgents) {
+                finishedAgents.add(metrics, false);
+            }
+        }
+    }
+
+    private void updateRates(long nowNanos) {
+        for (AgentMetrics metrics : agentMetrics) {
+            metrics.updateRates(nowNanos);
+        }
+    }
+
+    /**
+     * Returns the metrics of the Agents which are running
+     * @return the metrics of each Agent
+     */
+    public List<AgentMetrics> getAgentMetrics() {
+        return new ArrayList<>(agentMetrics);
+    }
+
+    /**
+     * Aggregates the metrics of all Agents, running or finished. The rates are those of the running Agents.
+     * @return a snapshot of the node's metrics
+     */
+    public AgentMetrics getNodeMetrics() {
+        AgentMetrics node = new AgentMetrics("node");
+        synchronized (finishedAgents) {
+            node.add(finishedAgents, false);
+        }
+        for (AgentMetrics metrics : agentMetrics) {
+            node.add(metrics, true);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,88 @@
+package com.sprinklr.sip4j.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free count of the packets and bytes passing a point of the media path, with the rates over the last second.
+ * The rates are updated once per second by MediaMetrics, readers never reset anything.
+ */
+public class ThroughputCounter {
+
+    private final AtomicLong packets = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    //rate state, only accessed by the thread updating the rates
+    private long previousPackets;
+    private long previousBytes;
+    private long previousNanos;
+
+    private volatile double packetsPerSecond;
+    private volatile double bytesPerSecond;
+
+    /**
+     * Counts a packet
+     * @param length the length of the packet in bytes
+     */
+    public void add(int length) {
+        packets.incrementAndGet();
+        bytes.addAndGet(length);
+    }
+
+    /**
+     * Computes the rates since the previous update
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    void updateRates(long nowNanos) {
+        long currentPackets = packets.get();
+        long currentBytes = bytes.get();
+        if (previousNanos != 0 && nowNanos > previousNanos) {
+            double seconds = (double) (nowNanos - previousNanos) / TimeUnit.SECONDS.toNanos(1);
+            packetsPerSecond = (currentPackets - previousPackets) / seconds;
+            bytesPerSecond = (currentBytes - previousBytes) / seconds;
+        }
+        previousPackets = currentPackets;
+        previousBytes = currentBytes;
+        previousNanos = nowNanos;
+    }
+
+    /**
+     * Adds the totals of another counter to this one, e.g. to aggregate the counters of all Agents
+     * @param other the counter to add
+     * @param withRates whether to add the rates as well, false for the counters of Agents which have finished
+     */
+    void add(ThroughputCounter other, boolean withRates) {
+        packets.addAndGet(other.packets.get());
+        bytes.addAndGet(other.bytes.get());
+        if (withRates) {
+            packetsPerSecond += other.packetsPerSecond;
+            bytesPerSecond += other.bytesPerSecond;
+        }
+    }
+
+    public long getPackets() {
+        return packets.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public double getPacketsPerSecond() {
+        return packetsPerSecond;
+    }
+
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "packets=" + getPackets() +
+                ", bytes=" + getBytes() +
+                ", packetsPerSecond=" + Math.round(packetsPerSecond) +
+                ", bytesPerSecond=" + Math.round(bytesPerSecond) +
+                '}';
+    }
+}
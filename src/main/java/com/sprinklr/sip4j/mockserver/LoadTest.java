@@ -0,0 +1,324 @@
+package com.sprinklr.sip4j.mockserver;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.metrics.LatencyHistogram;
+import com.sprinklr.sip4j.metrics.MediaMetrics;
+import com.sprinklr.sip4j.rtp.RtpReceiverMode;
+import com.sprinklr.sip4j.rtp.RtpSenderMode;
+import com.sprinklr.sip4j.sip.SipStackMode;
+import com.sprinklr.sip4j.utils.ThreadModes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import javax.sip.ListeningPoint;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process load test of a node. Starts one mock bot, then ramps up simulated calls, each one a mock carrier calling
+ * its own Agent over loopback, holds them for a soak period and reports what the node sustained. Run with e.g.
+ * mvn compile exec:java -Dexec.mainClass=com.sprinklr.sip4j.mockserver.LoadTest -Dexec.args="calls=50 soakSeconds=120"
+ * The CPU and GC figures are of the whole JVM, and so include the mock carriers and bot.
+ */
+public class LoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+    private static final int SETUP_TIMEOUT_MS = 30_000; //for the calls to be up once the ramp is over
+    private static final int HANGUP_TIMEOUT_MS = 10_000;
+    private static final int ADVANCE_INTERVAL_MS = 50;
+
+    private final LoadTestConfig config;
+    private final List<SimulatedCall> calls = new CopyOnWriteArrayList<>();
+    private final Queue<SimulatedCall> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final ExecutorService agentExecutor;
+    private final ScheduledExecutorService senderExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(1500); //sender thread
+    private volatile LatencyHistogram roundTrip = new LatencyHistogram();
+    private volatile boolean running = true;
+    private Selector selector;
+
+    public LoadTest(LoadTestConfig config) {
+        this.config = config;
+        this.agentExecutor = ThreadModes.VIRTUAL.equals(config.getThreadMode())
+                ? ThreadModes.newExecutor(ThreadModes.VIRTUAL, 0) : Executors.newCachedThreadPool();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromArgs(args);
+        LOGGER.info("Starting load test {}", config);
+        String report = new LoadTest(config).run();
+        LOGGER.info("Load test result\n{}", report);
+        System.exit(0); //the agents' and stacks' threads are not all daemons
+    }
+
+    /**
+     * Runs the load test: ramp, soak and hang up
+     * @return the report of the soak
+     * @throws IOException if the ports of the load test cannot be opened
+     * @throws InterruptedException if interrupted
+     */
+    public String run() throws IOException, InterruptedException {
+        WsBot bot = new WsBot(new InetSocketAddress(config.getHost(), config.getBotPort()), false);
+        bot.setReuseAddr(true);
+        bot.start();
+        selector = Selector.open();
+        Thread receiver = new Thread(this::receive, "LoadTest-receiver");
+        receiver.start();
+        try {
+            AgentConfig template = createAgentConfig(0);
+            int ptimeMs = template.getRtpPtimeMs();
+            senderExecutor.scheduleAtFixedRate(this::sendAll, ptimeMs, ptimeMs, TimeUnit.MILLISECONDS);
+
+            int connected = ramp();
+            LOGGER.info("{} of {} calls up, soaking for {}s", connected, config.getCalls(), config.getSoakSeconds());
+            return soak(connected);
+        } finally {
+            hangUp();
+            running = false;
+            selector.wakeup();
+            receiver.join(HANGUP_TIMEOUT_MS);
+            senderExecutor.shutdownNow();
+            for (SimulatedCall call : calls) {
+                call.close();
+            }
+            selector.close();
+            bot.stop();
+        }
+    }
+
+    /**
+     * Starts the calls at the configured rate, then waits for all of them to be up
+     * @return the number of calls which are up
+     */
+    private int ramp() throws IOException, InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, config.getRampCallsPerSecond());
+        long nextStart = System.nanoTime();
+        for (int i = 0; i < config.getCalls(); i++) {
+            SimulatedCall call = new SimulatedCall(i, config, createAgentConfig(i));
+            call.startCarrier();
+            calls.add(call);
+            pendingChannels.add(call);
+            selector.wakeup();
+            agentExecutor.execute(call.getAgent());
+
+            nextStart += intervalNanos;
+            while (System.nanoTime() < nextStart) {
+                advanceAll();
+                Thread.sleep(Math.min(ADVANCE_INTERVAL_MS, Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextStart - System.nanoTime()))));
+            }
+        }
+        long deadline = System.currentTimeMillis() + SETUP_TIMEOUT_MS;
+        int connected = advanceAll();
+        while (connected < calls.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(ADVANCE_INTERVAL_MS);
+            connected = advanceAll();
+        }
+        return connected;
+    }
+
+    private int advanceAll() {
+        int connected = 0;
+        for (SimulatedCall call : calls) {
+            if (call.advance()) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    private String soak(int connected) throws InterruptedException {
+        List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        long[] sentBefore = new long[calls.size()];
+        long[] receivedBefore = new long[calls.size()];
+        for (int i = 0; i < calls.size(); i++) {
+            sentBefore[i] = calls.get(i).getSentCount();
+            receivedBefore[i] = calls.get(i).getReceivedCount();
+        }
+        LatencyHistogram soakRoundTrip = new LatencyHistogram();
+        roundTrip = soakRoundTrip;
+        long cpuBefore = getProcessCpuNanos();
+        long gcCountBefore = getGcCount(gcBeans);
+        long gcTimeBefore = getGcTimeMs(gcBeans);
+        long start = System.nanoTime();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.getSoakSeconds()));
+
+        long elapsedNanos = System.nanoTime() - start;
+        long cpuNanos = getProcessCpuNanos() - cpuBefore;
+        long gcCount = getGcCount(gcBeans) - gcCountBefore;
+        long gcTimeMs = getGcTimeMs(gcBeans) - gcTimeBefore;
+        int sustained = 0;
+        long sent = 0;
+        long received = 0;
+        for (int i = 0; i < calls.size(); i++) {
+            long callSent = calls.get(i).getSentCount() - sentBefore[i];
+            long callReceived = calls.get(i).getReceivedCount() - receivedBefore[i];
+            sent += callSent;
+            received += callReceived;
+            if (callSent > 0 && lossPercent(callSent, callReceived) <= config.getMaxLossPercent()) {
+                sustained++;
+            }
+        }
+        double cpuPercentPerCall = sustained == 0 || cpuNanos < 0 ? 0 : 100.0 * cpuNanos / elapsedNanos / sustained;
+
+        return "calls=" + config.getCalls() +
+                ", connected=" + connected +
+                ", sustained=" + sustained +
+                ", soakSeconds=" + config.getSoakSeconds() +
+                ", processors=" + Runtime.getRuntime().availableProcessors() + '\n' +
+                "packets sent=" + sent +
+                ", received=" + received +
+                ", lossPercent=" + String.format("%.2f", sent == 0 ? 0 : lossPercent(sent, received)) + '\n' +
+                "cpuPercentPerCall=" + String.format("%.2f", cpuPercentPerCall) +
+                ", cpuPercentTotal=" + String.format("%.1f", cpuNanos < 0 ? 0 : 100.0 * cpuNanos / elapsedNanos) + '\n' +
+                "gcCount=" + gcCount +
+                ", gcTimeMs=" + gcTimeMs +
+                ", heapUsedMb=" + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024) +
+                ", platformThreads=" + ManagementFactory.getThreadMXBean().getThreadCount() + '\n' +
+                "roundTrip=" + soakRoundTrip + '\n' +
+                "node=" + MediaMetrics.getDefault().getNodeMetrics();
+    }
+
+    private static double lossPercent(long sent, long received) {
+        return Math.max(0, 100.0 * (sent - received) / sent);
+    }
+
+    private void hangUp() throws InterruptedException {
+        for (SimulatedCall call : calls) {
+            call.hangUp();
+        }
+        agentExecutor.shutdown();
+        if (!agentExecutor.awaitTermination(HANGUP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            LOGGER.warn("Agents still running {}ms after the BYEs", HANGUP_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Sends one packet of every call whose audio is started, once per ptime
+     */
+    private void sendAll() {
+        for (SimulatedCall call : calls) {
+            try {
+                call.sendPacket(sendBuffer);
+            } catch (IOException e) {
+                LOGGER.error("IOException in load test sender: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Receives the packets of all calls, on a single selector thread
+     */
+    private void receive() {
+        ByteBuffer packet = ByteBuffer.allocate(1500);
+        try {
+            while (running) {
+                SimulatedCall pending;
+                while ((pending = pendingChannels.poll()) != null) {
+                    pending.getChannel().register(selector, SelectionKey.OP_READ, pending);
+                }
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    SimulatedCall call = (SimulatedCall) key.attachment();
+                    DatagramChannel channel = (DatagramChannel) key.channel();
+                    packet.clear();
+                    while (channel.receive(packet) != null) {
+                        packet.flip();
+                        call.onPacket(packet, System.nanoTime(), roundTrip);
+                        packet.clear();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                LOGGER.error("IOException in load test receiver: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Creates the configuration of the Agent of call i, from the template if one is given. Its SIP and RTP ports, and
+     * the registrar, bot, thread mode and SIP stack mode it uses, are always those of the load test.
+     */
+    private AgentConfig createAgentConfig(int index) throws IOException {
+        AgentConfig agentConfig;
+        if (config.getAgentTemplate() != null) {
+            try (InputStream ymlStream = Files.newInputStream(Paths.get(config.getAgentTemplate()))) {
+                agentConfig = new Yaml().loadAs(ymlStream, AgentConfig.class);
+            }
+        } else {
+            agentConfig = new AgentConfig();
+            agentConfig.setTransportMode(ListeningPoint.UDP);
+            agentConfig.setPassword("password12345");
+            agentConfig.setSipLocalRealm("sprinklr.com");
+            agentConfig.setSipRegisterExpiryTimeSec(3600);
+            agentConfig.setRtpAddressType("IP4");
+            agentConfig.setRtpNetworkType("IN");
+            agentConfig.setRtpPayloadSize(160);
+            agentConfig.setRtpReceiverMode(RtpReceiverMode.SELECTOR);
+            agentConfig.setRtpSenderMode(RtpSenderMode.PACED);
+        }
+        String host = config.getHost();
+        agentConfig.setAgentName("LoadAgent_" + index);
+        agentConfig.setSipLocalUsername("agent" + index);
+        agentConfig.setSipLocalDisplayName("Agent " + index);
+        agentConfig.setSipLocalIp(host);
+        boolean sharedStack = SipStackMode.SHARED.equals(config.getSipStackMode());
+        agentConfig.setSipLocalPort(sharedStack ? config.getAgentSipBasePort() : config.getAgentSipBasePort() + index);
+        agentConfig.setSipStackMode(config.getSipStackMode());
+        agentConfig.setSipRegistrarIp(host);
+        agentConfig.setSipRegistrarPort(config.getCarrierSipBasePort() + index);
+        agentConfig.setRtpLocalIp(host);
+        agentConfig.setRtpLocalPort(config.getAgentRtpBasePort() + 2 * index);
+        agentConfig.setWsServerUri("ws://" + host + ":" + config.getBotPort());
+        agentConfig.setThreadMode(config.getThreadMode());
+        return agentConfig;
+    }
+
+    private static long getProcessCpuNanos() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static long getGcCount(List<GarbageCollectorMXBean> gcBeans) {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            count += Math.max(0, gcBean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcTimeMs(List<GarbageCollectorMXBean> gcBeans) {
+        long time = 0;
+        for (GarbageCollectorMXBean gcBean : gcBeans) {
+            time += Math.max(0, gcBean.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,161 @@
+package com.sprinklr.sip4j.mockserver;
+
+import com.sprinklr.sip4j.sip.SipStackMode;
+import com.sprinklr.sip4j.utils.ThreadModes;
+
+/**
+ * Parameters of the load test, given as key=value arguments, e.g. calls=50 rampCallsPerSecond=10 soakSeconds=120.
+ * Each simulated call i uses the SIP port carrierSipBasePort+i and the RTP port carrierRtpBasePort+2i on the carrier's
+ * side, and agentSipBasePort+i and agentRtpBasePort+2i on the Agent's side, the port above each RTP port being left
+ * for RTCP. With sipStackMode SHARED all Agents listen on agentSipBasePort.
+ */
+public class LoadTestConfig {
+
+    private int calls = 10;
+    private int rampCallsPerSecond = 5;
+    private int soakSeconds = 60;
+    private double maxLossPercent = 5; //a call losing more of its echoed audio during the soak is not sustained
+    private String host = "127.0.0.1";
+    private int botPort = 18887;
+    private int carrierSipBasePort = 16000;
+    private int agentSipBasePort = 17000;
+    private int carrierRtpBasePort = 30000;
+    private int agentRtpBasePort = 40000;
+    private String agentTemplate; //yaml AgentConfig whose media options the Agents use, null for the defaults
+    private String threadMode = ThreadModes.PLATFORM; //of the Agents and of the threads running them
+    private String sipStackMode = SipStackMode.AGENT; //of the Agents
+
+    /**
+     * Reads the parameters
+     * @param args key=value pairs, any parameter not given keeps its default
+     * @return the parameters
+     */
+    public static LoadTestConfig fromArgs(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, found " + arg);
+            }
+            config.set(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return config;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "calls":
+                calls = Integer.parseInt(value);
+                break;
+            case "rampCallsPerSecond":
+                rampCallsPerSecond = Integer.parseInt(value);
+                break;
+            case "soakSeconds":
+                soakSeconds = Integer.parseInt(value);
+                break;
+            case "maxLossPercent":
+                maxLossPercent = Double.parseDouble(value);
+                break;
+            case "host":
+                host = value;
+                break;
+            case "botPort":
+                botPort = Integer.parseInt(value);
+                break;
+            case "carrierSipBasePort":
+                carrierSipBasePort = Integer.parseInt(value);
+                break;
+            case "agentSipBasePort":
+                agentSipBasePort = Integer.parseInt(value);
+                break;
+            case "carrierRtpBasePort":
+                carrierRtpBasePort = Integer.parseInt(value);
+                break;
+            case "agentRtpBasePort":
+                agentRtpBasePort = Integer.parseInt(value);
+                break;
+            case "agentTemplate":
+                agentTemplate = value;
+                break;
+            case "threadMode":
+                threadMode = value;
+                break;
+            case "sipStackMode":
+                sipStackMode = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown load test parameter " + key);
+        }
+    }
+
+    public int getCalls() {
+        return calls;
+    }
+
+    public int getRampCallsPerSecond() {
+        return rampCallsPerSecond;
+    }
+
+    public int getSoakSeconds() {
+        return soakSeconds;
+    }
+
+    public double getMaxLossPercent() {
+        return maxLossPercent;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getBotPort() {
+        return botPort;
+    }
+
+    public int getCarrierSipBasePort() {
+        return carrierSipBasePort;
+    }
+
+    public int getAgentSipBasePort() {
+        return agentSipBasePort;
+    }
+
+    public int getCarrierRtpBasePort() {
+        return carrierRtpBasePort;
+    }
+
+    public int getAgentRtpBasePort() {
+        return agentRtpBasePort;
+    }
+
+    public String getAgentTemplate() {
+        return agentTemplate;
+    }
+
+    public String getThreadMode() {
+        return threadMode;
+    }
+
+    public String getSipStackMode() {
+        return sipStackMode;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadTestConfig{" +
+                "calls=" + calls +
+                ", rampCallsPerSecond=" + rampCallsPerSecond +
+                ", soakSeconds=" + soakSeconds +
+                ", maxLossPercent=" + maxLossPercent +
+                ", host='" + host + '\'' +
+                ", botPort=" + botPort +
+                ", carrierSipBasePort=" + carrierSipBasePort +
+                ", agentSipBasePort=" + agentSipBasePort +
+                ", carrierRtpBasePort=" + carrierRtpBasePort +
+                ", agentRtpBasePort=" + agentRtpBasePort +
+                ", agentTemplate='" + agentTemplate + '\'' +
+                ", threadMode='" + threadMode + '\'' +
+                ", sipStackMode='" + sipStackMode + '\'' +
+                '}';
+    }
+}
@@ -1,6 +1,6 @@
 package com.sprinklr.sip4j.mockserver;
 
-import com.sprinklr.sip4j.rtp.RtpPacket;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
 import com.sprinklr.sip4j.utils.AudioHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +35,36 @@ public class RtpOzonetelReceiver {
     Hardcoded values end
      */
     private final List<byte[]> storeRecv = new ArrayList<>();
+    private final String rtpIp;
+    private final String audioFile;
     private boolean exit = false;
 
+    public RtpOzonetelReceiver() {
+        this(RTP_REMOTE_IP, WRITE_AUDIO_FILE);
+    }
+
+    /**
+     * Creates the receiver of one stream
+     * @param rtpIp the address sent in the INVITE SDP, on which the Agent's audio is received
+     * @param audioFile the file the received audio is written to
+     */
+    public RtpOzonetelReceiver(String rtpIp, String audioFile) {
+        this.rtpIp = rtpIp;
+        this.audioFile = audioFile;
+    }
+
     public static void main(String[] args) throws IOException, UnsupportedAudioFileException {
+        //optional arguments: ip port audioFile
+        if (args.length >= 3) {
+            new RtpOzonetelReceiver(args[0], args[2]).run(Integer.parseInt(args[1]));
+            return;
+        }
         new RtpOzonetelReceiver().run(RTP_REMOTE_PORT);
     }
 
     public void run(int port) throws IOException, UnsupportedAudioFileException {
         try (DatagramSocket serverSocket = new DatagramSocket(port)) {
-            InetAddress inetAddress = InetAddress.getByName(RTP_REMOTE_IP);
+            InetAddress inetAddress = InetAddress.getByName(rtpIp);
 
             LOGGER.info("Listening on udp:{}:{}", inetAddress, port);
             serverSocket.setSoTimeout(5000); //shutdown after 5sec, not handled by us. This is Ozonetel's side, they should shut it down accordingly
@@ -54,18 +75,17 @@ public class RtpOzonetelReceiver {
         }
 
         LOGGER.info("Total size={}", storeRecv.size());
-        File outputFile = new File(WRITE_AUDIO_FILE);
+        File outputFile = new File(audioFile);
         ByteArrayOutputStream rawBuffer = new ByteArrayOutputStream();
+        RtpPacketView rtpPacket = new RtpPacketView();
         for (byte[] b : storeRecv) {
-            RtpPacket rtpPacket = new RtpPacket(b, RTP_PACKET_SIZE);
-            byte[] payload = new byte[RTP_PAYLOAD_SIZE];
-            rtpPacket.getPayload(payload);
-            rawBuffer.write(payload, 0, payload.length);
+            rtpPacket.wrap(b, 0, RTP_PACKET_SIZE);
+            rawBuffer.write(b, rtpPacket.getPayloadOffset(), rtpPacket.getPayloadLength());
         }
         rawBuffer.flush();
         rawBuffer.close();
         AudioHelper.generateFile(rawBuffer.toByteArray(), outputFile);
-        LOGGER.info("Audio saved to {}", WRITE_AUDIO_FILE);
+        LOGGER.info("Audio saved to {}", audioFile);
     }
 
     private void getBytes(DatagramSocket serverSocket) throws IOException {
@@ -1,6 +1,6 @@
 package com.sprinklr.sip4j.mockserver;
 
-import com.sprinklr.sip4j.rtp.RtpPacket;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,13 +32,33 @@ public class RtpOzonetelSender {
     Hardcoded values end
      */
 
+    private final String audioFile;
+    private final String rtpIp;
+    private final int rtpPort;
+
+    public RtpOzonetelSender() {
+        this(READ_AUDIO_FILE, RTP_LOCAL_IP, RTP_LOCAL_PORT);
+    }
+
+    /**
+     * Creates the sender of one stream
+     * @param audioFile the file whose bytes are sent as payloads
+     * @param rtpIp the address of the Agent's RTP receiver
+     * @param rtpPort the port of the Agent's RTP receiver
+     */
+    public RtpOzonetelSender(String audioFile, String rtpIp, int rtpPort) {
+        this.audioFile = audioFile;
+        this.rtpIp = rtpIp;
+        this.rtpPort = rtpPort;
+    }
+
     public void run() throws IOException {
-        File file = new File(READ_AUDIO_FILE);
+        File file = new File(audioFile);
 
         byte[] fileBytes = Files.readAllBytes(file.toPath());
         LOGGER.info("Data length {} ", fileBytes.length);
 
-        InetAddress address = InetAddress.getByName(RTP_LOCAL_IP);
+        InetAddress address = InetAddress.getByName(rtpIp);
         ByteBuffer audioBuffer = ByteBuffer.wrap(fileBytes);
 
         int cnt = 0; //start with random number in application
@@ -46,31 +66,31 @@ public class RtpOzonetelSender {
         int startTime = 0; //start with random number in application
 
         try (DatagramSocket datagramSocket = new DatagramSocket()) {
-            DatagramPacket packet;
-            RtpPacket rtpPacket;
-            byte[] rtpBytes;
-            byte[] audioChunkBytes;
+            //one packet buffer is reused for the whole stream, the header is written in place
+            byte[] rtpBytes = new byte[RTP_PACKET_SIZE];
+            RtpPacketView rtpPacket = new RtpPacketView().wrap(rtpBytes, 0, RTP_PACKET_SIZE);
+            DatagramPacket packet = new DatagramPacket(rtpBytes, RTP_PACKET_SIZE, address, rtpPort);
 
             while (audioBuffer.remaining() >= RTP_PAYLOAD_SIZE) {
                 cnt++;
 
-                audioChunkBytes = new byte[RTP_PAYLOAD_SIZE];
-                audioBuffer.get(audioChunkBytes, 0, RTP_PAYLOAD_SIZE);
+                audioBuffer.get(rtpBytes, RTP_HEADER_SIZE, RTP_PAYLOAD_SIZE);
+                rtpPacket.writeHeader(false, 65, cnt, startTime, ssrc);
 
-                rtpPacket = new RtpPacket(65, cnt, startTime, ssrc, 0, audioChunkBytes, RTP_PAYLOAD_SIZE);
-                rtpBytes = new byte[RTP_PACKET_SIZE];
-                rtpPacket.getPacket(rtpBytes);
-
-                packet = new DatagramPacket(rtpBytes, RTP_PACKET_SIZE, address, RTP_LOCAL_PORT);
                 datagramSocket.send(packet);
 
                 startTime += 1;
             }
-            LOGGER.info("Sent {} packets from Ozonetel from {}", cnt, READ_AUDIO_FILE);
+            LOGGER.info("Sent {} packets from Ozonetel from {}", cnt, audioFile);
         }
     }
 
     public static void main(String[] args) throws IOException {
+        //optional arguments: audioFile ip port
+        if (args.length >= 3) {
+            new RtpOzonetelSender(args[0], args[1], Integer.parseInt(args[2])).run();
+            return;
+        }
         new RtpOzonetelSender().run();
     }
 }
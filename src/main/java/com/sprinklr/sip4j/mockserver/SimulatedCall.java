@@ -0,0 +1,184 @@
+package com.sprinklr.sip4j.mockserver;
+
+import com.sprinklr.sip4j.agent.Agent;
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.metrics.LatencyHistogram;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import com.sprinklr.sip4j.sip.SipState;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+
+/**
+ * One call of the load test: a mock carrier which registers and calls an Agent, then streams audio to it on its own
+ * RTP port. The bot echoes the audio, so each packet comes back to the carrier through the Agent and the bot. The send
+ * time is written in the first 8 bytes of each payload, from which the round trip latency is measured.
+ * Packets are sent from the load test's sender thread and received on its receiver thread.
+ */
+public class SimulatedCall {
+
+    private static final int SEND_TIME_SIZE = 8;
+
+    private final Agent agent;
+    private final SipOzonetel carrier;
+    private final InetSocketAddress carrierRtpAddress;
+    private final InetSocketAddress agentRtpAddress;
+    private final int payloadType;
+    private final int samplesPerPacket;
+    private final byte[] silence;
+    private final RtpPacketView sentView = new RtpPacketView(); //sender thread
+    private final RtpPacketView receivedView = new RtpPacketView(); //receiver thread
+    private DatagramChannel channel;
+
+    //sender thread
+    private final int ssrc;
+    private int sequenceNumber;
+    private int timeStamp;
+
+    private volatile long sentCount = 0;
+    private volatile long receivedCount = 0;
+    private volatile boolean invited = false;
+    private volatile boolean media = false;
+    private volatile boolean hungUp = false;
+
+    /**
+     * Creates the call, nothing is started
+     * @param index the index of the call in the load test, selects its ports
+     * @param loadTestConfig the parameters of the load test
+     * @param agentConfig the configuration of the Agent which answers the call
+     */
+    public SimulatedCall(int index, LoadTestConfig loadTestConfig, AgentConfig agentConfig) {
+        String host = loadTestConfig.getHost();
+        int carrierRtpPort = loadTestConfig.getCarrierRtpBasePort() + 2 * index;
+        this.agent = new Agent(agentConfig);
+        this.carrier = new SipOzonetel("Ozonetel_" + index, host, loadTestConfig.getCarrierSipBasePort() + index,
+                host + ":" + agentConfig.getSipLocalPort(), host, carrierRtpPort);
+        this.carrierRtpAddress = new InetSocketAddress(host, carrierRtpPort);
+        this.agentRtpAddress = new InetSocketAddress(host, agentConfig.getRtpLocalPort());
+        this.payloadType = agentConfig.getRtpPayloadType();
+        this.samplesPerPacket = agentConfig.getRtpClockRate() * agentConfig.getRtpPtimeMs() / 1000;
+        this.silence = new byte[agentConfig.getRtpPayloadSize()];
+        Arrays.fill(silence, (byte) 0xFF); //PCMU silence, the send time is written over the start
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.ssrc = random.nextInt();
+        this.sequenceNumber = random.nextInt(0x10000);
+        this.timeStamp = random.nextInt();
+    }
+
+    /**
+     * Starts the carrier's registrar and opens its RTP port. The Agent is started after, it registers at once.
+     * @return the channel of the carrier's RTP port, in non blocking mode
+     * @throws IOException if the RTP port cannot be opened
+     */
+    public DatagramChannel startCarrier() throws IOException {
+        carrier.start();
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.bind(carrierRtpAddress);
+        return channel;
+    }
+
+    public DatagramChannel getChannel() {
+        return channel;
+    }
+
+    public Agent getAgent() {
+        return agent;
+    }
+
+    /**
+     * Moves the call on once the Agent is ready for it: sends the INVITE once the Agent has registered, and starts the
+     * audio once the call is up. Called periodically by the load test until it returns true.
+     * @return true once the audio is started
+     */
+    public boolean advance() {
+        if (!invited) {
+            if (SipState.REGISTERED.equals(agent.getState().getSipState())) {
+                invited = true;
+                carrier.sendInvite();
+            }
+        } else if (!media && carrier.isConfirmed() && SipState.CONNECTED.equals(agent.getState().getSipState())) {
+            media = true;
+        }
+        return media;
+    }
+
+    /**
+     * Sends the next packet of the call to the Agent, once per ptime
+     * @param packet a buffer large enough for one packet, overwritten
+     * @throws IOException if the packet cannot be sent
+     */
+    public void sendPacket(ByteBuffer packet) throws IOException {
+        if (!media || hungUp) {
+            return;
+        }
+        sequenceNumber = (sequenceNumber + 1) & 0xFFFF;
+        timeStamp += samplesPerPacket;
+        packet.clear();
+        packet.position(RTP_HEADER_SIZE);
+        packet.put(silence);
+        packet.putLong(RTP_HEADER_SIZE, System.nanoTime());
+        packet.flip();
+        sentView.wrap(packet, 0, packet.limit()).writeHeader(false, payloadType, sequenceNumber, timeStamp, ssrc);
+        if (channel.send(packet, agentRtpAddress) > 0) {
+            sentCount++;
+        }
+    }
+
+    /**
+     * Accounts for a packet received from the Agent
+     * @param packet the packet, from position 0 to its limit
+     * @param nowNanos the receive time, as per System.nanoTime()
+     * @param roundTrip the histogram the round trip latency is recorded in
+     */
+    public void onPacket(ByteBuffer packet, long nowNanos, LatencyHistogram roundTrip) {
+        receivedCount++;
+        RtpPacketView view = receivedView.wrap(packet, 0, packet.limit());
+        if (!view.isValid() || view.getPayloadLength() < SEND_TIME_SIZE) {
+            return;
+        }
+        long sentNanos = packet.getLong(view.getPayloadOffset());
+        long latencyNanos = nowNanos - sentNanos;
+        if (latencyNanos >= 0 && latencyNanos < 60_000_000_000L) { //not a packet of ours, e.g. a silence fill
+            roundTrip.record(latencyNanos);
+        }
+    }
+
+    /**
+     * Sends the BYE, which ends the Agent
+     */
+    public void hangUp() {
+        hungUp = true;
+        carrier.sendBye();
+    }
+
+    /**
+     * Closes the carrier's RTP port and stack
+     */
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            //closing, nothing else to do
+        }
+        if (!carrier.isShutdown()) {
+            carrier.shutDown();
+        }
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+}
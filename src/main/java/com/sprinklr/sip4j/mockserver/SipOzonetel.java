@@ -17,11 +17,34 @@ import java.util.Properties;
 /*
  * Mocks the sip entity on Ozonetel's end which sends INVITE requests and acts as UAC.
  * Also, mocks registrar server where local (Sprinklr's) UA is to be registered.
+ * Standalone it calls the Agent of agent1.yaml at once. The load test creates one per simulated call, and sends the
+ * INVITE once the Agent has registered.
  */
 public class SipOzonetel implements SipListener, Runnable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SipOzonetel.class);
 
+    /*
+    Hardcoded values of the standalone mock, will depend on Ozonetel, set here just to mimic actual flow
+     */
+    private static final String SIP_IP = "127.0.0.1";
+    private static final int SIP_PORT = 5060;
+    private static final String AGENT_HOST_PORT = "127.0.0.1:5070";
+    private static final String RTP_IP = "192.168.1.8";
+    private static final int RTP_PORT = 6024;
+    /*
+    Hardcoded values end
+     */
+
+    private final String stackName;
+    private final String sipIp;
+    private final int sipPort;
+    private final String peerHostPort;
+    private final String rtpIp;
+    private final int rtpPort;
+    private volatile boolean confirmed = false;
+    private volatile String registeredUser; //user of the Contact of the last REGISTER accepted, which the INVITE is sent to
+
     private SipProvider sipProvider;
 
     private AddressFactory addressFactory;
@@ -36,11 +59,38 @@ public class SipOzonetel implements SipListener, Runnable {
 
     private ListeningPoint udpListeningPoint;
 
+    private static final String TRANSPORT = "udp";
+
     private ClientTransaction inviteTid;
 
     private Dialog dialog;
 
-    boolean isShutdown = false;
+    volatile boolean isShutdown = false;
+
+    /**
+     * Creates the standalone mock, calling the Agent of agent1.yaml as soon as it starts
+     */
+    public SipOzonetel() {
+        this("Ozonetel", SIP_IP, SIP_PORT, AGENT_HOST_PORT, RTP_IP, RTP_PORT);
+    }
+
+    /**
+     * Creates a mock carrier for one call
+     * @param stackName the name of the SIP stack, unique in the JVM
+     * @param sipIp the address the registrar and caller listens on
+     * @param sipPort the port the registrar and caller listens on
+     * @param peerHostPort the host:port of the Agent which is called
+     * @param rtpIp the address the carrier receives the Agent's audio on, sent in the INVITE SDP
+     * @param rtpPort the port the carrier receives the Agent's audio on, sent in the INVITE SDP
+     */
+    public SipOzonetel(String stackName, String sipIp, int sipPort, String peerHostPort, String rtpIp, int rtpPort) {
+        this.stackName = stackName;
+        this.sipIp = sipIp;
+        this.sipPort = sipPort;
+        this.peerHostPort = peerHostPort;
+        this.rtpIp = rtpIp;
+        this.rtpPort = rtpPort;
+    }
 
     @Override
     public void run() {
@@ -48,7 +98,26 @@ public class SipOzonetel implements SipListener, Runnable {
     }
 
     public static void main(String[] args) {
-        new SipOzonetel().init();
+        SipOzonetel sipOzonetel = new SipOzonetel();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                sipOzonetel.sendBye();
+            }
+        });
+        sipOzonetel.init();
+    }
+
+    /**
+     * Returns whether the Agent has answered the INVITE and the ACK has been sent
+     * @return true once the call is up
+     */
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    public boolean isShutdown() {
+        return isShutdown;
     }
 
     public void sendBye() {
@@ -62,8 +131,26 @@ public class SipOzonetel implements SipListener, Runnable {
             dialog.sendRequest(ct);
             LOGGER.info("Ozonetel says BYE");
         } catch (Exception ex) {
-            ex.printStackTrace();
-            System.exit(0);
+            //logged rather than exiting, other calls of the load test share the JVM
+            LOGGER.error("Exception while sending BYE from {}: {}", stackName, ex.toString());
+        }
+    }
+
+    /**
+     * Cancels the INVITE. If the Agent has already answered, the call is then ended with a BYE
+     */
+    public void sendCancel() {
+        try {
+            if (inviteTid == null) {
+                LOGGER.warn("Null invite transaction for cancel");
+                return;
+            }
+            Request cancelRequest = inviteTid.createCancel();
+            ClientTransaction ct = sipProvider.getNewClientTransaction(cancelRequest);
+            ct.sendRequest();
+            LOGGER.info("Ozonetel says CANCEL");
+        } catch (Exception ex) {
+            LOGGER.error("Exception while sending CANCEL from {}: {}", stackName, ex.toString());
         }
     }
 
@@ -112,13 +199,16 @@ public class SipOzonetel implements SipListener, Runnable {
                 Response response = messageFactory.createResponse(Response.OK, request);
                 serverTransactionId.sendResponse(response);
                 LOGGER.info("client:  Sending OK.");
+                ContactHeader registeredContact = (ContactHeader) request.getHeader(ContactHeader.NAME);
+                if (registeredContact != null && registeredContact.getAddress().getURI() instanceof SipURI) {
+                    registeredUser = ((SipURI) registeredContact.getAddress().getURI()).getUser();
+                }
             }
 
             LOGGER.info("Dialog = {}", currDialog);
 
         } catch (Exception ex) {
-            ex.printStackTrace();
-            System.exit(0);
+            LOGGER.error("Exception while processing REGISTER in {}: {}", stackName, ex.toString());
         }
     }
 
@@ -157,6 +247,7 @@ public class SipOzonetel implements SipListener, Runnable {
                     ackRequest = dialog.createAck(((CSeqHeader) response.getHeader(CSeqHeader.NAME)).getSeqNumber());
                     LOGGER.info("Sending ACK");
                     dialog.sendAck(ackRequest);
+                    confirmed = true;
 
                 } else if (cseq.getMethod().equals(Request.CANCEL) && dialog.getState() == DialogState.CONFIRMED) {
                     // oops cancel went in too late. Need to hang up the dialog
@@ -167,7 +258,6 @@ public class SipOzonetel implements SipListener, Runnable {
             }
         } catch (InvalidArgumentException | SipException e) {
             LOGGER.error("Error while processing response in sip client {}", e.toString());
-            System.exit(0);
         }
     }
 
@@ -176,27 +266,28 @@ public class SipOzonetel implements SipListener, Runnable {
         LOGGER.info("Transaction Time out");
     }
 
+    /**
+     * Starts the stack and calls the Agent
+     */
     public void init() {
+        start();
+        sendInvite();
+    }
 
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            @Override
-            public void run() {
-                sendBye();
-            }
-        });
-
+    /**
+     * Starts the stack, which then answers the REGISTER requests of the Agent
+     */
+    public void start() {
         SipFactory sipFactory;
         sipStack = null;
         sipFactory = SipFactory.getInstance();
         sipFactory.setPathName("gov.nist");
         Properties properties = new Properties();
 
-        String transport = "udp";
-        String peerHostPort = "127.0.0.1:5070";
         properties.setProperty("javax.sip.OUTBOUND_PROXY", peerHostPort + "/"
-                + transport);
+                + TRANSPORT);
 
-        properties.setProperty("javax.sip.STACK_NAME", "Ozonetel");
+        properties.setProperty("javax.sip.STACK_NAME", stackName);
 
         // Drop the client connection after we are done with the transaction.
         properties.setProperty("gov.nist.javax.sip.CACHE_CLIENT_CONNECTIONS",
@@ -211,26 +302,36 @@ public class SipOzonetel implements SipListener, Runnable {
             // gov.nist.jain.protocol.ip.sip.SipStackImpl
             // in the classpath
             LOGGER.error("PeerUnavailableException in SipOzonetel , {}", e.toString());
-            System.exit(0);
+            return;
         }
 
         try {
             headerFactory = sipFactory.createHeaderFactory();
             addressFactory = sipFactory.createAddressFactory();
             messageFactory = sipFactory.createMessageFactory();
-            //Hardcoded host and port since it is just to mimic Ozonetel or the remote sip UA (remote w.r.t Sprinklr SIP UA which is local)
-            udpListeningPoint = sipStack.createListeningPoint("127.0.0.1", 5060, transport);
+            udpListeningPoint = sipStack.createListeningPoint(sipIp, sipPort, TRANSPORT);
             LOGGER.info("listeningPoint = {}", udpListeningPoint);
             sipProvider = sipStack.createSipProvider(udpListeningPoint);
             LOGGER.info("SipProvider = {}", sipProvider);
             sipProvider.addSipListener(this);
+        } catch (Exception ex) {
+            LOGGER.error("Exception while starting SipOzonetel {}: {}", stackName, ex.toString());
+        }
+    }
+
+    /**
+     * Sends the INVITE to the Agent
+     */
+    public void sendInvite() {
+        String transport = TRANSPORT;
+        try {
 
             String fromName = "Ozonetel";
             String fromSipAddress = "ozontel.com";
             String fromDisplayName = "Ozonetel Telecom";
 
             String toSipAddress = "sprinklr.com";
-            String toUser = "Souradeep";
+            String toUser = registeredUser != null ? registeredUser : "Souradeep"; //as a registrar would, calls the registered contact
             String toDisplayName = "Code it";
 
             // create >From Header
@@ -261,7 +362,7 @@ public class SipOzonetel implements SipListener, Runnable {
             String ipAddress = udpListeningPoint.getIPAddress();
             ViaHeader viaHeader = headerFactory.createViaHeader(ipAddress,
                     sipProvider.getListeningPoint(transport).getPort(),
-                    transport, "z9hG4bK" + "83783"); //z9hG4bK83783 is the branch, refer https://andrewjprokop.wordpress.com/2014/03/06/understanding-the-sip-via-header/
+                    transport, "z9hG4bK" + Long.toHexString(System.nanoTime())); //the branch, new for every INVITE so that a persistent Agent does not take the next call as a retransmission, refer https://andrewjprokop.wordpress.com/2014/03/06/understanding-the-sip-via-header/
 
             // add via headers
             viaHeaders.add(viaHeader);
@@ -286,7 +387,7 @@ public class SipOzonetel implements SipListener, Runnable {
                     Request.INVITE, callIdHeader, cSeqHeader, fromHeader,
                     toHeader, viaHeaders, maxForwards);
             // Create contact headers
-            String host = "127.0.0.1"; //hardcoded since this is not handled by us. Mimics a sip client
+            String host = sipIp;
 
             // Create the contact name address.
             SipURI contactURI = addressFactory.createSipURI(fromName, host);
@@ -309,13 +410,13 @@ public class SipOzonetel implements SipListener, Runnable {
             request.addHeader(extensionHeader);
 
             /*
-            Just a sample SDP message, to try and extract rtp port and host. Rtp Port is RTP_REMOTE_PORT=6024 and host is 192.168.1.8 as seen in the message
+            Just a sample SDP message, to try and extract rtp port and host
              */
             String sdpData = "v=0\r\n"
                     + "o=4855 13760799956958020 13760799956958020"
-                    + " IN IP4 192.168.1.8\r\n" + "s=mysession session\r\n"
-                    + "p=+46 8 52018010\r\n" + "c=IN IP4 192.168.1.8\r\n"
-                    + "t=0 0\r\n" + "m=audio 6024 RTP/AVP 0 4 18\r\n"
+                    + " IN IP4 " + rtpIp + "\r\n" + "s=mysession session\r\n"
+                    + "p=+46 8 52018010\r\n" + "c=IN IP4 " + rtpIp + "\r\n"
+                    + "t=0 0\r\n" + "m=audio " + rtpPort + " RTP/AVP 0 4 18\r\n"
                     + "a=rtpmap:0 PCMU/8000\r\n" + "a=rtpmap:4 G723/8000\r\n"
                     + "a=rtpmap:18 G729A/8000\r\n" + "a=ptime:20\r\n";
             byte[] contents = sdpData.getBytes();
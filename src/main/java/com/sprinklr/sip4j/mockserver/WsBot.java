@@ -25,8 +25,21 @@ public class WsBot extends WebSocketServer {
     Hardcoded values end
      */
 
+    private final boolean stopOnClose;
+
     public WsBot(InetSocketAddress address) {
+        this(address, true);
+    }
+
+    /**
+     * Creates the mock bot
+     * @param address the address to listen on
+     * @param stopOnClose whether to stop when a connection is closed, as the standalone mock of a single call does.
+     *                    The load test serves all its calls from one bot.
+     */
+    public WsBot(InetSocketAddress address, boolean stopOnClose) {
         super(address);
+        this.stopOnClose = stopOnClose;
     }
 
     @Override
@@ -37,6 +50,9 @@ public class WsBot extends WebSocketServer {
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
         LOGGER.info("closed {} with exit code {}, additional info: {}", conn.getRemoteSocketAddress(), code, reason);
+        if (!stopOnClose) {
+            return;
+        }
         Thread stopServerThread = new Thread(() -> {
             try {
                 LOGGER.info("Stopping bot websocket server thread.");
@@ -51,7 +67,12 @@ public class WsBot extends WebSocketServer {
 
     @Override
     public void onMessage(WebSocket conn, String message) {
-        //bot websocket server receives only byte data from websocket client entity
+        //events from the websocket client entity, see MediaEvents
+        if (message.contains("\"event\":\"trace\"")) {
+            conn.send(message); //the audio is echoed at once, so is its trace tag
+            return;
+        }
+        LOGGER.info("event from {}: {}", conn.getRemoteSocketAddress(), message);
     }
 
     @Override
@@ -70,8 +91,10 @@ public class WsBot extends WebSocketServer {
     }
 
     public static void main(String[] args) {
-
-        WebSocketServer server = new WsBot(new InetSocketAddress(WS_BOT_IP, WS_BOT_PORT));
+        //optional arguments: ip port
+        String ip = args.length > 0 ? args[0] : WS_BOT_IP;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : WS_BOT_PORT;
+        WebSocketServer server = new WsBot(new InetSocketAddress(ip, port));
         server.run();
     }
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.agent.DataSender;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+import com.sprinklr.sip4j.media.MediaClock;
+import com.sprinklr.sip4j.media.SilenceFiller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent's RTP sender which sends at most one packet per ptime to Ozonetel, driven by the node wide MediaClock instead of
+ * a thread of its own. Bursts returned by the bot are smoothed out by the outbound queue. The sequence number, timestamp
+ * and SSRC of each packet are rewritten so that the outgoing stream is continuous: the timestamp advances every ptime,
+ * whether or not the bot had a packet ready, and the marker bit flags the first packet after such a gap.
+ * When the bot has no packet ready a silence or comfort noise packet may be sent instead, see SilenceFiller.
+ */
+public class PacedRtpSenderImpl implements DataSender, MediaClock.Task {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PacedRtpSenderImpl.class);
+
+    private final RingBuffer<MediaBuffer> outboundRtpQueue;
+    private final RtpAddress rtpRemoteAddress;
+    private final AgentConfig agentConfig;
+    private final MediaClock mediaClock;
+    private final RtpPacketView packetView = new RtpPacketView();
+    private final int samplesPerPacket;
+    private final SilenceFiller silenceFiller;
+    private final RtcpSession rtcpSession;
+    private final AgentMetrics metrics;
+
+    private DatagramChannel channel;
+    private MediaClock.Registration registration;
+
+    //stream state, only accessed on the media clock thread
+    private final int ssrc;
+    private int sequenceNumber;
+    private int timeStamp;
+    private boolean gap = true;
+
+    private volatile long sentCount = 0;
+    private volatile long emptyTickCount = 0;
+    private volatile long filledCount = 0;
+    private volatile long droppedCount = 0;
+
+    /**
+     * Instantiates the RtpSender entity of an Agent, paced by the default media clock
+     * @param rtpRemoteAddress The remote RTP address where the packets are to be sent
+     * @param outboundRtpQueue The queue from which one packet is polled per ptime
+     * @param agentConfig The configuration of the Agent to whom this RtpSender entity belongs
+     * @param rtcpSession The RTCP session accounting for the packets sent, null if RTCP is disabled
+     * @param metrics The metrics of the Agent, accounting for the bot's packets sent, null for none
+     */
+    public PacedRtpSenderImpl(RtpAddress rtpRemoteAddress, RingBuffer<MediaBuffer> outboundRtpQueue, AgentConfig agentConfig, RtcpSession rtcpSession, AgentMetrics metrics) {
+        this(rtpRemoteAddress, outboundRtpQueue, agentConfig, rtcpSession, metrics, MediaClock.getDefault());
+    }
+
+    /**
+     * Instantiates the RtpSender entity of an Agent
+     * @param rtpRemoteAddress The remote RTP address where the packets are to be sent
+     * @param outboundRtpQueue The queue from which one packet is polled per ptime
+     * @param agentConfig The configuration of the Agent to whom this RtpSender entity belongs
+     * @param rtcpSession The RTCP session accounting for the packets sent, null if RTCP is disabled
+     * @param metrics The metrics of the Agent, accounting for the bot's packets sent, null for none
+     * @param mediaClock The clock which paces the sender
+     */
+    public PacedRtpSenderImpl(RtpAddress rtpRemoteAddress, RingBuffer<MediaBuffer> outboundRtpQueue, AgentConfig agentConfig, RtcpSession rtcpSession, AgentMetrics metrics, MediaClock mediaClock) {
+        this.rtpRemoteAddress = rtpRemoteAddress;
+        this.rtcpSession = rtcpSession;
+        this.metrics = metrics;
+        this.outboundRtpQueue = outboundRtpQueue;
+        this.agentConfig = agentConfig;
+        this.mediaClock = mediaClock;
+        this.samplesPerPacket = agentConfig.getRtpClockRate() * agentConfig.getRtpPtimeMs() / 1000;
+        this.silenceFiller = SilenceFiller.create(agentConfig);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.ssrc = random.nextInt();
+        this.sequenceNumber = random.nextInt(0x10000); //random initial values, RFC 3550 section 5.1
+        this.timeStamp = random.nextInt();
+    }
+
+    /**
+     * Opens the channel to the remote destination and schedules the sender on the media clock. Returns immediately.
+     */
+    @Override
+    public void start() {
+        try {
+            channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(new InetSocketAddress(rtpRemoteAddress.getAddress(), rtpRemoteAddress.getPort()));
+        } catch (IOException e) {
+            LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
+            return;
+        }
+        registration = mediaClock.schedule(this, TimeUnit.MILLISECONDS.toNanos(agentConfig.getRtpPtimeMs()));
+        LOGGER.info("Starting paced rtp transmission from {}", agentConfig.getAgentName());
+    }
+
+    /**
+     * Called by the media clock once per ptime. Sends the next packet from the bot, if there is one, or the silence fill.
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    @Override
+    public void onTick(long nowNanos) {
+        timeStamp += samplesPerPacket;
+        MediaBuffer data = outboundRtpQueue.poll();
+        if (data == null) {
+            emptyTickCount++;
+            MediaBuffer fill = silenceFiller == null ? null : silenceFiller.next((sequenceNumber + 1) & 0xFFFF, timeStamp, ssrc);
+            if (fill == null) {
+                gap = true;
+                return;
+            }
+            sequenceNumber = (sequenceNumber + 1) & 0xFFFF;
+            gap = silenceFiller.isDiscontinuous();
+            filledCount++;
+            send(fill);
+            return;
+        }
+        if (silenceFiller != null) {
+            silenceFiller.reset();
+        }
+        if (packetView.wrap(data).isValid()) {
+            sequenceNumber = (sequenceNumber + 1) & 0xFFFF;
+            packetView.rewriteHeader(sequenceNumber, timeStamp, ssrc);
+            packetView.setMarker(gap);
+        }
+        gap = false;
+        long enteredNanos = data.getTimestampNanos();
+        long responseToNanos = data.getResponseToNanos();
+        int length = data.getLength();
+        if (send(data) && metrics != null) { //the fill is not accounted for, it did not come from the bot
+            long sentNanos = System.nanoTime();
+            metrics.getToCarrier().add(length);
+            metrics.getOutboundTotal().record(sentNanos - enteredNanos);
+            if (responseToNanos != 0) {
+                metrics.getResponseLatency().record(sentNanos - responseToNanos);
+            }
+        }
+    }
+
+    /**
+     * Writes a packet to the channel without blocking and releases it
+     * @return whether the packet was sent
+     */
+    private boolean send(MediaBuffer data) {
+        try {
+            if (channel.write(data.getBuffer()) == 0) {
+                droppedCount++; //socket send buffer full, never block the clock thread
+                return false;
+            }
+            sentCount++;
+            if (rtcpSession != null) {
+                rtcpSession.onPacketSent(data);
+            }
+            return true;
+        } catch (ClosedChannelException e) {
+            droppedCount++; //stopped while the tick was in progress
+        } catch (IOException e) {
+            droppedCount++;
+            LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
+        } finally {
+            data.release();
+        }
+        return false;
+    }
+
+    /**
+     * Overridden method of Runnable. Schedules the sender and returns, no thread is held
+     */
+    @Override
+    public void run() {
+        start();
+    }
+
+    /**
+     * Stops the transmission of RTP packets. Returns once the media clock has finished the tick in progress, after which
+     * the outbound queue is not polled anymore
+     */
+    @Override
+    public void stop() {
+        if (registration != null) {
+            registration.cancelAndAwait();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("IOException while closing rtp channel in {}: {}", agentConfig.getAgentName(), e.toString());
+            }
+        }
+        LOGGER.info("Stopping paced rtp transmission from {}, sent: {}, empty ticks: {}, filled: {}, dropped: {}",
+                agentConfig.getAgentName(), sentCount, emptyTickCount, filledCount, droppedCount);
+    }
+
+    @Override
+    public String toString() {
+        return "PacedRtpSenderImpl{" +
+                "agentName='" + agentConfig.getAgentName() + '\'' +
+                ", sentCount=" + sentCount +
+                ", emptyTickCount=" + emptyTickCount +
+                ", filledCount=" + filledCount +
+                ", droppedCount=" + droppedCount +
+                '}';
+    }
+}
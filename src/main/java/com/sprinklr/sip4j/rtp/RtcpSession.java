@@ -0,0 +1,474 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.media.MediaClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RTCP session of a call with Ozonetel, on the port following the RTP port (RFC 3550 section 11). Sends a compound
+ * sender or receiver report with an SDES CNAME every rtcpIntervalMs, randomised as per RFC 3550 section 6.2, and a BYE
+ * when stopped. Parses the reports of the carrier to obtain the round trip time (RFC 3550 section 6.4.1) and the loss
+ * and jitter the carrier sees on the stream sent by the Agent. A mean opinion score is estimated from the E-model
+ * (ITU-T G.107) for G.711.
+ * Driven by the node wide MediaClock like the paced sender: received reports are drained without blocking on every
+ * tick, no thread is held. The RTP receive and send paths feed the statistics through onPacketReceived() and
+ * onPacketSent(), from their own threads.
+ * When calls share the RTP port, the first call's session receives the reports of every carrier on the following port.
+ * Only the sender reports of the SSRC the call receives are used for the round trip time, and reports are only
+ * answered where they come from if they come from that source, on the host of the call's remote RTP address.
+ */
+public class RtcpSession implements MediaClock.Task {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RtcpSession.class);
+
+    private static final int POLL_INTERVAL_MS = 100;
+    private static final int MAX_PACKET_SIZE = 1500;
+    private static final int VERSION = 2;
+    static final int SR = 200;
+    static final int RR = 201;
+    static final int SDES = 202;
+    static final int BYE = 203;
+    private static final int SDES_CNAME = 1;
+    private static final long NTP_EPOCH_OFFSET_SECONDS = 2208988800L; //1900 to 1970
+
+    private final AgentConfig agentConfig;
+    private final RtpAddress rtpRemoteAddress;
+    private final MediaClock mediaClock;
+    private final RtpReceptionStatistics receptionStatistics;
+    private final RtpPacketView sentPacketView = new RtpPacketView();
+    private final byte[] cname;
+    private final long intervalNanos;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+
+    private final InetSocketAddress sdpRemoteAddress;
+    private DatagramChannel channel;
+    private volatile SocketAddress remoteAddress;
+    private MediaClock.Registration registration;
+    private long nextReportNanos;
+
+    //sender statistics, updated by the rtp sender thread
+    private volatile int ssrc;
+    private volatile long sentPacketCount = 0;
+    private volatile long sentOctetCount = 0;
+    private volatile int lastSentTimeStamp;
+    private volatile long lastSentMillis;
+
+    //last sender report of the carrier, for the LSR and DLSR fields of our report blocks
+    private volatile int lastSrNtpMiddle = 0;
+    private volatile long lastSrArrivalNanos;
+
+    //as seen by the carrier, from its report blocks about our stream
+    private volatile double roundTripTimeMs = -1;
+    private volatile int remoteFractionLost = 0;
+    private volatile long remoteCumulativeLost = 0;
+    private volatile double remoteJitterMs = 0;
+
+    private volatile long sentReportCount = 0;
+    private volatile long receivedReportCount = 0;
+    private volatile long invalidCount = 0;
+
+    /**
+     * Creates the RTCP session of a call
+     * @param agentConfig The configuration of the Agent, defines the local port, clock rate and report interval
+     * @param rtpRemoteAddress The remote RTP address of the call, reports are sent to the following port
+     */
+    public RtcpSession(AgentConfig agentConfig, RtpAddress rtpRemoteAddress) {
+        this.agentConfig = agentConfig;
+        this.rtpRemoteAddress = rtpRemoteAddress;
+        this.mediaClock = MediaClock.getDefault();
+        this.receptionStatistics = new RtpReceptionStatistics(agentConfig.getRtpClockRate());
+        this.cname = (agentConfig.getAgentName() + "@" + agentConfig.getSipLocalIp()).getBytes(StandardCharsets.UTF_8);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(agentConfig.getRtcpIntervalMs());
+        this.ssrc = ThreadLocalRandom.current().nextInt(); //replaced by the SSRC of the stream once a packet is sent
+        this.sdpRemoteAddress = new InetSocketAddress(rtpRemoteAddress.getAddress(), rtpRemoteAddress.getPort() + 1);
+        this.remoteAddress = sdpRemoteAddress;
+    }
+
+    /**
+     * Opens the RTCP socket and schedules the session on the media clock. Returns immediately.
+     */
+    public void start() {
+        try {
+            channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            try {
+                channel.bind(new InetSocketAddress(agentConfig.getRtpLocalIp(), agentConfig.getRtpLocalPort() + 1));
+            } catch (BindException e) {
+                //e.g. a port shared by several Agents, reports are still sent but those of the carrier are not received
+                LOGGER.warn("RTCP port {} of {} in use, receiving no reports: {}", agentConfig.getRtpLocalPort() + 1, agentConfig.getAgentName(), e.toString());
+                channel.bind(new InetSocketAddress(agentConfig.getRtpLocalIp(), 0));
+            }
+        } catch (IOException e) {
+            LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
+            return;
+        }
+        nextReportNanos = System.nanoTime() + randomisedInterval() / 2; //first report early, RFC 3550 section 6.2
+        registration = mediaClock.schedule(this, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS));
+        LOGGER.info("Starting rtcp session of {}", agentConfig.getAgentName());
+    }
+
+    /**
+     * Sends a BYE and closes the RTCP socket
+     */
+    public void stop() {
+        if (registration != null) {
+            registration.cancelAndAwait(); //the BYE below is the last packet sent
+        }
+        if (channel == null) {
+            return;
+        }
+        synchronized (sendBuffer) {
+            sendBuffer.clear();
+            writeReport(sendBuffer, System.currentTimeMillis(), System.nanoTime());
+            writeBye(sendBuffer);
+            sendBuffer.flip();
+            send(sendBuffer);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("IOException while closing rtcp channel in {}: {}", agentConfig.getAgentName(), e.toString());
+        }
+        LOGGER.info("Stopping rtcp session of {}: {}", agentConfig.getAgentName(), this);
+    }
+
+    /**
+     * Called by the media clock every POLL_INTERVAL_MS. Reads the received reports and sends ours when due.
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    @Override
+    public void onTick(long nowNanos) {
+        receiveReports(nowNanos);
+        if (nowNanos - nextReportNanos >= 0) {
+            nextReportNanos = nowNanos + randomisedInterval();
+            synchronized (sendBuffer) {
+                sendBuffer.clear();
+                writeReport(sendBuffer, System.currentTimeMillis(), nowNanos);
+                sendBuffer.flip();
+                send(sendBuffer);
+            }
+        }
+    }
+
+    /**
+     * Accounts for an RTP packet received from Ozonetel. To be called by a single thread.
+     * @param packet the rtp packet, left unchanged
+     * @param arrivalNanos the arrival time of the packet, as per System.nanoTime()
+     */
+    public void onPacketReceived(MediaBuffer packet, long arrivalNanos) {
+        receptionStatistics.onPacket(packet, arrivalNanos);
+    }
+
+    /**
+     * Accounts for an RTP packet sent to Ozonetel, with its final header. To be called by a single thread.
+     * @param packet the rtp packet, left unchanged
+     */
+    public void onPacketSent(MediaBuffer packet) {
+        if (!sentPacketView.wrap(packet).isValid()) {
+            return;
+        }
+        ssrc = sentPacketView.getSsrc();
+        lastSentTimeStamp = sentPacketView.getTimeStamp();
+        lastSentMillis = System.currentTimeMillis();
+        sentOctetCount += sentPacketView.getPayloadLength();
+        sentPacketCount++;
+    }
+
+    private void receiveReports(long nowNanos) {
+        try {
+            SocketAddress source;
+            while ((source = channel.receive(prepareReceiveBuffer())) != null) {
+                receiveBuffer.flip();
+                onReport(source, receiveBuffer, System.currentTimeMillis(), nowNanos);
+            }
+        } catch (ClosedChannelException e) {
+            //stopped while the tick was in progress
+        } catch (IOException e) {
+            LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
+        }
+    }
+
+    private ByteBuffer prepareReceiveBuffer() {
+        receiveBuffer.clear();
+        return receiveBuffer;
+    }
+
+    private void send(ByteBuffer packet) {
+        try {
+            channel.send(packet, remoteAddress);
+            sentReportCount++;
+        } catch (ClosedChannelException e) {
+            //stopped while the tick was in progress
+        } catch (IOException e) {
+            LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
+        }
+    }
+
+    private long randomisedInterval() {
+        return (long) (intervalNanos * (0.5 + ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Writes a sender report, if a packet was sent during the last two intervals, or else a receiver report, followed
+     * by an SDES CNAME
+     * @param out the buffer the compound packet is appended to
+     * @param nowMillis the current wall clock time, for the NTP timestamp
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    void writeReport(ByteBuffer out, long nowMillis, long nowNanos) {
+        boolean sender = sentPacketCount > 0 && nowMillis - lastSentMillis < 2 * TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+        boolean hasBlock = receptionStatistics.isStarted();
+        int start = out.position();
+        out.putShort((short) 0); //first word completed below
+        out.putShort((short) 0);
+        out.putInt(ssrc);
+        if (sender) {
+            long ntp = toNtp(nowMillis);
+            out.putLong(ntp);
+            //RTP timestamp of the same instant, extrapolated from the last packet sent
+            out.putInt(lastSentTimeStamp + (int) ((nowMillis - lastSentMillis) * agentConfig.getRtpClockRate() / 1000));
+            out.putInt((int) sentPacketCount);
+            out.putInt((int) sentOctetCount);
+        }
+        if (hasBlock) {
+            writeReportBlock(out, nowNanos);
+        }
+        writeHeader(out, start, hasBlock ? 1 : 0, sender ? SR : RR);
+
+        start = out.position();
+        out.putInt(0);
+        out.putInt(ssrc);
+        out.put((byte) SDES_CNAME);
+        out.put((byte) cname.length);
+        out.put(cname);
+        out.put((byte) 0); //end of the item list, then padding to a word boundary
+        while ((out.position() - start) % 4 != 0) {
+            out.put((byte) 0);
+        }
+        writeHeader(out, start, 1, SDES);
+    }
+
+    private void writeReportBlock(ByteBuffer out, long nowNanos) {
+        int fractionLost = receptionStatistics.closeInterval();
+        long cumulativeLost = Math.max(-0x800000, Math.min(0x7FFFFF, receptionStatistics.getCumulativeLost()));
+        out.putInt(receptionStatistics.getSsrc());
+        out.putInt((fractionLost << 24) | (int) (cumulativeLost & 0xFFFFFF));
+        out.putInt((int) receptionStatistics.getExtendedHighestSequenceNumber());
+        out.putInt((int) receptionStatistics.getJitterUnits());
+        int lsr = lastSrNtpMiddle;
+        out.putInt(lsr);
+        //delay since the last SR, in 1/65536 seconds
+        out.putInt(lsr == 0 ? 0 : (int) ((nowNanos - lastSrArrivalNanos) * 65536 / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private void writeBye(ByteBuffer out) {
+        int start = out.position();
+        out.putInt(0);
+        out.putInt(ssrc);
+        writeHeader(out, start, 1, BYE);
+    }
+
+    /**
+     * Completes the first word of an RTCP packet: version, count, packet type and length in words minus one
+     */
+    private static void writeHeader(ByteBuffer out, int start, int count, int packetType) {
+        out.put(start, (byte) ((VERSION << 6) | count));
+        out.put(start + 1, (byte) packetType);
+        out.putShort(start + 2, (short) ((out.position() - start) / 4 - 1));
+    }
+
+    /**
+     * Parses a compound packet received from the carrier, and answers where it comes from if it is about the call
+     * (symmetric RTCP)
+     * @param source the address the packet was received from
+     * @param in the packet, from the position to the limit
+     * @param nowMillis the current wall clock time, for the round trip time
+     * @param nowNanos the current time, as per System.nanoTime()
+     */
+    void onReport(SocketAddress source, ByteBuffer in, long nowMillis, long nowNanos) {
+        boolean fromCallSource = onReport(in, nowMillis, nowNanos);
+        if (fromCallSource && source instanceof InetSocketAddress
+                && sdpRemoteAddress.getAddress().equals(((InetSocketAddress) source).getAddress())) {
+            remoteAddress = source;
+        }
+    }
+
+    /**
+     * Parses a compound packet received from the carrier
+     * @param in the packet, from the position to the limit
+     * @param nowMillis the current wall clock time, for the round trip time
+     * @param nowNanos the current time, as per System.nanoTime()
+     * @return true if the packet was sent by the source of the stream the call receives
+     */
+    boolean onReport(ByteBuffer in, long nowMillis, long nowNanos) {
+        int offset = in.position();
+        int end = in.limit();
+        boolean valid = false;
+        boolean fromCallSource = false;
+        while (end - offset >= 4) {
+            int first = in.get(offset) & 0xFF;
+            int packetType = in.get(offset + 1) & 0xFF;
+            int length = ((in.getShort(offset + 2) & 0xFFFF) + 1) * 4;
+            if ((first >> 6) != VERSION || offset + length > end) {
+                break;
+            }
+            int count = first & 0x1F;
+            if (packetType == SR && length >= 28) {
+                if (isCallSource(in.getInt(offset + 4))) {
+                    //the LSR of our report block must be that of the stream it is about
+                    lastSrNtpMiddle = (int) (in.getLong(offset + 8) >>> 16);
+                    lastSrArrivalNanos = nowNanos;
+                    fromCallSource = true;
+                }
+                readReportBlocks(in, offset + 28, offset + length, count, nowMillis);
+                valid = true;
+            } else if (packetType == RR && length >= 8) {
+                fromCallSource |= isCallSource(in.getInt(offset + 4));
+                readReportBlocks(in, offset + 8, offset + length, count, nowMillis);
+                valid = true;
+            } else if (packetType == BYE) {
+                LOGGER.info("RTCP BYE received by {}", agentConfig.getAgentName());
+                valid = true;
+            } else if (packetType == SDES) {
+                valid = true;
+            }
+            offset += length;
+        }
+        if (valid) {
+            receivedReportCount++;
+        } else {
+            invalidCount++;
+        }
+        return fromCallSource;
+    }
+
+    private boolean isCallSource(int senderSsrc) {
+        return receptionStatistics.isStarted() && senderSsrc == receptionStatistics.getSsrc();
+    }
+
+    private void readReportBlocks(ByteBuffer in, int offset, int end, int count, long nowMillis) {
+        for (int i = 0; i < count && offset + 24 <= end; i++, offset += 24) {
+            if (in.getInt(offset) != ssrc) {
+                continue; //about another source
+            }
+            int lossWord = in.getInt(offset + 4);
+            remoteFractionLost = lossWord >>> 24;
+            remoteCumulativeLost = (lossWord << 8) >> 8; //24 bit signed
+            remoteJitterMs = (in.getInt(offset + 12) & 0xFFFFFFFFL) * 1000.0 / agentConfig.getRtpClockRate();
+            int lsr = in.getInt(offset + 16);
+            int dlsr = in.getInt(offset + 20);
+            if (lsr != 0) {
+                //all in 1/65536 seconds, modulo 2^32
+                long rtt = ((int) (toNtp(nowMillis) >>> 16) - lsr - dlsr) & 0xFFFFFFFFL;
+                if (rtt < 0x80000000L) {
+                    roundTripTimeMs = rtt * 1000.0 / 65536;
+                }
+            }
+        }
+    }
+
+    private static long toNtp(long millis) {
+        long seconds = millis / 1000 + NTP_EPOCH_OFFSET_SECONDS;
+        long fraction = (millis % 1000) * 0x100000000L / 1000;
+        return (seconds << 32) | fraction;
+    }
+
+    /**
+     * Estimates the mean opinion score of a G.711 call from the simplified E-model of ITU-T G.107
+     * @param oneWayDelayMs the mouth to ear delay
+     * @param lossPercent the packet loss, as a percentage
+     * @return the MOS, between 1 and 4.5
+     */
+    static double estimateMos(double oneWayDelayMs, double lossPercent) {
+        double delayImpairment = 0.024 * oneWayDelayMs + (oneWayDelayMs > 177.3 ? 0.11 * (oneWayDelayMs - 177.3) : 0);
+        //equipment impairment of G.711 (Ie 0) under random loss without concealment (Bpl 4.3), ITU-T G.113
+        double equipmentImpairment = 95 * lossPercent / (lossPercent + 4.3);
+        double r = Math.max(0, Math.min(100, 93.2 - delayImpairment - equipmentImpairment));
+        return 1 + 0.035 * r + 7e-6 * r * (r - 60) * (100 - r);
+    }
+
+    /**
+     * Returns the estimated MOS of the audio received from Ozonetel, from the measured loss and jitter and the
+     * round trip time, if known
+     * @return the mean opinion score
+     */
+    public double getMos() {
+        double rtt = Math.max(0, roundTripTimeMs);
+        //network delay, plus a jitter buffer of twice the jitter and one packet of packetisation
+        double delayMs = rtt / 2 + 2 * receptionStatistics.getJitterMs() + agentConfig.getRtpPtimeMs();
+        return estimateMos(delayMs, receptionStatistics.getFractionLost() * 100.0 / 256);
+    }
+
+    public RtpReceptionStatistics getReceptionStatistics() {
+        return receptionStatistics;
+    }
+
+    /**
+     * Returns the round trip time to the carrier, from its last report block about our stream
+     * @return the round trip time, or -1 if not measured yet
+     */
+    public double getRoundTripTimeMs() {
+        return roundTripTimeMs;
+    }
+
+    public int getRemoteFractionLost() {
+        return remoteFractionLost;
+    }
+
+    public long getRemoteCumulativeLost() {
+        return remoteCumulativeLost;
+    }
+
+    public double getRemoteJitterMs() {
+        return remoteJitterMs;
+    }
+
+    public long getSentReportCount() {
+        return sentReportCount;
+    }
+
+    public long getReceivedReportCount() {
+        return receivedReportCount;
+    }
+
+    /**
+     * Returns where the reports are sent, the port following the remote RTP port until the carrier's own reports come
+     * from elsewhere
+     * @return the remote RTCP address
+     */
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public String toString() {
+        return "RtcpSession{" +
+                "jitterMs=" + receptionStatistics.getJitterMs() +
+                ", fractionLost=" + receptionStatistics.getFractionLost() +
+                ", cumulativeLost=" + receptionStatistics.getCumulativeLost() +
+                ", roundTripTimeMs=" + roundTripTimeMs +
+                ", remoteJitterMs=" + remoteJitterMs +
+                ", remoteFractionLost=" + remoteFractionLost +
+                ", remoteCumulativeLost=" + remoteCumulativeLost +
+                ", mos=" + getMos() +
+                ", sentPacketCount=" + sentPacketCount +
+                ", sentReportCount=" + sentReportCount +
+                ", receivedReportCount=" + receivedReportCount +
+                ", invalidCount=" + invalidCount +
+                '}';
+    }
+}
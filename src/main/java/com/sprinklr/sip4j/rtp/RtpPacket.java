@@ -5,7 +5,7 @@ import java.util.Arrays;
 import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
 
 /**
-RTP Packet transported between RTP endpoints
+RTP Packet transported between RTP endpoints. Copies the header and payload, use RtpPacketView on the media path instead.
  */
 public class RtpPacket {
 
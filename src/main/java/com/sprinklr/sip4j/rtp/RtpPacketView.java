@@ -0,0 +1,296 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+
+import java.nio.ByteBuffer;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+
+/**
+ * Flyweight view of an RTP packet held in a ByteBuffer or a byte array at an offset. Header fields are read and written
+ * directly in the underlying bytes, nothing is copied or allocated. A single view can be re-pointed at every packet of
+ * a stream using wrap(). Refer https://dl.acm.org/doi/pdf/10.17487/RFC3550 for the header layout.
+ * Not thread safe, each thread should use its own view.
+ */
+public class RtpPacketView {
+
+    private static final int VERSION = 2;
+    private static final int CSRC_SIZE = 4;
+    private static final int EXTENSION_HEADER_SIZE = 4;
+
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Points the view at a packet held in a byte array
+     * @param array the array holding the packet
+     * @param offset index of the first byte of the packet
+     * @param length length of the packet in bytes
+     * @return this view
+     */
+    public RtpPacketView wrap(byte[] array, int offset, int length) {
+        this.array = array;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * Points the view at a packet held in a ByteBuffer, heap or direct. The position and limit of the buffer are not used or changed.
+     * @param buffer the buffer holding the packet
+     * @param offset absolute index of the first byte of the packet
+     * @param length length of the packet in bytes
+     * @return this view
+     */
+    public RtpPacketView wrap(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return wrap(buffer.array(), buffer.arrayOffset() + offset, length);
+        }
+        this.array = null;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * Points the view at the packet held in a MediaBuffer
+     * @param mediaBuffer the buffer holding the packet
+     * @return this view
+     */
+    public RtpPacketView wrap(MediaBuffer mediaBuffer) {
+        return wrap(mediaBuffer.getBuffer(), 0, mediaBuffer.getLength());
+    }
+
+    /**
+     * Checks that the wrapped bytes hold a complete RTP version 2 header, including CSRCs and the extension
+     * @return true if the header fields can be read safely
+     */
+    public boolean isValid() {
+        if (length < RTP_HEADER_SIZE || getVersion() != VERSION) {
+            return false;
+        }
+        int fixedAndCsrcLength = RTP_HEADER_SIZE + getCsrcCount() * CSRC_SIZE;
+        if (hasExtension() && length < fixedAndCsrcLength + EXTENSION_HEADER_SIZE) {
+            return false;
+        }
+        return getHeaderLength() + getPaddingLength() <= length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getVersion() {
+        return (getByte(0) & 0xC0) >>> 6;
+    }
+
+    public boolean hasPadding() {
+        return (getByte(0) & 0x20) != 0;
+    }
+
+    public boolean hasExtension() {
+        return (getByte(0) & 0x10) != 0;
+    }
+
+    public int getCsrcCount() {
+        return getByte(0) & 0x0F;
+    }
+
+    public boolean getMarker() {
+        return (getByte(1) & 0x80) != 0;
+    }
+
+    public void setMarker(boolean marker) {
+        int b = getByte(1) & 0x7F;
+        putByte(1, marker ? b | 0x80 : b);
+    }
+
+    public int getPayloadType() {
+        return getByte(1) & 0x7F;
+    }
+
+    public void setPayloadType(int payloadType) {
+        putByte(1, (getByte(1) & 0x80) | (payloadType & 0x7F));
+    }
+
+    public int getSequenceNumber() {
+        return (getByte(2) << 8) | getByte(3);
+    }
+
+    public void setSequenceNumber(int sequenceNumber) {
+        putByte(2, sequenceNumber >>> 8);
+        putByte(3, sequenceNumber);
+    }
+
+    public int getTimeStamp() {
+        return getInt(4);
+    }
+
+    public void setTimeStamp(int timeStamp) {
+        putInt(4, timeStamp);
+    }
+
+    public int getSsrc() {
+        return getInt(8);
+    }
+
+    public void setSsrc(int ssrc) {
+        putInt(8, ssrc);
+    }
+
+    /**
+     * Returns a contributing source identifier
+     * @param index index of the CSRC, between 0 and getCsrcCount() - 1
+     * @return the CSRC
+     */
+    public int getCsrc(int index) {
+        checkCsrcIndex(index);
+        return getInt(RTP_HEADER_SIZE + index * CSRC_SIZE);
+    }
+
+    /**
+     * Overwrites an existing contributing source identifier
+     * @param index index of the CSRC, between 0 and getCsrcCount() - 1
+     * @param csrc the new CSRC
+     */
+    public void setCsrc(int index, int csrc) {
+        checkCsrcIndex(index);
+        putInt(RTP_HEADER_SIZE + index * CSRC_SIZE, csrc);
+    }
+
+    /**
+     * Returns the profile specific identifier of the header extension
+     * @return the 16 bit identifier, or -1 if there is no extension
+     */
+    public int getExtensionProfile() {
+        if (!hasExtension()) {
+            return -1;
+        }
+        int extensionOffset = getExtensionOffset();
+        return (getByte(extensionOffset) << 8) | getByte(extensionOffset + 1);
+    }
+
+    /**
+     * Returns the length of the header extension data, excluding the 4 byte extension header
+     * @return the length in bytes, 0 if there is no extension
+     */
+    public int getExtensionLength() {
+        if (!hasExtension()) {
+            return 0;
+        }
+        int extensionOffset = getExtensionOffset();
+        return ((getByte(extensionOffset + 2) << 8) | getByte(extensionOffset + 3)) * 4;
+    }
+
+    /**
+     * Returns the index of the first byte of the header extension data, relative to the start of the packet
+     * @return the offset of the extension data
+     */
+    public int getExtensionDataOffset() {
+        return getExtensionOffset() + EXTENSION_HEADER_SIZE;
+    }
+
+    /**
+     * Returns the length of the complete header: fixed header, CSRCs and extension
+     * @return the header length in bytes
+     */
+    public int getHeaderLength() {
+        int headerLength = RTP_HEADER_SIZE + getCsrcCount() * CSRC_SIZE;
+        if (hasExtension()) {
+            headerLength += EXTENSION_HEADER_SIZE + getExtensionLength();
+        }
+        return headerLength;
+    }
+
+    /**
+     * Returns the number of padding bytes at the end of the packet
+     * @return the padding length, 0 if the padding bit is not set
+     */
+    public int getPaddingLength() {
+        return hasPadding() ? getByte(length - 1) : 0;
+    }
+
+    /**
+     * Returns the index of the first payload byte, relative to the start of the packet
+     * @return the payload offset
+     */
+    public int getPayloadOffset() {
+        return getHeaderLength();
+    }
+
+    public int getPayloadLength() {
+        return length - getHeaderLength() - getPaddingLength();
+    }
+
+    /**
+     * Writes a complete fixed header, without padding, CSRCs or extension, at the start of the wrapped bytes
+     * @param marker the marker bit
+     * @param payloadType the payload type
+     * @param sequenceNumber the sequence number
+     * @param timeStamp the timestamp
+     * @param ssrc the synchronisation source
+     */
+    public void writeHeader(boolean marker, int payloadType, int sequenceNumber, int timeStamp, int ssrc) {
+        putByte(0, VERSION << 6);
+        putByte(1, (marker ? 0x80 : 0) | (payloadType & 0x7F));
+        setSequenceNumber(sequenceNumber);
+        setTimeStamp(timeStamp);
+        setSsrc(ssrc);
+    }
+
+    /**
+     * Rewrites the fields which identify a packet within a stream, leaving the rest of the header and the payload untouched.
+     * Used on the send path to give packets produced elsewhere the numbering of the outgoing stream.
+     * @param sequenceNumber the new sequence number
+     * @param timeStamp the new timestamp
+     * @param ssrc the new synchronisation source
+     */
+    public void rewriteHeader(int sequenceNumber, int timeStamp, int ssrc) {
+        setSequenceNumber(sequenceNumber);
+        setTimeStamp(timeStamp);
+        setSsrc(ssrc);
+    }
+
+    public String getHeaderAsString() {
+        return "Version:" + getVersion() + " Padding:" + hasPadding() + " Extension: " + hasExtension() + " CC: " + getCsrcCount()
+                + " Marker:" + getMarker() + " PayloadType:" + getPayloadType() + " SequenceNumber:" + getSequenceNumber()
+                + " TimeStamp:" + getTimeStamp();
+    }
+
+    private int getExtensionOffset() {
+        return RTP_HEADER_SIZE + getCsrcCount() * CSRC_SIZE;
+    }
+
+    private void checkCsrcIndex(int index) {
+        if (index < 0 || index >= getCsrcCount()) {
+            throw new IndexOutOfBoundsException("CSRC index " + index + " out of bounds for CSRC count " + getCsrcCount());
+        }
+    }
+
+    private int getByte(int index) {
+        return (array != null ? array[offset + index] : buffer.get(offset + index)) & 0xFF;
+    }
+
+    private void putByte(int index, int value) {
+        if (array != null) {
+            array[offset + index] = (byte) value;
+        } else {
+            buffer.put(offset + index, (byte) value);
+        }
+    }
+
+    private int getInt(int index) {
+        return (getByte(index) << 24) | (getByte(index + 1) << 16) | (getByte(index + 2) << 8) | getByte(index + 3);
+    }
+
+    private void putInt(int index, int value) {
+        putByte(index, value >>> 24);
+        putByte(index + 1, value >>> 16);
+        putByte(index + 2, value >>> 8);
+        putByte(index + 3, value);
+    }
+}
@@ -2,12 +2,14 @@ package com.sprinklr.sip4j.rtp;
 
 import com.sprinklr.sip4j.agent.AgentConfig;
 import com.sprinklr.sip4j.agent.DataReceiver;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.MediaBufferPool;
+import com.sprinklr.sip4j.buffer.RingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.*;
-import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -17,18 +19,29 @@ public class RtpReceiverImpl implements DataReceiver {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RtpReceiverImpl.class);
     private static final int RTP_BLOCK_SOCKET_TIME_MS = (int) TimeUnit.SECONDS.toMillis(1);
-    private final Queue<byte[]> inboundRtpQueue;
+    private final RingBuffer<MediaBuffer> inboundRtpQueue;
     private final AgentConfig agentConfig;
+    private final MediaBufferPool bufferPool;
+    //reused for every datagram, its data is pointed at the pooled buffer being filled
+    private final DatagramPacket receivePacket;
+    //only used with direct buffers, which DatagramSocket cannot receive into
+    private final byte[] scratchData;
+    //buffer waiting for the next datagram, kept across receive timeouts
+    private MediaBuffer pendingBuffer;
     private volatile boolean exit = false;
+    private volatile long truncatedCount = 0;
 
     /**
      * Instantiates the RtpReceiver entity of an Agent
-     * @param inboundRtpQueue The queue where the received Rtp packets are stored
+     * @param inboundRtpQueue The queue where the received Rtp packets are stored, in buffers taken from the shared pool
      * @param agentConfig The configuration the Agent to whom this RtpReceiver entity belongs
      */
-    public RtpReceiverImpl(Queue<byte[]> inboundRtpQueue, AgentConfig agentConfig) {
+    public RtpReceiverImpl(RingBuffer<MediaBuffer> inboundRtpQueue, AgentConfig agentConfig) {
         this.inboundRtpQueue = inboundRtpQueue;
         this.agentConfig = agentConfig;
+        this.bufferPool = MediaBufferPool.shared(agentConfig.getMediaBufferSize(), agentConfig.isRtpDirectBuffers());
+        this.receivePacket = new DatagramPacket(new byte[0], 0);
+        this.scratchData = agentConfig.isRtpDirectBuffers() ? new byte[agentConfig.getMediaBufferSize()] : null;
     }
 
     /**
@@ -54,27 +67,51 @@ public class RtpReceiverImpl implements DataReceiver {
         } catch (IOException e) {
             LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
             return;
+        } finally {
+            if (pendingBuffer != null) {
+                pendingBuffer.release();
+                pendingBuffer = null;
+            }
         }
         LOGGER.info("{} stopped listening on udp:{}:{}", agentConfig.getAgentName(), agentConfig.getRtpLocalIp(), agentConfig.getRtpLocalPort());
     }
 
     /**
-     * Helper function which receives the incoming packets and pushes them into the inboound queue
+     * Helper function which receives the incoming packets into pooled buffers and pushes them into the inbound queue.
+     * Only the received length is forwarded, not the whole buffer. A datagram filling the whole buffer may have been
+     * truncated and is dropped.
      * @param serverSocket the DatagramSocket which listens for Rtp Packets
      * @throws IOException
      */
     private void readBytes(DatagramSocket serverSocket) throws IOException {
-        byte[] receiveData;
-        DatagramPacket receivePacket;
+        if (pendingBuffer == null) {
+            pendingBuffer = bufferPool.acquire();
+        }
+        if (pendingBuffer.hasArray()) {
+            receivePacket.setData(pendingBuffer.array(), pendingBuffer.arrayOffset(), pendingBuffer.getCapacity());
+        } else {
+            receivePacket.setData(scratchData, 0, scratchData.length);
+        }
         try {
-            receiveData = new byte[agentConfig.getRtpPacketSize()];
-            receivePacket = new DatagramPacket(receiveData, agentConfig.getRtpPacketSize());
             serverSocket.receive(receivePacket);
-
-            inboundRtpQueue.offer(receivePacket.getData());
         } catch (SocketTimeoutException e) {
             //no message received, timeout, check for exit condition in while loop
+            return;
         }
+        int receivedLength = receivePacket.getLength();
+        if (receivedLength == pendingBuffer.getCapacity()) { //scratchData is as large as the pooled buffers
+            if (truncatedCount++ == 0) {
+                LOGGER.warn("Rtp packet larger than {} bytes received by {}, dropped", receivedLength, agentConfig.getAgentName());
+            }
+            return; //pending buffer is reused for the next datagram
+        }
+        pendingBuffer.setLength(receivedLength);
+        pendingBuffer.setTimestampNanos(System.nanoTime());
+        if (!pendingBuffer.hasArray()) {
+            pendingBuffer.getBuffer().put(scratchData, 0, receivedLength);
+        }
+        inboundRtpQueue.offer(pendingBuffer);
+        pendingBuffer = null;
     }
 
     /**
@@ -91,4 +128,8 @@ public class RtpReceiverImpl implements DataReceiver {
     public void stop() {
         exit = true;
     }
+
+    public long getTruncatedCount() {
+        return truncatedCount;
+    }
 }
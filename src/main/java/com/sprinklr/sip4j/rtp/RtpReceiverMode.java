@@ -0,0 +1,31 @@
+package com.sprinklr.sip4j.rtp;
+
+/**
+ * Defines constants for the way an Agent receives RTP packets
+ */
+public class RtpReceiverMode {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private RtpReceiverMode() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Each Agent blocks a dedicated thread on its own DatagramSocket, see RtpReceiverImpl
+     */
+    public static final String THREAD = "THREAD";
+
+    /**
+     * The Agent's channel is serviced by the node wide selector I/O threads, see SelectorRtpReceiverImpl
+     */
+    public static final String SELECTOR = "SELECTOR";
+
+    /**
+     * The Agent's rtpLocalPort is shared with other Agents, packets are demultiplexed by remote address and SSRC,
+     * see SharedPortRtpReceiverImpl
+     */
+    public static final String SHARED_PORT = "SHARED_PORT";
+
+}
@@ -0,0 +1,184 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reception statistics of the RTP stream received from Ozonetel, as reported in RTCP report blocks: sequence number
+ * tracking and loss as per RFC 3550 appendix A.1 and A.3, interarrival jitter as per appendix A.8.
+ * A new SSRC is only taken once MIN_SEQUENTIAL packets in sequence have been received from it (the probation of
+ * RFC 3550 appendix A.1), then restarts the statistics. Packets of other sources are ignored.
+ * Updated by the thread receiving the packets, read by the thread sending the reports.
+ */
+public class RtpReceptionStatistics {
+
+    private static final int MAX_DROPOUT = 3000;
+    private static final int MAX_MISORDER = 100;
+    private static final int SEQUENCE_MOD = 1 << 16;
+    private static final int MIN_SEQUENTIAL = 2;
+
+    private final RtpPacketView packetView = new RtpPacketView();
+    private final int clockRate;
+
+    private volatile boolean started = false;
+    private volatile int ssrc;
+    private volatile int baseSequenceNumber;
+    private volatile int maxSequenceNumber;
+    private volatile long cycles;
+    private volatile long receivedCount;
+    private volatile double jitterUnits;
+    private long previousTransit;
+    private boolean hasPreviousTransit;
+
+    //source on probation, which replaces the current one once enough packets in sequence have been received from it
+    private int candidateSsrc;
+    private int candidateSequenceNumber;
+    private int probation = 0;
+
+    //state of the previous report, used to compute the fraction lost over the reporting interval
+    private long expectedPrior;
+    private long receivedPrior;
+    private volatile int fractionLost;
+
+    /**
+     * Creates the statistics of a stream
+     * @param clockRate the RTP clock rate of the stream, e.g. 8000 for PCMU
+     */
+    public RtpReceptionStatistics(int clockRate) {
+        this.clockRate = clockRate;
+    }
+
+    /**
+     * Accounts for a packet received from Ozonetel
+     * @param packet the rtp packet, left unchanged
+     * @param arrivalNanos the arrival time of the packet, as per System.nanoTime()
+     */
+    public void onPacket(MediaBuffer packet, long arrivalNanos) {
+        if (!packetView.wrap(packet).isValid()) {
+            return;
+        }
+        int sequenceNumber = packetView.getSequenceNumber();
+        int packetSsrc = packetView.getSsrc();
+        if (!started || packetSsrc != ssrc) {
+            if (!isConfirmedSource(packetSsrc, sequenceNumber)) {
+                return; //a stray packet, or a new source still on probation
+            }
+            restart(packetSsrc, sequenceNumber);
+        } else {
+            int delta = (sequenceNumber - maxSequenceNumber) & 0xFFFF;
+            if (delta < MAX_DROPOUT) {
+                if (sequenceNumber < maxSequenceNumber) {
+                    cycles += SEQUENCE_MOD; //wrapped
+                }
+                maxSequenceNumber = sequenceNumber;
+            } else if (delta <= SEQUENCE_MOD - MAX_MISORDER) {
+                restart(ssrc, sequenceNumber); //the sender restarted its numbering
+            }
+            //otherwise a duplicate or reordered packet, counted but not moving the highest sequence number
+        }
+        receivedCount++;
+        updateJitter(packetView.getTimeStamp(), arrivalNanos);
+    }
+
+    /**
+     * Puts a new source on probation, or confirms it once MIN_SEQUENTIAL packets in sequence have been received
+     * @return true if the packet confirms the source
+     */
+    private boolean isConfirmedSource(int packetSsrc, int sequenceNumber) {
+        if (probation > 0 && packetSsrc == candidateSsrc && sequenceNumber == ((candidateSequenceNumber + 1) & 0xFFFF)) {
+            candidateSequenceNumber = sequenceNumber;
+            return --probation == 0;
+        }
+        candidateSsrc = packetSsrc;
+        candidateSequenceNumber = sequenceNumber;
+        probation = MIN_SEQUENTIAL - 1;
+        return false;
+    }
+
+    private void restart(int newSsrc, int sequenceNumber) {
+        ssrc = newSsrc;
+        baseSequenceNumber = sequenceNumber;
+        maxSequenceNumber = sequenceNumber;
+        cycles = 0;
+        receivedCount = 0;
+        expectedPrior = 0;
+        receivedPrior = 0;
+        hasPreviousTransit = false;
+        jitterUnits = 0;
+        probation = 0;
+        started = true;
+    }
+
+    private void updateJitter(int timeStamp, long arrivalNanos) {
+        long arrivalUnits = TimeUnit.NANOSECONDS.toMicros(arrivalNanos) * clockRate / 1_000_000;
+        long transit = arrivalUnits - (timeStamp & 0xFFFFFFFFL);
+        if (hasPreviousTransit) {
+            long d = Math.abs(transit - previousTransit);
+            if (d < (long) clockRate * 60) { //ignore timestamp jumps, e.g. a wrap, rather than reporting minutes of jitter
+                jitterUnits += (d - jitterUnits) / 16;
+            }
+        }
+        previousTransit = transit;
+        hasPreviousTransit = true;
+    }
+
+    /**
+     * Closes the current reporting interval, to be called once per report block
+     * @return the fraction of the packets lost since the previous call, in 1/256, as in the report block
+     */
+    public int closeInterval() {
+        long expected = getExpectedCount();
+        long received = receivedCount;
+        long expectedInterval = expected - expectedPrior;
+        long lostInterval = expectedInterval - (received - receivedPrior);
+        expectedPrior = expected;
+        receivedPrior = received;
+        fractionLost = expectedInterval == 0 || lostInterval <= 0 ? 0 : (int) ((lostInterval << 8) / expectedInterval);
+        return fractionLost;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public int getSsrc() {
+        return ssrc;
+    }
+
+    public long getExtendedHighestSequenceNumber() {
+        return cycles + maxSequenceNumber;
+    }
+
+    public long getExpectedCount() {
+        return started ? getExtendedHighestSequenceNumber() - baseSequenceNumber + 1 : 0;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Returns the number of packets lost since the start of the stream, negative if duplicates were received
+     * @return the cumulative number of packets lost
+     */
+    public long getCumulativeLost() {
+        return getExpectedCount() - receivedCount;
+    }
+
+    /**
+     * Returns the fraction lost computed by the last call to closeInterval()
+     * @return the fraction lost, in 1/256
+     */
+    public int getFractionLost() {
+        return fractionLost;
+    }
+
+    public long getJitterUnits() {
+        return (long) jitterUnits;
+    }
+
+    public double getJitterMs() {
+        return jitterUnits * 1000 / clockRate;
+    }
+}
@@ -0,0 +1,214 @@
+package com.sprinklr.sip4j.rtp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small fixed set of I/O threads, each running a Selector, which services the RTP channels of all Agents of the node.
+ * Replaces one blocking receiver thread per Agent. A channel is always serviced by the same thread, so each Agent's
+ * inbound queue keeps a single producer.
+ */
+public class RtpSelectorGroup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RtpSelectorGroup.class);
+    //an I/O thread runs its pending tasks within one select, this only guards against a stuck thread
+    private static final long UNREGISTER_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private final SelectorLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final Map<DatagramChannel, SelectorLoop> loopsByChannel = new ConcurrentHashMap<>();
+
+    /**
+     * Handles readiness of a channel registered with the group. Called on the I/O thread owning the channel
+     */
+    interface ReadHandler {
+
+        /**
+         * Called when the channel has datagrams to be read. Implementations must not block
+         * @param channel the readable channel
+         * @throws IOException
+         */
+        void onReadable(DatagramChannel channel) throws IOException;
+    }
+
+    /**
+     * Lazily created group shared by all Agents of the node, with one I/O thread per core
+     */
+    private static class DefaultGroupHolder {
+        private static final RtpSelectorGroup DEFAULT_GROUP = new RtpSelectorGroup(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a group and starts its I/O threads
+     * @param nThreads number of I/O threads
+     */
+    public RtpSelectorGroup(int nThreads) {
+        loops = new SelectorLoop[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            try {
+                loops[i] = new SelectorLoop(Selector.open());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open selector for rtp I/O thread", e);
+            }
+            Thread thread = new Thread(loops[i], "rtp-selector-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        LOGGER.info("Started rtp selector group with {} I/O threads", nThreads);
+    }
+
+    /**
+     * Returns the group shared by all Agents of the node
+     * @return the shared group
+     */
+    public static RtpSelectorGroup getDefault() {
+        return DefaultGroupHolder.DEFAULT_GROUP;
+    }
+
+    /**
+     * Registers a non-blocking channel for reading. The registration completes asynchronously on the I/O thread.
+     * @param channel the channel to be serviced
+     * @param handler the handler called when the channel is readable
+     */
+    void register(DatagramChannel channel, ReadHandler handler) {
+        SelectorLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        loopsByChannel.put(channel, loop);
+        loop.pendingTasks.offer(() -> {
+            try {
+                channel.register(loop.selector, SelectionKey.OP_READ, handler);
+            } catch (ClosedChannelException e) {
+                LOGGER.warn("Rtp channel closed before it could be registered: {}", e.toString());
+            }
+        });
+        loop.selector.wakeup();
+    }
+
+    /**
+     * Closes a registered channel on the I/O thread owning it, and waits for it. Once this returns the channel's
+     * handler is not called anymore and the local port is free to be bound again. Must not be called on an I/O thread.
+     * @param channel the channel to be closed
+     * @throws IOException
+     */
+    void unregister(DatagramChannel channel) throws IOException {
+        SelectorLoop loop = loopsByChannel.remove(channel);
+        if (loop == null) {
+            channel.close();
+            return;
+        }
+        boolean closed = runAndAwait(loop, () -> {
+            try {
+                SelectionKey key = channel.keyFor(loop.selector);
+                if (key != null) {
+                    key.cancel();
+                    loop.selector.selectNow(); //deregisters the key, so that closing the channel releases the port at once
+                }
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("IOException while closing rtp channel: {}", e.toString());
+            }
+        });
+        if (!closed) {
+            LOGGER.warn("Rtp I/O thread did not close channel {} in time", channel);
+            channel.close();
+        }
+    }
+
+    /**
+     * Waits for the I/O thread owning a registered channel to finish the read in progress, if any. Once this returns,
+     * changes made before the call are seen by every later read of the channel. Must not be called on an I/O thread.
+     * @param channel the registered channel
+     */
+    void awaitPendingReads(DatagramChannel channel) {
+        SelectorLoop loop = loopsByChannel.get(channel);
+        if (loop != null && !runAndAwait(loop, () -> { })) {
+            LOGGER.warn("Rtp I/O thread did not finish reading channel {} in time", channel);
+        }
+    }
+
+    /**
+     * Runs a task on an I/O thread, after the keys it is handling, and waits for it
+     * @return true if the task ran in time
+     */
+    private static boolean runAndAwait(SelectorLoop loop, Runnable task) {
+        CountDownLatch done = new CountDownLatch(1);
+        loop.pendingTasks.offer(() -> {
+            try {
+                task.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        loop.selector.wakeup();
+        try {
+            return done.await(UNREGISTER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Single I/O thread servicing the channels registered with its selector
+     */
+    private static class SelectorLoop implements Runnable {
+
+        private final Selector selector;
+        //registrations and closes, run in order on the I/O thread
+        private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+        SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = pendingTasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("IOException in rtp selector loop: {}", e.toString());
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid() || !key.isReadable()) {
+                return;
+            }
+            ReadHandler handler = (ReadHandler) key.attachment();
+            try {
+                handler.onReadable((DatagramChannel) key.channel());
+            } catch (ClosedChannelException e) {
+                key.cancel(); //channel closed by the receiver being stopped
+            } catch (IOException | RuntimeException e) {
+                //one misbehaving channel must not stop the loop serving all other Agents
+                LOGGER.error("Exception while reading rtp channel {}: {}", key.channel(), e.toString());
+            }
+        }
+    }
+}
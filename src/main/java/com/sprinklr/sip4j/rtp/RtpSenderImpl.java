@@ -2,6 +2,9 @@ package com.sprinklr.sip4j.rtp;
 
 import com.sprinklr.sip4j.agent.AgentConfig;
 import com.sprinklr.sip4j.agent.DataSender;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,7 +13,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 import static com.sprinklr.sip4j.utils.Constants.SLEEP_CPU_TIME_MS;
 
@@ -21,9 +24,11 @@ public class RtpSenderImpl implements DataSender {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RtpSenderImpl.class);
 
-    private final Queue<byte[]> outboundRtpQueue;
+    private final RingBuffer<MediaBuffer> outboundRtpQueue;
     private final RtpAddress rtpRemoteAddress;
     private final AgentConfig agentConfig;
+    private final RtcpSession rtcpSession;
+    private final AgentMetrics metrics;
 
     private volatile boolean exit = false;
 
@@ -33,9 +38,13 @@ public class RtpSenderImpl implements DataSender {
      * @param rtpRemoteAddress The remote RTP address where the packets are to be sent
      * @param outboundRtpQueue The queue from which data is polled and sent to the remote destination
      * @param agentConfig The configuration of the Agent to whom this RtpSender entity belongs
+     * @param rtcpSession The RTCP session accounting for the packets sent, null if RTCP is disabled
+     * @param metrics The metrics of the Agent, accounting for the bot's packets sent, null for none
      */
-    public RtpSenderImpl(RtpAddress rtpRemoteAddress, Queue<byte[]> outboundRtpQueue, AgentConfig agentConfig) {
+    public RtpSenderImpl(RtpAddress rtpRemoteAddress, RingBuffer<MediaBuffer> outboundRtpQueue, AgentConfig agentConfig, RtcpSession rtcpSession, AgentMetrics metrics) {
         this.rtpRemoteAddress = rtpRemoteAddress;
+        this.rtcpSession = rtcpSession;
+        this.metrics = metrics;
         this.outboundRtpQueue = outboundRtpQueue;
         this.agentConfig = agentConfig;
     }
@@ -58,14 +67,40 @@ public class RtpSenderImpl implements DataSender {
         try (DatagramSocket datagramSocket = new DatagramSocket()) {
 
             LOGGER.info("Starting rtp transmission from {}", agentConfig.getAgentName());
+            DatagramPacket sendPacket = new DatagramPacket(new byte[0], 0, remoteRtpIp, remoteRtpPort);
+            byte[] scratch = null; //direct buffers are copied to it, DatagramSocket only sends arrays
 
             while (!exit) {
-                byte[] data = outboundRtpQueue.poll(); //packet size should be correctly configured and sent from bot websocket server side
+                //packet size should be correctly configured and sent from bot websocket server side, or by the packetizer
+                MediaBuffer data = outboundRtpQueue.poll(SLEEP_CPU_TIME_MS, TimeUnit.MILLISECONDS); //times out to re-check the exit flag
                 if (data == null) {
-                    Thread.sleep(SLEEP_CPU_TIME_MS); //sleep or use blocking queue, refer https://www.baeldung.com/java-concurrent-queues
                     continue;
                 }
-                sendBytes(remoteRtpIp, remoteRtpPort, datagramSocket, data);
+                try {
+                    if (data.hasArray()) {
+                        sendPacket.setData(data.array(), data.arrayOffset(), data.getLength());
+                    } else {
+                        if (scratch == null || scratch.length < data.getLength()) {
+                            scratch = new byte[data.getCapacity()];
+                        }
+                        data.getBuffer().get(scratch, 0, data.getLength());
+                        sendPacket.setData(scratch, 0, data.getLength());
+                    }
+                    datagramSocket.send(sendPacket);
+                    if (rtcpSession != null) {
+                        rtcpSession.onPacketSent(data);
+                    }
+                    if (metrics != null) {
+                        metrics.getToCarrier().add(data.getLength());
+                        long sentNanos = System.nanoTime();
+                        metrics.getOutboundTotal().record(sentNanos - data.getTimestampNanos());
+                        if (data.getResponseToNanos() != 0) {
+                            metrics.getResponseLatency().record(sentNanos - data.getResponseToNanos());
+                        }
+                    }
+                } finally {
+                    data.release();
+                }
             }
         } catch (IOException e) {
             LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
@@ -78,20 +113,6 @@ public class RtpSenderImpl implements DataSender {
         LOGGER.info("Stopping rtp transmission from {}", agentConfig.getAgentName());
     }
 
-    /**
-     * Helper function which sends the data
-     * @param remoteRtpIp the IP address of the remote RTP address
-     * @param remoteRtpPort the port of the remote RTP address
-     * @param datagramSocket the DatagramSocket used to send the data
-     * @param data the data in bytes to be sent
-     * @throws IOException
-     */
-    private void sendBytes(InetAddress remoteRtpIp, int remoteRtpPort, DatagramSocket datagramSocket, byte[] data) throws IOException {
-        DatagramPacket sendPacket;
-        sendPacket = new DatagramPacket(data, data.length, remoteRtpIp, remoteRtpPort);
-        datagramSocket.send(sendPacket);
-    }
-
     /**
      * Overridden method of Runnable which starts this on a new thread
      */
@@ -0,0 +1,26 @@
+package com.sprinklr.sip4j.rtp;
+
+/**
+ * Defines constants for the way an Agent sends RTP packets
+ */
+public class RtpSenderMode {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private RtpSenderMode() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Each Agent has a dedicated thread which sends packets as soon as the bot returns them, see RtpSenderImpl
+     */
+    public static final String THREAD = "THREAD";
+
+    /**
+     * One packet per ptime is sent by the node wide media clock, with continuous sequence numbers and timestamps,
+     * see PacedRtpSenderImpl
+     */
+    public static final String PACED = "PACED";
+
+}
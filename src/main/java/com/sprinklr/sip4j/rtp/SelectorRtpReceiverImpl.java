@@ -0,0 +1,150 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.agent.DataReceiver;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.MediaBufferPool;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Agent's RTP receiver which does not own a thread. Its non-blocking channel is serviced by the node wide
+ * RtpSelectorGroup, which pushes the received packets into the Agent's inbound queue.
+ */
+public class SelectorRtpReceiverImpl implements DataReceiver, RtpSelectorGroup.ReadHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorRtpReceiverImpl.class);
+    //datagrams read per readiness event before moving on to the next channel, keeps the I/O threads fair between Agents
+    private static final int MAX_READS_PER_EVENT = 16;
+    private final RingBuffer<MediaBuffer> inboundRtpQueue;
+    private final AgentConfig agentConfig;
+    private final MediaBufferPool bufferPool;
+    private final RtpSelectorGroup selectorGroup;
+    private DatagramChannel channel;
+    //buffer waiting for the next datagram, only touched by the I/O thread owning the channel
+    private MediaBuffer pendingBuffer;
+    private volatile long truncatedCount = 0;
+
+    /**
+     * Instantiates the RtpReceiver entity of an Agent, serviced by the default selector group
+     * @param inboundRtpQueue The queue where the received Rtp packets are stored, in buffers taken from the shared pool
+     * @param agentConfig The configuration the Agent to whom this RtpReceiver entity belongs
+     */
+    public SelectorRtpReceiverImpl(RingBuffer<MediaBuffer> inboundRtpQueue, AgentConfig agentConfig) {
+        this(inboundRtpQueue, agentConfig, RtpSelectorGroup.getDefault());
+    }
+
+    /**
+     * Instantiates the RtpReceiver entity of an Agent
+     * @param inboundRtpQueue The queue where the received Rtp packets are stored, in buffers taken from the shared pool
+     * @param agentConfig The configuration the Agent to whom this RtpReceiver entity belongs
+     * @param selectorGroup The I/O threads which service the channel
+     */
+    public SelectorRtpReceiverImpl(RingBuffer<MediaBuffer> inboundRtpQueue, AgentConfig agentConfig, RtpSelectorGroup selectorGroup) {
+        this.inboundRtpQueue = inboundRtpQueue;
+        this.agentConfig = agentConfig;
+        this.bufferPool = MediaBufferPool.shared(agentConfig.getMediaBufferSize(), agentConfig.isRtpDirectBuffers());
+        this.selectorGroup = selectorGroup;
+    }
+
+    /**
+     * Binds the channel at the specified port and address and hands it over to the selector group. Returns immediately.
+     * @throws UncheckedIOException if the port cannot be bound, the call would otherwise run without a receiver
+     */
+    @Override
+    public void start() {
+        try {
+            channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(agentConfig.getRtpLocalIp(), agentConfig.getRtpLocalPort()));
+        } catch (IOException e) {
+            LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
+            closeQuietly();
+            throw new UncheckedIOException("Could not bind rtp port " + agentConfig.getRtpLocalPort() + " of " + agentConfig.getAgentName(), e);
+        }
+        selectorGroup.register(channel, this);
+        LOGGER.info("{} listening on udp:{}:{} using selector", agentConfig.getAgentName(), agentConfig.getRtpLocalIp(), agentConfig.getRtpLocalPort());
+    }
+
+    /**
+     * Reads the pending datagrams into pooled buffers and pushes them into the inbound queue. A datagram filling the whole
+     * buffer may have been truncated and is dropped. Called on the I/O thread
+     * @param readableChannel the channel of this receiver
+     * @throws IOException
+     */
+    @Override
+    public void onReadable(DatagramChannel readableChannel) throws IOException {
+        for (int i = 0; i < MAX_READS_PER_EVENT; i++) {
+            if (pendingBuffer == null) {
+                pendingBuffer = bufferPool.acquire();
+            }
+            ByteBuffer byteBuffer = pendingBuffer.getWritableBuffer();
+            SocketAddress source = readableChannel.receive(byteBuffer);
+            if (source == null) {
+                return; //no more datagrams, keep the buffer for the next event
+            }
+            if (!byteBuffer.hasRemaining()) {
+                if (truncatedCount++ == 0) {
+                    LOGGER.warn("Rtp packet larger than {} bytes received by {}, dropped", byteBuffer.capacity(), agentConfig.getAgentName());
+                }
+                continue; //pending buffer is reused for the next datagram
+            }
+            pendingBuffer.setLength(byteBuffer.position());
+            pendingBuffer.setTimestampNanos(System.nanoTime());
+            inboundRtpQueue.offer(pendingBuffer);
+            pendingBuffer = null;
+        }
+    }
+
+    /**
+     * Overridden method of Runnable. Registers the receiver and returns, no thread is held
+     */
+    @Override
+    public void run() {
+        start();
+    }
+
+    /**
+     * Stops the listener. Returns once the I/O thread has closed the channel, after which no packet is pushed into the
+     * inbound queue and the port can be bound again
+     */
+    @Override
+    public void stop() {
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+        try {
+            selectorGroup.unregister(channel);
+        } catch (IOException e) {
+            LOGGER.error("IOException while closing rtp channel in {}: {}", agentConfig.getAgentName(), e.toString());
+        }
+        if (pendingBuffer != null) {
+            pendingBuffer.release();
+            pendingBuffer = null;
+        }
+        LOGGER.info("{} stopped listening on udp:{}:{}", agentConfig.getAgentName(), agentConfig.getRtpLocalIp(), agentConfig.getRtpLocalPort());
+    }
+
+    public long getTruncatedCount() {
+        return truncatedCount;
+    }
+
+    private void closeQuietly() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("IOException while closing rtp channel in {}: {}", agentConfig.getAgentName(), e.toString());
+        }
+    }
+}
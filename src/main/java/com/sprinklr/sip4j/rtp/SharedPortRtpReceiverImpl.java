@@ -0,0 +1,83 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.agent.DataReceiver;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Agent's RTP receiver for a port shared with other Agents. It does not own a socket or a thread, it only adds a route
+ * for the call's remote RTP address to the SharedRtpPort, which demultiplexes the incoming packets.
+ */
+public class SharedPortRtpReceiverImpl implements DataReceiver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedPortRtpReceiverImpl.class);
+    private final RingBuffer<MediaBuffer> inboundRtpQueue;
+    private final AgentConfig agentConfig;
+    private final RtpAddress rtpRemoteAddress;
+    private final RtpSelectorGroup selectorGroup;
+    private SharedRtpPort sharedRtpPort;
+    private SharedRtpPort.Route route;
+
+    /**
+     * Instantiates the RtpReceiver entity of an Agent, serviced by the default selector group
+     * @param inboundRtpQueue The queue where the received Rtp packets are stored
+     * @param agentConfig The configuration the Agent to whom this RtpReceiver entity belongs. rtpLocalPort is the shared port
+     * @param rtpRemoteAddress The remote RTP address of the call, as read from the INVITE SDP
+     */
+    public SharedPortRtpReceiverImpl(RingBuffer<MediaBuffer> inboundRtpQueue, AgentConfig agentConfig, RtpAddress rtpRemoteAddress) {
+        this.inboundRtpQueue = inboundRtpQueue;
+        this.agentConfig = agentConfig;
+        this.rtpRemoteAddress = rtpRemoteAddress;
+        this.selectorGroup = RtpSelectorGroup.getDefault();
+    }
+
+    /**
+     * Joins the shared port and starts receiving the packets of the call. Returns immediately.
+     * @throws UncheckedIOException if the port cannot be opened, the call would otherwise run without a receiver
+     */
+    @Override
+    public void start() {
+        InetSocketAddress localAddress = new InetSocketAddress(agentConfig.getRtpLocalIp(), agentConfig.getRtpLocalPort());
+        InetSocketAddress remoteAddress = new InetSocketAddress(rtpRemoteAddress.getAddress(), rtpRemoteAddress.getPort());
+        try {
+            sharedRtpPort = SharedRtpPort.acquire(localAddress, agentConfig.getMediaBufferSize(), agentConfig.isRtpDirectBuffers(), selectorGroup);
+        } catch (IOException e) {
+            LOGGER.error("IOException in {}: {}", agentConfig.getAgentName(), e.toString());
+            throw new UncheckedIOException("Could not open shared rtp port " + agentConfig.getRtpLocalPort() + " of " + agentConfig.getAgentName(), e);
+        }
+        route = sharedRtpPort.addRoute(remoteAddress, inboundRtpQueue);
+        LOGGER.info("{} receiving rtp from {} on shared port udp:{}", agentConfig.getAgentName(), remoteAddress, localAddress);
+    }
+
+    /**
+     * Overridden method of Runnable. Joins the shared port and returns, no thread is held
+     */
+    @Override
+    public void run() {
+        start();
+    }
+
+    /**
+     * Stops routing the call's packets to this Agent and leaves the shared port
+     */
+    @Override
+    public void stop() {
+        if (sharedRtpPort == null) {
+            return;
+        }
+        sharedRtpPort.removeRoute(route);
+        try {
+            sharedRtpPort.release();
+        } catch (IOException e) {
+            LOGGER.error("IOException while leaving shared rtp port in {}: {}", agentConfig.getAgentName(), e.toString());
+        }
+        LOGGER.info("{} stopped receiving rtp on shared port udp:{}:{}", agentConfig.getAgentName(), agentConfig.getRtpLocalIp(), agentConfig.getRtpLocalPort());
+    }
+}
@@ -0,0 +1,294 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.MediaBufferPool;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+
+/**
+ * A local UDP port shared by many Agents. Incoming packets are routed to the right Agent by the remote address and port
+ * learnt from the INVITE SDP and, once the first packet of a call has been seen, by the RTP SSRC.
+ * Lookups are lock-free reads of concurrent maps, done on the selector I/O thread which services the port.
+ * Packets are read into buffers large enough for the Agent needing the largest ones, as they are transcoded in place.
+ */
+public class SharedRtpPort implements RtpSelectorGroup.ReadHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedRtpPort.class);
+    private static final int MAX_READS_PER_EVENT = 64;
+    //ports are opened on first use and closed when the last Agent using them leaves, guarded by the class lock
+    private static final Map<InetSocketAddress, SharedRtpPort> OPEN_PORTS = new HashMap<>();
+
+    private final InetSocketAddress localAddress;
+    private final RtpSelectorGroup selectorGroup;
+    private final boolean directBuffers;
+    //replaced by the pool of larger buffers when an Agent needing them joins, guarded by the class lock for writes
+    private volatile MediaBufferPool bufferPool;
+    private final DatagramChannel channel;
+    private final Map<InetSocketAddress, Route> routesByAddress = new ConcurrentHashMap<>();
+    private final Map<Integer, Route> routesBySsrc = new ConcurrentHashMap<>();
+    private final LongAdder unroutableCount = new LongAdder();
+    private final LongAdder truncatedCount = new LongAdder();
+    private final LongAdder ssrcCollisionCount = new LongAdder();
+    private int referenceCount = 0;
+    private MediaBuffer pendingBuffer;
+    //only used on the I/O thread servicing the port
+    private final RtpPacketView packetView = new RtpPacketView();
+
+    /**
+     * Destination of the packets of one call
+     */
+    public static class Route {
+        private final InetSocketAddress remoteAddress;
+        private final RingBuffer<MediaBuffer> inboundRtpQueue;
+        private volatile Integer ssrc;
+        //set when the call ends, packets matching the route are dropped from then on
+        private volatile boolean removed = false;
+
+        private Route(InetSocketAddress remoteAddress, RingBuffer<MediaBuffer> inboundRtpQueue) {
+            this.remoteAddress = remoteAddress;
+            this.inboundRtpQueue = inboundRtpQueue;
+        }
+    }
+
+    private SharedRtpPort(InetSocketAddress localAddress, int bufferSize, boolean directBuffers, RtpSelectorGroup selectorGroup) throws IOException {
+        this.localAddress = localAddress;
+        this.selectorGroup = selectorGroup;
+        this.directBuffers = directBuffers;
+        this.bufferPool = MediaBufferPool.shared(bufferSize, directBuffers);
+        this.channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.bind(localAddress);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the shared port bound to the local address, opening it if no Agent is using it yet.
+     * Every call must be matched by a call to release()
+     * @param localAddress the local address and port to listen on
+     * @param bufferSize size of the buffers the Agent needs, the port's buffers are grown to it if smaller
+     * @param directBuffers true if the pooled buffers are to be allocated off-heap, as set by the Agent opening the port
+     * @param selectorGroup the I/O threads which service the port
+     * @return the shared port
+     * @throws IOException
+     */
+    public static synchronized SharedRtpPort acquire(InetSocketAddress localAddress, int bufferSize, boolean directBuffers, RtpSelectorGroup selectorGroup) throws IOException {
+        SharedRtpPort port = OPEN_PORTS.get(localAddress);
+        if (port == null) {
+            port = new SharedRtpPort(localAddress, bufferSize, directBuffers, selectorGroup);
+            selectorGroup.register(port.channel, port);
+            OPEN_PORTS.put(localAddress, port);
+            LOGGER.info("Opened shared rtp port udp:{}", localAddress);
+        } else if (bufferSize > port.bufferPool.getBufferSize()) {
+            port.bufferPool = MediaBufferPool.shared(bufferSize, port.directBuffers);
+            LOGGER.info("Shared rtp port udp:{} now reads into buffers of {} bytes", localAddress, bufferSize);
+        }
+        port.referenceCount++;
+        return port;
+    }
+
+    /**
+     * Releases a reference to the port, closing it when no Agent is using it anymore. The channel is closed before the
+     * class lock is dropped, so that an Agent acquiring the same address next, e.g. for the next call of a persistent
+     * Agent, binds a port which is free
+     * @throws IOException
+     */
+    public void release() throws IOException {
+        synchronized (SharedRtpPort.class) {
+            referenceCount--;
+            if (referenceCount > 0) {
+                return;
+            }
+            OPEN_PORTS.remove(localAddress);
+            selectorGroup.unregister(channel); //never takes the class lock, the I/O thread only reads the port
+        }
+        if (pendingBuffer != null) {
+            pendingBuffer.release(); //the I/O thread is done with the port
+            pendingBuffer = null;
+        }
+        LOGGER.info("Closed shared rtp port udp:{}", localAddress);
+    }
+
+    /**
+     * Starts routing the packets sent from the remote address to the queue
+     * @param remoteAddress remote rtp address and port of the call, as read from the SDP
+     * @param inboundRtpQueue the queue of the Agent handling the call
+     * @return the route, to be passed to removeRoute() at the end of the call
+     */
+    public Route addRoute(InetSocketAddress remoteAddress, RingBuffer<MediaBuffer> inboundRtpQueue) {
+        Route route = new Route(remoteAddress, inboundRtpQueue);
+        Route previous = routesByAddress.put(remoteAddress, route);
+        if (previous != null) {
+            LOGGER.warn("Rtp route for {} on udp:{} replaced by a new call", remoteAddress, localAddress);
+        }
+        return route;
+    }
+
+    /**
+     * Stops routing packets of a call. Returns once the I/O thread has finished the read in progress, after which
+     * nothing is pushed into the call's queue anymore
+     * @param route the route returned by addRoute()
+     */
+    public void removeRoute(Route route) {
+        route.removed = true;
+        routesByAddress.remove(route.remoteAddress, route);
+        selectorGroup.awaitPendingReads(channel);
+        Integer ssrc = route.ssrc; //final now, the route is not matched by any read anymore
+        if (ssrc != null) {
+            routesBySsrc.remove(ssrc, route);
+        }
+    }
+
+    /**
+     * Reads the pending datagrams and pushes each one into the queue of the Agent it belongs to. A datagram filling the
+     * whole buffer may have been truncated and is dropped. Called on the I/O thread
+     * @param readableChannel the channel of the port
+     * @throws IOException
+     */
+    @Override
+    public void onReadable(DatagramChannel readableChannel) throws IOException {
+        MediaBufferPool pool = bufferPool;
+        if (pendingBuffer != null && pendingBuffer.getCapacity() < pool.getBufferSize()) {
+            pendingBuffer.release(); //taken before an Agent needing larger buffers joined
+            pendingBuffer = null;
+        }
+        for (int i = 0; i < MAX_READS_PER_EVENT; i++) {
+            if (pendingBuffer == null) {
+                pendingBuffer = pool.acquire();
+            }
+            ByteBuffer byteBuffer = pendingBuffer.getWritableBuffer();
+            SocketAddress source = readableChannel.receive(byteBuffer);
+            if (source == null) {
+                return;
+            }
+            if (!byteBuffer.hasRemaining()) {
+                truncatedCount.increment();
+                LOGGER.debug("Dropping rtp packet larger than {} bytes from {} on udp:{}", byteBuffer.capacity(), source, localAddress);
+                continue; //may have been truncated, pending buffer is reused for the next datagram
+            }
+            pendingBuffer.setLength(byteBuffer.position());
+            pendingBuffer.setTimestampNanos(System.nanoTime());
+            Route route = findRoute(source, pendingBuffer);
+            if (route == null || route.removed) {
+                unroutableCount.increment();
+                LOGGER.debug("Dropping rtp packet from unknown source {} on udp:{}", source, localAddress);
+                continue; //pending buffer is reused for the next datagram
+            }
+            route.inboundRtpQueue.offer(pendingBuffer);
+            pendingBuffer = null;
+        }
+    }
+
+    /**
+     * Finds the call a packet belongs to, first by its source address and then by its SSRC.
+     * The SSRC is learnt from the first packet received from the address in the SDP, so that the call keeps
+     * receiving packets if the carrier's source port changes midway. Carriers which do not send from the port
+     * in their SDP are matched by host, as long as only one call from that host is still waiting for its first packet.
+     */
+    private Route findRoute(SocketAddress source, MediaBuffer packet) {
+        Route route = routesByAddress.get(source);
+        if (packet.getLength() < RTP_HEADER_SIZE) {
+            return route;
+        }
+        int ssrc = packetView.wrap(packet).getSsrc();
+        if (route != null) {
+            Integer learntSsrc = route.ssrc;
+            if (learntSsrc == null || learntSsrc != ssrc) {
+                if (learntSsrc != null) {
+                    routesBySsrc.remove(learntSsrc, route); //carrier switched to a new stream
+                }
+                route.ssrc = ssrc;
+                learnSsrc(ssrc, route);
+            }
+            return route;
+        }
+        route = routesBySsrc.get(ssrc);
+        if (route == null) {
+            route = latchBySourceHost((InetSocketAddress) source, ssrc);
+        }
+        return route;
+    }
+
+    /**
+     * Slow path, taken once per stream at most. Learns the SSRC for the only call from the source host which has not
+     * received a packet yet
+     * @return the matching route, or null if there is none or the match is ambiguous
+     */
+    private Route latchBySourceHost(InetSocketAddress source, int ssrc) {
+        Route candidate = null;
+        for (Route route : routesByAddress.values()) {
+            if (route.ssrc == null && route.remoteAddress.getAddress().equals(source.getAddress())) {
+                if (candidate != null) {
+                    return null;
+                }
+                candidate = route;
+            }
+        }
+        if (candidate != null) {
+            candidate.ssrc = ssrc;
+            learnSsrc(ssrc, candidate);
+            LOGGER.info("Rtp from {} matched by host to the call with sdp address {}", source, candidate.remoteAddress);
+        }
+        return candidate;
+    }
+
+    /**
+     * Routes the SSRC to the call, unless another call on the port already uses it. Colliding calls keep receiving by
+     * their source address, but neither is matched by SSRC if its source changes
+     */
+    private void learnSsrc(int ssrc, Route route) {
+        Route other = routesBySsrc.putIfAbsent(ssrc, route);
+        if (other != null && other != route) {
+            ssrcCollisionCount.increment();
+            LOGGER.warn("Rtp ssrc {} from {} already used by the call with sdp address {} on udp:{}, not routing by it",
+                    Integer.toUnsignedString(ssrc), route.remoteAddress, other.remoteAddress, localAddress);
+        }
+    }
+
+    public int getRouteCount() {
+        return routesByAddress.size();
+    }
+
+    public long getUnroutableCount() {
+        return unroutableCount.sum();
+    }
+
+    public long getTruncatedCount() {
+        return truncatedCount.sum();
+    }
+
+    public long getSsrcCollisionCount() {
+        return ssrcCollisionCount.sum();
+    }
+
+    public int getBufferSize() {
+        return bufferPool.getBufferSize();
+    }
+
+    @Override
+    public String toString() {
+        return "SharedRtpPort{" +
+                "localAddress=" + localAddress +
+                ", routeCount=" + getRouteCount() +
+                ", unroutableCount=" + getUnroutableCount() +
+                ", truncatedCount=" + getTruncatedCount() +
+                ", ssrcCollisionCount=" + getSsrcCollisionCount() +
+                '}';
+    }
+}
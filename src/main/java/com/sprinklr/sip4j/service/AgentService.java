@@ -3,7 +3,12 @@ package com.sprinklr.sip4j.service;
 import com.sprinklr.sip4j.agent.Agent;
 import com.sprinklr.sip4j.agent.AgentConfig;
 import com.sprinklr.sip4j.agent.AgentManager;
+import com.sprinklr.sip4j.buffer.MediaBufferPool;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+import com.sprinklr.sip4j.metrics.MediaMetrics;
+import com.sprinklr.sip4j.utils.ThreadModes;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.yaml.snakeyaml.Yaml;
 
@@ -13,6 +18,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -24,17 +30,24 @@ public class AgentService {
 
     private static final String YAML_CONFIG_DIR = "src/main/resources/yaml/";
     private static final int N_AGENTS = 3;
-    private final ThreadPoolExecutor executor;
+    private final ExecutorService executor;
     private final AgentManager agentManager;
     private final Yaml yaml;
 
     /**
-     * Initialises the member variables. Assigns a ThreadPoolExecutor, AgentManager and Yaml for the service
+     * Initialises the member variables. Assigns an executor, AgentManager and Yaml for the service
+     * @param threadMode PLATFORM runs at most N_AGENTS Agents, each on a platform thread. VIRTUAL runs every Agent on
+     *                   its own virtual thread, without limit, and needs Java 21
      */
-    public AgentService() {
-        executor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
-        executor.setCorePoolSize(N_AGENTS);
-        executor.setMaximumPoolSize(N_AGENTS);
+    public AgentService(@Value("${sip4j.agent.threadMode:" + ThreadModes.PLATFORM + "}") String threadMode) {
+        if (ThreadModes.VIRTUAL.equals(threadMode)) {
+            executor = ThreadModes.newExecutor(threadMode, N_AGENTS);
+        } else {
+            ThreadPoolExecutor platformExecutor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+            platformExecutor.setCorePoolSize(N_AGENTS);
+            platformExecutor.setMaximumPoolSize(N_AGENTS);
+            executor = platformExecutor;
+        }
         agentManager = new AgentManager();
         yaml = new Yaml();
     }
@@ -52,6 +65,18 @@ public class AgentService {
         executor.submit(agent);
     }
 
+    /**
+     * Stops a persistent agent by name. It stops once its current call, if any, has ended
+     * @param agentName name of the agent to be stopped
+     */
+    public void stopAgent(String agentName) {
+        Agent agent = agentManager.getAgentByName(agentName);
+        if (agent != null) {
+            agent.stop();
+            agentManager.removeAgentByName(agentName);
+        }
+    }
+
     /**
      * Shows statuses of all active agents
      * @return The statuses of all active agents
@@ -65,6 +90,32 @@ public class AgentService {
         return statuses;
     }
 
+    /**
+     * Shows allocation and hit rate counters of the media buffer pools shared by all agents
+     * @return The statistics of every shared buffer pool
+     */
+    public List<String> showBufferPoolStats() {
+        List<String> stats = new ArrayList<>();
+        for (MediaBufferPool pool : MediaBufferPool.getSharedPools()) {
+            stats.add(pool.toString());
+        }
+        return stats;
+    }
+
+    /**
+     * Shows the media latency histograms and throughput counters of the node, then of each running agent
+     * @return The metrics of the node followed by those of every running agent
+     */
+    public List<String> showMetrics() {
+        MediaMetrics mediaMetrics = MediaMetrics.getDefault();
+        List<String> metrics = new ArrayList<>();
+        metrics.add(mediaMetrics.getNodeMetrics().toString());
+        for (AgentMetrics agentMetrics : mediaMetrics.getAgentMetrics()) {
+            metrics.add(agentMetrics.toString());
+        }
+        return metrics;
+    }
+
     /**
      * Shuts down executor service. No more Agents can be started once this is called
      */
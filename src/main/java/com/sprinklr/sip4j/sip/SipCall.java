@@ -0,0 +1,76 @@
+package com.sprinklr.sip4j.sip;
+
+import com.sprinklr.sip4j.rtp.RtpAddress;
+
+import javax.sip.ServerTransaction;
+import javax.sip.message.Request;
+
+/**
+ * One dialog answered by a SipExtension, keyed by its Call-ID. Holds what the Agent needs to serve the call's media, and
+ * what the SipExtension needs to answer a CANCEL for it.
+ * Its state goes from CONNECTED to DISCONNECTED, when the caller sends a BYE or a CANCEL, and is read by the thread
+ * serving the call's media.
+ */
+public class SipCall {
+
+    private final String callId;
+    private final Request inviteRequest;
+    private final ServerTransaction inviteServerTransaction;
+    private final RtpAddress rtpRemoteAddress;
+    private volatile String sipState = SipState.CONNECTED;
+
+    /**
+     * Creates an answered call
+     * @param callId The Call-ID of the dialog
+     * @param inviteRequest The INVITE request, used to answer a CANCEL
+     * @param inviteServerTransaction The transaction of the INVITE, used to answer a CANCEL
+     * @param rtpRemoteAddress The remote RTP address, from the INVITE SDP
+     */
+    public SipCall(String callId, Request inviteRequest, ServerTransaction inviteServerTransaction, RtpAddress rtpRemoteAddress) {
+        this.callId = callId;
+        this.inviteRequest = inviteRequest;
+        this.inviteServerTransaction = inviteServerTransaction;
+        this.rtpRemoteAddress = rtpRemoteAddress;
+    }
+
+    public String getCallId() {
+        return callId;
+    }
+
+    public Request getInviteRequest() {
+        return inviteRequest;
+    }
+
+    public ServerTransaction getInviteServerTransaction() {
+        return inviteServerTransaction;
+    }
+
+    public RtpAddress getRtpRemoteAddress() {
+        return rtpRemoteAddress;
+    }
+
+    public String getSipState() {
+        return sipState;
+    }
+
+    public void setSipState(String sipState) {
+        this.sipState = sipState;
+    }
+
+    /**
+     * Returns whether the caller has ended the call, after which its media is to be stopped
+     * @return true once DISCONNECTED
+     */
+    public boolean isDisconnected() {
+        return SipState.DISCONNECTED.equals(sipState);
+    }
+
+    @Override
+    public String toString() {
+        return "SipCall{" +
+                "callId='" + callId + '\'' +
+                ", sipState='" + sipState + '\'' +
+                ", rtpRemoteAddress=" + rtpRemoteAddress +
+                '}';
+    }
+}
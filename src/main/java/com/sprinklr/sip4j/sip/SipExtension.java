@@ -35,6 +35,7 @@ import javax.sip.TransactionState;
 import javax.sip.TransactionTerminatedEvent;
 import javax.sip.TransportNotSupportedException;
 import javax.sip.header.CSeqHeader;
+import javax.sip.header.CallIdHeader;
 import javax.sip.message.Request;
 import javax.sip.message.Response;
 
@@ -46,7 +47,11 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TooManyListenersException;
 import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static com.sprinklr.sip4j.sip.SipAllFactories.MESSAGE_FACTORY;
@@ -57,14 +62,21 @@ import static com.sprinklr.sip4j.utils.Constants.SLEEP_CPU_TIME_MS;
 /**
  * Sip entity which handles signalling on Agent's behalf.
  * It implements SipListener which defines the methods required by an application to receive and process Events that are emitted by an object implementing the SipProvider interface.
+ * Answers up to maxConcurrentCalls dialogs at the same time, each kept as a SipCall keyed by its Call-ID, and hands
+ * them to the Agent in the order they were answered.
  */
-public class SipExtension implements SipListener, Callable<RtpAddress> {
+public class SipExtension implements SipListener, Callable<SipCall> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SipExtension.class);
     /**
      * Defines the methods that are to be used by an application implementing the SipListener interface to control the architecture and setup of the SIP stack.
+     * Null when the Agent signals through the node wide stack
      */
     private final SipStack sipStack;
+    /**
+     * The node wide SIP runtime the Agent is registered to, null when the Agent owns its stack
+     */
+    private final SipRuntime sipRuntime;
     /**
      * Maintains states (SIP state and Websocket state) of the agent
      */
@@ -95,21 +107,23 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
     private final AgentConfig agentConfig;
 
     /**
-     * The invite server transaction, which might be used in a CANCEL request
+     * The answered dialogs, by Call-ID, until the Agent has stopped their media. Written by the SIP stack's event thread
+     * and by the threads ending the calls
      */
-    private ServerTransaction inviteServerTransaction;
+    private final ConcurrentMap<String, SipCall> calls = new ConcurrentHashMap<>();
     /**
-     * The INVITE request sent to SipExtension, which might be used in a CANCEL request
+     * The answered dialogs which the Agent has not taken yet
      */
-    private Request inviteRequest; //storing for CANCEL request
+    private final BlockingQueue<SipCall> answeredCalls = new LinkedBlockingQueue<>();
     /**
-     * The remote RTP address where data packets are to be sent. It is set upon parsing the INVITE SDP and returned to the Agent
+     * Flag variable specifying whether the SIP stack has been stopped. Set when the call ends, or when a persistent Agent is stopped
      */
-    private RtpAddress rtpRemoteAddress;
+    private volatile boolean closed = false;
     /**
-     * Flag variable specifying whether or not the remote RTP address has been set
+     * Cleared when a persistent Agent is stopped. INVITEs are then answered with 486 Busy Here, and the calls up are served
+     * until they end, after which the Agent closes the SipExtension
      */
-    private volatile boolean isRemoteRtpAddressSet = false;
+    private volatile boolean answering = true;
 
     /**
      * Initialises a SipExtension for an Agent. Assigns factories, registers it to the registrar server and schedules its future registrations
@@ -127,23 +141,41 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
         this.agentState = agentState;
         this.agentConfig = agentConfig;
 
-        Properties properties = new Properties();
-        properties.setProperty("javax.sip.STACK_NAME", agentConfig.getAgentName());
-        sipStack = SIP_FACTORY.createSipStack(properties);
-
-        /*
-        This interface represents a unique IP network listening point, which consists of port transport and IP.
-        A ListeningPoint is a Java representation of the socket that a SipProvider messaging entity uses to send and receive messages.
-         */
-        ListeningPoint listeningPoint = sipStack.createListeningPoint(agentConfig.getSipLocalIp(), agentConfig.getSipLocalPort(), agentConfig.getTransportMode());
-        sipProvider = sipStack.createSipProvider(listeningPoint);
-        sipProvider.addSipListener(this);
+        String sipStackMode = agentConfig.getSipStackMode();
+        if (SipStackMode.SHARED.equals(sipStackMode)) {
+            //events for the Agent's user are routed to this listener by the node wide runtime
+            sipStack = null;
+            sipRuntime = SipRuntime.getDefault();
+            sipProvider = sipRuntime.register(agentConfig, this);
+        } else if (sipStackMode == null || SipStackMode.AGENT.equals(sipStackMode)) {
+            sipRuntime = null;
+            Properties properties = new Properties();
+            properties.setProperty("javax.sip.STACK_NAME", agentConfig.getAgentName());
+            sipStack = SIP_FACTORY.createSipStack(properties);
+
+            /*
+            This interface represents a unique IP network listening point, which consists of port transport and IP.
+            A ListeningPoint is a Java representation of the socket that a SipProvider messaging entity uses to send and receive messages.
+             */
+            ListeningPoint listeningPoint = sipStack.createListeningPoint(agentConfig.getSipLocalIp(), agentConfig.getSipLocalPort(), agentConfig.getTransportMode());
+            sipProvider = sipStack.createSipProvider(listeningPoint);
+            sipProvider.addSipListener(this);
+        } else {
+            throw new IllegalArgumentException("Unknown sip stack mode " + sipStackMode + ". Expected one of "
+                    + SipStackMode.AGENT + ", " + SipStackMode.SHARED);
+        }
 
-        //use SipRequestCreator to create any requests to be sent from our sip entity. Currently, only REGISTER request is sent.
-        sipRequestCreator = new SipRequestCreator(sipProvider, agentConfig);
-        registerRequest = sipRequestCreator.createRegisterRequest();
+        try {
+            //use SipRequestCreator to create any requests to be sent from our sip entity. Currently, only REGISTER request is sent.
+            sipRequestCreator = new SipRequestCreator(sipProvider, agentConfig);
+            registerRequest = sipRequestCreator.createRegisterRequest();
+        } catch (ParseException | InvalidArgumentException | RuntimeException e) {
+            //nobody holds this SipExtension to close it, so the Agent's user or stack would never be released
+            releaseStack();
+            throw e;
+        }
 
-        timer = new Timer();
+        timer = sipRuntime != null ? sipRuntime.getRegistrationTimer() : new Timer();
         sendRegisterRequestTask = new SendRegisterRequestTask();
         //re-registers to prevent expiry
         timer.scheduleAtFixedRate(sendRegisterRequestTask,
@@ -152,17 +184,48 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
     }
 
     /**
-     * Overridden method of Callable.
-     * @return The remote RTP address after it has been set
+     * Overridden method of Callable. Waits for the next call to be answered
+     * @return The answered call, holding the remote RTP address, or null if the SipExtension is closed or stops answering first
      * @throws InterruptedException
      */
     @Override
-    public RtpAddress call() throws InterruptedException {
-        while (!isRemoteRtpAddressSet) {
-            //wait for rtpRemoteAddress to be initialised
-            Thread.sleep(SLEEP_CPU_TIME_MS); //sleeping for specified time to save cpu cycles
+    public SipCall call() throws InterruptedException {
+        SipCall sipCall;
+        //wait for a call to be answered, timing out to check whether the SipExtension has been closed
+        while ((sipCall = answeredCalls.poll(SLEEP_CPU_TIME_MS, TimeUnit.MILLISECONDS)) == null) {
+            if (closed || !answering) {
+                return null;
+            }
+        }
+        return sipCall;
+    }
+
+    /**
+     * Ends a call of a persistent Agent once its media has stopped. The Agent stays registered, with the same SIP stack,
+     * and answers the next INVITE. Returns the Agent to REGISTERED once it has no call left.
+     * @param sipCall the call, as returned by call()
+     */
+    public void endCall(SipCall sipCall) {
+        calls.remove(sipCall.getCallId(), sipCall);
+        agentState.setActiveCalls(calls.size());
+        if (!closed && calls.isEmpty()) {
+            agentState.setSipState(SipState.REGISTERED);
+            LOGGER.info("{} ready for the next call", agentConfig.getAgentName());
         }
-        return rtpRemoteAddress;
+    }
+
+    /**
+     * Stops answering new calls, without ending the calls which are up. The Agent waiting in call() is woken up
+     */
+    public void stopAnswering() {
+        answering = false;
+    }
+
+    /**
+     * Stops the SIP stack and the registration refresh, if not already done. The Agent no longer answers calls.
+     */
+    public void close() {
+        shutDown();
     }
 
     //Handle authentication if required by modifying function. Refer https://www.youtube.com/watch?v=iJeJ072UejI
@@ -193,7 +256,7 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
         ServerTransaction serverTransaction = requestEvent.getServerTransaction();
 
         LOGGER.info("Request {} received at {} with serverTransaction:{}",
-                request.getMethod(), sipStack.getStackName(), serverTransaction);
+                request.getMethod(), agentConfig.getAgentName(), serverTransaction);
 
         switch (request.getMethod()) {
             case Request.INVITE:
@@ -242,7 +305,11 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
      */
     public void processRegisterResponse(Response response) {
         if (response.getStatusCode() == Response.OK) {
-            agentState.setSipState(SipState.REGISTERED);
+            //a refresh during a call, or between the BYE and the end of the call's media, leaves the call's state
+            String sipState = agentState.getSipState();
+            if (SipState.UNREGISTERED.equals(sipState) || SipState.REGISTRATION_FAILED.equals(sipState)) {
+                agentState.setSipState(SipState.REGISTERED);
+            }
         } else if (response.getStatusCode() == Response.UNAUTHORIZED) {
             LOGGER.info("Received {} for REGISTER request, resending from {}", Response.UNAUTHORIZED, agentConfig.getAgentName());
             try {
@@ -275,86 +342,114 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
     }
 
     /**
-     * Process the INVITE request, acting as UAS. Transitions Agent's SipState from REGISTERED->CONNECTING->CONNECTED
+     * Process the INVITE request, acting as UAS. Transitions Agent's SipState from REGISTERED->CONNECTING->CONNECTED.
+     * An INVITE arriving while maxConcurrentCalls calls are up, or once the Agent is stopping, is answered with 486 Busy Here.
      * @param requestEvent The Request event representing the INVITE request messages that is received
      * @param serverTransaction Transaction from server's side
      */
     public void processInviteRequest(RequestEvent requestEvent, ServerTransaction serverTransaction) {
 
         Request request = requestEvent.getRequest();
-        this.inviteRequest = request;
+        String sipState = agentState.getSipState();
 
-        if (!agentState.getSipState().equals(SipState.REGISTERED)) {
+        if (SipState.UNREGISTERED.equals(sipState) || SipState.REGISTRATION_FAILED.equals(sipState)) {
             LOGGER.warn("Agent {} not in registered state, ignoring INVITE request", agentConfig.getAgentName());
             return;
         }
 
         try {
+            String callId = ((CallIdHeader) request.getHeader(CallIdHeader.NAME)).getCallId();
+            if (calls.containsKey(callId)) {
+                LOGGER.warn("{} already answered call {}, ignoring INVITE request", agentConfig.getAgentName(), callId);
+                return;
+            }
+            if (!answering || calls.size() >= agentConfig.getMaxConcurrentCalls()) {
+                LOGGER.warn("{} has {} calls up or is stopping, answering INVITE with {}", agentConfig.getAgentName(), calls.size(), Response.BUSY_HERE);
+                if (serverTransaction == null) {
+                    serverTransaction = sipProvider.getNewServerTransaction(request);
+                }
+                serverTransaction.sendResponse(MESSAGE_FACTORY.createResponse(Response.BUSY_HERE, request));
+                return;
+            }
+
             LOGGER.info("{} (UAS) sending TRYING", agentConfig.getAgentName());
 
             if (serverTransaction == null) {
                 LOGGER.info("Found null serverTransaction while processing INVITE, creating from Sip Provider in {}", agentConfig.getAgentName());
                 serverTransaction = sipProvider.getNewServerTransaction(request);
             }
-            this.inviteServerTransaction = serverTransaction;
 
             Response ringingResponse = MESSAGE_FACTORY.createResponse(Response.RINGING, request);
             serverTransaction.sendResponse(ringingResponse);
 
-            agentState.setSipState(SipState.CONNECTING);
+            if (calls.isEmpty()) {
+                agentState.setSipState(SipState.CONNECTING);
+            }
 
             Response okResponse = MESSAGE_FACTORY.createResponse(Response.OK, request);
             //Contact Header is mandatory for the OK to the INVITE
             //set other data to be conveyed to Ozonetel using okResponse.setContent(). Also add ContentTypeHeader and other headers as required
             okResponse.addHeader(sipRequestCreator.getContactHeader());
-            LOGGER.info("Invite transaction id: {}", this.inviteServerTransaction);
+            LOGGER.info("Invite transaction id: {}", serverTransaction);
 
-            if (inviteServerTransaction.getState() != TransactionState.COMPLETED) {
-                LOGGER.info("Dialog state in {} before 200: {}", agentConfig.getAgentName(), inviteServerTransaction.getDialog().getState());
-                inviteServerTransaction.sendResponse(okResponse);
+            if (serverTransaction.getState() != TransactionState.COMPLETED) {
+                LOGGER.info("Dialog state in {} before 200: {}", agentConfig.getAgentName(), serverTransaction.getDialog().getState());
+                serverTransaction.sendResponse(okResponse);
 
-                LOGGER.info("Dialog state in {} after 200: {}", agentConfig.getAgentName(), inviteServerTransaction.getDialog().getState());
+                LOGGER.info("Dialog state in {} after 200: {}", agentConfig.getAgentName(), serverTransaction.getDialog().getState());
 
                 SessionDescription remoteSdp = extractSDP(requestEvent);
                 Media media = extractMedia(remoteSdp);
                 Connection connection = extractConnection(remoteSdp);
-                rtpRemoteAddress = new RtpAddress(media.getMediaPort(), connection.getAddress(), connection.getAddressType(), connection.getNetworkType());
-                isRemoteRtpAddressSet = true;
-                LOGGER.info("{} set remote rtp address for Agent", agentConfig.getAgentName());
+                RtpAddress rtpRemoteAddress = new RtpAddress(media.getMediaPort(), connection.getAddress(), connection.getAddressType(), connection.getNetworkType());
+                SipCall sipCall = new SipCall(callId, request, serverTransaction, rtpRemoteAddress);
+                calls.put(callId, sipCall);
+                agentState.setActiveCalls(calls.size());
+                LOGGER.info("{} set remote rtp address for call {}", agentConfig.getAgentName(), callId);
                 agentState.setSipState(SipState.CONNECTED);
+                answeredCalls.offer(sipCall);
             }
         } catch (Exception ex) {
-            agentState.setSipState(SipState.DISCONNECTED);
+            if (calls.isEmpty()) {
+                agentState.setSipState(SipState.DISCONNECTED);
+            }
             LOGGER.error("Error while processing INVITE request in {}: {}", agentConfig.getAgentName(), ex.toString());
         }
     }
 
     /**
-     * Process the BYE request, acting as UAS. Transitions Agent's SipState to DISCONNECTED.
+     * Process the BYE request, acting as UAS. Transitions the call's SipState to DISCONNECTED, and the Agent's once no
+     * other call is up. A BYE for a call the Agent does not have is answered with 481 and changes nothing.
      * @param requestEvent The Request event representing the BYE request messages that is received
      * @param serverTransaction Transaction from server's side
      */
     public void processByeRequest(RequestEvent requestEvent, ServerTransaction serverTransaction) {
 
         Request request = requestEvent.getRequest();
-        LOGGER.info("{} Local party = {}", agentConfig.getAgentName(), serverTransaction.getDialog().getLocalParty());
+        SipCall sipCall = callOf(request);
         try {
+            if (sipCall == null || serverTransaction == null) {
+                LOGGER.warn("{} (UAS): got a BYE for an unknown call, sending {}", agentConfig.getAgentName(), Response.CALL_OR_TRANSACTION_DOES_NOT_EXIST);
+                sendUnknownCallResponse(request, serverTransaction);
+                return;
+            }
+            LOGGER.info("{} Local party = {}", agentConfig.getAgentName(), serverTransaction.getDialog().getLocalParty());
             LOGGER.info("{} (UAS):  got a BYE sending OK.", agentConfig.getAgentName());
             Response response = MESSAGE_FACTORY.createResponse(200, request);
             serverTransaction.sendResponse(response);
 
-            agentState.setSipState(SipState.DISCONNECTED);
+            disconnect(sipCall);
 
             LOGGER.info("Dialog State in {} is {}", agentConfig.getAgentName(), serverTransaction.getDialog().getState());
-            shutDown();
         } catch (Exception ex) {
-            agentState.setSipState(SipState.DISCONNECTED);
+            disconnect(sipCall);
             LOGGER.error("Error while processing BYE request in {}: {}", agentConfig.getAgentName(), ex.toString());
         }
     }
 
     /**
-     * Process the CANCEL request, acting as UAS. A CANCEL request SHOULD NOT be sent to cancel a request other than INVITE. Refer RFC 3261. Transitions Agent's SipState to DISCONNECTED.
+     * Process the CANCEL request, acting as UAS. A CANCEL request SHOULD NOT be sent to cancel a request other than INVITE. Refer RFC 3261. Transitions the call's SipState to DISCONNECTED, and the Agent's once no other call is up.
+     * A CANCEL for a call the Agent does not have is answered with 481 and changes nothing.
      *
      * @param requestEvent The Request event representing the CANCEL request messages that is received
      * @param serverTransaction Transaction from server's side
@@ -362,28 +457,79 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
     public void processCancelRequest(RequestEvent requestEvent, ServerTransaction serverTransaction) {
 
         Request request = requestEvent.getRequest();
+        SipCall sipCall = callOf(request);
         try {
             LOGGER.info("{} (UAS) got a CANCEL", agentConfig.getAgentName());
             if (serverTransaction == null) {
                 LOGGER.warn("Received null serverTransaction in {}, treating as stray response", agentConfig.getAgentName());
                 return;
             }
+            if (sipCall == null) {
+                LOGGER.warn("{} (UAS): got a CANCEL for an unknown call, sending {}", agentConfig.getAgentName(), Response.CALL_OR_TRANSACTION_DOES_NOT_EXIST);
+                sendUnknownCallResponse(request, serverTransaction);
+                return;
+            }
             Response response = MESSAGE_FACTORY.createResponse(Response.OK, request);
             //send 200 response for CANCEL request
             serverTransaction.sendResponse(response);
             if (serverTransaction.getDialog().getState() != DialogState.CONFIRMED) {
                 //send 487 response for the corresponding invite request, client then sends an ACK ending the transaction
-                response = MESSAGE_FACTORY.createResponse(Response.REQUEST_TERMINATED, inviteRequest);
-                inviteServerTransaction.sendResponse(response);
-                agentState.setSipState(SipState.DISCONNECTED);
-                shutDown();
+                response = MESSAGE_FACTORY.createResponse(Response.REQUEST_TERMINATED, sipCall.getInviteRequest());
+                sipCall.getInviteServerTransaction().sendResponse(response);
+                disconnect(sipCall);
             }
         } catch (Exception ex) {
-            agentState.setSipState(SipState.DISCONNECTED);
+            disconnect(sipCall);
             LOGGER.error("Error while processing CANCEL request in {} : {}", agentConfig.getAgentName(), ex.toString());
         }
     }
 
+    /**
+     * Returns the call a request belongs to
+     * @param request a request received in a dialog
+     * @return the call with the request's Call-ID, or null if the Agent has no such call
+     */
+    private SipCall callOf(Request request) {
+        CallIdHeader callIdHeader = (CallIdHeader) request.getHeader(CallIdHeader.NAME);
+        return callIdHeader == null ? null : calls.get(callIdHeader.getCallId());
+    }
+
+    /**
+     * Answers a request for a call the Agent does not have with 481 Call/Transaction Does Not Exist, refer RFC 3261 15.1.2
+     * @param request the BYE or CANCEL request
+     * @param serverTransaction Transaction from server's side, null to answer statelessly
+     */
+    private void sendUnknownCallResponse(Request request, ServerTransaction serverTransaction) throws ParseException, SipException, InvalidArgumentException {
+        Response response = MESSAGE_FACTORY.createResponse(Response.CALL_OR_TRANSACTION_DOES_NOT_EXIST, request);
+        if (serverTransaction != null) {
+            serverTransaction.sendResponse(response);
+        } else {
+            sipProvider.sendResponse(response);
+        }
+    }
+
+    /**
+     * Marks a call of a BYE or CANCEL request as DISCONNECTED, which stops its media, and the Agent too when no other
+     * call is up. A non persistent Agent then shuts down, a persistent one ends the call through endCall() once its
+     * media has stopped. Nothing changes if the call is unknown or already DISCONNECTED.
+     * @param sipCall The call of the BYE or CANCEL request, null if the Agent has no such call
+     */
+    private void disconnect(SipCall sipCall) {
+        if (sipCall == null || sipCall.isDisconnected()) {
+            return;
+        }
+        sipCall.setSipState(SipState.DISCONNECTED);
+        for (SipCall other : calls.values()) {
+            if (!other.isDisconnected()) {
+                return; //the Agent stays CONNECTED
+            }
+        }
+        agentState.setSipState(SipState.DISCONNECTED);
+        if (!agentConfig.isPersistent()) {
+            shutDown();
+        }
+    }
+
     public void processTimeout(TimeoutEvent timeoutEvent) {
         Transaction transaction;
         if (timeoutEvent.isServerTransaction()) {
@@ -417,20 +563,38 @@ public class SipExtension implements SipListener, Callable<RtpAddress> {
     }
 
     /**
-     * Shuts down SipExtension of the Agent. Triggered when a BYE request is received.
+     * Shuts down SipExtension of the Agent. Triggered when a BYE request is received, unless the Agent is persistent.
      */
-    private void shutDown() {
-        LOGGER.info("nulling server references for {}", agentConfig.getAgentName());
-        sipStack.stop();
-        inviteServerTransaction = null;
-        inviteRequest = null;
+    private synchronized void shutDown() {
+        if (closed) {
+            return;
+        }
+        closed = true;
         //cancel registration task running at regular intervals
         LOGGER.info("Cancelling registration task for {}: {}", agentConfig.getAgentName(), sendRegisterRequestTask.cancel());
-        timer.cancel();
-        LOGGER.info("Cancelling timer for {}", agentConfig.getAgentName());
+        LOGGER.info("nulling server references for {}", agentConfig.getAgentName());
+        releaseStack();
+        for (SipCall sipCall : calls.values()) {
+            sipCall.setSipState(SipState.DISCONNECTED);
+        }
+        if (sipRuntime == null) {
+            timer.cancel();
+            LOGGER.info("Cancelling timer for {}", agentConfig.getAgentName());
+        }
         LOGGER.info("Server shutdown in {}", agentConfig.getAgentName());
     }
 
+    /**
+     * Leaves the node wide runtime, or stops the Agent's own stack
+     */
+    private void releaseStack() {
+        if (sipRuntime != null) {
+            sipRuntime.unregister(agentConfig, this); //the shared stack keeps running for the other Agents
+        } else {
+            sipStack.stop();
+        }
+    }
+
     /**
      * Helper function to extract the SDP content from a request
      * @param requestEvent he Request event representing the request messages that is received
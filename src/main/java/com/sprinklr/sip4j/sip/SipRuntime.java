@@ -0,0 +1,341 @@
+package com.sprinklr.sip4j.sip;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sip.ClientTransaction;
+import javax.sip.Dialog;
+import javax.sip.DialogTerminatedEvent;
+import javax.sip.IOExceptionEvent;
+import javax.sip.InvalidArgumentException;
+import javax.sip.ListeningPoint;
+import javax.sip.ObjectInUseException;
+import javax.sip.PeerUnavailableException;
+import javax.sip.RequestEvent;
+import javax.sip.ResponseEvent;
+import javax.sip.ServerTransaction;
+import javax.sip.SipException;
+import javax.sip.SipListener;
+import javax.sip.SipProvider;
+import javax.sip.SipStack;
+import javax.sip.TimeoutEvent;
+import javax.sip.TransactionTerminatedEvent;
+import javax.sip.TransportNotSupportedException;
+import javax.sip.address.Address;
+import javax.sip.address.SipURI;
+import javax.sip.address.URI;
+import javax.sip.header.FromHeader;
+import javax.sip.header.ToHeader;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TooManyListenersException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.sprinklr.sip4j.sip.SipAllFactories.MESSAGE_FACTORY;
+import static com.sprinklr.sip4j.sip.SipAllFactories.SIP_FACTORY;
+
+/**
+ * The SIP stack shared by the Agents of a node which use SipStackMode SHARED. A single stack holds the transactions and
+ * timers of all of them, and a listening point is opened for each distinct sipLocalIp, sipLocalPort and transport, so
+ * Agents configured on the same port share it.
+ * The runtime is the only SipListener of the stack. It routes each event to the SipListener of the Agent whose
+ * sipLocalUsername is the user of the event's SIP URI: the Request-URI, or else the To header, of a request received,
+ * and the From header of a response to a request sent by the Agent. Requests for an unknown user are answered with 404.
+ * Events are delivered on the stack's single event thread, so a listener must not block. The registration refreshes of
+ * the Agents are scheduled on a single timer thread too.
+ */
+public class SipRuntime implements SipListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SipRuntime.class);
+    private static final String STACK_NAME = "sip4j-node";
+    //time given to the stack to start the processor of a listening point before it may be closed
+    private static final long LISTENING_POINT_START_MS = 500;
+
+    private final SipStack sipStack;
+    private final Timer registrationTimer = new Timer("sip4j-registration", true);
+    private final Map<String, SipListener> listenersByUser = new ConcurrentHashMap<>();
+    //listening points are opened on first use and closed when the last Agent using them leaves, guarded by this.
+    //A listening point left before it was started stays here until its close is run by the registration timer
+    private final Map<String, SharedProvider> providersByAddress = new HashMap<>();
+
+    /**
+     * The provider of one listening point, with the number of Agents using it
+     */
+    private static class SharedProvider {
+        private final ListeningPoint listeningPoint;
+        private final SipProvider sipProvider;
+        private final long openedNanos = System.nanoTime();
+        private int referenceCount = 0;
+        private TimerTask pendingClose;
+
+        private SharedProvider(ListeningPoint listeningPoint, SipProvider sipProvider) {
+            this.listeningPoint = listeningPoint;
+            this.sipProvider = sipProvider;
+        }
+    }
+
+    private static class DefaultRuntimeHolder {
+        private static final SipRuntime DEFAULT_RUNTIME = new SipRuntime(STACK_NAME);
+    }
+
+    /**
+     * Creates a runtime with its own stack, no listening point is opened
+     * @param stackName the name of the stack, unique in the JVM
+     */
+    SipRuntime(String stackName) {
+        Properties properties = new Properties();
+        properties.setProperty("javax.sip.STACK_NAME", stackName);
+        try {
+            sipStack = SIP_FACTORY.createSipStack(properties);
+        } catch (PeerUnavailableException e) {
+            throw new IllegalStateException("Could not create the shared sip stack", e);
+        }
+    }
+
+    /**
+     * Returns the runtime shared by all Agents of the node, its stack is created on first use
+     * @return the node wide runtime
+     */
+    public static SipRuntime getDefault() {
+        return DefaultRuntimeHolder.DEFAULT_RUNTIME;
+    }
+
+    /**
+     * Starts routing the events of the Agent's user to its listener, opening the Agent's listening point if no other
+     * Agent is using it yet. Every call must be matched by a call to unregister()
+     * @param agentConfig The configuration of the Agent, whose sipLocalUsername must be unique on the node
+     * @param listener The listener of the Agent
+     * @return the provider of the Agent's listening point, through which the Agent sends its requests
+     * @throws TransportNotSupportedException
+     * @throws InvalidArgumentException
+     * @throws ObjectInUseException
+     * @throws TooManyListenersException
+     */
+    public synchronized SipProvider register(AgentConfig agentConfig, SipListener listener) throws TransportNotSupportedException, InvalidArgumentException, ObjectInUseException, TooManyListenersException {
+        String user = agentConfig.getSipLocalUsername();
+        SipListener previous = listenersByUser.putIfAbsent(user, listener);
+        if (previous != null) {
+            throw new IllegalStateException("Sip user " + user + " of " + agentConfig.getAgentName() + " is already registered on the node");
+        }
+        String address = addressOf(agentConfig);
+        SharedProvider provider = providersByAddress.get(address);
+        try {
+            if (provider == null) {
+                ListeningPoint listeningPoint = sipStack.createListeningPoint(agentConfig.getSipLocalIp(), agentConfig.getSipLocalPort(), agentConfig.getTransportMode());
+                SipProvider sipProvider = sipStack.createSipProvider(listeningPoint);
+                sipProvider.addSipListener(this);
+                provider = new SharedProvider(listeningPoint, sipProvider);
+                providersByAddress.put(address, provider);
+                LOGGER.info("Opened shared sip listening point {}", address);
+            } else if (provider.pendingClose != null) {
+                //left by its last Agent before it was started, kept open for this one
+                provider.pendingClose.cancel();
+                provider.pendingClose = null;
+            }
+        } catch (TransportNotSupportedException | InvalidArgumentException | ObjectInUseException | TooManyListenersException e) {
+            listenersByUser.remove(user, listener);
+            throw e;
+        }
+        provider.referenceCount++;
+        LOGGER.info("{} registered on shared sip listening point {} as {}", agentConfig.getAgentName(), address, user);
+        return provider.sipProvider;
+    }
+
+    /**
+     * Stops routing the events of the Agent's user, closing the Agent's listening point when no Agent is using it anymore.
+     * The stack starts the processor of a listening point on a thread of its own, and stopping it before that thread
+     * has run fails, so a listening point opened less than LISTENING_POINT_START_MS ago, e.g. by an Agent failing to
+     * start, is closed by the registration timer once that time has passed, unless an Agent uses it again meanwhile
+     * @param agentConfig The configuration of the Agent
+     * @param listener The listener of the Agent, as registered
+     */
+    public synchronized void unregister(AgentConfig agentConfig, SipListener listener) {
+        if (!listenersByUser.remove(agentConfig.getSipLocalUsername(), listener)) {
+            return;
+        }
+        String address = addressOf(agentConfig);
+        SharedProvider provider = providersByAddress.get(address);
+        if (provider == null || --provider.referenceCount > 0) {
+            return;
+        }
+        long startingMs = LISTENING_POINT_START_MS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - provider.openedNanos);
+        if (startingMs <= 0) {
+            close(address, provider);
+            return;
+        }
+        provider.pendingClose = new TimerTask() {
+            @Override
+            public void run() {
+                synchronized (SipRuntime.this) {
+                    if (provider.pendingClose == this) {
+                        close(address, provider);
+                    }
+                }
+            }
+        };
+        registrationTimer.schedule(provider.pendingClose, startingMs);
+    }
+
+    /**
+     * Deletes the provider of a listening point no Agent is using, which stops it, and the listening point. Guarded by this
+     */
+    private void close(String address, SharedProvider provider) {
+        providersByAddress.remove(address);
+        provider.pendingClose = null;
+        try {
+            provider.sipProvider.removeSipListener(this);
+            sipStack.deleteSipProvider(provider.sipProvider);
+            sipStack.deleteListeningPoint(provider.listeningPoint);
+        } catch (ObjectInUseException e) {
+            LOGGER.error("ObjectInUseException while closing sip listening point {}: {}", address, e.toString());
+        }
+        LOGGER.info("Closed shared sip listening point {}", address);
+    }
+
+    /**
+     * Returns the timer the Agents schedule their REGISTER refresh on. Tasks are to be cancelled, not the timer
+     * @return the node wide registration timer
+     */
+    public Timer getRegistrationTimer() {
+        return registrationTimer;
+    }
+
+    /**
+     * Returns the number of listening points open, including those left by their last Agent and not closed yet
+     * @return the number of distinct addresses listened on
+     */
+    public synchronized int getListeningPointCount() {
+        return providersByAddress.size();
+    }
+
+    /**
+     * Returns the number of Agents registered
+     * @return the number of users events are routed to
+     */
+    public int getAgentCount() {
+        return listenersByUser.size();
+    }
+
+    private static String addressOf(AgentConfig agentConfig) {
+        return agentConfig.getTransportMode() + ":" + agentConfig.getSipLocalIp() + ":" + agentConfig.getSipLocalPort();
+    }
+
+    @Override
+    public void processRequest(RequestEvent requestEvent) {
+        Request request = requestEvent.getRequest();
+        SipListener listener = listenerOfReceived(request);
+        if (listener != null) {
+            listener.processRequest(requestEvent);
+            return;
+        }
+        LOGGER.warn("No Agent for {} request to {}", request.getMethod(), request.getRequestURI());
+        if (Request.ACK.equals(request.getMethod())) {
+            return; //an ACK is never answered
+        }
+        try {
+            ((SipProvider) requestEvent.getSource()).sendResponse(MESSAGE_FACTORY.createResponse(Response.NOT_FOUND, request));
+        } catch (ParseException | SipException e) {
+            LOGGER.error("Exception while answering {} request to an unknown user: {}", request.getMethod(), e.toString());
+        }
+    }
+
+    @Override
+    public void processResponse(ResponseEvent responseEvent) {
+        SipListener listener = listenerOf(userOf((FromHeader) responseEvent.getResponse().getHeader(FromHeader.NAME)));
+        if (listener != null) {
+            listener.processResponse(responseEvent);
+        }
+    }
+
+    @Override
+    public void processTimeout(TimeoutEvent timeoutEvent) {
+        SipListener listener;
+        if (timeoutEvent.isServerTransaction()) {
+            listener = listenerOfReceived(timeoutEvent.getServerTransaction().getRequest());
+        } else {
+            listener = listenerOfSent(timeoutEvent.getClientTransaction());
+        }
+        if (listener != null) {
+            listener.processTimeout(timeoutEvent);
+        }
+    }
+
+    @Override
+    public void processIOException(IOExceptionEvent exceptionEvent) {
+        LOGGER.error("IOException event received for shared sip stack, host:{} and port:{}", exceptionEvent.getHost(), exceptionEvent.getPort());
+    }
+
+    @Override
+    public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
+        SipListener listener;
+        if (transactionTerminatedEvent.isServerTransaction()) {
+            ServerTransaction serverTransaction = transactionTerminatedEvent.getServerTransaction();
+            listener = listenerOfReceived(serverTransaction.getRequest());
+        } else {
+            listener = listenerOfSent(transactionTerminatedEvent.getClientTransaction());
+        }
+        if (listener != null) {
+            listener.processTransactionTerminated(transactionTerminatedEvent);
+        }
+    }
+
+    @Override
+    public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
+        Dialog dialog = dialogTerminatedEvent.getDialog();
+        //the Agent's dialogs are those of the INVITEs it answered, in which it is the party called
+        SipListener listener = listenerOf(userOf(dialog.getLocalParty()));
+        if (listener != null) {
+            listener.processDialogTerminated(dialogTerminatedEvent);
+        }
+    }
+
+    /**
+     * Finds the Agent a request received is addressed to, by its Request-URI, or else its To header
+     */
+    private SipListener listenerOfReceived(Request request) {
+        if (request == null) {
+            return null;
+        }
+        SipListener listener = listenerOf(userOf(request.getRequestURI()));
+        if (listener == null) {
+            listener = listenerOf(userOf((ToHeader) request.getHeader(ToHeader.NAME)));
+        }
+        return listener;
+    }
+
+    /**
+     * Finds the Agent which sent the request of a client transaction, by its From header
+     */
+    private SipListener listenerOfSent(ClientTransaction clientTransaction) {
+        Request request = clientTransaction.getRequest();
+        return request == null ? null : listenerOf(userOf((FromHeader) request.getHeader(FromHeader.NAME)));
+    }
+
+    private SipListener listenerOf(String user) {
+        return user == null ? null : listenersByUser.get(user);
+    }
+
+    private static String userOf(FromHeader fromHeader) {
+        return fromHeader == null ? null : userOf(fromHeader.getAddress());
+    }
+
+    private static String userOf(ToHeader toHeader) {
+        return toHeader == null ? null : userOf(toHeader.getAddress());
+    }
+
+    private static String userOf(Address address) {
+        return address == null ? null : userOf(address.getURI());
+    }
+
+    private static String userOf(URI uri) {
+        return uri instanceof SipURI ? ((SipURI) uri).getUser() : null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.sprinklr.sip4j.sip;
+
+/**
+ * Defines constants for the SIP stack an Agent signals through
+ */
+public class SipStackMode {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private SipStackMode() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Each Agent creates its own SIP stack, with its own threads and listening point on sipLocalPort
+     */
+    public static final String AGENT = "AGENT";
+
+    /**
+     * The Agent signals through the node wide SIP stack, sharing the listening point of sipLocalIp and sipLocalPort
+     * with the other Agents configured on it, see SipRuntime
+     */
+    public static final String SHARED = "SHARED";
+
+}
@@ -9,7 +9,11 @@ public class Constants {
         throw new IllegalStateException("Utility class");
     }
     public static final int RTP_HEADER_SIZE = 12;
+    public static final int RTP_MAX_HEADER_EXTRA_SIZE = 128; //beyond the fixed header: 15 CSRCs and a header extension of up to 16 words
     public static final long SLEEP_CPU_TIME_MS = 20;
+    public static final int MEDIA_BUFFER_POOL_MAX_SIZE = 8192; //free buffers retained per shared pool
+    public static final long MEDIA_CLOCK_TICK_MS = 10; //resolution of the shared media clock, divides the usual ptimes
+    public static final int MEDIA_CLOCK_WHEEL_SIZE = 512; //buckets of the media clock's timer wheel, ~5s at 10ms per tick
 
 
 }
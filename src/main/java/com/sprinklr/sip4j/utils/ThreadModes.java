@@ -0,0 +1,85 @@
+package com.sprinklr.sip4j.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Defines the names of the thread modes an Agent's blocking loops can run in, as used in the Agent's configuration, and
+ * creates their executors. Virtual threads are created through reflection, so that the project still builds for Java 8,
+ * and are only available when running on Java 21 or later.
+ */
+public class ThreadModes {
+
+    /**
+     * Private constructor since it is a utility class
+     */
+    private ThreadModes() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Each loop blocks a platform thread of a fixed size pool
+     */
+    public static final String PLATFORM = "PLATFORM";
+
+    /**
+     * Each loop runs on its own virtual thread, which releases its carrier thread whenever it blocks
+     */
+    public static final String VIRTUAL = "VIRTUAL";
+
+    /**
+     * Creates a new executor for the loops of one Agent, or of a node
+     * @param name name of the thread mode, null defaults to PLATFORM
+     * @param nPlatformThreads size of the pool in PLATFORM mode, unused in VIRTUAL mode where every task gets a thread
+     * @return the executor, to be shut down by its owner
+     */
+    public static ExecutorService newExecutor(String name, int nPlatformThreads) {
+        if (name == null) {
+            return Executors.newFixedThreadPool(nPlatformThreads);
+        }
+        switch (name) {
+            case PLATFORM:
+                return Executors.newFixedThreadPool(nPlatformThreads);
+            case VIRTUAL:
+                return newVirtualThreadPerTaskExecutor();
+            default:
+                throw new IllegalArgumentException("Unknown thread mode " + name + ". Expected one of "
+                        + PLATFORM + ", " + VIRTUAL);
+        }
+    }
+
+    /**
+     * Returns whether the running JVM supports virtual threads
+     * @return true on Java 21 or later
+     */
+    public static boolean isVirtualSupported() {
+        return VirtualExecutorFactoryHolder.FACTORY != null;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory = VirtualExecutorFactoryHolder.FACTORY;
+        if (factory == null) {
+            throw new IllegalStateException("Thread mode " + VIRTUAL + " needs Java 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    private static class VirtualExecutorFactoryHolder {
+        private static final Method FACTORY = findFactory();
+
+        private static Method findFactory() {
+            try {
+                return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -2,6 +2,16 @@ package com.sprinklr.sip4j.websocket;
 
 import com.sprinklr.sip4j.agent.AgentConfig;
 import com.sprinklr.sip4j.agent.AgentState;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.MediaBufferPool;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.media.AudioTranscoder;
+import com.sprinklr.sip4j.media.BotWireFormat;
+import com.sprinklr.sip4j.media.PayloadFrameCodec;
+import com.sprinklr.sip4j.media.Resampler;
+import com.sprinklr.sip4j.media.RoundTripTracer;
+import com.sprinklr.sip4j.media.RtpPacketizer;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 import org.slf4j.Logger;
@@ -10,16 +20,40 @@ import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
-import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
 
 /**
  * Agent's websocket entity which communicates for media transfer with voice bot websocket server
  */
 public class Websocket extends WebSocketClient {
     private static final Logger LOGGER = LoggerFactory.getLogger(Websocket.class);
-    private final Queue<byte[]> outboundRtpQueue;
+    private final RingBuffer<MediaBuffer> outboundRtpQueue;
     private final AgentState agentState;
     private final AgentConfig agentConfig;
+    private final AudioTranscoder transcoder;
+    private final MediaBufferPool packetPool;
+    private final long queueFullWaitNanos;
+    private final AgentMetrics metrics;
+    private final RoundTripTracer tracer;
+
+    //stream state of the current call, recreated at the start of each call and only accessed on the websocket read thread
+    private RtpPacketizer packetizer;
+    private PayloadFrameCodec payloadCodec;
+    private Resampler resampler;
+    private long unresampledPacketCount;
+    private int streamGeneration = 0;
+    //bumped by the Agent at the start of each call, so that a persistent websocket never carries a stream over between calls
+    private volatile int callGeneration = 0;
+    private volatile boolean callActive = false;
+    //set when the connection closes, onClose() may run on another thread so the read thread resets the stream itself
+    private volatile boolean streamClosed = false;
+
+    private long messageNanos; //arrival time of the message being processed, only accessed on the websocket read thread
+    private volatile long malformedFrameCount = 0;
 
     /**
      * Constructs a WebSocketClient instance and sets it to the connect to the specified URI. The
@@ -31,11 +65,32 @@ public class Websocket extends WebSocketClient {
      * @param agentConfig The configuration of the Agent to whom this websocket belongs
      * @throws URISyntaxException
      */
-    public Websocket(Queue<byte[]> outboundRtpQueue, AgentState agentState, AgentConfig agentConfig) throws URISyntaxException {
+    public Websocket(RingBuffer<MediaBuffer> outboundRtpQueue, AgentState agentState, AgentConfig agentConfig) throws URISyntaxException {
         super(new URI(agentConfig.getWsServerUri()));
         this.outboundRtpQueue = outboundRtpQueue;
         this.agentState = agentState;
         this.agentConfig = agentConfig;
+        this.transcoder = AudioTranscoder.create(agentConfig.getRtpCodec(), agentConfig.getBotCodec());
+        this.packetPool = MediaBufferPool.shared(agentConfig.getMediaBufferSize(), agentConfig.isRtpDirectBuffers());
+        this.queueFullWaitNanos = TimeUnit.MILLISECONDS.toNanos(agentConfig.getRtpPtimeMs()) / 2;
+        this.metrics = agentState.getMetrics();
+        this.tracer = agentConfig.getTraceIntervalMs() > 0 ? new RoundTripTracer(agentConfig.getTraceIntervalMs(), metrics) : null;
+    }
+
+    /**
+     * Starts accepting the bot's audio for a new call. The call gets a new SSRC, sequence number and timestamp base
+     */
+    public void startCall() {
+        callGeneration++; //only written by the thread serving the Agent's calls
+        callActive = true;
+    }
+
+    /**
+     * Stops accepting the bot's audio until the next call. Audio received meanwhile is dropped, and a read thread waiting
+     * for room in the outbound queue gives up, as the queue is not drained between calls
+     */
+    public void endCall() {
+        callActive = false;
     }
 
     /**
@@ -57,21 +112,184 @@ public class Websocket extends WebSocketClient {
      */
     @Override
     public void onMessage(String message) {
-        //string message never sent by bot websocket server
+        //the bot only sends the echoes of the trace tags
+        if (tracer != null) {
+            tracer.onEcho(message, System.nanoTime());
+        }
     }
 
     /**
-     * Callback for binary messages received from the remote host
+     * Callback for binary messages received from the remote host. The message is either raw audio which is packetized,
+     * a PAYLOAD frame which is converted back to an RTP packet, or one or more RTP packets which are queued without copying.
      *
      * @param byteBuffer The binary message that was received.
      */
     @Override
     public void onMessage(ByteBuffer byteBuffer) {
-        outboundRtpQueue.offer(byteBuffer.array());
+        messageNanos = System.nanoTime();
+        metrics.getFromBot().add(byteBuffer.remaining());
+        if (!callActive) {
+            return; //trailing audio of the previous call
+        }
+        int generation = callGeneration;
+        if (generation != streamGeneration || streamClosed) {
+            streamGeneration = generation;
+            streamClosed = false;
+            resetStream();
+        }
+        if (packetizer != null) {
+            packetizer.packetize(byteBuffer, this::enqueue); //packetizer transcodes itself
+        } else if (payloadCodec != null) {
+            decodePayloadFrame(byteBuffer);
+        } else if (isRtpPacket(byteBuffer)) {
+            transcodeAndEnqueue(MediaBuffer.wrap(byteBuffer)); //a new buffer is allocated per message, no copy needed
+        } else {
+            sliceRtpPackets(byteBuffer);
+        }
+    }
+
+    /**
+     * Recreates the per-call stream state at the first message of a call, or the first one after the connection closed
+     */
+    private void resetStream() {
+        if (packetizer != null) {
+            packetizer.close(); //drops the partial packet left by the previous call
+        }
+        packetizer = agentConfig.isBotRawAudio() ? new RtpPacketizer(agentConfig) : null;
+        payloadCodec = BotWireFormat.PAYLOAD.equals(agentConfig.getBotWireFormat())
+                ? new PayloadFrameCodec(ThreadLocalRandom.current().nextInt()) : null;
+        resampler = Resampler.create(agentConfig, false);
+        unresampledPacketCount = 0;
+    }
+
+    /**
+     * Checks whether a message is a single RTP packet: the version field of the first byte is 2. Any other message is
+     * a sequence of length-prefixed packets, whose first byte is the high byte of a length below 0x8000.
+     */
+    private static boolean isRtpPacket(ByteBuffer message) {
+        return message.hasRemaining() && (message.get(message.position()) & 0xC0) == 0x80;
+    }
+
+    /**
+     * Queues the packets of a message holding several RTP packets, each prefixed by its u16 length. Each packet is
+     * queued as a view of the message, which stays reachable until the last packet has been sent.
+     * @param message the message received from the bot
+     */
+    private void sliceRtpPackets(ByteBuffer message) {
+        int limit = message.limit();
+        while (message.remaining() >= 2) {
+            int length = message.getShort() & 0xFFFF;
+            if (length > message.remaining()) {
+                break;
+            }
+            message.limit(message.position() + length);
+            transcodeAndEnqueue(MediaBuffer.wrap(message));
+            message.position(message.limit()).limit(limit);
+        }
+        if (message.hasRemaining()) {
+            message.position(limit);
+            if (malformedFrameCount++ == 0) {
+                LOGGER.warn("Truncated rtp packet received from bot by {}", agentConfig.getAgentName());
+            }
+        }
+    }
+
+    /**
+     * Resamples the packet's payload to the call's sample rate and encodes it to the codec used with Ozonetel, if the
+     * bot uses another rate or L16, and queues the packet. A packet without room for its resampled payload is copied
+     * first, one which cannot be resampled is dropped
+     * @param packet the packet, owned by the queue afterwards
+     */
+    private void transcodeAndEnqueue(MediaBuffer packet) {
+        if (resampler != null) {
+            int capacity = resampler.getRequiredCapacity(packet);
+            if (capacity > packet.getCapacity()) {
+                packet = copy(packet, capacity);
+            }
+            if (!resampler.process(packet)) {
+                packet.release(); //would be played at the bot's rate
+                if (unresampledPacketCount++ == 0) {
+                    LOGGER.warn("Rtp packet received from bot by {} cannot be resampled, dropped", agentConfig.getAgentName());
+                }
+                return;
+            }
+        }
+        if (transcoder != null) {
+            transcoder.encode(packet);
+        }
+        enqueue(packet);
+    }
+
+    /**
+     * Copies a packet into a pooled buffer, or a new one if the pooled buffers are too small, and releases it
+     * @param packet the packet
+     * @param capacity the capacity the copy needs
+     * @return the copy
+     */
+    private MediaBuffer copy(MediaBuffer packet, int capacity) {
+        MediaBuffer copy = capacity <= packetPool.getBufferSize() ? packetPool.acquire() : MediaBuffer.wrap(ByteBuffer.allocate(capacity));
+        copy.getWritableBuffer().put(packet.getBuffer());
+        copy.setLength(packet.getLength());
+        packet.release();
+        return copy;
+    }
+
+    /**
+     * Queues a packet to be sent to Ozonetel. A bot can return audio faster than real time, e.g. seconds of pre-rendered
+     * speech in one message, so when the queue is full the websocket read thread waits for the sender to catch up
+     * instead of dropping the oldest packets. The bot is then slowed down by TCP flow control. Once the call has ended the
+     * packet is dropped instead.
+     * @param packet the packet, owned by the queue afterwards
+     */
+    private void enqueue(MediaBuffer packet) {
+        packet.setTimestampNanos(messageNanos);
+        if (tracer != null) {
+            tracer.onResponsePacket(packet);
+        }
+        metrics.getOutboundProcessing().record(System.nanoTime() - messageNanos); //before any wait for the sender
+        while (outboundRtpQueue.size() >= outboundRtpQueue.getCapacity() && !isClosing() && !isClosed() && callActive) {
+            LockSupport.parkNanos(queueFullWaitNanos);
+        }
+        if (!callActive) {
+            packet.release(); //nobody sends it anymore
+            return;
+        }
+        outboundRtpQueue.offer(packet);
+    }
+
+    /**
+     * Converts a PAYLOAD frame back to an RTP packet and queues it
+     * @param frame the frame received from the bot
+     */
+    private void decodePayloadFrame(ByteBuffer frame) {
+        int start = frame.position();
+        MediaBuffer packet = packetPool.acquire();
+        if (!payloadCodec.decode(frame, packet)) {
+            packet.release();
+            //payload larger than the pooled buffers, the frame header is shorter than an rtp header so this is enough room
+            frame.position(start);
+            packet = MediaBuffer.wrap(ByteBuffer.allocate(RTP_HEADER_SIZE + frame.remaining()));
+            if (!payloadCodec.decode(frame, packet)) {
+                if (malformedFrameCount++ == 0) {
+                    LOGGER.warn("Malformed payload frame received from bot by {}", agentConfig.getAgentName());
+                }
+                return;
+            }
+        }
+        transcodeAndEnqueue(packet);
+    }
+
+    /**
+     * Returns the tracer measuring the bot's response time, whose tags are sent after the caller's audio
+     * @return the tracer, or null if trace tags are disabled
+     */
+    public RoundTripTracer getTracer() {
+        return tracer;
     }
 
     /**
-     * Called after the websocket connection has been closed.
+     * Called after the websocket connection has been closed. The partial packet of the stream is dropped by the read
+     * thread at the next message, if the websocket is reconnected.
      *
      * @param code   Websocket close code, refer <a href="https://github.com/Luka967/websocket-close-codes">...</a>
      * @param reason Additional information string
@@ -81,6 +299,7 @@ public class Websocket extends WebSocketClient {
     public void onClose(int code, String reason, boolean remote) {
         LOGGER.info("closed {} with exit code {} additional info: {}", agentConfig.getAgentName(), code, reason);
         agentState.setWsCloseCode(code);
+        streamClosed = true;
     }
 
     /**
@@ -0,0 +1,61 @@
+package com.sprinklr.sip4j.agent;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.buffer.WaitStrategies;
+import com.sprinklr.sip4j.rtp.RtpAddress;
+import com.sprinklr.sip4j.rtp.RtpReceiverMode;
+import com.sprinklr.sip4j.sip.SipCall;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MediaSessionTests {
+
+	@Test
+	void nextCallReceivesOnTheSamePort() throws Exception {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName("agent");
+		agentConfig.setRtpAddressType("IP4");
+		agentConfig.setRtpNetworkType("IN");
+		agentConfig.setRtpLocalIp("127.0.0.1");
+		agentConfig.setRtpLocalPort(46022);
+		agentConfig.setRtpPayloadSize(160);
+		agentConfig.setRtpReceiverMode(RtpReceiverMode.THREAD);
+		AgentState agentState = new AgentState(agentConfig.getAgentName());
+		RingBuffer<MediaBuffer> inboundRtpQueue = new RingBuffer<>(16, WaitStrategies.fromName(WaitStrategies.PARK), MediaBuffer::release);
+		RingBuffer<MediaBuffer> outboundRtpQueue = new RingBuffer<>(16, WaitStrategies.fromName(WaitStrategies.PARK), MediaBuffer::release);
+		RtpAddress remote = new RtpAddress(46030, "127.0.0.1", "IP4", "IN");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try (DatagramSocket carrier = new DatagramSocket(new InetSocketAddress("127.0.0.1", 46030))) {
+			for (int call = 0; call < 2; call++) {
+				MediaSession mediaSession = new MediaSession(agentConfig, agentState, new SipCall("call" + call, null, null, remote), inboundRtpQueue, outboundRtpQueue, executor);
+				mediaSession.startReceiving();
+				MediaBuffer received = null;
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+				while (received == null && System.nanoTime() < deadline) {
+					//the receiver binds asynchronously, resend until it is listening
+					carrier.send(new DatagramPacket(new byte[172], 172, new InetSocketAddress("127.0.0.1", 46022)));
+					received = inboundRtpQueue.poll(20, TimeUnit.MILLISECONDS);
+				}
+				assertNotNull(received);
+				assertEquals(172, received.getLength());
+				received.release();
+				mediaSession.close();
+				assertNull(inboundRtpQueue.poll());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.sprinklr.sip4j.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaBufferPoolTests {
+
+	@Test
+	void reusesReleasedBuffers() {
+		MediaBufferPool pool = new MediaBufferPool(172, 4, false);
+		MediaBuffer first = pool.acquire();
+		first.setLength(160);
+		first.setTimestampNanos(42);
+		first.release();
+		assertEquals(1, pool.getFreeBufferCount());
+
+		MediaBuffer second = pool.acquire();
+		assertSame(first, second);
+		assertEquals(0, second.getLength());
+		assertEquals(0, second.getTimestampNanos());
+		assertEquals(0, pool.getFreeBufferCount());
+
+		assertEquals(2, pool.getAcquireCount());
+		assertEquals(1, pool.getAllocationCount());
+		assertEquals(1, pool.getReleaseCount());
+		assertEquals(0.5, pool.getHitRate());
+	}
+
+	@Test
+	void discardsReleasedBuffersWhenFull() {
+		MediaBufferPool pool = new MediaBufferPool(172, 2, false);
+		MediaBuffer[] buffers = new MediaBuffer[3];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = pool.acquire();
+		}
+		for (MediaBuffer buffer : buffers) {
+			buffer.release();
+		}
+		assertEquals(3, pool.getAllocationCount());
+		assertEquals(3, pool.getReleaseCount());
+		assertEquals(1, pool.getDiscardCount());
+		assertEquals(2, pool.getFreeBufferCount());
+	}
+
+	@Test
+	void allocatesHeapOrDirectBuffers() {
+		MediaBuffer heap = new MediaBufferPool(172, 4, false).acquire();
+		assertTrue(heap.hasArray());
+		assertFalse(heap.getWritableBuffer().isDirect());
+		assertEquals(172, heap.getCapacity());
+
+		MediaBuffer direct = new MediaBufferPool(172, 4, true).acquire();
+		assertFalse(direct.hasArray());
+		assertTrue(direct.getWritableBuffer().isDirect());
+		assertEquals(172, direct.getCapacity());
+	}
+
+	@Test
+	void rejectsSecondRelease() {
+		MediaBufferPool pool = new MediaBufferPool(172, 4, false);
+		MediaBuffer buffer = pool.acquire();
+		buffer.release();
+		assertThrows(IllegalStateException.class, buffer::release);
+		assertEquals(1, pool.getReleaseCount());
+		assertEquals(1, pool.getFreeBufferCount());
+
+		//handed out again, it may be released once more
+		pool.acquire().release();
+		assertEquals(2, pool.getReleaseCount());
+	}
+
+	@Test
+	void wrappedBuffersAreNotPooled() {
+		MediaBuffer wrapped = MediaBuffer.wrap(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+		assertEquals(3, wrapped.getLength());
+		wrapped.release();
+		wrapped.release();
+	}
+
+	@Test
+	void sharedPoolIsKeyedBySizeAndType() {
+		assertSame(MediaBufferPool.shared(1234, false), MediaBufferPool.shared(1234, false));
+		assertFalse(MediaBufferPool.shared(1234, false) == MediaBufferPool.shared(1234, true));
+		assertTrue(MediaBufferPool.getSharedPools().contains(MediaBufferPool.shared(1234, true)));
+	}
+}
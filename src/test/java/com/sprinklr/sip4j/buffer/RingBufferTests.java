@@ -0,0 +1,119 @@
+package com.sprinklr.sip4j.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTests {
+
+	@Test
+	void capacityIsRoundedToPowerOfTwo() {
+		assertEquals(8, new RingBuffer<Integer>(5, new ParkingWaitStrategy()).getCapacity());
+		assertEquals(1, new RingBuffer<Integer>(1, new ParkingWaitStrategy()).getCapacity());
+	}
+
+	@Test
+	void dropsOldestWhenFull() {
+		RingBuffer<Integer> ringBuffer = new RingBuffer<>(4, new ParkingWaitStrategy());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(ringBuffer.offer(i));
+		}
+		assertFalse(ringBuffer.offer(4));
+		assertFalse(ringBuffer.offer(5));
+
+		assertEquals(2, ringBuffer.getOverflowCount());
+		assertEquals(4, ringBuffer.size());
+		for (int i = 2; i < 6; i++) {
+			assertEquals(i, ringBuffer.poll());
+		}
+		assertNull(ringBuffer.poll());
+	}
+
+	@Test
+	void timedPollReturnsNullWhenEmpty() throws InterruptedException {
+		for (String name : new String[]{WaitStrategies.BUSY_SPIN, WaitStrategies.YIELD, WaitStrategies.PARK, WaitStrategies.BLOCKING}) {
+			RingBuffer<Integer> ringBuffer = new RingBuffer<>(4, WaitStrategies.fromName(name));
+			assertNull(ringBuffer.poll(1, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test
+	void handsOverAllElementsBetweenThreadsInOrder() throws InterruptedException {
+		for (String name : new String[]{WaitStrategies.BUSY_SPIN, WaitStrategies.YIELD, WaitStrategies.PARK, WaitStrategies.BLOCKING}) {
+			RingBuffer<Integer> ringBuffer = new RingBuffer<>(1024, WaitStrategies.fromName(name));
+			int nElements = 100_000;
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < nElements; i++) {
+					while (ringBuffer.size() == ringBuffer.getCapacity()) {
+						Thread.yield(); //avoid overflow, this test checks ordering
+					}
+					ringBuffer.offer(i);
+				}
+			});
+			producer.start();
+			for (int i = 0; i < nElements; i++) {
+				assertEquals(i, ringBuffer.poll(1, TimeUnit.SECONDS), name);
+			}
+			producer.join();
+			assertEquals(0, ringBuffer.getOverflowCount());
+		}
+	}
+
+	@Test
+	void wakesConsumerParkingWhileProducerOffers() throws InterruptedException {
+		for (String name : new String[]{WaitStrategies.PARK, WaitStrategies.BLOCKING}) {
+			RingBuffer<Integer> ringBuffer = new RingBuffer<>(16, WaitStrategies.fromName(name));
+			AtomicBoolean consumerWaiting = new AtomicBoolean();
+			int nElements = 5_000;
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < nElements; i++) {
+					while (!consumerWaiting.compareAndSet(true, false)) {
+						Thread.yield();
+					}
+					//offer while the consumer is somewhere between its empty check and parking
+					long delayNanos = ThreadLocalRandom.current().nextInt(20_000);
+					long offerAt = System.nanoTime() + delayNanos;
+					while (System.nanoTime() < offerAt) {
+						//busy wait, a sleep would always let the consumer park first
+					}
+					ringBuffer.offer(i);
+				}
+			});
+			producer.start();
+			long maxLatencyNanos = 0;
+			for (int i = 0; i < nElements; i++) {
+				consumerWaiting.set(true);
+				long start = System.nanoTime();
+				Integer element = ringBuffer.poll(2, TimeUnit.SECONDS);
+				maxLatencyNanos = Math.max(maxLatencyNanos, System.nanoTime() - start);
+				assertEquals(i, element, name);
+			}
+			producer.join();
+			//a lost signal leaves the consumer parked until its timeout
+			assertTrue(maxLatencyNanos < TimeUnit.SECONDS.toNanos(1), name + " max latency " + maxLatencyNanos + "ns");
+		}
+	}
+
+	@Test
+	void releasesPolledElements() {
+		RingBuffer<Object> ringBuffer = new RingBuffer<>(4, new ParkingWaitStrategy());
+		Object element = new Object();
+		WeakReference<Object> reference = new WeakReference<>(element);
+		ringBuffer.offer(element);
+		assertNotNull(ringBuffer.poll());
+		element = null;
+		for (int i = 0; i < 10 && reference.get() != null; i++) {
+			System.gc();
+		}
+		assertNull(reference.get());
+	}
+}
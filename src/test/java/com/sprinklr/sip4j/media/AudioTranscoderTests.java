@@ -0,0 +1,56 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AudioTranscoderTests {
+
+	@Test
+	void g711CodesSurviveDecodeAndEncode() {
+		for (int code = 0; code < 256; code++) {
+			assertEquals((byte) code, G711.linearToAlaw(G711.alawToLinear((byte) code)));
+			if (code != 0x7F) { //negative zero, encoded back as positive zero
+				assertEquals((byte) code, G711.linearToUlaw(G711.ulawToLinear((byte) code)));
+			}
+		}
+		assertEquals(0, G711.ulawToLinear((byte) 0xFF));
+		assertEquals(-32124, G711.ulawToLinear((byte) 0x00));
+		assertEquals((byte) 0x80, G711.linearToUlaw(Short.MAX_VALUE));
+	}
+
+	@Test
+	void transcodesPayloadInPlace() {
+		assertNull(AudioTranscoder.create(AudioCodec.PCMU, AudioCodec.PCMU));
+		AudioTranscoder transcoder = AudioTranscoder.create(AudioCodec.PCMU, AudioCodec.L16);
+
+		for (boolean direct : new boolean[]{false, true}) {
+			MediaBuffer packet = MediaBuffer.wrap(direct ? ByteBuffer.allocateDirect(12 + 320) : ByteBuffer.allocate(12 + 320));
+			packet.setLength(12 + 160);
+			new RtpPacketView().wrap(packet).writeHeader(false, 0, 1, 160, 1);
+			for (int i = 0; i < 160; i++) {
+				packet.getBuffer().put(12 + i, (byte) (i * 3));
+			}
+
+			assertTrue(transcoder.decode(packet));
+			assertEquals(12 + 320, packet.getLength());
+			for (int i = 0; i < 160; i++) {
+				assertEquals(G711.ulawToLinear((byte) (i * 3)), packet.getBuffer().getShort(12 + 2 * i));
+			}
+
+			assertTrue(transcoder.encode(packet));
+			assertEquals(12 + 160, packet.getLength());
+			for (int i = 0; i < 160; i++) {
+				if ((byte) (i * 3) != 0x7F) {
+					assertEquals((byte) (i * 3), packet.getBuffer().get(12 + i));
+				}
+			}
+		}
+	}
+}
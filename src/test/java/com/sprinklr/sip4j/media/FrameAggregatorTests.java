@@ -0,0 +1,51 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FrameAggregatorTests {
+
+	private static MediaBuffer packet(int sequenceNumber, int payloadLength) {
+		MediaBuffer buffer = MediaBuffer.wrap(ByteBuffer.allocate(12 + payloadLength));
+		buffer.setLength(12 + payloadLength);
+		new RtpPacketView().wrap(buffer).writeHeader(false, 0, sequenceNumber, sequenceNumber * 160, 1);
+		buffer.getBuffer().put(12, (byte) sequenceNumber);
+		return buffer;
+	}
+
+	@Test
+	void coalescesPacketsIntoLengthPrefixedFrame() {
+		List<ByteBuffer> frames = new ArrayList<>();
+		MediaSink sink = data -> {
+			ByteBuffer copy = ByteBuffer.allocate(data.getLength());
+			copy.put(data.getBuffer()).flip();
+			frames.add(copy);
+		};
+		FrameAggregator aggregator = new FrameAggregator(sink, 3, 100, 172);
+		aggregator.add(packet(7, 160), 0);
+		aggregator.add(packet(8, 100), 0);
+		assertEquals(0, frames.size());
+		aggregator.flushIfDue(100_000_000L);
+		assertEquals(1, frames.size());
+
+		ByteBuffer frame = frames.get(0);
+		assertEquals(FrameAggregator.VERSION, frame.get());
+		assertEquals(2, frame.get());
+		assertEquals(7, frame.getShort());
+		assertEquals(7 * 160, frame.getInt());
+		assertEquals(160, frame.getShort());
+		assertEquals(7, frame.get());
+		frame.position(frame.position() + 159);
+		assertEquals(8, frame.getShort());
+		assertEquals(8 * 160, frame.getInt());
+		assertEquals(100, frame.getShort());
+		assertEquals(100, frame.remaining());
+	}
+}
@@ -0,0 +1,117 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JitterBufferTests {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static MediaBuffer packet(int sequenceNumber) {
+		return packet(sequenceNumber, 1);
+	}
+
+	private static MediaBuffer packet(int sequenceNumber, int ssrc) {
+		MediaBuffer buffer = MediaBuffer.wrap(ByteBuffer.allocate(172));
+		buffer.setLength(172);
+		new RtpPacketView().wrap(buffer).writeHeader(false, 0, sequenceNumber, ((sequenceNumber + 1) & 0xFFFF) * 160, ssrc);
+		return buffer;
+	}
+
+	private static int sequenceNumber(MediaBuffer buffer) {
+		return new RtpPacketView().wrap(buffer).getSequenceNumber();
+	}
+
+	@Test
+	void reordersAndDropsDuplicates() {
+		JitterBuffer jitterBuffer = new JitterBuffer(8000, 20, 20, 200);
+		jitterBuffer.insert(packet(65535), 0);
+		jitterBuffer.insert(packet(1), MS);
+		jitterBuffer.insert(packet(0), 2 * MS);
+		jitterBuffer.insert(packet(1), 3 * MS);
+		assertNull(jitterBuffer.poll(10 * MS));
+
+		assertEquals(65535, sequenceNumber(jitterBuffer.poll(30 * MS)));
+		assertEquals(0, sequenceNumber(jitterBuffer.poll(30 * MS)));
+		assertEquals(1, sequenceNumber(jitterBuffer.poll(30 * MS)));
+		assertNull(jitterBuffer.poll(30 * MS));
+		assertEquals(1, jitterBuffer.getDuplicateCount());
+		assertEquals(1, jitterBuffer.getReorderedCount());
+
+		jitterBuffer.insert(packet(0), 40 * MS);
+		assertEquals(1, jitterBuffer.getLateCount());
+	}
+
+	@Test
+	void measuresNoJitterForRegularArrivalsAfterDaysOfUptime() {
+		JitterBuffer jitterBuffer = new JitterBuffer(8000, 20, 20, 200);
+		long now = Long.MAX_VALUE / 8000 - 500 * MS; //about 13 days, the arrival time in nanos times the rate overflows meanwhile
+		for (int sequenceNumber = 0; sequenceNumber < 50; sequenceNumber++) {
+			jitterBuffer.insert(packet(sequenceNumber), now + sequenceNumber * 20 * MS);
+		}
+		assertTrue(jitterBuffer.getJitterMs() < 1, "jitter " + jitterBuffer.getJitterMs());
+		assertEquals(20, jitterBuffer.getTargetDelayMs());
+	}
+
+	@Test
+	void skipsLostPacketAfterTargetDelay() {
+		JitterBuffer jitterBuffer = new JitterBuffer(8000, 20, 20, 200);
+		jitterBuffer.insert(packet(10), 0);
+		assertEquals(10, sequenceNumber(jitterBuffer.poll(20 * MS)));
+		jitterBuffer.insert(packet(12), 40 * MS);
+
+		assertNull(jitterBuffer.poll(50 * MS));
+		assertEquals(12, sequenceNumber(jitterBuffer.poll(40 * MS + jitterBuffer.getTargetDelayMs() * MS)));
+		assertEquals(1, jitterBuffer.getLostCount());
+	}
+
+	@Test
+	void resyncsOnSequenceRestartBehind() {
+		JitterBuffer jitterBuffer = new JitterBuffer(8000, 20, 20, 200);
+		jitterBuffer.insert(packet(30000), 0);
+		assertEquals(30000, sequenceNumber(jitterBuffer.poll(20 * MS)));
+
+		//a single stray old packet is late, a second one in sequence confirms the restart
+		jitterBuffer.insert(packet(5), 20 * MS);
+		assertEquals(1, jitterBuffer.getLateCount());
+		assertEquals(0, jitterBuffer.getResyncCount());
+		jitterBuffer.insert(packet(6), 40 * MS);
+		jitterBuffer.insert(packet(7), 60 * MS);
+		assertEquals(1, jitterBuffer.getResyncCount());
+		//the stray packet's timestamp raised the jitter, packets are held up to the latency cap
+		assertEquals(6, sequenceNumber(jitterBuffer.poll(300 * MS)));
+		assertEquals(7, sequenceNumber(jitterBuffer.poll(300 * MS)));
+		assertEquals(1, jitterBuffer.getLateCount());
+	}
+
+	@Test
+	void ignoresStrayPacketFarBehind() {
+		JitterBuffer jitterBuffer = new JitterBuffer(8000, 20, 20, 200);
+		jitterBuffer.insert(packet(30000), 0);
+		jitterBuffer.insert(packet(5), MS);
+		jitterBuffer.insert(packet(30001), 2 * MS);
+		assertEquals(0, jitterBuffer.getResyncCount());
+		assertEquals(30000, sequenceNumber(jitterBuffer.poll(300 * MS)));
+		assertEquals(30001, sequenceNumber(jitterBuffer.poll(300 * MS)));
+		assertEquals(1, jitterBuffer.getLateCount());
+	}
+
+	@Test
+	void resyncsOnNewSsrc() {
+		JitterBuffer jitterBuffer = new JitterBuffer(8000, 20, 20, 200);
+		jitterBuffer.insert(packet(30000, 1), 0);
+		assertEquals(30000, sequenceNumber(jitterBuffer.poll(20 * MS)));
+		jitterBuffer.insert(packet(5, 2), 20 * MS);
+		assertEquals(1, jitterBuffer.getResyncCount());
+		assertEquals(5, sequenceNumber(jitterBuffer.poll(60 * MS)));
+		assertEquals(0, jitterBuffer.getLateCount());
+	}
+}
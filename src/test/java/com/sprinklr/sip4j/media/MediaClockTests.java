@@ -0,0 +1,87 @@
+package com.sprinklr.sip4j.media;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaClockTests {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void runsTasksOncePerPeriod() throws InterruptedException {
+		MediaClock mediaClock = new MediaClock(MS, 16);
+		AtomicInteger fast = new AtomicInteger();
+		AtomicInteger slow = new AtomicInteger();
+		long startNanos = System.nanoTime();
+		MediaClock.Registration fastRegistration = mediaClock.schedule(nowNanos -> fast.incrementAndGet(), 10 * MS);
+		MediaClock.Registration slowRegistration = mediaClock.schedule(nowNanos -> slow.incrementAndGet(), 40 * MS); //more ticks than the wheel has buckets
+		Thread.sleep(400);
+		int fastRuns = fast.get();
+		int slowRuns = slow.get();
+		long elapsedMs = (System.nanoTime() - startNanos) / MS;
+		fastRegistration.cancel();
+		slowRegistration.cancel();
+
+		//deadlines are absolute, late ticks are caught up
+		assertTrue(Math.abs(fastRuns - elapsedMs / 10) <= 3, "fast task ran " + fastRuns + " times in " + elapsedMs + "ms");
+		assertTrue(Math.abs(slowRuns - elapsedMs / 40) <= 2, "slow task ran " + slowRuns + " times in " + elapsedMs + "ms");
+	}
+
+	@Test
+	void stopsRunningCancelledTasks() throws InterruptedException {
+		MediaClock mediaClock = new MediaClock(MS, 16);
+		AtomicInteger runs = new AtomicInteger();
+		MediaClock.Registration registration = mediaClock.schedule(nowNanos -> runs.incrementAndGet(), 5 * MS);
+		Thread.sleep(50);
+		registration.cancel();
+		Thread.sleep(20);
+		int runsAfterCancel = runs.get();
+		Thread.sleep(50);
+
+		assertTrue(runsAfterCancel > 0);
+		//the cancelled task leaves the wheel at its next deadline
+		assertEquals(0, mediaClock.getTaskCount());
+		assertEquals(runsAfterCancel, runs.get());
+	}
+
+	@Test
+	void doesNotRunTasksOnceCancelAndAwaitReturns() throws InterruptedException {
+		MediaClock mediaClock = new MediaClock(MS, 16);
+		for (int i = 0; i < 50; i++) {
+			AtomicInteger runs = new AtomicInteger();
+			MediaClock.Registration registration = mediaClock.schedule(nowNanos -> {
+				long busyUntil = System.nanoTime() + 200_000;
+				while (System.nanoTime() < busyUntil) {
+					Thread.yield(); //widens the window of a run in progress
+				}
+				runs.incrementAndGet();
+			}, MS);
+			Thread.sleep(3 + i % 3);
+			registration.cancelAndAwait();
+			int runsAfterCancel = runs.get();
+			Thread.sleep(3);
+			assertEquals(runsAfterCancel, runs.get(), "iteration " + i);
+		}
+	}
+
+	@Test
+	void keepsRunningAfterATaskFails() throws InterruptedException {
+		MediaClock mediaClock = new MediaClock(MS, 16);
+		AtomicInteger runs = new AtomicInteger();
+		MediaClock.Registration failing = mediaClock.schedule(nowNanos -> {
+			throw new IllegalStateException("failing task");
+		}, 20 * MS);
+		MediaClock.Registration healthy = mediaClock.schedule(nowNanos -> runs.incrementAndGet(), 20 * MS);
+		Thread.sleep(100);
+		failing.cancel();
+		healthy.cancel();
+
+		assertTrue(mediaClock.getFailedRunCount() > 0);
+		assertTrue(runs.get() > 0);
+	}
+}
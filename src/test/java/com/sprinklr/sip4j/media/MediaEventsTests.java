@@ -0,0 +1,26 @@
+package com.sprinklr.sip4j.media;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MediaEventsTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void formatsCallEvents() {
+		String json = MediaEvents.callToJson(MediaEvents.CALL_START, "a84b4c76e66710@127.0.0.1");
+		assertEquals("{\"event\":\"callStart\",\"callId\":\"a84b4c76e66710@127.0.0.1\"}", json);
+	}
+
+	@Test
+	void escapesCallIdsHoldingQuotesAndBackslashes() throws Exception {
+		String callId = "a\"b\\c\td@host";
+		JsonNode event = objectMapper.readTree(MediaEvents.callToJson(MediaEvents.CALL_END, callId));
+		assertEquals(MediaEvents.CALL_END, event.get("event").asText());
+		assertEquals(callId, event.get("callId").asText());
+	}
+}
@@ -0,0 +1,41 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadFrameCodecTests {
+
+	@Test
+	void roundTripsHeaderFieldsAndPayload() {
+		MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(172));
+		packet.setLength(172);
+		new RtpPacketView().wrap(packet).writeHeader(true, 8, 65535, 0xFFFFFFFF, 1);
+		packet.getBuffer().put(12, (byte) 42).put(171, (byte) 43);
+
+		PayloadFrameCodec codec = new PayloadFrameCodec(77);
+		MediaBuffer frame = MediaBuffer.wrap(ByteBuffer.allocate(PayloadFrameCodec.MAX_HEADER_SIZE + 172));
+		assertTrue(codec.encode(packet, frame));
+		assertEquals(PayloadFrameCodec.MAX_HEADER_SIZE + 160, frame.getLength());
+
+		MediaBuffer decoded = MediaBuffer.wrap(ByteBuffer.allocate(172));
+		assertTrue(codec.decode(frame.getBuffer(), decoded));
+		RtpPacketView view = new RtpPacketView().wrap(decoded);
+		assertTrue(view.getMarker());
+		assertEquals(8, view.getPayloadType());
+		assertEquals(65535, view.getSequenceNumber());
+		assertEquals(0xFFFFFFFF, view.getTimeStamp());
+		assertEquals(77, view.getSsrc());
+		assertEquals(160, view.getPayloadLength());
+		assertEquals(42, decoded.getBuffer().get(12));
+		assertEquals(43, decoded.getBuffer().get(171));
+
+		assertFalse(codec.decode(ByteBuffer.wrap(new byte[]{0, (byte) 0x80, (byte) 0x80}), decoded));
+	}
+}
@@ -0,0 +1,53 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResamplerTests {
+
+	@Test
+	void preservesToneAcrossPackets() {
+		for (boolean direct : new boolean[]{false, true}) {
+			Resampler upsampler = Resampler.upsampler(160);
+			Resampler downsampler = Resampler.downsampler(320);
+			MediaBuffer packet = MediaBuffer.wrap(direct ? ByteBuffer.allocateDirect(12 + 640) : ByteBuffer.allocate(12 + 640));
+			RtpPacketView view = new RtpPacketView();
+			int sample = 0;
+			for (int p = 0; p < 10; p++) {
+				packet.setLength(12 + 320);
+				view.wrap(packet).writeHeader(false, 0, p, p * 160, 1);
+				for (int i = 0; i < 160; i++, sample++) {
+					packet.getBuffer().putShort(12 + 2 * i, tone(sample, 8000));
+				}
+
+				assertTrue(upsampler.process(packet));
+				assertEquals(12 + 640, packet.getLength());
+				if (p > 0) { //past the filter's warm up, the 16 kHz samples follow the tone delayed by the filter
+					for (int i = 0; i < 320; i++) {
+						double expected = 8000 * Math.sin(2 * Math.PI * 500 * (2 * (sample - 160) + i - 31.5) / 16000);
+						assertEquals(expected, packet.getBuffer().getShort(12 + 2 * i), 160);
+					}
+				}
+
+				assertTrue(downsampler.process(packet));
+				assertEquals(12 + 320, packet.getLength());
+				if (p > 1) { //both filters delay by 31.5 samples at 16 kHz, and the odd samples are kept
+					for (int i = 0; i < 160; i++) {
+						double expected = 8000 * Math.sin(2 * Math.PI * 500 * (sample - 160 + i - 31) / 8000);
+						assertEquals(expected, packet.getBuffer().getShort(12 + 2 * i), 320);
+					}
+				}
+			}
+		}
+	}
+
+	private static short tone(int sample, int rate) {
+		return (short) Math.round(8000 * Math.sin(2 * Math.PI * 500 * sample / rate));
+	}
+}
@@ -0,0 +1,66 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.metrics.AgentMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoundTripTracerTests {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void tagsAtMostOncePerInterval() {
+		RoundTripTracer tracer = new RoundTripTracer(100, new AgentMetrics("test"));
+		MediaBuffer frame = frameArrivedAt(-5 * MS); //System.nanoTime() may be negative
+
+		assertNull(tracer.tag(MediaBuffer.wrap(ByteBuffer.allocate(1)), 0), "frame without arrival time tagged");
+		assertEquals("{\"event\":\"trace\",\"frameId\":1,\"arrivalNanos\":" + (-5 * MS) + ",\"sentNanos\":0}", tracer.tag(frame, 0));
+		assertNull(tracer.tag(frame, 99 * MS));
+		String tag = tracer.tag(frame, 100 * MS);
+		assertNotNull(tag);
+		assertEquals(2, RoundTripTracer.longField(tag, "frameId"));
+		assertEquals(-5 * MS, RoundTripTracer.longField(tag, "arrivalNanos"));
+		assertEquals(2, tracer.getTagCount());
+	}
+
+	@Test
+	void measuresResponseToEchoedTag() {
+		AgentMetrics metrics = new AgentMetrics("test");
+		RoundTripTracer tracer = new RoundTripTracer(20, metrics);
+		String first = tracer.tag(frameArrivedAt(10 * MS), 12 * MS);
+		String second = tracer.tag(frameArrivedAt(30 * MS), 32 * MS);
+
+		assertFalse(tracer.onEcho("{\"event\":\"speechStart\"}", 40 * MS), "other events are not echoes");
+		assertTrue(tracer.onEcho(second, 282 * MS));
+		MediaBuffer response = MediaBuffer.wrap(ByteBuffer.allocate(1));
+		tracer.onResponsePacket(response);
+		MediaBuffer next = MediaBuffer.wrap(ByteBuffer.allocate(1));
+		tracer.onResponsePacket(next);
+		assertEquals(30 * MS, response.getResponseToNanos());
+		assertEquals(0, next.getResponseToNanos(), "only the first packet starts the response");
+		assertEquals(1, metrics.getBotProcessing().getCount());
+		assertEquals(250_000, metrics.getBotProcessing().getMaxMicros());
+
+		assertTrue(tracer.onEcho(first, 300 * MS)); //older than the tag already echoed
+		assertTrue(tracer.onEcho(second, 300 * MS)); //echoed twice
+		assertTrue(tracer.onEcho(MediaEvents.traceToJson(3, 30 * MS, 32 * MS), 300 * MS)); //never sent
+		assertEquals(3, tracer.getInvalidEchoCount());
+		assertEquals(1, tracer.getEchoCount());
+		assertEquals(1, metrics.getBotProcessing().getCount());
+	}
+
+	private static MediaBuffer frameArrivedAt(long arrivalNanos) {
+		MediaBuffer frame = MediaBuffer.wrap(ByteBuffer.allocate(1));
+		frame.setTimestampNanos(arrivalNanos);
+		return frame;
+	}
+}
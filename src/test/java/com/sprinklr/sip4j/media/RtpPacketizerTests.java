@@ -0,0 +1,57 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.ParkingWaitStrategy;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RtpPacketizerTests {
+
+	@Test
+	void slicesChunksOfAnySizeIntoPackets() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setRtpPayloadSize(160);
+		RtpPacketizer packetizer = new RtpPacketizer(agentConfig);
+		RingBuffer<MediaBuffer> queue = new RingBuffer<>(8, new ParkingWaitStrategy());
+
+		byte[] audio = new byte[330];
+		for (int i = 0; i < audio.length; i++) {
+			audio[i] = (byte) i;
+		}
+		packetizer.packetize(ByteBuffer.wrap(audio, 0, 100), queue::offer);
+		assertNull(queue.poll());
+		packetizer.packetize(ByteBuffer.wrap(audio, 100, 230), queue::offer);
+
+		RtpPacketView view = new RtpPacketView();
+		MediaBuffer first = queue.poll();
+		MediaBuffer second = queue.poll();
+		assertNull(queue.poll()); //last 10 bytes are carried over
+
+		view.wrap(first);
+		assertTrue(view.getMarker());
+		assertEquals(packetizer.getSsrc(), view.getSsrc());
+		assertEquals(160, view.getPayloadLength());
+		int sequenceNumber = view.getSequenceNumber();
+		int timeStamp = view.getTimeStamp();
+
+		view.wrap(second);
+		assertFalse(view.getMarker());
+		assertEquals((sequenceNumber + 1) & 0xFFFF, view.getSequenceNumber());
+		assertEquals(timeStamp + 160, view.getTimeStamp());
+		assertEquals((byte) 160, second.getBuffer().get(view.getPayloadOffset()));
+		assertEquals((byte) 319, second.getBuffer().get(view.getPayloadOffset() + 159));
+
+		first.release();
+		second.release();
+		packetizer.close();
+	}
+}
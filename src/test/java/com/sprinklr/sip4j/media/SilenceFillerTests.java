@@ -0,0 +1,49 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SilenceFillerTests {
+
+	@Test
+	void fillsWithSilenceOrComfortNoise() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setRtpPayloadSize(160);
+		assertNull(SilenceFiller.create(agentConfig));
+
+		agentConfig.setRtpSilenceFill(SilenceFill.SILENCE);
+		SilenceFiller silence = SilenceFiller.create(agentConfig);
+		RtpPacketView view = new RtpPacketView();
+		for (int i = 0; i < 3; i++) {
+			MediaBuffer packet = silence.next(100 + i, 160 * i, 7);
+			view.wrap(packet);
+			assertEquals(0, view.getPayloadType());
+			assertEquals(100 + i, view.getSequenceNumber());
+			assertEquals(160, view.getPayloadLength());
+			assertEquals((byte) 0xFF, packet.getBuffer().get(12 + 159)); //PCMU silence
+		}
+
+		agentConfig.setRtpSilenceFill(SilenceFill.COMFORT_NOISE);
+		SilenceFiller comfortNoise = SilenceFiller.create(agentConfig);
+		int sent = 0;
+		for (int i = 0; i < 20; i++) {
+			MediaBuffer packet = comfortNoise.next(i, 160 * i, 7);
+			if (packet != null) {
+				sent++;
+				view.wrap(packet);
+				assertEquals(13, view.getPayloadType());
+				assertEquals(1, view.getPayloadLength());
+				assertEquals(60, packet.getBuffer().get(12));
+			}
+		}
+		assertEquals(2, sent); //one when the audio stops, one 200ms later
+		comfortNoise.reset();
+		assertNotNull(comfortNoise.next(20, 3200, 7));
+	}
+}
@@ -0,0 +1,76 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TelephoneEventDecoderTests {
+
+	@Test
+	void sendsEachDigitOnceInsteadOfAudio() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setRtpPayloadSize(160);
+		agentConfig.setDtmfEnabled(true);
+		agentConfig.setJitterBufferEnabled(true);
+		List<String> sent = new ArrayList<>();
+		RtpPacketView view = new RtpPacketView();
+		InboundMediaPipeline pipeline = new InboundMediaPipeline(agentConfig, new MediaSink() {
+			@Override
+			public void send(MediaBuffer packet) {
+				sent.add(String.valueOf(view.wrap(packet).getSequenceNumber()));
+			}
+
+			@Override
+			public void sendEvent(String event) {
+				sent.add(event);
+			}
+		});
+
+		long now = 0;
+		pipeline.onPacket(audio(0), now);
+		//digit 5 from timestamp 160: 3 packets, the last one an end packet retransmitted twice, then digit #
+		pipeline.onPacket(event(1, 160, 5, false), now);
+		pipeline.onPacket(event(2, 160, 5, false), now);
+		pipeline.onPacket(event(3, 160, 5, true), now);
+		pipeline.onPacket(event(4, 160, 5, true), now);
+		pipeline.onPacket(event(5, 160, 5, true), now);
+		pipeline.onPacket(event(6, 800, 11, true), now);
+		pipeline.onPacket(audio(7), now);
+		pipeline.onTick(now + 1_000_000_000L);
+
+		List<String> expected = new ArrayList<>();
+		expected.add(MediaEvents.dtmfToJson("5", 1, 160));
+		expected.add(MediaEvents.dtmfToJson("#", 6, 800));
+		expected.add("0"); //the audio is released by the jitter buffer later, the digits are not held
+		expected.add("7");
+		assertEquals(expected, sent);
+		assertEquals(0, pipeline.getJitterBuffer().getLostCount());
+		assertEquals(2, pipeline.getTelephoneEventDecoder().getEventCount());
+		assertEquals(4, pipeline.getTelephoneEventDecoder().getRepeatedCount());
+	}
+
+	private static MediaBuffer audio(int seq) {
+		MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + 160));
+		packet.setLength(12 + 160);
+		new RtpPacketView().wrap(packet).writeHeader(false, 0, seq, seq * 160, 1);
+		return packet;
+	}
+
+	private static MediaBuffer event(int seq, int timeStamp, int event, boolean end) {
+		MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + 4));
+		packet.setLength(12 + 4);
+		new RtpPacketView().wrap(packet).writeHeader(false, 101, seq, timeStamp, 1);
+		ByteBuffer buffer = packet.getWritableBuffer();
+		buffer.put(12, (byte) event);
+		buffer.put(13, (byte) ((end ? 0x80 : 0) | 10)); //volume -10 dBm0
+		buffer.putShort(14, (short) 400);
+		return packet;
+	}
+}
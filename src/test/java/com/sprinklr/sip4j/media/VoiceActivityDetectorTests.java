@@ -0,0 +1,61 @@
+package com.sprinklr.sip4j.media;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VoiceActivityDetectorTests {
+
+	@Test
+	void sendsSpeechWithPreRollAndHangoverOnly() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setRtpPayloadSize(160);
+		agentConfig.setVadEnabled(true);
+		agentConfig.setVadHangoverMs(100); //5 packets
+		agentConfig.setVadPreRollMs(60); //3 packets
+		List<String> sent = new ArrayList<>();
+		RtpPacketView view = new RtpPacketView();
+		InboundMediaPipeline pipeline = new InboundMediaPipeline(agentConfig, new MediaSink() {
+			@Override
+			public void send(MediaBuffer packet) {
+				sent.add(String.valueOf(view.wrap(packet).getSequenceNumber()));
+			}
+
+			@Override
+			public void sendEvent(String event) {
+				sent.add(event);
+			}
+		});
+
+		//packets 0-19 silence, 20-39 a tone, 40-59 silence
+		for (int seq = 0; seq < 60; seq++) {
+			boolean speech = seq >= 20 && seq < 40;
+			MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + 160));
+			packet.setLength(12 + 160);
+			view.wrap(packet).writeHeader(false, 0, seq, seq * 160, 1);
+			for (int i = 0; i < 160; i++) {
+				short sample = speech ? (short) (4000 * Math.sin(2 * Math.PI * 300 * (seq * 160 + i) / 8000)) : (short) ((i % 3) - 1);
+				packet.getBuffer().put(12 + i, G711.linearToUlaw(sample));
+			}
+			pipeline.onPacket(packet, System.nanoTime());
+		}
+
+		List<String> expected = new ArrayList<>();
+		expected.add(MediaEvents.toJson(MediaEvents.SPEECH_START, 18, 18 * 160));
+		for (int seq = 18; seq <= 44; seq++) { //speech starts on its second packet, 3 packets of pre-roll and 5 of hangover
+			expected.add(String.valueOf(seq));
+		}
+		expected.add(MediaEvents.toJson(MediaEvents.SPEECH_END, 45, 45 * 160));
+		assertEquals(expected, sent);
+		assertEquals(1, pipeline.getVoiceActivityDetector().getSegmentCount());
+		assertEquals(20, pipeline.getVoiceActivityDetector().getSpeechPacketCount());
+		pipeline.close();
+	}
+}
@@ -0,0 +1,62 @@
+package com.sprinklr.sip4j.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTests {
+
+	@Test
+	void bucketsCoverEveryValueWithinPrecision() {
+		for (long micros = 0; micros < 10_000_000; micros = micros * 2 + 7) {
+			int index = LatencyHistogram.bucketIndex(micros);
+			long upperBound = LatencyHistogram.bucketUpperBound(index);
+			assertTrue(upperBound >= micros, "value " + micros + " above its bucket");
+			assertTrue(upperBound <= micros + micros / 16, "bucket of " + micros + " too wide");
+			if (index > 0) {
+				assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < micros, "value " + micros + " in a later bucket");
+			}
+		}
+	}
+
+	@Test
+	void percentilesOfUniformLatencies() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int micros = 1; micros <= 10_000; micros++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+		}
+		assertEquals(10_000, histogram.getCount());
+		assertEquals(5000.5, histogram.getMeanMicros(), 0.01);
+		assertEquals(10_000, histogram.getMaxMicros());
+		assertWithinPrecision(5000, histogram.getPercentileMicros(50));
+		assertWithinPrecision(9900, histogram.getPercentileMicros(99));
+		assertWithinPrecision(9990, histogram.getPercentileMicros(99.9));
+		assertEquals(10_000, histogram.getPercentileMicros(100));
+	}
+
+	@Test
+	void addsHistogramsOfSeveralAgents() {
+		LatencyHistogram fast = new LatencyHistogram();
+		LatencyHistogram slow = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			fast.record(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+		for (int i = 0; i < 10; i++) {
+			slow.record(TimeUnit.MILLISECONDS.toNanos(20));
+		}
+		LatencyHistogram node = new LatencyHistogram();
+		node.add(fast);
+		node.add(slow);
+		assertEquals(100, node.getCount());
+		assertEquals(20_000, node.getMaxMicros());
+		assertWithinPrecision(100, node.getPercentileMicros(90));
+		assertWithinPrecision(20_000, node.getPercentileMicros(91));
+	}
+
+	private static void assertWithinPrecision(long expected, long actual) {
+		assertTrue(actual >= expected && actual <= expected + expected / 16, "expected about " + expected + " but was " + actual);
+	}
+}
@@ -0,0 +1,79 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.buffer.WaitStrategies;
+import com.sprinklr.sip4j.media.MediaClock;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PacedRtpSenderTests {
+
+	//never ticks during a test, the sender is driven by calling onTick()
+	private final MediaClock idleClock = new MediaClock(TimeUnit.HOURS.toNanos(1), 2);
+
+	@Test
+	void advancesTheTimestampEveryTickDuringSilence() throws Exception {
+		RingBuffer<MediaBuffer> outboundRtpQueue = new RingBuffer<>(16, WaitStrategies.fromName(WaitStrategies.PARK), MediaBuffer::release);
+		try (DatagramSocket carrier = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0))) {
+			carrier.setSoTimeout(1000);
+			RtpAddress remote = new RtpAddress(carrier.getLocalPort(), "127.0.0.1", "IP4", "IN");
+			PacedRtpSenderImpl sender = new PacedRtpSenderImpl(remote, outboundRtpQueue, agentConfig(), null, null, idleClock);
+			sender.start();
+			try {
+				outboundRtpQueue.offer(botPacket(100, 1000));
+				outboundRtpQueue.offer(botPacket(101, 1160));
+				sender.onTick(0);
+				sender.onTick(0);
+				RtpPacketView first = receive(carrier);
+				RtpPacketView second = receive(carrier);
+				assertEquals(160, second.getTimeStamp() - first.getTimeStamp());
+				assertEquals((first.getSequenceNumber() + 1) & 0xFFFF, second.getSequenceNumber());
+				assertFalse(second.getMarker());
+
+				//three ticks with nothing from the bot, nothing is sent but the media clock goes on
+				sender.onTick(0);
+				sender.onTick(0);
+				sender.onTick(0);
+				outboundRtpQueue.offer(botPacket(102, 1320));
+				sender.onTick(0);
+				RtpPacketView afterSilence = receive(carrier);
+				assertEquals(4 * 160, afterSilence.getTimeStamp() - second.getTimeStamp());
+				assertEquals((second.getSequenceNumber() + 1) & 0xFFFF, afterSilence.getSequenceNumber());
+				assertTrue(afterSilence.getMarker());
+				assertEquals(first.getSsrc(), afterSilence.getSsrc());
+			} finally {
+				sender.stop();
+			}
+		}
+	}
+
+	private static RtpPacketView receive(DatagramSocket carrier) throws Exception {
+		DatagramPacket packet = new DatagramPacket(new byte[172], 172);
+		carrier.receive(packet);
+		return new RtpPacketView().wrap(packet.getData(), 0, packet.getLength());
+	}
+
+	private static MediaBuffer botPacket(int sequenceNumber, int timeStamp) {
+		MediaBuffer buffer = MediaBuffer.wrap(ByteBuffer.allocate(172));
+		new RtpPacketView().wrap(buffer).writeHeader(false, 0, sequenceNumber, timeStamp, 42);
+		return buffer;
+	}
+
+	private static AgentConfig agentConfig() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName("agent");
+		agentConfig.setRtpPayloadSize(160);
+		return agentConfig;
+	}
+}
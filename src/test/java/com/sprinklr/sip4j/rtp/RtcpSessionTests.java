@@ -0,0 +1,147 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RtcpSessionTests {
+
+	@Test
+	void reportsLossAndRoundTripTime() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName("agent");
+		RtpAddress remote = new RtpAddress(6024, "127.0.0.1", "IP4", "IN");
+		RtcpSession agent = new RtcpSession(agentConfig, remote);
+		RtcpSession carrier = new RtcpSession(agentConfig, remote);
+
+		//the carrier sends packets 0 to 99, 5 of which are lost on the way
+		MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + 160));
+		packet.setLength(12 + 160);
+		RtpPacketView view = new RtpPacketView();
+		long arrivalNanos = 0;
+		for (int seq = 0; seq < 100; seq++) {
+			view.wrap(packet).writeHeader(false, 0, 65500 + seq, seq * 160, 42);
+			carrier.onPacketSent(packet);
+			if (seq % 20 != 10) {
+				agent.onPacketReceived(packet, arrivalNanos);
+			}
+			arrivalNanos += TimeUnit.MILLISECONDS.toNanos(20);
+		}
+		RtpReceptionStatistics statistics = agent.getReceptionStatistics();
+		assertEquals(65536 + 99 - 36, statistics.getExtendedHighestSequenceNumber());
+		assertEquals(5, statistics.getCumulativeLost());
+		assertEquals(0, statistics.getJitterMs(), 0.01);
+
+		long millis = 1_700_000_000_000L;
+		ByteBuffer sr = ByteBuffer.allocate(1500);
+		carrier.writeReport(sr, millis, 0);
+		sr.flip();
+		assertEquals(RtcpSession.SR, sr.get(1) & 0xFF);
+		assertTrue(agent.onReport(sr, millis + 30, arrivalNanos));
+
+		ByteBuffer rr = ByteBuffer.allocate(1500);
+		agent.writeReport(rr, millis + 70, arrivalNanos + TimeUnit.MILLISECONDS.toNanos(40));
+		rr.flip();
+		assertEquals(RtcpSession.RR, rr.get(1) & 0xFF);
+		carrier.onReport(rr, millis + 100, 0);
+
+		assertEquals(100 - 40, carrier.getRoundTripTimeMs(), 0.1);
+		assertEquals(5 * 256 / 100, carrier.getRemoteFractionLost());
+		assertEquals(5, carrier.getRemoteCumulativeLost());
+		assertEquals(1, carrier.getReceivedReportCount());
+	}
+
+	@Test
+	void estimatesMos() {
+		assertEquals(4.4, RtcpSession.estimateMos(0, 0), 0.05);
+		assertTrue(RtcpSession.estimateMos(300, 0) < RtcpSession.estimateMos(100, 0));
+		assertTrue(RtcpSession.estimateMos(20, 5) < 3.5);
+	}
+
+	@Test
+	void ignoresStrayPacketsOfAnotherSource() {
+		RtpReceptionStatistics statistics = new RtpReceptionStatistics(8000);
+		MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + 160));
+		RtpPacketView view = new RtpPacketView();
+		for (int seq = 0; seq < 20; seq++) {
+			view.wrap(packet).writeHeader(false, 0, 1000 + seq, seq * 160, 42);
+			statistics.onPacket(packet, 0);
+			if (seq == 9) {
+				view.wrap(packet).writeHeader(false, 0, 7, 0, 99);
+				statistics.onPacket(packet, 0);
+			}
+		}
+		assertEquals(42, statistics.getSsrc());
+		assertEquals(19, statistics.getReceivedCount()); //the first packet of the stream was on probation
+		assertEquals(0, statistics.getCumulativeLost());
+		assertEquals(1019, statistics.getExtendedHighestSequenceNumber());
+	}
+
+	@Test
+	void switchesSourceAfterPacketsInSequence() {
+		RtpReceptionStatistics statistics = new RtpReceptionStatistics(8000);
+		MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + 160));
+		RtpPacketView view = new RtpPacketView();
+		for (int seq = 0; seq < 10; seq++) {
+			view.wrap(packet).writeHeader(false, 0, 1000 + seq, seq * 160, 42);
+			statistics.onPacket(packet, 0);
+		}
+		view.wrap(packet).writeHeader(false, 0, 500, 0, 99);
+		statistics.onPacket(packet, 0);
+		assertEquals(42, statistics.getSsrc());
+		view.wrap(packet).writeHeader(false, 0, 501, 160, 99);
+		statistics.onPacket(packet, 0);
+		assertEquals(99, statistics.getSsrc());
+		assertEquals(1, statistics.getReceivedCount());
+		assertEquals(501, statistics.getExtendedHighestSequenceNumber());
+	}
+
+	@Test
+	void usesOnlyTheReportsOfTheCallSource() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName("agent");
+		RtpAddress remote = new RtpAddress(6024, "127.0.0.1", "IP4", "IN");
+		RtcpSession agent = new RtcpSession(agentConfig, remote);
+		RtcpSession carrier = new RtcpSession(agentConfig, remote);
+		RtcpSession otherCarrier = new RtcpSession(agentConfig, new RtpAddress(6030, "127.0.0.1", "IP4", "IN"));
+
+		MediaBuffer packet = MediaBuffer.wrap(ByteBuffer.allocate(12 + 160));
+		RtpPacketView view = new RtpPacketView();
+		for (int seq = 0; seq < 10; seq++) {
+			view.wrap(packet).writeHeader(false, 0, seq, seq * 160, 42);
+			carrier.onPacketSent(packet);
+			agent.onPacketReceived(packet, 0);
+			view.wrap(packet).writeHeader(false, 0, seq, seq * 160, 77);
+			otherCarrier.onPacketSent(packet);
+		}
+
+		//the sender report of another call's carrier, received on the shared rtcp port
+		long millis = 1_700_000_000_000L;
+		ByteBuffer otherSr = ByteBuffer.allocate(1500);
+		otherCarrier.writeReport(otherSr, millis, 0);
+		otherSr.flip();
+		agent.onReport(new InetSocketAddress("127.0.0.1", 6031), otherSr, millis + 30, 0);
+		assertEquals(new InetSocketAddress("127.0.0.1", 6025), agent.getRemoteAddress());
+		ByteBuffer rr = ByteBuffer.allocate(1500);
+		agent.writeReport(rr, millis + 70, TimeUnit.MILLISECONDS.toNanos(40));
+		rr.flip();
+		carrier.onReport(rr, millis + 100, 0);
+		assertEquals(-1, carrier.getRoundTripTimeMs());
+
+		//the call's carrier, from another host and then from its own host
+		ByteBuffer sr = ByteBuffer.allocate(1500);
+		carrier.writeReport(sr, millis, 0);
+		sr.flip();
+		agent.onReport(new InetSocketAddress("10.0.0.9", 6025), sr.duplicate(), millis + 30, 0);
+		assertEquals(new InetSocketAddress("127.0.0.1", 6025), agent.getRemoteAddress());
+		agent.onReport(new InetSocketAddress("127.0.0.1", 7000), sr, millis + 30, 0);
+		assertEquals(new InetSocketAddress("127.0.0.1", 7000), agent.getRemoteAddress());
+	}
+}
@@ -0,0 +1,77 @@
+package com.sprinklr.sip4j.rtp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RtpPacketViewTests {
+
+	@Test
+	void readsHeaderWrittenByRtpPacket() {
+		byte[] payload = {1, 2, 3, 4, 5};
+		RtpPacket rtpPacket = new RtpPacket(96, 65000, 0xCAFEBABE, 0x12345678, 1, payload, payload.length);
+		byte[] packet = new byte[rtpPacket.getLength() + 3];
+		rtpPacket.getPacket(packet);
+		System.arraycopy(packet, 0, packet, 3, rtpPacket.getLength()); //view must honour the offset
+
+		RtpPacketView view = new RtpPacketView().wrap(packet, 3, rtpPacket.getLength());
+		assertTrue(view.isValid());
+		assertTrue(view.getMarker());
+		assertEquals(96, view.getPayloadType());
+		assertEquals(65000, view.getSequenceNumber());
+		assertEquals(0xCAFEBABE, view.getTimeStamp());
+		assertEquals(0x12345678, view.getSsrc());
+		assertEquals(12, view.getPayloadOffset());
+		assertEquals(payload.length, view.getPayloadLength());
+	}
+
+	@Test
+	void writesHeaderReadableByRtpPacket() {
+		ByteBuffer direct = ByteBuffer.allocateDirect(20);
+		RtpPacketView view = new RtpPacketView().wrap(direct, 0, 20);
+		view.writeHeader(false, 0, 7, 160, 42);
+		view.rewriteHeader(8, 320, 43);
+		view.setMarker(true);
+
+		byte[] packet = new byte[20];
+		direct.get(packet);
+		RtpPacket rtpPacket = new RtpPacket(packet, packet.length);
+		assertEquals(0, rtpPacket.getPayloadType());
+		assertEquals(8, rtpPacket.getSequenceNumber());
+		assertEquals(320, rtpPacket.getTimeStamp());
+		assertEquals(43, rtpPacket.getSsrc());
+		assertEquals(0x80, packet[1] & 0xFF);
+	}
+
+	@Test
+	void skipsCsrcsExtensionAndPadding() {
+		ByteBuffer packet = ByteBuffer.allocate(40);
+		packet.put((byte) 0xB2); //V=2, P=1, X=1, CC=2
+		packet.put((byte) 8);
+		packet.putShort((short) 1).putInt(2).putInt(3);
+		packet.putInt(0x11111111).putInt(0x22222222); //csrcs
+		packet.putShort((short) 0xBEDE).putShort((short) 1).putInt(0); //extension with one word
+		packet.put(new byte[]{9, 9, 9, 9, 9});
+		packet.put(new byte[]{0, 0, 3}); //3 bytes of padding
+		int length = packet.position();
+
+		RtpPacketView view = new RtpPacketView().wrap(packet.array(), 0, length);
+		assertTrue(view.isValid());
+		assertEquals(2, view.getCsrcCount());
+		assertEquals(0x22222222, view.getCsrc(1));
+		assertEquals(0xBEDE, view.getExtensionProfile());
+		assertEquals(4, view.getExtensionLength());
+		assertEquals(28, view.getPayloadOffset());
+		assertEquals(5, view.getPayloadLength());
+		byte[] payload = new byte[view.getPayloadLength()];
+		System.arraycopy(packet.array(), view.getPayloadOffset(), payload, 0, payload.length);
+		assertArrayEquals(new byte[]{9, 9, 9, 9, 9}, payload);
+
+		assertFalse(new RtpPacketView().wrap(packet.array(), 0, 20).isValid());
+	}
+}
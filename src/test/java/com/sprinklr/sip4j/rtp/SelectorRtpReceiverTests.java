@@ -0,0 +1,115 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.buffer.WaitStrategies;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SelectorRtpReceiverTests {
+
+	private static final int LOCAL_PORT = 46050;
+	private static final InetSocketAddress LOCAL_ADDRESS = new InetSocketAddress("127.0.0.1", LOCAL_PORT);
+
+	private final RtpSelectorGroup selectorGroup = new RtpSelectorGroup(1);
+
+	@Test
+	void rebindsThePortOfTheStoppedReceiver() throws Exception {
+		RingBuffer<MediaBuffer> inboundRtpQueue = newQueue();
+		try (DatagramSocket carrier = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0))) {
+			for (int call = 0; call < 20; call++) {
+				SelectorRtpReceiverImpl receiver = new SelectorRtpReceiverImpl(inboundRtpQueue, agentConfig(), selectorGroup);
+				receiver.start();
+				MediaBuffer received = receive(carrier, inboundRtpQueue);
+				assertNotNull(received, "call " + call);
+				assertEquals(172, received.getLength());
+				received.release();
+				receiver.stop();
+
+				//closed on return, not when the I/O thread gets to it
+				carrier.send(new DatagramPacket(new byte[172], 172, LOCAL_ADDRESS));
+				assertNull(inboundRtpQueue.poll(20, TimeUnit.MILLISECONDS));
+			}
+		}
+	}
+
+	@Test
+	void dropsDatagramsLargerThanTheMediaBuffers() throws Exception {
+		RingBuffer<MediaBuffer> inboundRtpQueue = newQueue();
+		SelectorRtpReceiverImpl receiver = new SelectorRtpReceiverImpl(inboundRtpQueue, agentConfig(), selectorGroup);
+		receiver.start();
+		try (DatagramSocket carrier = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0))) {
+			receive(carrier, inboundRtpQueue).release();
+
+			//room is left for a CSRC list and a header extension, a datagram filling the buffer may have been cut short
+			int withCsrcs = 172 + 15 * 4;
+			carrier.send(new DatagramPacket(new byte[withCsrcs], withCsrcs, LOCAL_ADDRESS));
+			MediaBuffer received = inboundRtpQueue.poll(1, TimeUnit.SECONDS);
+			assertEquals(withCsrcs, received.getLength());
+			received.release();
+
+			int oversized = agentConfig().getMediaBufferSize() + 100;
+			carrier.send(new DatagramPacket(new byte[oversized], oversized, LOCAL_ADDRESS));
+			assertNull(inboundRtpQueue.poll(200, TimeUnit.MILLISECONDS));
+			assertEquals(1, receiver.getTruncatedCount());
+		} finally {
+			receiver.stop();
+		}
+	}
+
+	@Test
+	void portIsFreeOnceStopped() throws Exception {
+		SelectorRtpReceiverImpl receiver = new SelectorRtpReceiverImpl(newQueue(), agentConfig(), selectorGroup);
+		receiver.start();
+		receiver.stop();
+		new DatagramSocket(LOCAL_ADDRESS).close();
+	}
+
+	@Test
+	void startFailsWhenThePortIsTaken() throws Exception {
+		try (DatagramSocket other = new DatagramSocket(LOCAL_ADDRESS)) {
+			SelectorRtpReceiverImpl receiver = new SelectorRtpReceiverImpl(newQueue(), agentConfig(), selectorGroup);
+			assertThrows(UncheckedIOException.class, receiver::start);
+			receiver.stop();
+		}
+	}
+
+	private static MediaBuffer receive(DatagramSocket carrier, RingBuffer<MediaBuffer> inboundRtpQueue) throws Exception {
+		MediaBuffer received = null;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (received == null && System.nanoTime() < deadline) {
+			//the channel is registered asynchronously, resend until it is serviced
+			carrier.send(new DatagramPacket(new byte[172], 172, LOCAL_ADDRESS));
+			received = inboundRtpQueue.poll(20, TimeUnit.MILLISECONDS);
+		}
+		MediaBuffer resent;
+		while ((resent = inboundRtpQueue.poll(20, TimeUnit.MILLISECONDS)) != null) {
+			resent.release();
+		}
+		return received;
+	}
+
+	private static RingBuffer<MediaBuffer> newQueue() {
+		return new RingBuffer<>(16, WaitStrategies.fromName(WaitStrategies.PARK), MediaBuffer::release);
+	}
+
+	private static AgentConfig agentConfig() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName("agent");
+		agentConfig.setRtpLocalIp("127.0.0.1");
+		agentConfig.setRtpLocalPort(LOCAL_PORT);
+		agentConfig.setRtpPayloadSize(160);
+		return agentConfig;
+	}
+}
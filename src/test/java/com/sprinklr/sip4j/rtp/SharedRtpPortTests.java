@@ -0,0 +1,269 @@
+package com.sprinklr.sip4j.rtp;
+
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.buffer.WaitStrategies;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.sprinklr.sip4j.utils.Constants.RTP_HEADER_SIZE;
+import static com.sprinklr.sip4j.utils.Constants.RTP_MAX_HEADER_EXTRA_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SharedRtpPortTests {
+
+	private static final InetSocketAddress LOCAL_ADDRESS = new InetSocketAddress("127.0.0.1", 46060);
+	private static final int BUFFER_SIZE = RTP_HEADER_SIZE + RTP_MAX_HEADER_EXTRA_SIZE + 160;
+
+	private final RtpSelectorGroup selectorGroup = new RtpSelectorGroup(1);
+
+	@Test
+	void routesByRemoteAddress() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket first = carrier(46061); DatagramSocket second = carrier(46062)) {
+			RingBuffer<MediaBuffer> firstQueue = newQueue();
+			RingBuffer<MediaBuffer> secondQueue = newQueue();
+			port.addRoute(address(46061), firstQueue);
+			port.addRoute(address(46062), secondQueue);
+
+			assertReceived(0x1111, sendUntilReceived(first, 0x1111, firstQueue));
+			assertReceived(0x2222, sendUntilReceived(second, 0x2222, secondQueue));
+			assertNull(firstQueue.poll());
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void followsTheSsrcWhenTheSourcePortChanges() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket before = carrier(46061); DatagramSocket after = carrier(46063)) {
+			RingBuffer<MediaBuffer> queue = newQueue();
+			port.addRoute(address(46061), queue);
+			assertReceived(0x1111, sendUntilReceived(before, 0x1111, queue));
+
+			send(after, 0x1111);
+			assertReceived(0x1111, queue.poll(1, TimeUnit.SECONDS));
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void latchesByHostWhenTheCarrierSendsFromAnotherPort() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket carrier = carrier(46064)) {
+			RingBuffer<MediaBuffer> queue = newQueue();
+			port.addRoute(address(46061), queue); //port in the sdp, never sent from
+			assertReceived(0x3333, sendUntilReceived(carrier, 0x3333, queue));
+			assertEquals(0, port.getUnroutableCount());
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void dropsPacketsMatchingSeveralCallsByHost() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket serviced = carrier(46065); DatagramSocket stranger = carrier(46066)) {
+			RingBuffer<MediaBuffer> servicedQueue = newQueue();
+			port.addRoute(address(46065), servicedQueue);
+			sendUntilReceived(serviced, 0x5555, servicedQueue).release(); //port registered with the selector
+
+			RingBuffer<MediaBuffer> firstQueue = newQueue();
+			RingBuffer<MediaBuffer> secondQueue = newQueue();
+			port.addRoute(address(46061), firstQueue);
+			port.addRoute(address(46062), secondQueue);
+			send(stranger, 0x6666);
+			send(serviced, 0x5555); //read after the stranger's packet
+			assertReceived(0x5555, servicedQueue.poll(1, TimeUnit.SECONDS));
+
+			assertNull(firstQueue.poll());
+			assertNull(secondQueue.poll());
+			assertEquals(1, port.getUnroutableCount());
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void doesNotRouteACollidingSsrcToAnotherCall() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket first = carrier(46061); DatagramSocket second = carrier(46062); DatagramSocket moved = carrier(46067)) {
+			RingBuffer<MediaBuffer> firstQueue = newQueue();
+			RingBuffer<MediaBuffer> secondQueue = newQueue();
+			port.addRoute(address(46061), firstQueue);
+			port.addRoute(address(46062), secondQueue);
+			sendUntilReceived(first, 0x7777, firstQueue).release();
+			sendUntilReceived(second, 0x7777, secondQueue).release();
+			assertEquals(1, port.getSsrcCollisionCount());
+
+			//still routed by address
+			send(first, 0x7777);
+			assertReceived(0x7777, firstQueue.poll(1, TimeUnit.SECONDS));
+			send(second, 0x7777);
+			assertReceived(0x7777, secondQueue.poll(1, TimeUnit.SECONDS));
+			assertNull(firstQueue.poll());
+
+			//the ssrc stays with the call which used it first
+			send(moved, 0x7777);
+			assertNotNull(firstQueue.poll(1, TimeUnit.SECONDS));
+			assertNull(secondQueue.poll());
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void growsBuffersForAnAgentNeedingLargerOnes() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket first = carrier(46061); DatagramSocket second = carrier(46062)) {
+			RingBuffer<MediaBuffer> firstQueue = newQueue();
+			port.addRoute(address(46061), firstQueue);
+			sendUntilReceived(first, 0x1111, firstQueue).release();
+
+			SharedRtpPort joined = SharedRtpPort.acquire(LOCAL_ADDRESS, 332, false, selectorGroup);
+			assertEquals(port, joined);
+			assertEquals(332, port.getBufferSize());
+			RingBuffer<MediaBuffer> secondQueue = newQueue();
+			port.addRoute(address(46062), secondQueue);
+			send(second, 0x2222);
+			MediaBuffer received = secondQueue.poll(1, TimeUnit.SECONDS);
+			assertReceived(0x2222, received);
+			assertEquals(332, received.getCapacity());
+			joined.release();
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void stopsPushingIntoTheQueueOnceTheRouteIsRemoved() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket carrier = carrier(46061); DatagramSocket moved = carrier(46063)) {
+			RingBuffer<MediaBuffer> queue = newQueue();
+			SharedRtpPort.Route route = port.addRoute(address(46061), queue);
+			assertReceived(0x1111, sendUntilReceived(carrier, 0x1111, queue));
+
+			port.removeRoute(route);
+			assertEquals(0, port.getRouteCount());
+			send(carrier, 0x1111);
+			send(moved, 0x1111); //no longer routed by the ssrc either
+			assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+			assertEquals(2, port.getUnroutableCount());
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void rebindsThePortReleasedByTheLastAgent() throws Exception {
+		try (DatagramSocket carrier = carrier(46061)) {
+			for (int call = 0; call < 20; call++) {
+				SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+				RingBuffer<MediaBuffer> queue = newQueue();
+				SharedRtpPort.Route route = port.addRoute(address(46061), queue);
+				assertReceived(0x1111, sendUntilReceived(carrier, 0x1111, queue));
+				port.removeRoute(route);
+				port.release();
+			}
+		}
+	}
+
+	@Test
+	void dropsDatagramsLargerThanItsBuffers() throws Exception {
+		SharedRtpPort port = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+		try (DatagramSocket carrier = carrier(46061)) {
+			RingBuffer<MediaBuffer> queue = newQueue();
+			port.addRoute(address(46061), queue);
+			assertReceived(0x1111, sendUntilReceived(carrier, 0x1111, queue));
+
+			//a full CSRC list fits, a datagram filling the buffer may have been cut short
+			byte[] packet = new byte[RTP_HEADER_SIZE + 15 * 4 + 160];
+			packet[0] = (byte) 0x8F;
+			ByteBuffer.wrap(packet).putInt(8, 0x1111);
+			carrier.send(new DatagramPacket(packet, packet.length, LOCAL_ADDRESS));
+			MediaBuffer received = queue.poll(1, TimeUnit.SECONDS);
+			assertEquals(packet.length, received.getLength());
+			received.release();
+
+			byte[] oversized = Arrays.copyOf(packet, BUFFER_SIZE + 100);
+			carrier.send(new DatagramPacket(oversized, oversized.length, LOCAL_ADDRESS));
+			assertNull(queue.poll(200, TimeUnit.MILLISECONDS));
+			assertEquals(1, port.getTruncatedCount());
+		} finally {
+			port.release();
+		}
+	}
+
+	@Test
+	void reacquiresWhileAnotherThreadReleases() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			for (int call = 0; call < 50; call++) {
+				SharedRtpPort previous = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+				Future<?> released = executor.submit(() -> {
+					previous.release();
+					return null;
+				});
+				//either joins the port before it is closed or opens it again once it is, never finds it still bound
+				SharedRtpPort next = SharedRtpPort.acquire(LOCAL_ADDRESS, BUFFER_SIZE, false, selectorGroup);
+				released.get(2, TimeUnit.SECONDS);
+				next.release();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static MediaBuffer sendUntilReceived(DatagramSocket carrier, int ssrc, RingBuffer<MediaBuffer> queue) throws Exception {
+		MediaBuffer received = null;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (received == null && System.nanoTime() < deadline) {
+			//the port is registered asynchronously, resend until it is serviced
+			send(carrier, ssrc);
+			received = queue.poll(20, TimeUnit.MILLISECONDS);
+		}
+		MediaBuffer resent;
+		while ((resent = queue.poll(20, TimeUnit.MILLISECONDS)) != null) {
+			resent.release();
+		}
+		return received;
+	}
+
+	private static void send(DatagramSocket carrier, int ssrc) throws Exception {
+		byte[] packet = new byte[172];
+		packet[0] = (byte) 0x80;
+		ByteBuffer.wrap(packet).putInt(8, ssrc);
+		carrier.send(new DatagramPacket(packet, packet.length, LOCAL_ADDRESS));
+	}
+
+	private static void assertReceived(int ssrc, MediaBuffer received) {
+		assertNotNull(received);
+		assertEquals(ssrc, new RtpPacketView().wrap(received).getSsrc());
+		received.release();
+	}
+
+	private static DatagramSocket carrier(int port) throws Exception {
+		return new DatagramSocket(address(port));
+	}
+
+	private static InetSocketAddress address(int port) {
+		return new InetSocketAddress("127.0.0.1", port);
+	}
+
+	private static RingBuffer<MediaBuffer> newQueue() {
+		return new RingBuffer<>(16, WaitStrategies.fromName(WaitStrategies.PARK), MediaBuffer::release);
+	}
+}
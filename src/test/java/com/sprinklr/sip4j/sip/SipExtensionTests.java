@@ -0,0 +1,222 @@
+package com.sprinklr.sip4j.sip;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.agent.AgentState;
+import com.sprinklr.sip4j.mockserver.SipOzonetel;
+import org.junit.jupiter.api.Test;
+
+import javax.sip.InvalidArgumentException;
+import javax.sip.ListeningPoint;
+import javax.sip.RequestEvent;
+import javax.sip.message.Request;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static com.sprinklr.sip4j.sip.SipAllFactories.MESSAGE_FACTORY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SipExtensionTests {
+
+	private static final String LOCAL_IP = "127.0.0.1";
+	private static final int AGENT_SIP_PORT = 46070;
+	private static final int CARRIER_SIP_PORT = 46071; //the first carrier is the registrar
+	private static final int CARRIER_RTP_PORT = 46080;
+
+	@Test
+	void answersUpToMaxConcurrentCallsAndBusiesTheOthers() throws Exception {
+		AgentState agentState = new AgentState("concurrent1");
+		SipOzonetel[] carriers = startCarriers("concurrent1", 3);
+		SipExtension sip = new SipExtension(agentState, agentConfig("concurrent1", 2));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			await(() -> SipState.REGISTERED.equals(agentState.getSipState()));
+
+			carriers[0].sendInvite();
+			carriers[1].sendInvite();
+			assertNotNull(sip.call());
+			assertNotNull(sip.call());
+			await(() -> carriers[0].isConfirmed() && carriers[1].isConfirmed());
+			assertEquals(2, agentState.getActiveCalls());
+
+			//answered with 486 Busy Here
+			carriers[2].sendInvite();
+			Thread.sleep(500);
+			assertFalse(carriers[2].isConfirmed());
+			assertEquals(2, agentState.getActiveCalls());
+
+			//a stopping Agent is woken up and answers no more calls, the calls up are kept
+			Future<SipCall> waiting = executor.submit(sip);
+			sip.stopAnswering();
+			assertNull(waiting.get(2, TimeUnit.SECONDS));
+			assertEquals(2, agentState.getActiveCalls());
+			assertEquals(SipState.CONNECTED, agentState.getSipState());
+		} finally {
+			executor.shutdownNow();
+			sip.close();
+			shutDown(carriers);
+		}
+	}
+
+	@Test
+	void endsOnlyTheCallOfTheByeOrCancel() throws Exception {
+		AgentState agentState = new AgentState("concurrent2");
+		SipOzonetel[] carriers = startCarriers("concurrent2", 3);
+		SipExtension sip = new SipExtension(agentState, agentConfig("concurrent2", 3));
+		try {
+			await(() -> SipState.REGISTERED.equals(agentState.getSipState()));
+			SipCall[] calls = new SipCall[carriers.length];
+			for (SipOzonetel carrier : carriers) {
+				carrier.sendInvite();
+				SipCall sipCall = sip.call();
+				calls[sipCall.getRtpRemoteAddress().getPort() - CARRIER_RTP_PORT] = sipCall;
+			}
+			await(() -> carriers[2].isConfirmed());
+
+			carriers[0].sendBye();
+			await(calls[0]::isDisconnected);
+			assertFalse(calls[1].isDisconnected());
+			assertFalse(calls[2].isDisconnected());
+			assertEquals(SipState.CONNECTED, agentState.getSipState());
+			sip.endCall(calls[0]);
+			assertEquals(2, agentState.getActiveCalls());
+
+			//too late to cancel an answered call, the carrier then hangs up with a BYE
+			carriers[1].sendCancel();
+			await(calls[1]::isDisconnected);
+			assertFalse(calls[2].isDisconnected());
+			assertEquals(SipState.CONNECTED, agentState.getSipState());
+
+			//the media of the second call is still being stopped, the Agent is disconnected once no call is up
+			carriers[2].sendBye();
+			await(calls[2]::isDisconnected);
+			assertEquals(SipState.DISCONNECTED, agentState.getSipState());
+			sip.endCall(calls[1]);
+			sip.endCall(calls[2]);
+			assertEquals(0, agentState.getActiveCalls());
+			assertEquals(SipState.REGISTERED, agentState.getSipState());
+		} finally {
+			sip.close();
+			shutDown(carriers);
+		}
+	}
+
+	@Test
+	void answersAByeOrCancelForAnUnknownCallWith481AndStaysRegistered() throws Exception {
+		AgentState agentState = new AgentState("idle1");
+		SipOzonetel[] carriers = startCarriers("idle1", 1);
+		AgentConfig agentConfig = agentConfig("idle1", 1);
+		agentConfig.setPersistent(false); //would shut down if the request disconnected it
+		SipExtension sip = new SipExtension(agentState, agentConfig);
+		try (DatagramSocket stranger = new DatagramSocket(new InetSocketAddress(LOCAL_IP, 0))) {
+			stranger.setSoTimeout(2000);
+			await(() -> SipState.REGISTERED.equals(agentState.getSipState()));
+
+			//the stack itself answers a request outside any dialog, these reach the Agent without a transaction
+			sip.processByeRequest(new RequestEvent(sip, null, null, strayRequest(Request.BYE, stranger)), null);
+			assertEquals(481, statusCode(stranger));
+			sip.processCancelRequest(new RequestEvent(sip, null, null, strayRequest(Request.CANCEL, stranger)), null);
+			sip.processByeRequest(new RequestEvent(sip, null, null, strayRequest(Request.BYE, stranger)), null);
+			assertEquals(481, statusCode(stranger));
+
+			assertEquals(SipState.REGISTERED, agentState.getSipState());
+			assertEquals(0, agentState.getActiveCalls());
+		} finally {
+			sip.close();
+			shutDown(carriers);
+		}
+	}
+
+	@Test
+	void leavesTheSharedRuntimeWhenTheRegisterRequestCannotBeCreated() throws Exception {
+		AgentConfig agentConfig = agentConfig("shared1", 1);
+		agentConfig.setSipStackMode(SipStackMode.SHARED);
+		agentConfig.setSipLocalPort(AGENT_SIP_PORT + 20);
+		agentConfig.setSipRegisterExpiryTimeSec(-1); //rejected by the Expires header
+		assertThrows(InvalidArgumentException.class, () -> new SipExtension(new AgentState("shared1"), agentConfig));
+		assertEquals(0, SipRuntime.getDefault().getAgentCount());
+		SipRuntimeTests.awaitClosed(SipRuntime.getDefault());
+
+		//the user can be registered again
+		agentConfig.setSipRegisterExpiryTimeSec(3600);
+		SipExtension sip = new SipExtension(new AgentState("shared1"), agentConfig);
+		assertEquals(1, SipRuntime.getDefault().getAgentCount());
+		sip.close();
+		assertEquals(0, SipRuntime.getDefault().getAgentCount());
+	}
+
+	private static SipOzonetel[] startCarriers(String name, int count) {
+		SipOzonetel[] carriers = new SipOzonetel[count];
+		for (int i = 0; i < count; i++) {
+			carriers[i] = new SipOzonetel(name + "-carrier" + i, LOCAL_IP, CARRIER_SIP_PORT + i,
+					LOCAL_IP + ":" + AGENT_SIP_PORT, LOCAL_IP, CARRIER_RTP_PORT + i);
+			carriers[i].start();
+		}
+		return carriers;
+	}
+
+	private static void shutDown(SipOzonetel[] carriers) {
+		for (SipOzonetel carrier : carriers) {
+			if (!carrier.isShutdown()) {
+				carrier.shutDown();
+			}
+		}
+	}
+
+	private static Request strayRequest(String method, DatagramSocket from) throws ParseException {
+		return MESSAGE_FACTORY.createRequest(method + " sip:idle1@" + LOCAL_IP + ":" + AGENT_SIP_PORT + " SIP/2.0\r\n"
+				+ "Via: SIP/2.0/UDP " + LOCAL_IP + ":" + from.getLocalPort() + ";branch=z9hG4bK" + method + System.nanoTime() + "\r\n"
+				+ "Max-Forwards: 70\r\n"
+				+ "From: <sip:carrier@" + LOCAL_IP + ">;tag=1\r\n"
+				+ "To: <sip:idle1@" + LOCAL_IP + ">;tag=2\r\n"
+				+ "Call-ID: stray-call\r\n"
+				+ "CSeq: 2 " + method + "\r\n"
+				+ "Content-Length: 0\r\n\r\n");
+	}
+
+	private static int statusCode(DatagramSocket socket) throws IOException {
+		DatagramPacket packet = new DatagramPacket(new byte[4096], 4096);
+		socket.receive(packet);
+		String response = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+		return Integer.parseInt(response.substring("SIP/2.0 ".length(), "SIP/2.0 ".length() + 3));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "timed out");
+			Thread.sleep(10);
+		}
+	}
+
+	private static AgentConfig agentConfig(String name, int maxConcurrentCalls) {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName(name);
+		agentConfig.setTransportMode(ListeningPoint.UDP);
+		agentConfig.setSipLocalUsername(name);
+		agentConfig.setSipLocalDisplayName(name);
+		agentConfig.setSipLocalRealm("sprinklr.com");
+		agentConfig.setPassword("password12345");
+		agentConfig.setSipLocalIp(LOCAL_IP);
+		agentConfig.setSipLocalPort(AGENT_SIP_PORT);
+		agentConfig.setSipRegistrarIp(LOCAL_IP);
+		agentConfig.setSipRegistrarPort(CARRIER_SIP_PORT);
+		agentConfig.setSipRegisterExpiryTimeSec(3600);
+		agentConfig.setPersistent(true);
+		agentConfig.setMaxConcurrentCalls(maxConcurrentCalls);
+		return agentConfig;
+	}
+}
@@ -0,0 +1,260 @@
+package com.sprinklr.sip4j.sip;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import org.junit.jupiter.api.Test;
+
+import javax.sip.ClientTransaction;
+import javax.sip.DialogTerminatedEvent;
+import javax.sip.IOExceptionEvent;
+import javax.sip.RequestEvent;
+import javax.sip.ResponseEvent;
+import javax.sip.SipListener;
+import javax.sip.SipProvider;
+import javax.sip.TimeoutEvent;
+import javax.sip.TransactionTerminatedEvent;
+import javax.sip.header.CSeqHeader;
+import javax.sip.header.CallIdHeader;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SipRuntimeTests {
+
+	private static final InetSocketAddress ROUTING_ADDRESS = new InetSocketAddress("127.0.0.1", 46041);
+
+	@Test
+	void agentsOnTheSamePortShareOneListeningPoint() throws Exception {
+		SipRuntime sipRuntime = new SipRuntime("sip-runtime-tests");
+		AgentConfig first = agentConfig("agent1");
+		AgentConfig second = agentConfig("agent2");
+		SipListener firstListener = new IgnoringListener();
+		SipListener secondListener = new IgnoringListener();
+
+		SipProvider firstProvider = sipRuntime.register(first, firstListener);
+		SipProvider secondProvider = sipRuntime.register(second, secondListener);
+		assertSame(firstProvider, secondProvider);
+		assertEquals(1, sipRuntime.getListeningPointCount());
+		assertEquals(2, sipRuntime.getAgentCount());
+
+		assertThrows(IllegalStateException.class, () -> sipRuntime.register(agentConfig("agent1"), new IgnoringListener()));
+		assertEquals(2, sipRuntime.getAgentCount());
+
+		sipRuntime.unregister(first, firstListener);
+		assertEquals(1, sipRuntime.getListeningPointCount());
+		sipRuntime.unregister(second, secondListener);
+		assertEquals(0, sipRuntime.getAgentCount());
+
+		//left right after it was opened, the listening point is still there for the next Agent
+		assertSame(firstProvider, sipRuntime.register(first, firstListener));
+		sipRuntime.unregister(first, firstListener);
+		awaitClosed(sipRuntime);
+		assertNotSame(firstProvider, sipRuntime.register(first, firstListener));
+		sipRuntime.unregister(first, firstListener);
+		awaitClosed(sipRuntime);
+	}
+
+	@Test
+	void routesRequestsByRequestUriUserAndElseByToUser() throws Exception {
+		SipRuntime sipRuntime = new SipRuntime("sip-runtime-request-routing-tests");
+		AgentConfig first = routedAgentConfig("agent1");
+		AgentConfig second = routedAgentConfig("agent2");
+		RecordingListener firstListener = new RecordingListener();
+		RecordingListener secondListener = new RecordingListener();
+		sipRuntime.register(first, firstListener);
+		sipRuntime.register(second, secondListener);
+		try (DatagramSocket carrier = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0))) {
+			carrier.setSoTimeout(2000);
+
+			//the Request-URI wins over the To header
+			send(carrier, options(carrier, "sip:agent1@127.0.0.1:46041", "agent2", "routing-1"));
+			assertEquals("routing-1", callIdOf(firstListener.requests.poll(2, TimeUnit.SECONDS)));
+			assertNull(secondListener.requests.poll(100, TimeUnit.MILLISECONDS));
+
+			//no user in the Request-URI, routed by the To header
+			send(carrier, options(carrier, "sip:127.0.0.1:46041", "agent2", "routing-2"));
+			assertEquals("routing-2", callIdOf(secondListener.requests.poll(2, TimeUnit.SECONDS)));
+			assertNull(firstListener.requests.poll(100, TimeUnit.MILLISECONDS));
+		} finally {
+			sipRuntime.unregister(first, firstListener);
+			sipRuntime.unregister(second, secondListener);
+			awaitClosed(sipRuntime);
+		}
+	}
+
+	@Test
+	void answersRequestsForUnknownUsersWith404() throws Exception {
+		SipRuntime sipRuntime = new SipRuntime("sip-runtime-unknown-user-tests");
+		AgentConfig agentConfig = routedAgentConfig("agent1");
+		RecordingListener listener = new RecordingListener();
+		sipRuntime.register(agentConfig, listener);
+		try (DatagramSocket carrier = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0))) {
+			carrier.setSoTimeout(2000);
+			send(carrier, options(carrier, "sip:stranger@127.0.0.1:46041", "stranger", "routing-3"));
+
+			String response = receive(carrier);
+			assertTrue(response.startsWith("SIP/2.0 404"), response);
+			assertTrue(response.contains("routing-3"), response);
+			assertNull(listener.requests.poll(100, TimeUnit.MILLISECONDS));
+		} finally {
+			sipRuntime.unregister(agentConfig, listener);
+			awaitClosed(sipRuntime);
+		}
+	}
+
+	@Test
+	void routesResponsesByFromUser() throws Exception {
+		SipRuntime sipRuntime = new SipRuntime("sip-runtime-response-routing-tests");
+		try (DatagramSocket registrar = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0))) {
+			registrar.setSoTimeout(2000);
+			AgentConfig first = routedAgentConfig("agent1");
+			AgentConfig second = routedAgentConfig("agent2");
+			second.setSipRegistrarPort(registrar.getLocalPort());
+			RecordingListener firstListener = new RecordingListener();
+			RecordingListener secondListener = new RecordingListener();
+			SipProvider sipProvider = sipRuntime.register(first, firstListener);
+			sipRuntime.register(second, secondListener);
+			try {
+				Request register = new SipRequestCreator(sipProvider, second).createRegisterRequest();
+				ClientTransaction registerTransaction = sipProvider.getNewClientTransaction(register);
+				registerTransaction.sendRequest();
+
+				//answered from the request's own headers, as a registrar does
+				String request = receive(registrar);
+				StringBuilder response = new StringBuilder("SIP/2.0 200 OK\r\n");
+				for (String line : request.split("\r\n")) {
+					if (line.startsWith("Via:") || line.startsWith("From:") || line.startsWith("To:")
+							|| line.startsWith("Call-ID:") || line.startsWith("CSeq:")) {
+						response.append(line).append("\r\n");
+					}
+				}
+				response.append("Content-Length: 0\r\n\r\n");
+				send(registrar, response.toString());
+
+				Response received = secondListener.responses.poll(2, TimeUnit.SECONDS);
+				assertNotNull(received);
+				assertEquals(Response.OK, received.getStatusCode());
+				assertEquals(Request.REGISTER, ((CSeqHeader) received.getHeader(CSeqHeader.NAME)).getMethod());
+				assertNull(firstListener.responses.poll(100, TimeUnit.MILLISECONDS));
+			} finally {
+				sipRuntime.unregister(first, firstListener);
+				sipRuntime.unregister(second, secondListener);
+				awaitClosed(sipRuntime);
+			}
+		}
+	}
+
+	static void awaitClosed(SipRuntime sipRuntime) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (sipRuntime.getListeningPointCount() > 0) {
+			assertTrue(System.nanoTime() < deadline, "listening point not closed");
+			Thread.sleep(10);
+		}
+	}
+
+	private static String options(DatagramSocket carrier, String requestUri, String toUser, String callId) {
+		return "OPTIONS " + requestUri + " SIP/2.0\r\n"
+				+ "Via: SIP/2.0/UDP 127.0.0.1:" + carrier.getLocalPort() + ";branch=z9hG4bK" + callId + "\r\n"
+				+ "Max-Forwards: 70\r\n"
+				+ "From: <sip:carrier@127.0.0.1>;tag=1\r\n"
+				+ "To: <sip:" + toUser + "@127.0.0.1>\r\n"
+				+ "Call-ID: " + callId + "\r\n"
+				+ "CSeq: 1 OPTIONS\r\n"
+				+ "Content-Length: 0\r\n\r\n";
+	}
+
+	private static void send(DatagramSocket carrier, String message) throws Exception {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		carrier.send(new DatagramPacket(bytes, bytes.length, ROUTING_ADDRESS));
+	}
+
+	private static String receive(DatagramSocket socket) throws Exception {
+		DatagramPacket packet = new DatagramPacket(new byte[4096], 4096);
+		try {
+			socket.receive(packet);
+		} catch (SocketTimeoutException e) {
+			throw new AssertionError("Nothing received from the sip runtime", e);
+		}
+		return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+	}
+
+	private static String callIdOf(Request request) {
+		assertNotNull(request);
+		return ((CallIdHeader) request.getHeader(CallIdHeader.NAME)).getCallId();
+	}
+
+	private static AgentConfig routedAgentConfig(String username) {
+		AgentConfig agentConfig = agentConfig(username);
+		agentConfig.setSipLocalPort(ROUTING_ADDRESS.getPort());
+		agentConfig.setSipLocalRealm("sprinklr.com");
+		agentConfig.setSipLocalDisplayName(username);
+		agentConfig.setSipRegistrarIp("127.0.0.1");
+		agentConfig.setSipRegisterExpiryTimeSec(3600);
+		return agentConfig;
+	}
+
+	private static AgentConfig agentConfig(String username) {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName(username);
+		agentConfig.setSipLocalUsername(username);
+		agentConfig.setSipLocalIp("127.0.0.1");
+		agentConfig.setSipLocalPort(46040);
+		agentConfig.setTransportMode("udp");
+		return agentConfig;
+	}
+
+	private static class RecordingListener extends IgnoringListener {
+		private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+		private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+
+		@Override
+		public void processRequest(RequestEvent requestEvent) {
+			requests.offer(requestEvent.getRequest());
+		}
+
+		@Override
+		public void processResponse(ResponseEvent responseEvent) {
+			responses.offer(responseEvent.getResponse());
+		}
+	}
+
+	private static class IgnoringListener implements SipListener {
+		@Override
+		public void processRequest(RequestEvent requestEvent) {
+		}
+
+		@Override
+		public void processResponse(ResponseEvent responseEvent) {
+		}
+
+		@Override
+		public void processTimeout(TimeoutEvent timeoutEvent) {
+		}
+
+		@Override
+		public void processIOException(IOExceptionEvent exceptionEvent) {
+		}
+
+		@Override
+		public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
+		}
+
+		@Override
+		public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.sprinklr.sip4j.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThreadModesTests {
+
+	@Test
+	void platformModeRunsOnPlatformThreads() throws Exception {
+		ExecutorService executor = ThreadModes.newExecutor(ThreadModes.PLATFORM, 1);
+		try {
+			assertEquals(Boolean.FALSE, executor.submit(ThreadModesTests::isCurrentThreadVirtual).get(1, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void virtualModeRunsOnVirtualThreadsFromJava21() throws Exception {
+		if (!ThreadModes.isVirtualSupported()) {
+			assertThrows(IllegalStateException.class, () -> ThreadModes.newExecutor(ThreadModes.VIRTUAL, 1));
+			return;
+		}
+		ExecutorService executor = ThreadModes.newExecutor(ThreadModes.VIRTUAL, 1);
+		try {
+			assertTrue(executor.submit(ThreadModesTests::isCurrentThreadVirtual).get(1, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void unknownModeIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> ThreadModes.newExecutor("GREEN", 1));
+	}
+
+	private static Boolean isCurrentThreadVirtual() throws Exception {
+		try {
+			return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+		} catch (NoSuchMethodException e) {
+			return false; //before Java 19
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.sprinklr.sip4j.websocket;
+
+import com.sprinklr.sip4j.agent.AgentConfig;
+import com.sprinklr.sip4j.agent.AgentState;
+import com.sprinklr.sip4j.buffer.MediaBuffer;
+import com.sprinklr.sip4j.buffer.RingBuffer;
+import com.sprinklr.sip4j.buffer.WaitStrategies;
+import com.sprinklr.sip4j.media.AudioCodec;
+import com.sprinklr.sip4j.rtp.RtpPacketView;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebsocketTests {
+
+	@Test
+	void startsANewStreamForEachCall() throws Exception {
+		RingBuffer<MediaBuffer> outboundRtpQueue = newQueue(16);
+		Websocket websocket = new Websocket(outboundRtpQueue, new AgentState("agent"), agentConfig());
+		RtpPacketView view = new RtpPacketView();
+
+		websocket.startCall();
+		websocket.onMessage(ByteBuffer.wrap(new byte[250])); //90 bytes left in the packetizer
+		MediaBuffer first = outboundRtpQueue.poll();
+		int firstSsrc = view.wrap(first).getSsrc();
+		first.release();
+		websocket.endCall();
+
+		//audio arriving between calls is dropped
+		websocket.onMessage(ByteBuffer.wrap(new byte[320]));
+		assertNull(outboundRtpQueue.poll());
+
+		websocket.startCall();
+		websocket.onMessage(ByteBuffer.wrap(new byte[160]));
+		MediaBuffer second = outboundRtpQueue.poll();
+		view.wrap(second);
+		assertNotEquals(firstSsrc, view.getSsrc());
+		assertTrue(view.getMarker());
+		assertEquals(160, view.getPayloadLength()); //nothing carried over from the previous call
+		second.release();
+		assertNull(outboundRtpQueue.poll());
+	}
+
+	@Test
+	void dropsThePartialPacketOnceTheConnectionCloses() throws Exception {
+		RingBuffer<MediaBuffer> outboundRtpQueue = newQueue(16);
+		Websocket websocket = new Websocket(outboundRtpQueue, new AgentState("agent"), agentConfig());
+		websocket.startCall();
+		websocket.onMessage(ByteBuffer.wrap(new byte[250])); //90 bytes left in the packetizer
+		outboundRtpQueue.poll().release();
+
+		//closed from another thread than the one reading, then reconnected
+		CompletableFuture.runAsync(() -> websocket.onClose(1006, "", true)).get(1, TimeUnit.SECONDS);
+		websocket.onMessage(ByteBuffer.wrap(new byte[160]));
+		MediaBuffer packet = outboundRtpQueue.poll();
+		assertEquals(160, new RtpPacketView().wrap(packet).getPayloadLength());
+		packet.release();
+		assertNull(outboundRtpQueue.poll());
+	}
+
+	@Test
+	void stopsWaitingForTheSenderOnceTheCallEnds() throws Exception {
+		RingBuffer<MediaBuffer> outboundRtpQueue = newQueue(4);
+		Websocket websocket = new Websocket(outboundRtpQueue, new AgentState("agent"), agentConfig());
+		websocket.startCall();
+
+		//more audio than the queue holds, and no sender draining it
+		CompletableFuture<Void> read = CompletableFuture.runAsync(() -> websocket.onMessage(ByteBuffer.wrap(new byte[160 * 10])));
+		Thread.sleep(50);
+		websocket.endCall();
+		read.get(1, TimeUnit.SECONDS);
+
+		assertEquals(4, outboundRtpQueue.size());
+		MediaBuffer packet;
+		while ((packet = outboundRtpQueue.poll()) != null) {
+			packet.release();
+		}
+	}
+
+	@Test
+	void upsamplesThePacketsOfTheBotIntoBuffersLargeEnough() throws Exception {
+		RingBuffer<MediaBuffer> outboundRtpQueue = newQueue(4);
+		AgentConfig agentConfig = agentConfig();
+		agentConfig.setBotRawAudio(false);
+		agentConfig.setRtpCodec(AudioCodec.L16);
+		agentConfig.setRtpClockRate(16000);
+		agentConfig.setRtpPayloadSize(640);
+		agentConfig.setBotCodec(AudioCodec.L16);
+		agentConfig.setBotSampleRate(8000);
+		Websocket websocket = new Websocket(outboundRtpQueue, new AgentState("agent"), agentConfig);
+		websocket.startCall();
+
+		//one 20 ms packet at 8 kHz, wrapped as received, with no room for the 16 kHz payload
+		ByteBuffer message = ByteBuffer.allocate(12 + 320);
+		new RtpPacketView().wrap(MediaBuffer.wrap(message.duplicate())).writeHeader(false, 0, 1, 160, 1);
+		websocket.onMessage(message);
+
+		MediaBuffer packet = outboundRtpQueue.poll();
+		assertEquals(12 + 640, packet.getLength());
+		assertEquals(1, new RtpPacketView().wrap(packet).getSequenceNumber());
+		packet.release();
+	}
+
+	private static RingBuffer<MediaBuffer> newQueue(int capacity) {
+		return new RingBuffer<>(capacity, WaitStrategies.fromName(WaitStrategies.PARK), MediaBuffer::release);
+	}
+
+	private static AgentConfig agentConfig() {
+		AgentConfig agentConfig = new AgentConfig();
+		agentConfig.setAgentName("agent");
+		agentConfig.setWsServerUri("ws://127.0.0.1:1");
+		agentConfig.setRtpPayloadSize(160);
+		agentConfig.setBotRawAudio(true);
+		return agentConfig;
+	}
+}